@@ -19,6 +19,8 @@ import static me.prettyprint.cassandra.utils.StringUtils.string;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,12 +32,14 @@ import me.prettyprint.cassandra.service.Keyspace;
 
 import org.apache.cassandra.thrift.Column;
 import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.KeyRange;
 import org.apache.cassandra.thrift.SlicePredicate;
 import org.apache.cassandra.thrift.SliceRange;
 import org.apache.cassandra.thrift.SuperColumn;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.grails.datastore.mapping.cassandra.CassandraDatastore;
 import org.grails.datastore.mapping.cassandra.CassandraSession;
+import org.grails.datastore.mapping.cassandra.query.CassandraQuery;
 import org.grails.datastore.mapping.cassandra.uuid.UUIDUtil;
 import org.grails.datastore.mapping.engine.AssociationIndexer;
 import org.grails.datastore.mapping.engine.PropertyValueIndexer;
@@ -75,7 +79,7 @@ public class CassandraEntityPersister extends AbstractKeyValueEntityPesister<Key
 
     @Override
     public PropertyValueIndexer getPropertyIndexer(PersistentProperty property) {
-        return null; // TODO: Support querying in cassandra
+        return new CassandraPropertyValueIndexer(cassandraClient, getMappingContext(), property, getKeyspaceName());
     }
 
     @Override
@@ -124,6 +128,128 @@ public class CassandraEntityPersister extends AbstractKeyValueEntityPesister<Key
         return entry;
     }
 
+    /**
+     * Retrieves all of the given keys with a single multiget against the entity family, returning
+     * the entities in the order of the keys with null for any key that doesn't exist
+     */
+    @Override
+    protected List<Object> retrieveAllEntities(PersistentEntity persistentEntity, Iterable<Serializable> keys) {
+        final String family = getFamily(persistentEntity, persistentEntity.getMapping());
+        List<String> nativeKeys = new ArrayList<String>();
+        for (Serializable key : keys) {
+            nativeKeys.add(key.toString());
+        }
+
+        List<Object> results = new ArrayList<Object>();
+        if (nativeKeys.isEmpty()) {
+            return results;
+        }
+
+        Map<String, List<SuperColumn>> rows = getSuperSlices(getKeyspace(), family, nativeKeys);
+        for (String key : nativeKeys) {
+            KeyValueEntry entry = createEntry(family, rows.get(key));
+            if (entry == null) {
+                results.add(null);
+            }
+            else {
+                results.add(createObjectFromNativeEntry(persistentEntity, UUID.fromString(key), entry));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    protected List<Object> retrieveAllEntities(PersistentEntity persistentEntity, Serializable[] keys) {
+        return retrieveAllEntities(persistentEntity, Arrays.asList(keys));
+    }
+
+    /**
+     * Returns those keys from the given list that exist in the entity family
+     *
+     * @param keys The keys to check
+     * @return The existing keys
+     */
+    public List<UUID> retrieveExistingKeys(List<UUID> keys) {
+        final String family = getFamily(getPersistentEntity(), getPersistentEntity().getMapping());
+        List<String> nativeKeys = new ArrayList<String>();
+        for (UUID key : keys) {
+            nativeKeys.add(key.toString());
+        }
+        Map<String, List<SuperColumn>> rows = getSuperSlices(getKeyspace(), family, nativeKeys);
+        List<UUID> existing = new ArrayList<UUID>();
+        for (UUID key : keys) {
+            List<SuperColumn> row = rows.get(key.toString());
+            if (row != null && !row.isEmpty()) {
+                existing.add(key);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Reads the keys of the entity family. Cassandra has no notion of an offset so keys
+     * up to offset + max are read and the leading keys discarded.
+     *
+     * @param offset The offset
+     * @param max The maximum number of keys or -1 for all keys
+     * @return The keys
+     */
+    public List<UUID> retrieveKeys(int offset, int max) {
+        final String family = getFamily(getPersistentEntity(), getPersistentEntity().getMapping());
+        final int count = max > -1 ? offset + max : Integer.MAX_VALUE;
+        ColumnParent parent = new ColumnParent();
+        parent.setColumn_family(family);
+        SlicePredicate predicate = new SlicePredicate();
+        predicate.setSlice_range(new SliceRange(ZERO_LENGTH_BYTE_ARRAY, ZERO_LENGTH_BYTE_ARRAY, false, 1));
+        KeyRange range = new KeyRange(count);
+        range.setStart_key("");
+        range.setEnd_key("");
+
+        final Map<String, List<SuperColumn>> rows;
+        try {
+            rows = getKeyspace().getSuperRangeSlices(parent, predicate, range);
+        }
+        catch (HectorException e) {
+            throw new DataAccessResourceFailureException("Exception occurred invoking Cassandra: " + e.getMessage(), e);
+        }
+
+        List<UUID> keys = new ArrayList<UUID>();
+        int i = 0;
+        for (Map.Entry<String, List<SuperColumn>> row : rows.entrySet()) {
+            // deleted rows are returned as range ghosts without any columns
+            if (row.getValue() == null || row.getValue().isEmpty()) continue;
+            if (i++ < offset) continue;
+            keys.add(UUID.fromString(row.getKey()));
+        }
+        return keys;
+    }
+
+    private Map<String, List<SuperColumn>> getSuperSlices(Keyspace keyspace, String family, List<String> keys) {
+        ColumnParent parent = new ColumnParent();
+        parent.setColumn_family(family);
+        try {
+            SlicePredicate predicate = new SlicePredicate();
+            predicate.setSlice_range(new SliceRange(ZERO_LENGTH_BYTE_ARRAY, ZERO_LENGTH_BYTE_ARRAY, false, 1));
+            Map<String, List<SuperColumn>> rows = keyspace.multigetSuperSlice(keys, parent, predicate);
+            return rows != null ? rows : Collections.<String, List<SuperColumn>>emptyMap();
+        }
+        catch (HectorException e) {
+            throw new DataAccessResourceFailureException("Exception occurred invoking Cassandra: " + e.getMessage(), e);
+        }
+    }
+
+    private KeyValueEntry createEntry(String family, List<SuperColumn> row) {
+        if (row == null || row.isEmpty()) {
+            return null;
+        }
+
+        KeyValueEntry entry = new KeyValueEntry(family);
+        for (Column column : row.get(0).getColumns()) {
+            entry.put(string(column.getName()), string(column.getValue()));
+        }
+        return entry.isEmpty() ? null : entry;
+    }
+
     private SuperColumn getSuperColumn(Keyspace keyspace, String family, Serializable id) {
         ColumnParent parent = new ColumnParent();
         parent.setColumn_family(family);
@@ -223,6 +349,6 @@ public class CassandraEntityPersister extends AbstractKeyValueEntityPesister<Key
     }
 
     public Query createQuery() {
-        return null; // TODO: Implement querying for Cassandra
+        return new CassandraQuery((CassandraSession) getSession(), getPersistentEntity(), this);
     }
 }
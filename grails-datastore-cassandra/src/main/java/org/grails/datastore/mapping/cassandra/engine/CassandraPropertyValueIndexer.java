@@ -0,0 +1,403 @@
+/* Copyright (C) 2010 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.cassandra.engine;
+
+import static me.prettyprint.cassandra.utils.StringUtils.bytes;
+import static me.prettyprint.cassandra.utils.StringUtils.string;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import me.prettyprint.cassandra.service.CassandraClient;
+import me.prettyprint.cassandra.service.Keyspace;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.ColumnPath;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
+import org.grails.datastore.mapping.cassandra.util.HectorCallback;
+import org.grails.datastore.mapping.cassandra.util.HectorTemplate;
+import org.grails.datastore.mapping.engine.PropertyValueIndexer;
+import org.grails.datastore.mapping.model.MappingContext;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.reflect.NameUtils;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+
+/**
+ * Maintains a secondary index column family for a property so that it can be queried.
+ *
+ * Each distinct value is stored as a row keyed by the encoded value, prefixed with
+ * {@link #EQUALITY_ROW_PREFIX}, whose column names are the primary keys of the entities holding
+ * that value. Values of properties that can be ordered (whole and floating point numbers, dates
+ * and strings) are additionally written to one of {@link #SORTED_SHARDS} sorted rows, chosen by
+ * the primary key, whose column names are the order preserving encoding of the value followed by
+ * the primary key. Range criteria slice each sorted row and merge the slices in value order.
+ * BigDecimal and BigInteger values can't be encoded in order without losing precision, so they
+ * are only indexed for equality.
+ *
+ * The index column family is expected to be defined with CompareWith="BytesType".
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+public class CassandraPropertyValueIndexer implements PropertyValueIndexer<UUID> {
+
+    /**
+     * The prefix of the keys of the rows that hold the keys of the entities with a given value
+     */
+    public static final String EQUALITY_ROW_PREFIX = "=";
+
+    /**
+     * The prefix of the keys of the rows that hold the order preserving index, followed by the shard number
+     */
+    public static final String SORTED_ROW_PREFIX = "~sorted:";
+
+    /**
+     * The number of rows the order preserving index is spread over
+     */
+    public static final int SORTED_SHARDS = 16;
+
+    private static final byte[] ZERO_LENGTH_BYTE_ARRAY = new byte[0];
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final char AFTER_KEY_SEPARATOR = '\u0001';
+    private static final int SLICE_SIZE = 1000;
+
+    private CassandraClient cassandraClient;
+    private MappingContext mappingContext;
+    private PersistentProperty property;
+    private String keyspace;
+    private String columnFamily;
+    private boolean sortable;
+
+    public CassandraPropertyValueIndexer(CassandraClient cassandraClient, MappingContext mappingContext,
+            PersistentProperty property, String keyspace) {
+        this.cassandraClient = cassandraClient;
+        this.mappingContext = mappingContext;
+        this.property = property;
+        this.keyspace = keyspace;
+        this.columnFamily = getDefaultColumnFamilyName(property);
+        this.sortable = isSortable(property.getType());
+    }
+
+    protected String getDefaultColumnFamilyName(PersistentProperty property) {
+        PersistentEntity owner = property.getOwner();
+        if (!owner.isRoot()) {
+            owner = owner.getRootEntity();
+        }
+        return owner.getName() + NameUtils.capitalize(property.getName()) + "Index";
+    }
+
+    public String getColumnFamily() {
+        return columnFamily;
+    }
+
+    public void index(final Object value, final UUID primaryKey) {
+        if (value == null || primaryKey == null) {
+            return;
+        }
+
+        new HectorTemplate(cassandraClient).execute(keyspace, new HectorCallback() {
+            public Object doInHector(Keyspace ks) {
+                final long time = System.currentTimeMillis() * 1000;
+                final String encodedValue = encodeValue(value);
+                byte[] keyInBytes = bytes(primaryKey.toString());
+
+                Map<String, List<Column>> cfmap = new HashMap<String, List<Column>>();
+                List<Column> columns = new ArrayList<Column>();
+                columns.add(new Column(keyInBytes, keyInBytes, time));
+                cfmap.put(columnFamily, columns);
+                ks.batchInsert(EQUALITY_ROW_PREFIX + encodedValue, cfmap, null);
+
+                if (sortable) {
+                    cfmap = new HashMap<String, List<Column>>();
+                    columns = new ArrayList<Column>();
+                    columns.add(new Column(bytes(createSortedColumnName(encodedValue, primaryKey)), keyInBytes, time));
+                    cfmap.put(columnFamily, columns);
+                    ks.batchInsert(getSortedRowKey(primaryKey), cfmap, null);
+                }
+                return null;
+            }
+        });
+    }
+
+    public void deindex(final Object value, final UUID primaryKey) {
+        if (value == null || primaryKey == null) {
+            return;
+        }
+
+        new HectorTemplate(cassandraClient).execute(keyspace, new HectorCallback() {
+            public Object doInHector(Keyspace ks) {
+                final String encodedValue = encodeValue(value);
+                ColumnPath path = new ColumnPath(columnFamily);
+                path.setColumn(bytes(primaryKey.toString()));
+                ks.remove(EQUALITY_ROW_PREFIX + encodedValue, path);
+
+                if (sortable) {
+                    ColumnPath sortedPath = new ColumnPath(columnFamily);
+                    sortedPath.setColumn(bytes(createSortedColumnName(encodedValue, primaryKey)));
+                    ks.remove(getSortedRowKey(primaryKey), sortedPath);
+                }
+                return null;
+            }
+        });
+    }
+
+    public List<UUID> query(Object value) {
+        return query(value, 0, -1);
+    }
+
+    /**
+     * Reads the keys for the given value. Since Cassandra has no notion of an offset the row is read
+     * in slices, each slice starting from the last column of the previous one, until enough keys have
+     * been read to satisfy the offset and max.
+     */
+    public List<UUID> query(Object value, int offset, int max) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+
+        final String rowKey = EQUALITY_ROW_PREFIX + encodeValue(value);
+        final int limit = max > -1 ? offset + max : Integer.MAX_VALUE;
+        List<UUID> keys = new ArrayList<UUID>();
+        byte[] start = ZERO_LENGTH_BYTE_ARRAY;
+        boolean skipFirst = false;
+        while (keys.size() < limit) {
+            List<Column> columns = slice(rowKey, start, ZERO_LENGTH_BYTE_ARRAY,
+                    Math.min(SLICE_SIZE, limit - keys.size()) + (skipFirst ? 1 : 0));
+            int read = 0;
+            for (Column column : columns) {
+                if (skipFirst && read++ == 0) continue;
+                keys.add(UUID.fromString(string(column.getName())));
+            }
+            if (columns.size() < SLICE_SIZE || columns.isEmpty()) {
+                break;
+            }
+            start = columns.get(columns.size() - 1).getName();
+            skipFirst = true;
+        }
+        return paginate(keys, offset, max);
+    }
+
+    /**
+     * Queries a range of values using the sorted index rows. A null bound is treated as open.
+     *
+     * @param from The lower bound or null
+     * @param fromInclusive Whether the lower bound is inclusive
+     * @param to The upper bound or null
+     * @param toInclusive Whether the upper bound is inclusive
+     * @return The keys, in the natural order of the indexed values
+     * @throws InvalidDataAccessResourceUsageException If the values of the property aren't indexed in order
+     */
+    public List<UUID> queryRange(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        if (!sortable) {
+            throw new InvalidDataAccessResourceUsageException("Cannot query a range of property [" +
+                    property.getName() + "] of type [" + property.getType().getName() +
+                    "], its values aren't indexed in order by Cassandra");
+        }
+
+        byte[] start = ZERO_LENGTH_BYTE_ARRAY;
+        if (from != null) {
+            String encoded = encodeValue(from);
+            start = bytes(fromInclusive ? encoded : encoded + AFTER_KEY_SEPARATOR);
+        }
+        byte[] finish = ZERO_LENGTH_BYTE_ARRAY;
+        if (to != null) {
+            String encoded = encodeValue(to);
+            finish = bytes(toInclusive ? encoded + AFTER_KEY_SEPARATOR : encoded);
+        }
+
+        // each shard is sorted by value, so merging the shards yields the keys in the order of the values
+        List<String> rowKeys = new ArrayList<String>(SORTED_SHARDS);
+        for (int i = 0; i < SORTED_SHARDS; i++) {
+            rowKeys.add(SORTED_ROW_PREFIX + i);
+        }
+        Map<String, List<Column>> firstSlices = multiSlice(rowKeys, start, finish, SLICE_SIZE);
+        PriorityQueue<ShardCursor> cursors = new PriorityQueue<ShardCursor>(SORTED_SHARDS);
+        for (String rowKey : rowKeys) {
+            List<Column> columns = firstSlices.get(rowKey);
+            if (columns != null && !columns.isEmpty()) {
+                cursors.add(new ShardCursor(rowKey, columns, finish));
+            }
+        }
+
+        List<UUID> keys = new ArrayList<UUID>();
+        while (!cursors.isEmpty()) {
+            ShardCursor cursor = cursors.poll();
+            keys.add(UUID.fromString(string(cursor.getColumn().getValue())));
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        return keys;
+    }
+
+    public String getIndexName(Object value) {
+        return columnFamily + ":" + encodeValue(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Column> slice(final String rowKey, final byte[] start, final byte[] finish, final int count) {
+        return (List<Column>) new HectorTemplate(cassandraClient).execute(keyspace, new HectorCallback() {
+            public Object doInHector(Keyspace ks) {
+                SlicePredicate predicate = new SlicePredicate();
+                predicate.setSlice_range(new SliceRange(start, finish, false, count));
+                ColumnParent cp = new ColumnParent();
+                cp.setColumn_family(columnFamily);
+
+                List<Column> columns = ks.getSlice(rowKey, cp, predicate);
+                return columns == null ? Collections.<Column>emptyList() : columns;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, List<Column>> multiSlice(final List<String> rowKeys, final byte[] start, final byte[] finish, final int count) {
+        return (Map<String, List<Column>>) new HectorTemplate(cassandraClient).execute(keyspace, new HectorCallback() {
+            public Object doInHector(Keyspace ks) {
+                SlicePredicate predicate = new SlicePredicate();
+                predicate.setSlice_range(new SliceRange(start, finish, false, count));
+                ColumnParent cp = new ColumnParent();
+                cp.setColumn_family(columnFamily);
+
+                Map<String, List<Column>> rows = ks.multigetSlice(rowKeys, cp, predicate);
+                return rows == null ? Collections.<String, List<Column>>emptyMap() : rows;
+            }
+        });
+    }
+
+    private List<UUID> paginate(List<UUID> keys, int offset, int max) {
+        if (offset >= keys.size()) {
+            return Collections.emptyList();
+        }
+        int end = max > -1 ? Math.min(keys.size(), offset + max) : keys.size();
+        return offset == 0 && end == keys.size() ? keys : new ArrayList<UUID>(keys.subList(offset, end));
+    }
+
+    private String createSortedColumnName(String encodedValue, UUID primaryKey) {
+        return encodedValue + KEY_SEPARATOR + primaryKey;
+    }
+
+    private String getSortedRowKey(UUID primaryKey) {
+        return SORTED_ROW_PREFIX + ((primaryKey.hashCode() & Integer.MAX_VALUE) % SORTED_SHARDS);
+    }
+
+    private static boolean isSortable(Class<?> type) {
+        if (type.isPrimitive()) {
+            return type != boolean.class && type != char.class;
+        }
+        return Long.class == type || Integer.class == type || Short.class == type || Byte.class == type ||
+               Double.class == type || Float.class == type || Date.class.isAssignableFrom(type) ||
+               Calendar.class.isAssignableFrom(type) || CharSequence.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Encodes the value such that the byte wise ordering of the encoded form is the same as the natural
+     * ordering of the value. Values are first converted to the type of the indexed property so that,
+     * for example, an Integer query value matches a Long property. BigDecimal and BigInteger values are
+     * encoded exactly, without their order, with equal BigDecimal values of different scales encoded alike.
+     */
+    String encodeValue(Object value) {
+        final Class<?> type = property.getType();
+        if (!type.isInstance(value) && mappingContext.getConversionService().canConvert(value.getClass(), type)) {
+            value = mappingContext.getConversionService().convert(value, type);
+        }
+
+        if (value instanceof Calendar) {
+            value = ((Calendar) value).getTime();
+        }
+        if (value instanceof Date) {
+            return encodeLong(((Date) value).getTime());
+        }
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof BigInteger) {
+            return value.toString();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            bits = bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+            return String.format("%016x", bits);
+        }
+        if (value instanceof Number) {
+            return encodeLong(((Number) value).longValue());
+        }
+        return value.toString();
+    }
+
+    private String encodeLong(long value) {
+        return String.format("%016x", value ^ Long.MIN_VALUE);
+    }
+
+    /**
+     * Reads a sorted row slice by slice
+     */
+    private class ShardCursor implements Comparable<ShardCursor> {
+        private final String rowKey;
+        private final byte[] finish;
+        private List<Column> columns;
+        private int position;
+        private boolean exhausted;
+
+        ShardCursor(String rowKey, List<Column> columns, byte[] finish) {
+            this.rowKey = rowKey;
+            this.columns = columns;
+            this.finish = finish;
+            exhausted = columns.size() < SLICE_SIZE;
+        }
+
+        Column getColumn() {
+            return columns.get(position);
+        }
+
+        boolean next() {
+            if (++position < columns.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            // the next slice starts with the last column read
+            columns = slice(rowKey, columns.get(columns.size() - 1).getName(), finish, SLICE_SIZE + 1);
+            exhausted = columns.size() < SLICE_SIZE + 1;
+            position = 1;
+            return position < columns.size();
+        }
+
+        public int compareTo(ShardCursor other) {
+            byte[] name = getColumn().getName();
+            byte[] otherName = other.getColumn().getName();
+            for (int i = 0; i < Math.min(name.length, otherName.length); i++) {
+                int diff = (name[i] & 0xff) - (otherName[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return name.length - otherName.length;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/* Copyright (C) 2010 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.cassandra.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.grails.datastore.mapping.cassandra.CassandraSession;
+import org.grails.datastore.mapping.cassandra.engine.CassandraEntityPersister;
+import org.grails.datastore.mapping.cassandra.engine.CassandraPropertyValueIndexer;
+import org.grails.datastore.mapping.config.Property;
+import org.grails.datastore.mapping.engine.EntityAccess;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.model.types.Identity;
+import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.order.ManualEntityOrdering;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+
+/**
+ * A Query implementation for Cassandra that answers criteria using the secondary index
+ * column families maintained by {@link CassandraPropertyValueIndexer}.
+ *
+ * Each criterion is resolved to a set of keys, junctions are evaluated by intersecting or
+ * uniting those key sets and only the requested page of keys is hydrated, using a single
+ * multiget against the entity column family.
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class CassandraQuery extends Query {
+
+    private CassandraEntityPersister entityPersister;
+
+    public CassandraQuery(CassandraSession session, PersistentEntity entity, CassandraEntityPersister entityPersister) {
+        super(session, entity);
+        this.entityPersister = entityPersister;
+    }
+
+    @Override
+    protected List executeQuery(PersistentEntity entity, Junction criteria) {
+        final ProjectionList projectionList = projections();
+        final boolean hasOrder = !orderBy.isEmpty();
+
+        List<UUID> keys;
+        if (criteria.isEmpty()) {
+            // without criteria the row keys are read directly, paginated at the source unless an ordering applies
+            keys = hasOrder ? entityPersister.retrieveKeys(0, -1) : entityPersister.retrieveKeys(offset, max);
+            if (!hasOrder) {
+                return projectionList.isEmpty() ? retrieveAll(keys) : applyProjections(keys, projectionList);
+            }
+        }
+        else {
+            keys = new ArrayList<UUID>(executeSubQuery(criteria));
+        }
+
+        if (projectionList.isEmpty()) {
+            if (hasOrder) {
+                // ordering has to be applied to the full result before the page can be cut
+                List results = retrieveAll(keys);
+                results = new ManualEntityOrdering(entity).applyOrder(results, orderBy);
+                return paginate(results);
+            }
+            return retrieveAll(paginate(keys));
+        }
+
+        return applyProjections(keys, projectionList);
+    }
+
+    private List applyProjections(List<UUID> keys, ProjectionList projectionList) {
+        List projectionResults = new ArrayList();
+        for (Projection projection : projectionList.getProjectionList()) {
+            if (projection instanceof CountProjection) {
+                projectionResults.add(keys.size());
+            }
+            else if (projection instanceof IdProjection) {
+                return paginate(keys);
+            }
+            else if (projection instanceof PropertyProjection) {
+                final String propertyName = ((PropertyProjection) projection).getPropertyName();
+                List values = new ArrayList();
+                for (Object o : retrieveAll(paginate(keys))) {
+                    if (o != null) {
+                        values.add(new EntityAccess(getEntity(), o).getProperty(propertyName));
+                    }
+                }
+                if (projection instanceof CountDistinctProjection) {
+                    projectionResults.add(new LinkedHashSet(values).size());
+                }
+                else {
+                    return values;
+                }
+            }
+            else {
+                throw new InvalidDataAccessResourceUsageException("Cannot use [" +
+                        projection.getClass().getSimpleName() + "] projection. Projections of this type are not supported by Cassandra.");
+            }
+        }
+        return projectionResults;
+    }
+
+    private List retrieveAll(List<UUID> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List results = getSession().retrieveAll(getEntity().getJavaClass(), keys);
+        for (Iterator i = results.iterator(); i.hasNext();) {
+            if (i.next() == null) i.remove();
+        }
+        return results;
+    }
+
+    private List paginate(List list) {
+        if (offset <= 0 && max < 0) {
+            return list;
+        }
+        if (offset >= list.size()) {
+            return Collections.emptyList();
+        }
+        int end = max > -1 ? Math.min(list.size(), offset + max) : list.size();
+        return new ArrayList(list.subList(offset, end));
+    }
+
+    private Set<UUID> executeSubQuery(Junction junction) {
+        Set<UUID> result = null;
+        for (Criterion criterion : junction.getCriteria()) {
+            CriterionHandler handler = criterionHandlers.get(criterion.getClass());
+            if (handler == null) {
+                throw new InvalidDataAccessResourceUsageException("Queries of type " +
+                        criterion.getClass().getSimpleName() + " are not supported by Cassandra");
+            }
+
+            Set<UUID> keys = handler.handle(criterion);
+            if (result == null) {
+                result = keys;
+            }
+            else if (junction instanceof Disjunction) {
+                result.addAll(keys);
+            }
+            else {
+                result.retainAll(keys);
+            }
+
+            if (result.isEmpty() && junction instanceof Conjunction) {
+                // no need to continue querying the indices since the intersection can only be empty
+                break;
+            }
+        }
+        return result != null ? result : new LinkedHashSet<UUID>();
+    }
+
+    private CassandraPropertyValueIndexer getIndexer(String propertyName) {
+        PersistentProperty property = getEntity().getPropertyByName(propertyName);
+        if (property == null) {
+            throw new InvalidDataAccessResourceUsageException("Cannot query on non-existent property: " + propertyName);
+        }
+        if (!isIndexed(property)) {
+            throw new InvalidDataAccessResourceUsageException("Cannot query on non-indexed property: " + propertyName);
+        }
+        return (CassandraPropertyValueIndexer) entityPersister.getPropertyIndexer(property);
+    }
+
+    private boolean isIndexed(PersistentProperty property) {
+        if (property instanceof Identity) return true;
+        Property kv = (Property) property.getMapping().getMappedForm();
+        return kv != null && kv.isIndex();
+    }
+
+    private Set<UUID> queryEquals(String propertyName, Object value) {
+        final PersistentProperty identity = getEntity().getIdentity();
+        if (identity.getName().equals(propertyName)) {
+            return queryIdEquals(value);
+        }
+        return new LinkedHashSet<UUID>(getIndexer(propertyName).query(value));
+    }
+
+    private Set<UUID> queryIdEquals(Object value) {
+        Set<UUID> keys = new LinkedHashSet<UUID>();
+        if (value != null) {
+            UUID id = getSession().getMappingContext().getConversionService().convert(value, UUID.class);
+            if (entityPersister.retrieveExistingKeys(Collections.singletonList(id)).contains(id)) {
+                keys.add(id);
+            }
+        }
+        return keys;
+    }
+
+    private Set<UUID> queryRange(String propertyName, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        return new LinkedHashSet<UUID>(getIndexer(propertyName).queryRange(from, fromInclusive, to, toInclusive));
+    }
+
+    private static interface CriterionHandler<T extends Criterion> {
+        Set<UUID> handle(T criterion);
+    }
+
+    @SuppressWarnings("serial")
+    private final Map<Class, CriterionHandler> criterionHandlers = new HashMap() {{
+        put(Equals.class, new CriterionHandler<Equals>() {
+            public Set<UUID> handle(Equals criterion) {
+                return queryEquals(criterion.getProperty(), criterion.getValue());
+            }
+        });
+        put(IdEquals.class, new CriterionHandler<IdEquals>() {
+            public Set<UUID> handle(IdEquals criterion) {
+                return queryIdEquals(criterion.getValue());
+            }
+        });
+        put(In.class, new CriterionHandler<In>() {
+            public Set<UUID> handle(In criterion) {
+                Set<UUID> keys = new LinkedHashSet<UUID>();
+                for (Object value : criterion.getValues()) {
+                    keys.addAll(queryEquals(criterion.getName(), value));
+                }
+                return keys;
+            }
+        });
+        put(GreaterThan.class, new CriterionHandler<GreaterThan>() {
+            public Set<UUID> handle(GreaterThan criterion) {
+                return queryRange(criterion.getProperty(), criterion.getValue(), false, null, false);
+            }
+        });
+        put(GreaterThanEquals.class, new CriterionHandler<GreaterThanEquals>() {
+            public Set<UUID> handle(GreaterThanEquals criterion) {
+                return queryRange(criterion.getProperty(), criterion.getValue(), true, null, false);
+            }
+        });
+        put(LessThan.class, new CriterionHandler<LessThan>() {
+            public Set<UUID> handle(LessThan criterion) {
+                return queryRange(criterion.getProperty(), null, false, criterion.getValue(), false);
+            }
+        });
+        put(LessThanEquals.class, new CriterionHandler<LessThanEquals>() {
+            public Set<UUID> handle(LessThanEquals criterion) {
+                return queryRange(criterion.getProperty(), null, false, criterion.getValue(), true);
+            }
+        });
+        put(Between.class, new CriterionHandler<Between>() {
+            public Set<UUID> handle(Between criterion) {
+                return queryRange(criterion.getProperty(), criterion.getFrom(), true, criterion.getTo(), true);
+            }
+        });
+        CriterionHandler<Junction> junctionHandler = new CriterionHandler<Junction>() {
+            public Set<UUID> handle(Junction criterion) {
+                return executeSubQuery(criterion);
+            }
+        };
+        put(Conjunction.class, junctionHandler);
+        put(Disjunction.class, junctionHandler);
+    }};
+}
@@ -0,0 +1,150 @@
+package org.grails.datastore.mapping.cassandra
+
+import static org.grails.datastore.mapping.query.Restrictions.*
+
+import grails.persistence.Entity
+
+import org.junit.Test
+import org.springframework.dao.InvalidDataAccessResourceUsageException
+import org.grails.datastore.mapping.core.Session
+import org.grails.datastore.mapping.query.Query
+
+/**
+ * @author Graeme Rocher
+ * @since 1.1
+ */
+class CassandraQueryTests extends AbstractCassandraTest {
+
+    @Test
+    void testEqualityAndRangeQueries() {
+        def ds = new CassandraDatastore()
+        ds.mappingContext.addPersistentEntity(Employee)
+        Session conn = ds.connect(null)
+
+        conn.persist(new Employee(name:"Bob", age:45))
+        conn.persist(new Employee(name:"Fred", age:30))
+        conn.persist(new Employee(name:"Joe", age:22))
+        conn.flush()
+
+        Query q = conn.createQuery(Employee)
+        q.eq("name", "Bob")
+        def results = q.list()
+
+        assert 1 == results.size()
+        assert 45 == results[0].age
+
+        q = conn.createQuery(Employee)
+        q.gte("age", 30)
+        results = q.list()
+
+        assert 2 == results.size()
+        assert ["Bob", "Fred"] == results*.name.sort()
+
+        q = conn.createQuery(Employee)
+        q.between("age", 20, 40)
+         .order(Query.Order.asc("age"))
+         .max(1)
+        results = q.list()
+
+        assert 1 == results.size()
+        assert "Joe" == results[0].name
+
+        q = conn.createQuery(Employee)
+        q.disjunction()
+         .add(eq("name", "Joe"))
+         .add(lt("age", 31))
+        q.projections().count()
+
+        assert 2 == q.singleResult()
+    }
+
+    @Test
+    void testRangeQueriesReturnValuesInOrderAcrossShards() {
+        def ds = new CassandraDatastore()
+        ds.mappingContext.addPersistentEntity(Contractor)
+        Session conn = ds.connect(null)
+
+        (1..40).each { conn.persist(new Contractor(name:"Contractor $it", age:100 + it)) }
+        conn.flush()
+
+        Query q = conn.createQuery(Contractor)
+        q.gt("age", 110).lte("age", 130)
+        def results = q.list()
+
+        assert (111..130) == results*.age.sort()
+
+        def age = ds.mappingContext.getPersistentEntity(Contractor.name).getPropertyByName("age")
+        def keys = conn.getPersister(Contractor).getPropertyIndexer(age).queryRange(110, false, 130, true)
+        assert (111..130) == conn.retrieveAll(Contractor, keys)*.age
+    }
+
+    @Test
+    void testEqualityRowsDontCollideWithSortedRows() {
+        def ds = new CassandraDatastore()
+        ds.mappingContext.addPersistentEntity(Contractor)
+        Session conn = ds.connect(null)
+
+        conn.persist(new Contractor(name:"~sorted:0", age:18))
+        conn.persist(new Contractor(name:"Alice", age:19))
+        conn.flush()
+
+        Query q = conn.createQuery(Contractor)
+        q.eq("name", "~sorted:0")
+        def results = q.list()
+
+        assert 1 == results.size()
+        assert 18 == results[0].age
+    }
+
+    @Test
+    void testBigDecimalValuesAreOnlyIndexedForEquality() {
+        def ds = new CassandraDatastore()
+        ds.mappingContext.addPersistentEntity(Contractor)
+        Session conn = ds.connect(null)
+
+        conn.persist(new Contractor(name:"Rich", age:50, rate:new BigDecimal("123456789012345678901234.10")))
+        conn.persist(new Contractor(name:"Poor", age:20, rate:new BigDecimal("123456789012345678901234.11")))
+        conn.flush()
+
+        Query q = conn.createQuery(Contractor)
+        q.eq("rate", new BigDecimal("123456789012345678901234.1000"))
+        def results = q.list()
+
+        assert ["Rich"] == results*.name
+
+        q = conn.createQuery(Contractor)
+        q.gt("rate", 1G)
+        try {
+            q.list()
+            assert false, "range queries on BigDecimal properties should fail"
+        }
+        catch (InvalidDataAccessResourceUsageException expected) {
+        }
+    }
+}
+
+@Entity
+class Employee {
+    UUID id
+    String name
+    int age
+
+    static mapping = {
+        name index:true
+        age index:true
+    }
+}
+
+@Entity
+class Contractor {
+    UUID id
+    String name
+    int age
+    BigDecimal rate
+
+    static mapping = {
+        name index:true
+        age index:true
+        rate index:true
+    }
+}
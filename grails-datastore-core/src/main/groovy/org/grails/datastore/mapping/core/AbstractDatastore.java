@@ -24,6 +24,7 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.convert.converter.ConverterRegistry;
 import org.grails.datastore.mapping.config.Property;
+import org.grails.datastore.mapping.engine.event.PersistenceEventDispatcher;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentProperty;
 import org.grails.datastore.mapping.model.PropertyMapping;
@@ -44,6 +45,7 @@ import org.springframework.validation.Errors;
 public abstract class AbstractDatastore implements Datastore, StatelessDatastore, DisposableBean {
 
     private ApplicationContext applicationContext;
+    private PersistenceEventDispatcher persistenceEventDispatcher;
 
     private static final SoftThreadLocalMap ERRORS_MAP = new SoftThreadLocalMap();
     private static final SoftThreadLocalMap VALIDATE_MAP = new SoftThreadLocalMap();
@@ -78,6 +80,7 @@ public abstract class AbstractDatastore implements Datastore, StatelessDatastore
 
     public void setApplicationContext(ApplicationContext ctx) {
         applicationContext = ctx;
+        persistenceEventDispatcher = ctx != null ? new PersistenceEventDispatcher(this, ctx) : null;
         if (ctx != null && registerValidationListener()) {
             Assert.isInstanceOf(ConfigurableApplicationContext.class, applicationContext,
                     "ApplicationContext must be an instanceof ConfigurableApplicationContext");
@@ -193,6 +196,13 @@ public abstract class AbstractDatastore implements Datastore, StatelessDatastore
         return getApplicationContext();
     }
 
+    /**
+     * @return The dispatcher for persistence events published through the application context, or null if there is no context
+     */
+    public PersistenceEventDispatcher getPersistenceEventDispatcher() {
+        return persistenceEventDispatcher;
+    }
+
     public Errors getObjectErrors(final Object o) {
         return getValidationErrorsMap().get(System.identityHashCode(o));
     }
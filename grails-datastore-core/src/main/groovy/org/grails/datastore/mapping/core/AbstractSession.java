@@ -363,13 +363,21 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
             try {
                 PendingOperationExecution.executePendingOperation(pendingOperation);
             } catch (RuntimeException e) {
-                setFlushMode(FlushModeType.COMMIT);
-                exceptionOccurred = true;
+                markExceptionOccurred();
                 throw e;
             }
         }
     }
 
+    /**
+     * Marks that an exception occurred while flushing, after which the session can't be flushed until it is
+     * cleared. Subclasses that execute pending operations themselves call this if they fail.
+     */
+    protected void markExceptionOccurred() {
+        setFlushMode(FlushModeType.COMMIT);
+        exceptionOccurred = true;
+    }
+
     private boolean hasUpdates() {
         return !pendingInserts.isEmpty() || !pendingUpdates.isEmpty() || !pendingDeletes.isEmpty();
     }
@@ -384,8 +392,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
                 pending.run();
             }
         } catch (RuntimeException e) {
-            setFlushMode(FlushModeType.COMMIT);
-            exceptionOccurred = true;
+            markExceptionOccurred();
             throw e;
         }
         pendings.clear();
@@ -642,6 +649,49 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         return list.size();
     }
 
+    /**
+     * Evicts the cached instances of the given entity, including instances of its subclasses, and their
+     * cached native entries. Bulk operations that change the datastore directly call this so that the session
+     * doesn't keep returning the deleted or outdated instances.
+     *
+     * @param entity The entity
+     * @param keys The identifiers of the affected instances, or null to evict all cached instances of the entity
+     */
+    protected void evictCachedInstances(PersistentEntity entity, Collection<?> keys) {
+        Class type = entity.getJavaClass();
+        Set<Object> evicted = new HashSet<Object>();
+        if (keys != null) {
+            evicted.addAll(keys);
+        }
+        for (Map.Entry<Class, Map<Serializable, Object>> cache : firstLevelCache.entrySet()) {
+            if (!isSameHierarchy(type, cache.getKey())) {
+                continue;
+            }
+            for (Iterator<Map.Entry<Serializable, Object>> i = cache.getValue().entrySet().iterator(); i.hasNext();) {
+                Map.Entry<Serializable, Object> cached = i.next();
+                if (type.isInstance(cached.getValue()) && (keys == null || keys.contains(cached.getKey()))) {
+                    removeAttributesForEntity(cached.getValue());
+                    evicted.add(cached.getKey());
+                    i.remove();
+                }
+            }
+        }
+        evictEntries(firstLevelEntryCache, type, evicted);
+        evictEntries(firstLevelEntryCacheDirtyCheck, type, evicted);
+    }
+
+    private void evictEntries(Map<Class, Map<Serializable, Object>> caches, Class type, Set<Object> keys) {
+        for (Map.Entry<Class, Map<Serializable, Object>> cache : caches.entrySet()) {
+            if (isSameHierarchy(type, cache.getKey())) {
+                cache.getValue().keySet().removeAll(keys);
+            }
+        }
+    }
+
+    private static boolean isSameHierarchy(Class type, Class other) {
+        return type.isAssignableFrom(other) || other.isAssignableFrom(type);
+    }
+
     public void delete(final Object obj) {
         if (obj == null) {
             return;
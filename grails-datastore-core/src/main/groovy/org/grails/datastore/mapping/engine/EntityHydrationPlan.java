@@ -0,0 +1,198 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.engine;
+
+import java.beans.PropertyDescriptor;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.grails.datastore.mapping.engine.internal.MappingUtils;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.model.types.Basic;
+import org.grails.datastore.mapping.model.types.Simple;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The information needed to populate an instance of a {@link PersistentEntity} from a native entry, resolved
+ * once per entity instead of for every instance loaded.
+ * <p/>
+ * The plan holds one {@link Slot} per persistent property, in the order of
+ * {@link PersistentEntity#getPersistentProperties()}, with the native key of the property and, for simple and
+ * basic properties, the setter and the types values are converted to. This allows
+ * {@link NativeEntryEntityPersister} to convert each value once and set it directly, rather than having a
+ * {@link org.springframework.beans.BeanWrapper} resolve the property path and convert the value again.
+ * <p/>
+ * Each persister keeps the plans it uses, see {@link NativeEntryEntityPersister#getHydrationPlan(PersistentEntity)},
+ * so the plans shared by all persisters are only looked up once per session. A plan is replaced when the entity
+ * has been initialized again with another list of properties.
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@SuppressWarnings("rawtypes")
+public class EntityHydrationPlan {
+
+    private static final Map<PersistentEntity, EntityHydrationPlan> plans = new WeakHashMap<PersistentEntity, EntityHydrationPlan>();
+
+    private final Class<?> persisterClass;
+    // weakly referenced, the properties reference the entity, which is the key of the plan
+    private final Reference<List<PersistentProperty>> properties;
+    private final Slot[] slots;
+
+    private EntityHydrationPlan(Class<?> persisterClass, List<PersistentProperty> properties, Slot[] slots) {
+        this.persisterClass = persisterClass;
+        this.properties = new WeakReference<List<PersistentProperty>>(properties);
+        this.slots = slots;
+    }
+
+    /**
+     * Obtains the plan for the given entity, creating it on first use
+     *
+     * @param persister The persister loading the entity
+     * @param entity The entity
+     * @return The plan
+     */
+    static EntityHydrationPlan forEntity(NativeEntryEntityPersister persister, PersistentEntity entity) {
+        final List<PersistentProperty> props = entity.getPersistentProperties();
+        synchronized (plans) {
+            EntityHydrationPlan plan = plans.get(entity);
+            if (plan != null && plan.isValidFor(persister, entity)) {
+                return plan;
+            }
+        }
+
+        // plans don't reference the entity, so they don't keep it from being collected
+        Slot[] slots = new Slot[props.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(entity.getJavaClass(), props.get(i), persister.getNativePropertyKey(props.get(i)));
+        }
+        EntityHydrationPlan plan = new EntityHydrationPlan(persister.getClass(), props, slots);
+        synchronized (plans) {
+            plans.put(entity, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * @param persister The persister loading the entity
+     * @param entity The entity
+     * @return Whether the plan was created for the kind of persister and the current properties of the entity
+     */
+    boolean isValidFor(NativeEntryEntityPersister persister, PersistentEntity entity) {
+        return persisterClass == persister.getClass() && properties.get() == entity.getPersistentProperties();
+    }
+
+    /**
+     * @param index The index of the property in {@link PersistentEntity#getPersistentProperties()}
+     * @return The slot of the property
+     */
+    public Slot getSlot(int index) {
+        return slots[index];
+    }
+
+    /**
+     * @param name The name of a property
+     * @return The slot of the property or null if it isn't persistent
+     */
+    public Slot getSlot(String name) {
+        for (Slot slot : slots) {
+            if (slot.name.equals(name)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A persistent property of the entity, with what is needed to populate it.
+     */
+    public static class Slot {
+        private final String name;
+        private final String nativeKey;
+        private final Class<?> type;
+        private final Class<?> valueType;
+        private final Method writeMethod;
+        private final Class<?> elementType;
+
+        Slot(Class<?> javaClass, PersistentProperty property, String nativeKey) {
+            name = property.getName();
+            this.nativeKey = nativeKey;
+            type = property.getType();
+            valueType = ClassUtils.resolvePrimitiveIfNecessary(type);
+
+            Method setter = null;
+            Class<?> generic = null;
+            if (property instanceof Simple || property instanceof Basic) {
+                PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(javaClass, name);
+                if (pd != null && pd.getWriteMethod() != null) {
+                    setter = pd.getWriteMethod();
+                    ReflectionUtils.makeAccessible(setter);
+                }
+                if (property instanceof Basic) {
+                    generic = Map.class.isAssignableFrom(type) ?
+                            MappingUtils.getGenericTypeForMapProperty(javaClass, name, false) :
+                            Collection.class.isAssignableFrom(type) ?
+                                    MappingUtils.getGenericTypeForProperty(javaClass, name) : null;
+                }
+            }
+            writeMethod = setter;
+            elementType = generic;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The key of the property in the native entry
+         */
+        public String getNativeKey() {
+            return nativeKey;
+        }
+
+        /**
+         * @return The type of the property, with primitives replaced by their wrapper type
+         */
+        public Class<?> getValueType() {
+            return valueType;
+        }
+
+        public boolean isPrimitive() {
+            return type.isPrimitive();
+        }
+
+        /**
+         * @return The setter of a simple or basic property, or null if it has none or is of another kind
+         */
+        public Method getWriteMethod() {
+            return writeMethod;
+        }
+
+        /**
+         * @return The type of the elements or values of a basic collection or map property, or null if unknown
+         */
+        public Class<?> getElementType() {
+            return elementType;
+        }
+    }
+}
@@ -19,7 +19,11 @@ import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
 
+import org.grails.datastore.mapping.core.AbstractDatastore;
 import org.grails.datastore.mapping.core.Session;
+import org.grails.datastore.mapping.engine.event.AbstractPersistenceEvent;
+import org.grails.datastore.mapping.engine.event.EventType;
+import org.grails.datastore.mapping.engine.event.PersistenceEventDispatcher;
 import org.grails.datastore.mapping.engine.event.PostDeleteEvent;
 import org.grails.datastore.mapping.engine.event.PostInsertEvent;
 import org.grails.datastore.mapping.engine.event.PostLoadEvent;
@@ -236,8 +240,10 @@ public abstract class EntityPersister implements Persister {
 
     protected Object newEntityInstance(PersistentEntity persistentEntity) {
         Object o = persistentEntity.newInstance();
-        publisher.publishEvent(new PreLoadEvent(session.getDatastore(), getPersistentEntity(),
-                new EntityAccess(persistentEntity, o)));
+        if (hasEventListeners(getPersistentEntity(), EventType.PreLoad)) {
+            publishEvent(new PreLoadEvent(session.getDatastore(), getPersistentEntity(),
+                    new EntityAccess(persistentEntity, o)));
+        }
         return o;
     }
 
@@ -248,14 +254,19 @@ public abstract class EntityPersister implements Persister {
     * @return true if the operation should be cancelled
     */
     public boolean cancelInsert(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+       if (!hasEventListeners(persistentEntity, EventType.PreInsert)) {
+           return false;
+       }
        PreInsertEvent event = new PreInsertEvent(session.getDatastore(), persistentEntity, entityAccess);
-       publisher.publishEvent(event);
+       publishEvent(event);
        return event.isCancelled();
    }
 
     public void firePostInsertEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
-        publisher.publishEvent(new PostInsertEvent(
-                session.getDatastore(), persistentEntity, entityAccess));
+        if (hasEventListeners(persistentEntity, EventType.PostInsert)) {
+            publishEvent(new PostInsertEvent(
+                    session.getDatastore(), persistentEntity, entityAccess));
+        }
     }
 
    /**
@@ -265,8 +276,11 @@ public abstract class EntityPersister implements Persister {
     * @return true if the operation should be cancelled
     */
     public boolean cancelUpdate(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+       if (!hasEventListeners(persistentEntity, EventType.PreUpdate)) {
+           return false;
+       }
        PreUpdateEvent event = new PreUpdateEvent(session.getDatastore(), persistentEntity, entityAccess);
-       publisher.publishEvent(event);
+       publishEvent(event);
        return event.isCancelled();
    }
 
@@ -277,8 +291,11 @@ public abstract class EntityPersister implements Persister {
      * @return true if the operation should be cancelled
      */
     public boolean cancelDelete( final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasEventListeners(persistentEntity, EventType.PreDelete)) {
+            return false;
+        }
         PreDeleteEvent event = new PreDeleteEvent(session.getDatastore(), persistentEntity, entityAccess);
-        publisher.publishEvent(event);
+        publishEvent(event);
         return event.isCancelled();
     }
 
@@ -289,29 +306,73 @@ public abstract class EntityPersister implements Persister {
      * @return true if the operation should be cancelled
      */
     public boolean cancelLoad( final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasEventListeners(persistentEntity, EventType.PreDelete)) {
+            return false;
+        }
         PreDeleteEvent event = new PreDeleteEvent(session.getDatastore(), persistentEntity, entityAccess);
-        publisher.publishEvent(event);
+        publishEvent(event);
         return event.isCancelled();
     }
 
     public void firePostUpdateEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
-        publisher.publishEvent(new PostUpdateEvent(
-                session.getDatastore(), persistentEntity, entityAccess));
+        if (hasEventListeners(persistentEntity, EventType.PostUpdate)) {
+            publishEvent(new PostUpdateEvent(
+                    session.getDatastore(), persistentEntity, entityAccess));
+        }
     }
 
     public void firePostDeleteEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
-        publisher.publishEvent(new PostDeleteEvent(
-                session.getDatastore(), persistentEntity, entityAccess));
+        if (hasEventListeners(persistentEntity, EventType.PostDelete)) {
+            publishEvent(new PostDeleteEvent(
+                    session.getDatastore(), persistentEntity, entityAccess));
+        }
     }
 
     public void firePreLoadEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
-        publisher.publishEvent(new PreLoadEvent(
-                session.getDatastore(), persistentEntity, entityAccess));
+        if (hasEventListeners(persistentEntity, EventType.PreLoad)) {
+            publishEvent(new PreLoadEvent(
+                    session.getDatastore(), persistentEntity, entityAccess));
+        }
     }
 
     public void firePostLoadEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
-        publisher.publishEvent(new PostLoadEvent(
-                session.getDatastore(), persistentEntity, entityAccess));
+        if (hasEventListeners(persistentEntity, EventType.PostLoad)) {
+            publishEvent(new PostLoadEvent(
+                    session.getDatastore(), persistentEntity, entityAccess));
+        }
+    }
+
+    /**
+     * Whether an event of the given type for the given entity would be received by any listener. If events
+     * can't be dispatched directly this is always true, since the listeners are not known.
+     */
+    protected boolean hasEventListeners(PersistentEntity entity, EventType eventType) {
+        PersistenceEventDispatcher dispatcher = getEventDispatcher();
+        return dispatcher == null || dispatcher.hasListeners(entity, eventType);
+    }
+
+    protected void publishEvent(AbstractPersistenceEvent event) {
+        PersistenceEventDispatcher dispatcher = getEventDispatcher();
+        if (dispatcher != null) {
+            dispatcher.dispatch(event);
+        }
+        else {
+            publisher.publishEvent(event);
+        }
+    }
+
+    private PersistenceEventDispatcher getEventDispatcher() {
+        if (!(session.getDatastore() instanceof AbstractDatastore)) {
+            return null;
+        }
+
+        AbstractDatastore datastore = (AbstractDatastore) session.getDatastore();
+        PersistenceEventDispatcher dispatcher = datastore.getPersistenceEventDispatcher();
+        // only dispatch directly if events would otherwise have been published to the datastore's context
+        if (dispatcher == null || publisher != datastore.getApplicationEventPublisher() || !dispatcher.isAvailable()) {
+            return null;
+        }
+        return dispatcher;
     }
 
     protected boolean isVersioned(final EntityAccess ea) {
@@ -15,6 +15,7 @@
 package org.grails.datastore.mapping.engine;
 
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -27,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.CascadeType;
 import javax.persistence.FetchType;
@@ -50,7 +52,6 @@ import org.grails.datastore.mapping.core.impl.PendingOperationExecution;
 import org.grails.datastore.mapping.core.impl.PendingUpdate;
 import org.grails.datastore.mapping.core.impl.PendingUpdateAdapter;
 import org.grails.datastore.mapping.dirty.checking.DirtyCheckable;
-import org.grails.datastore.mapping.engine.event.PreDeleteEvent;
 import org.grails.datastore.mapping.engine.internal.MappingUtils;
 import org.grails.datastore.mapping.engine.types.CustomTypeMarshaller;
 import org.grails.datastore.mapping.model.ClassMapping;
@@ -73,6 +74,7 @@ import org.grails.datastore.mapping.query.Query;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * Provides an implementation of the {@link org.grails.datastore.mapping.engine.EntityPersister} class that
@@ -85,6 +87,7 @@ import org.springframework.dao.CannotAcquireLockException;
 public abstract class NativeEntryEntityPersister<T, K> extends LockableEntityPersister {
     protected ClassMapping classMapping;
     protected TPCacheAdapterRepository<T> cacheAdapterRepository;
+    private final Map<PersistentEntity, EntityHydrationPlan> hydrationPlans = new ConcurrentHashMap<PersistentEntity, EntityHydrationPlan>();
 
     public NativeEntryEntityPersister(MappingContext mappingContext, PersistentEntity entity,
               Session session, ApplicationEventPublisher publisher) {
@@ -119,9 +122,7 @@ public abstract class NativeEntryEntityPersister<T, K> extends LockableEntityPer
         }
 
         EntityAccess entityAccess = createEntityAccess(persistentEntity, obj);
-        PreDeleteEvent event = new PreDeleteEvent(session.getDatastore(), persistentEntity, entityAccess);
-        publisher.publishEvent(event);
-        if (event.isCancelled()) {
+        if (cancelDelete(persistentEntity, entityAccess)) {
             return;
         }
 
@@ -381,6 +382,25 @@ public abstract class NativeEntryEntityPersister<T, K> extends LockableEntityPer
         return obj;
     }
 
+    /**
+     * Creates the objects for a list of native entries, for example a page of query results
+     *
+     * @param persistentEntity The entity
+     * @param nativeKeys The keys of the entries
+     * @param nativeEntries The entries, which may contain nulls
+     * @return The objects, with null for any entry that was null
+     */
+    public List<Object> createObjectsFromNativeEntries(PersistentEntity persistentEntity,
+            List<? extends Serializable> nativeKeys, List<T> nativeEntries) {
+        List<Object> results = new ArrayList<Object>(nativeEntries.size());
+        for (int i = 0; i < nativeEntries.size(); i++) {
+            T nativeEntry = nativeEntries.get(i);
+            results.add(nativeEntry == null ? null :
+                    createObjectFromNativeEntry(persistentEntity, nativeKeys.get(i), nativeEntry));
+        }
+        return results;
+    }
+
     public Object createObjectFromEmbeddedNativeEntry(PersistentEntity persistentEntity, T nativeEntry) {
         persistentEntity = discriminatePersistentEntity(persistentEntity, nativeEntry);
         Object obj = newEntityInstance(persistentEntity);
@@ -409,17 +429,27 @@ public abstract class NativeEntryEntityPersister<T, K> extends LockableEntityPer
             ea.setProperty(idName, nativeKey);
         }
 
+        final EntityHydrationPlan plan = getHydrationPlan(persistentEntity);
+        // custom entity access implementations may do more than set the property, so only bypass the default one
+        final boolean setDirectly = ea.getClass() == NativeEntryModifyingEntityAccess.class;
         final List<PersistentProperty> props = persistentEntity.getPersistentProperties();
-        for (final PersistentProperty prop : props) {
-            String propKey = getNativePropertyKey(prop);
+        for (int i = 0; i < props.size(); i++) {
+            final PersistentProperty prop = props.get(i);
+            final EntityHydrationPlan.Slot slot = plan.getSlot(i);
+            String propKey = slot.getNativeKey();
             if (prop instanceof Simple) {
-                // this magically converts most types to the correct property type, using bean converters.
-                ea.setProperty(prop.getName(), getEntryValue(nativeEntry, propKey));
+                Object entryValue = getEntryValue(nativeEntry, propKey);
+                if (!setDirectly || !setPropertyDirectly(slot, obj, nativeEntry, entryValue)) {
+                    // this magically converts most types to the correct property type, using bean converters.
+                    ea.setProperty(prop.getName(), entryValue);
+                }
             }
             else if (prop instanceof Basic) {
                 Object entryValue = getEntryValue(nativeEntry, propKey);
-                entryValue = convertBasicEntryValue(persistentEntity, prop, entryValue);
-                ea.setProperty(prop.getName(), entryValue);
+                entryValue = convertBasicEntryValue(slot, prop, entryValue);
+                if (!setDirectly || !setPropertyDirectly(slot, obj, nativeEntry, entryValue)) {
+                    ea.setProperty(prop.getName(), entryValue);
+                }
             }
             else if (prop instanceof Custom) {
                 handleCustom(prop, ea, nativeEntry);
@@ -618,6 +648,63 @@ public abstract class NativeEntryEntityPersister<T, K> extends LockableEntityPer
         firePostLoadEvent(persistentEntity, ea);
     }
 
+    /**
+     * Obtains the plan used to populate instances of the given entity, which is the entity of this persister
+     * or one of its subclasses
+     *
+     * @param persistentEntity The entity
+     * @return The plan
+     */
+    protected EntityHydrationPlan getHydrationPlan(PersistentEntity persistentEntity) {
+        EntityHydrationPlan plan = hydrationPlans.get(persistentEntity);
+        if (plan == null || !plan.isValidFor(this, persistentEntity)) {
+            plan = EntityHydrationPlan.forEntity(this, persistentEntity);
+            hydrationPlans.put(persistentEntity, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Sets a simple or basic property without going through a BeanWrapper, converting the value only if it
+     * is not already of the property type. Like {@link NativeEntryModifyingEntityAccess#setProperty(String, Object)}
+     * the value is also written back to the native entry.
+     *
+     * @return False if the value has to be set through the {@link EntityAccess} instead
+     */
+    private boolean setPropertyDirectly(EntityHydrationPlan.Slot slot, Object obj, T nativeEntry, Object value) {
+        final Method writeMethod = slot.getWriteMethod();
+        if (writeMethod == null) {
+            return false;
+        }
+
+        Object converted = value;
+        if (value != null && !slot.getValueType().isInstance(value)) {
+            ConversionService conversionService = getMappingContext().getConversionService();
+            if (!conversionService.canConvert(value.getClass(), slot.getValueType())) {
+                return false;
+            }
+            converted = conversionService.convert(value, slot.getValueType());
+        }
+
+        if (converted != null || !slot.isPrimitive()) {
+            ReflectionUtils.invokeMethod(writeMethod, obj, converted);
+        }
+        if (nativeEntry != null) {
+            setEntryValue(nativeEntry, slot.getName(), value);
+        }
+        return true;
+    }
+
+    private Object convertBasicEntryValue(EntityHydrationPlan.Slot slot, PersistentProperty prop, Object entryValue) {
+        if (entryValue instanceof Map) {
+            return convertMapEntryValue((Map) entryValue, slot.getElementType());
+        }
+        if (entryValue instanceof Collection) {
+            return convertCollectionEntryValue(prop, (Collection) entryValue, slot.getElementType());
+        }
+        return entryValue;
+    }
+
     /**
      * Convert a Basic (collection-style) property native entry value taken from an entity into the target property
      * type. This takes into account any generic parameter types specified on the property (e.g. Collection&lt;Locale>
@@ -636,48 +723,49 @@ public abstract class NativeEntryEntityPersister<T, K> extends LockableEntityPer
         // ConversionService as well as standard property editor conversions, etc.
         // Enums are handled automatically, as are other standard types such as Locale, URI, Integer, etc.
         if (entryValue instanceof Map) {
-            Map nativeMap = (Map) entryValue;
-            LinkedHashMap targetMap = new LinkedHashMap();
-            Class propertyType = prop.getType();
             Class genericType = MappingUtils.getGenericTypeForMapProperty(persistentEntity.getJavaClass(),
                     prop.getName(), false);
-            if (genericType != null) {
-                ConversionService conversionService = getMappingContext().getConversionService();
-                for (Object o : nativeMap.entrySet()) {
-                    Map.Entry entry = (Map.Entry) o;
-                    String key = (String) entry.getKey();
-                    Object value = entry.getValue();
-                    value = conversionService.convert(value, genericType);
-                    targetMap.put(key, value);
-                }
-            } else {
-                // just hope they don't need converting!
-                targetMap.putAll(nativeMap);
-            }
-
-            entryValue = targetMap;
+            entryValue = convertMapEntryValue((Map) entryValue, genericType);
         }
         else if (entryValue instanceof Collection) {
-            Collection collection = MappingUtils.createConcreteCollection(prop.getType());
-
-            Class propertyType = prop.getType();
             Class genericType = MappingUtils.getGenericTypeForProperty(persistentEntity.getJavaClass(), prop.getName());
-            Collection collectionValue = (Collection) entryValue;
-            if (genericType != null) {
-                ConversionService conversionService = getMappingContext().getConversionService();
-                for (Object o : collectionValue) {
-                    o = conversionService.convert(o, genericType);
-                    collection.add(o);
-                }
-            }
-            else {
-                // just hope they don't need converting!
-                collection.addAll(collectionValue);
+            entryValue = convertCollectionEntryValue(prop, (Collection) entryValue, genericType);
+        }
+        return entryValue;
+    }
+
+    private Object convertMapEntryValue(Map nativeMap, Class genericType) {
+        LinkedHashMap targetMap = new LinkedHashMap();
+        if (genericType != null) {
+            ConversionService conversionService = getMappingContext().getConversionService();
+            for (Object o : nativeMap.entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                String key = (String) entry.getKey();
+                Object value = entry.getValue();
+                value = conversionService.convert(value, genericType);
+                targetMap.put(key, value);
             }
+        } else {
+            // just hope they don't need converting!
+            targetMap.putAll(nativeMap);
+        }
+        return targetMap;
+    }
 
-            entryValue = collection;
+    private Object convertCollectionEntryValue(PersistentProperty prop, Collection collectionValue, Class genericType) {
+        Collection collection = MappingUtils.createConcreteCollection(prop.getType());
+        if (genericType != null) {
+            ConversionService conversionService = getMappingContext().getConversionService();
+            for (Object o : collectionValue) {
+                o = conversionService.convert(o, genericType);
+                collection.add(o);
+            }
         }
-        return entryValue;
+        else {
+            // just hope they don't need converting!
+            collection.addAll(collectionValue);
+        }
+        return collection;
     }
 
     /**
@@ -16,6 +16,7 @@ package org.grails.datastore.mapping.engine.event;
 
 import org.springframework.context.ApplicationEvent;
 import org.grails.datastore.mapping.core.Datastore;
+import org.grails.datastore.mapping.model.PersistentEntity;
 
 /**
  * @author Burt Beckwith
@@ -55,6 +56,19 @@ public abstract class AbstractPersistenceEventListener implements PersistenceEve
         return DEFAULT_ORDER;
     }
 
+    /**
+     * Whether this listener has anything to do for events of the given type raised for the given entity.
+     * Used by {@link PersistenceEventDispatcher} to leave the listener out of the entity's listener chain,
+     * so the answer must not change once the entity has been added to the mapping context.
+     *
+     * @param entity The entity
+     * @param eventType The event type
+     * @return True by default
+     */
+    public boolean supportsEntityEvent(final PersistentEntity entity, final Class<? extends ApplicationEvent> eventType) {
+        return true;
+    }
+
     public boolean supportsSourceType(final Class<?> sourceType) {
         // ensure that this listener only handles its events (e.g. if Mongo and Redis are both installed)
         return datastore.getClass().isAssignableFrom(sourceType);
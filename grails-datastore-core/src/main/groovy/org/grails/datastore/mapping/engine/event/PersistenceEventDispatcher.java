@@ -0,0 +1,241 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.engine.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.grails.datastore.mapping.core.Datastore;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.GenericApplicationListenerAdapter;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+
+/**
+ * Dispatches persistence events directly to the listeners that handle them, instead of
+ * multicasting them through the {@link ApplicationContext}.
+ * <p/>
+ * For each {@link PersistentEntity} and {@link EventType} the chain of listeners is resolved once,
+ * using the same rules and ordering as Spring's {@link SimpleApplicationEventMulticaster}, and then
+ * narrowed with {@link AbstractPersistenceEventListener#supportsEntityEvent(PersistentEntity, Class)}.
+ * This allows a persister to skip creating an event at all when nobody would receive it.
+ * <p/>
+ * The chains are discarded whenever a listener is added to the application context or one of its
+ * parents, and whenever the context is refreshed, which is when listener beans are registered.
+ * Dispatching is only possible if each context uses the {@link SimpleApplicationEventMulticaster}
+ * it creates itself, see {@link #isAvailable()}.
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class PersistenceEventDispatcher {
+
+    private static final Map<EventType, Class<? extends ApplicationEvent>> EVENT_CLASSES =
+            new EnumMap<EventType, Class<? extends ApplicationEvent>>(EventType.class);
+    static {
+        EVENT_CLASSES.put(EventType.PreDelete, PreDeleteEvent.class);
+        EVENT_CLASSES.put(EventType.PreInsert, PreInsertEvent.class);
+        EVENT_CLASSES.put(EventType.PreLoad, PreLoadEvent.class);
+        EVENT_CLASSES.put(EventType.PreUpdate, PreUpdateEvent.class);
+        EVENT_CLASSES.put(EventType.PostDelete, PostDeleteEvent.class);
+        EVENT_CLASSES.put(EventType.PostInsert, PostInsertEvent.class);
+        EVENT_CLASSES.put(EventType.PostLoad, PostLoadEvent.class);
+        EVENT_CLASSES.put(EventType.PostUpdate, PostUpdateEvent.class);
+        EVENT_CLASSES.put(EventType.SaveOrUpdate, SaveOrUpdateEvent.class);
+        EVENT_CLASSES.put(EventType.Validation, ValidationEvent.class);
+    }
+
+    private final Datastore datastore;
+    private final ApplicationContext applicationContext;
+    private volatile Boolean available;
+    private final Map<PersistentEntity, ApplicationListener[][]> listenerChains =
+            new ConcurrentHashMap<PersistentEntity, ApplicationListener[][]>();
+    private volatile int listenerCount = -1;
+
+    public PersistenceEventDispatcher(Datastore datastore, ApplicationContext applicationContext) {
+        this.datastore = datastore;
+        this.applicationContext = applicationContext;
+        if (applicationContext instanceof ConfigurableApplicationContext) {
+            ((ConfigurableApplicationContext) applicationContext).addApplicationListener(new RefreshListener());
+        }
+    }
+
+    /**
+     * Discards the resolved listener chains and whether dispatching is possible, so that both are
+     * determined again for the next event
+     */
+    public void invalidate() {
+        available = null;
+        listenerCount = -1;
+        listenerChains.clear();
+    }
+
+    /**
+     * @return Whether events can be dispatched directly. If not, events have to be published through the application context
+     */
+    public boolean isAvailable() {
+        Boolean result = available;
+        if (result == null) {
+            if (!isActive(applicationContext)) {
+                // the multicaster can't be inspected until the context has been refreshed
+                return false;
+            }
+            result = isDispatchable(applicationContext);
+            available = result;
+        }
+        return result;
+    }
+
+    /**
+     * @param entity The entity
+     * @param eventType The event type
+     * @return Whether any listener would receive an event of the given type for the given entity
+     */
+    public boolean hasListeners(PersistentEntity entity, EventType eventType) {
+        return getListeners(entity, eventType).length > 0;
+    }
+
+    /**
+     * Invokes each listener in the chain for the entity and type of the given event
+     *
+     * @param event The event
+     */
+    public void dispatch(AbstractPersistenceEvent event) {
+        for (ApplicationListener listener : getListeners(event.getEntity(), event.getEventType())) {
+            listener.onApplicationEvent(event);
+        }
+    }
+
+    private ApplicationListener[] getListeners(PersistentEntity entity, EventType eventType) {
+        int count = countRegisteredListeners();
+        if (count != listenerCount) {
+            listenerChains.clear();
+            listenerCount = count;
+        }
+
+        ApplicationListener[][] chains = listenerChains.get(entity);
+        if (chains == null) {
+            chains = new ApplicationListener[EventType.values().length][];
+            listenerChains.put(entity, chains);
+        }
+
+        ApplicationListener[] chain = chains[eventType.ordinal()];
+        if (chain == null) {
+            chain = resolveListeners(entity, EVENT_CLASSES.get(eventType));
+            chains[eventType.ordinal()] = chain;
+        }
+        return chain;
+    }
+
+    private ApplicationListener[] resolveListeners(PersistentEntity entity, Class<? extends ApplicationEvent> eventClass) {
+        List<ApplicationListener> chain = new ArrayList<ApplicationListener>();
+        // as with ApplicationContext.publishEvent the listeners of a context come before those of its parent
+        for (ApplicationContext ctx = applicationContext; ctx != null; ctx = ctx.getParent()) {
+            List<ApplicationListener> supported = new ArrayList<ApplicationListener>();
+            for (ApplicationListener listener : getRegisteredListeners(ctx)) {
+                if (supportsEvent(listener, eventClass) &&
+                        (!(listener instanceof AbstractPersistenceEventListener) ||
+                         ((AbstractPersistenceEventListener) listener).supportsEntityEvent(entity, eventClass))) {
+                    supported.add(listener);
+                }
+            }
+            AnnotationAwareOrderComparator.sort(supported);
+            chain.addAll(supported);
+        }
+        return chain.toArray(new ApplicationListener[chain.size()]);
+    }
+
+    private boolean supportsEvent(ApplicationListener listener, Class<? extends ApplicationEvent> eventClass) {
+        SmartApplicationListener smartListener = listener instanceof SmartApplicationListener ?
+                (SmartApplicationListener) listener : new GenericApplicationListenerAdapter(listener);
+        return smartListener.supportsEventType(eventClass) && smartListener.supportsSourceType(datastore.getClass());
+    }
+
+    private Collection<ApplicationListener> getRegisteredListeners(ApplicationContext ctx) {
+        if (!(ctx instanceof AbstractApplicationContext)) {
+            return Collections.emptyList();
+        }
+
+        Set<ApplicationListener> listeners = new LinkedHashSet<ApplicationListener>(
+                ((AbstractApplicationContext) ctx).getApplicationListeners());
+        listeners.addAll(ctx.getBeansOfType(ApplicationListener.class, true, false).values());
+        return listeners;
+    }
+
+    private int countRegisteredListeners() {
+        int count = 0;
+        for (ApplicationContext ctx = applicationContext; ctx != null; ctx = ctx.getParent()) {
+            if (ctx instanceof AbstractApplicationContext) {
+                count += ((AbstractApplicationContext) ctx).getApplicationListeners().size();
+            }
+        }
+        return count;
+    }
+
+    private static boolean isActive(ApplicationContext ctx) {
+        for (; ctx != null; ctx = ctx.getParent()) {
+            if (ctx instanceof AbstractApplicationContext && !((AbstractApplicationContext) ctx).isActive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDispatchable(ApplicationContext ctx) {
+        if (ctx == null) {
+            return false;
+        }
+
+        for (; ctx != null; ctx = ctx.getParent()) {
+            // only the multicaster a context creates itself, which has no bean definition, is known to invoke
+            // the listeners in order on the publishing thread. A configured one may be asynchronous or do more.
+            if (!(ctx instanceof AbstractApplicationContext) ||
+                    !ctx.containsLocalBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME) ||
+                    ctx.containsBeanDefinition(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME)) {
+                return false;
+            }
+
+            Object multicaster = ctx.getBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME);
+            if (multicaster.getClass() != SimpleApplicationEventMulticaster.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Listener beans are registered when the context is refreshed, which may also replace the multicaster
+     */
+    private class RefreshListener implements ApplicationListener<ContextRefreshedEvent> {
+        public void onApplicationEvent(ContextRefreshedEvent event) {
+            invalidate();
+        }
+    }
+}
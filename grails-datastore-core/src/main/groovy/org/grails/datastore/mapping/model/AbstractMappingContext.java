@@ -15,15 +15,23 @@
 package org.grails.datastore.mapping.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.grails.datastore.mapping.model.lifecycle.Initializable;
 import org.grails.datastore.mapping.model.types.conversion.DefaultConversionService;
 import org.grails.datastore.mapping.proxy.JavassistProxyFactory;
 import org.grails.datastore.mapping.proxy.ProxyFactory;
+import org.grails.datastore.mapping.reflect.ClassPropertyFetcher;
 import org.springframework.beans.BeanUtils;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.Converter;
@@ -53,6 +61,7 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
     protected ProxyFactory proxyFactory;
     private boolean canInitializeEntities = true;
     private boolean initialized;
+    private int initializationParallelism = 1;
 
     public ConversionService getConversionService() {
         return conversionService;
@@ -66,6 +75,20 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
         this.canInitializeEntities = canInitializeEntities;
     }
 
+    /**
+     * Sets the number of threads used to introspect the classes of entities added together. Entities themselves are
+     * initialized one at a time, as they resolve their associations and parents through the context.
+     *
+     * @param initializationParallelism The number of threads, 1 to introspect the classes in the calling thread
+     */
+    public void setInitializationParallelism(int initializationParallelism) {
+        this.initializationParallelism = initializationParallelism;
+    }
+
+    public int getInitializationParallelism() {
+        return initializationParallelism;
+    }
+
     public abstract MappingFactory getMappingFactory();
 
     public ProxyFactory getProxyFactory() {
@@ -168,6 +191,7 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
     }
 
     public Collection<PersistentEntity> addPersistentEntities(Class... javaClasses) {
+        introspectClasses(Arrays.asList(javaClasses));
         Collection<PersistentEntity> entities = new ArrayList<PersistentEntity>();
 
         for (Class javaClass : javaClasses) {
@@ -191,6 +215,43 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
         return entities;
     }
 
+    /**
+     * Introspects the properties of the given classes ahead of adding them as entities, which is the bulk of the work
+     * of initializing an entity. With an initialization parallelism greater than one the classes are introspected by
+     * that many threads, the results are cached by {@link ClassPropertyFetcher} for the initialization.
+     *
+     * @param javaClasses The classes
+     */
+    public void introspectClasses(Collection<Class> javaClasses) {
+        if (initializationParallelism < 2 || javaClasses.size() < 2) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(initializationParallelism, javaClasses.size()));
+        try {
+            List<Future<ClassPropertyFetcher>> results = new ArrayList<Future<ClassPropertyFetcher>>(javaClasses.size());
+            for (final Class javaClass : javaClasses) {
+                results.add(executor.submit(new Callable<ClassPropertyFetcher>() {
+                    public ClassPropertyFetcher call() {
+                        return ClassPropertyFetcher.forClass(javaClass);
+                    }
+                }));
+            }
+            for (Future<ClassPropertyFetcher> result : results) {
+                result.get();
+            }
+        }
+        catch (ExecutionException e) {
+            // the class is introspected again when the entity is initialized, which reports the failure
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Adds a PersistentEntity instance
      *
@@ -235,6 +296,14 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
     }
 
     public void initialize() {
+        List<Class> javaClasses = new ArrayList<Class>();
+        for (PersistentEntity entity : persistentEntities) {
+            if (!entity.isInitialized()) {
+                javaClasses.add(entity.getJavaClass());
+            }
+        }
+        introspectClasses(javaClasses);
+
         for(PersistentEntity entity : persistentEntities) {
             initializePersistentEntity(entity);
         }
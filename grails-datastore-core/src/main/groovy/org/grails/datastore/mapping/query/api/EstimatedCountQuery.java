@@ -0,0 +1,31 @@
+/* Copyright (C) 2013 SpringSource
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*      http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.grails.datastore.mapping.query.api;
+
+/**
+ * Interface for queries that can cheaply estimate the number of results from datastore
+ * metadata instead of executing a count query
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+public interface EstimatedCountQuery {
+
+    /**
+     * @return An estimate of the number of results or null if no estimate is available for the current criteria
+     */
+    Number estimatedCount();
+}
@@ -15,6 +15,7 @@
 package org.grails.datastore.mapping.query.jpa;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -69,6 +70,7 @@ public class JpaQueryBuilder {
     private String logicalName;
     private ConversionService conversionService = new GenericConversionService();
     private boolean hibernateCompatible;
+    private JpaQueryCache queryCache;
 
     public JpaQueryBuilder(QueryableCriteria criteria) {
         this(criteria.getPersistentEntity(), criteria.getCriteria());
@@ -110,6 +112,16 @@ public class JpaQueryBuilder {
         this.conversionService = conversionService;
     }
 
+    /**
+     * Sets the cache to look the JPQL up in, for queries whose criteria only differ in their values from a query
+     * built before only the parameters are then collected from the criteria
+     *
+     * @param queryCache The query cache
+     */
+    public void setQueryCache(JpaQueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
     /**
      * Builds an UPDATE statement.
      *
@@ -120,13 +132,19 @@ public class JpaQueryBuilder {
         if (propertiesToUpdate.isEmpty()) {
             throw new InvalidDataAccessResourceUsageException("No properties specified to update");
         }
+        QueryShape shape = createShape(UPDATE_CLAUSE, propertiesToUpdate, false);
+        JpaQueryInfo cached = getCachedQuery(shape);
+        if (cached != null) {
+            return cached;
+        }
+
         StringBuilder queryString = new StringBuilder(UPDATE_CLAUSE).append(entity.getName()).append(SPACE).append(logicalName);
 
         List parameters = new ArrayList();
         buildUpdateStatement(queryString, propertiesToUpdate, parameters, hibernateCompatible);
         StringBuilder whereClause = new StringBuilder();
         buildWhereClause(entity, criteria, queryString, whereClause, logicalName, false, parameters);
-        return new JpaQueryInfo(queryString.toString(), parameters);
+        return cacheQuery(shape, new JpaQueryInfo(queryString.toString(), parameters));
     }
 
     /**
@@ -135,10 +153,16 @@ public class JpaQueryBuilder {
      * @return The JpaQueryInfo
      */
     public JpaQueryInfo buildDelete() {
+        QueryShape shape = createShape(DELETE_CLAUSE, null, false);
+        JpaQueryInfo cached = getCachedQuery(shape);
+        if (cached != null) {
+            return cached;
+        }
+
         StringBuilder queryString = new StringBuilder(DELETE_CLAUSE).append(entity.getName()).append(SPACE).append(logicalName);
         StringBuilder whereClause = new StringBuilder();
         List parameters = buildWhereClause(entity, criteria, queryString, whereClause, logicalName, false);
-        return new JpaQueryInfo(queryString.toString(), parameters);
+        return cacheQuery(shape, new JpaQueryInfo(queryString.toString(), parameters));
     }
 
     /**
@@ -147,6 +171,12 @@ public class JpaQueryBuilder {
      * @return The JpaQueryInfo
      */
     public JpaQueryInfo buildSelect() {
+        QueryShape shape = createShape(SELECT_CLAUSE, null, true);
+        JpaQueryInfo cached = getCachedQuery(shape);
+        if (cached != null) {
+            return cached;
+        }
+
         StringBuilder queryString = new StringBuilder(SELECT_CLAUSE);
 
         buildSelectClause(queryString);
@@ -158,7 +188,175 @@ public class JpaQueryBuilder {
         }
 
         appendOrder(queryString, logicalName);
-        return new JpaQueryInfo(queryString.toString(), parameters);
+        return cacheQuery(shape, new JpaQueryInfo(queryString.toString(), parameters));
+    }
+
+    private JpaQueryInfo getCachedQuery(QueryShape shape) {
+        if (shape == null) {
+            return null;
+        }
+        String query = queryCache.get(shape.key);
+        return query == null ? null : new JpaQueryInfo(query, shape.parameters);
+    }
+
+    private JpaQueryInfo cacheQuery(QueryShape shape, JpaQueryInfo queryInfo) {
+        // only cache the query if the parameters collected for the shape are the ones the query was built with
+        if (shape != null) {
+            List parameters = queryInfo.getParameters();
+            int count = parameters == null ? 0 : parameters.size();
+            int shapeCount = shape.parameters == null ? 0 : shape.parameters.size();
+            if (count == shapeCount) {
+                queryCache.put(shape.key, queryInfo.getQuery());
+            }
+        }
+        return queryInfo;
+    }
+
+    /**
+     * Collects the shape of the query along with its parameters, in the order the query is built in
+     *
+     * @return The shape or null if there is no query cache or the query can't be cached
+     */
+    private QueryShape createShape(String statement, Map<String, Object> propertiesToUpdate, boolean select) {
+        if (queryCache == null) {
+            return null;
+        }
+
+        QueryShape shape = new QueryShape();
+        List<Object> key = shape.key;
+        key.add(statement);
+        key.add(entity);
+        key.add(hibernateCompatible);
+        if (propertiesToUpdate != null) {
+            for (String propertyName : new TreeSet<String>(propertiesToUpdate.keySet())) {
+                if (entity.getPropertyByName(propertyName) == null) {
+                    return null;
+                }
+                key.add(propertyName);
+                shape.parameters.add(propertiesToUpdate.get(propertyName));
+            }
+        }
+        if (select) {
+            for (Object projection : projectionList.getProjectionList()) {
+                key.add(projection.getClass());
+                if (projection instanceof Query.PropertyProjection) {
+                    key.add(((Query.PropertyProjection) projection).getPropertyName());
+                }
+            }
+            for (Query.Order order : orders) {
+                key.add(order.getProperty());
+                key.add(order.getDirection());
+            }
+        }
+
+        key.add(criteria.getClass());
+        if (!addCriteriaShape(entity, criteria.getCriteria(), select, shape)) {
+            return null;
+        }
+        if (select && criteria.isEmpty()) {
+            shape.parameters = null;
+        }
+        return shape;
+    }
+
+    private boolean addCriteriaShape(PersistentEntity entity, List<Query.Criterion> criterionList, boolean allowJoins, QueryShape shape) {
+        List<Object> key = shape.key;
+        // the number of criteria marks where each junction or association block ends, without it nested criteria
+        // that only differ in where a block ends would flatten to the same key
+        key.add(criterionList.size());
+        for (Query.Criterion criterion : criterionList) {
+            Class type = criterion.getClass();
+            key.add(type);
+
+            if (!queryHandlers.containsKey(type)) {
+                if (!(criterion instanceof AssociationCriteria) || !allowJoins) {
+                    return false;
+                }
+                AssociationCriteria ac = (AssociationCriteria) criterion;
+                Association association = ac.getAssociation();
+                if (!addAssociationShape(association, ac.getCriteria(), allowJoins, shape)) {
+                    return false;
+                }
+            }
+            else if (criterion instanceof AssociationQuery) {
+                if (!allowJoins) {
+                    return false;
+                }
+                AssociationQuery aq = (AssociationQuery) criterion;
+                Query.Junction associationCriteria = aq.getCriteria();
+                key.add(associationCriteria.getClass());
+                if (!addAssociationShape(aq.getAssociation(), associationCriteria.getCriteria(), allowJoins, shape)) {
+                    return false;
+                }
+            }
+            else if (criterion instanceof Query.Junction) {
+                if (!addCriteriaShape(entity, ((Query.Junction) criterion).getCriteria(), allowJoins, shape)) {
+                    return false;
+                }
+            }
+            else if (criterion instanceof Query.PropertyComparisonCriterion) {
+                Query.PropertyComparisonCriterion pc = (Query.PropertyComparisonCriterion) criterion;
+                if (getProperty(entity, pc.getProperty()) == null || getProperty(entity, pc.getOtherProperty()) == null) {
+                    return false;
+                }
+                key.add(pc.getProperty());
+                key.add(pc.getOtherProperty());
+            }
+            else if (criterion instanceof Query.IdEquals) {
+                shape.parameters.add(conversionService.convert(((Query.IdEquals) criterion).getValue(), entity.getIdentity().getType()));
+            }
+            else if (criterion instanceof Query.PropertyNameCriterion) {
+                String name = ((Query.PropertyNameCriterion) criterion).getProperty();
+                PersistentProperty prop = getProperty(entity, name);
+                if (prop == null) {
+                    return false;
+                }
+                key.add(name);
+                Class propType = prop.getType();
+                if (criterion instanceof Query.Between) {
+                    Query.Between between = (Query.Between) criterion;
+                    shape.parameters.add(conversionService.convert(between.getFrom(), propType));
+                    shape.parameters.add(conversionService.convert(between.getTo(), propType));
+                }
+                else if (criterion instanceof Query.In) {
+                    Collection values = ((Query.In) criterion).getValues();
+                    key.add(values.size());
+                    for (Object value : values) {
+                        shape.parameters.add(conversionService.convert(value, propType));
+                    }
+                }
+                else if (criterion instanceof Query.PropertyCriterion) {
+                    shape.parameters.add(conversionService.convert(((Query.PropertyCriterion) criterion).getValue(), propType));
+                }
+            }
+            else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean addAssociationShape(Association association, List<Query.Criterion> associationCriteria, boolean allowJoins, QueryShape shape) {
+        if (association == null) {
+            // the criteria of an unknown association are skipped when building the query
+            shape.key.add(null);
+            return true;
+        }
+        shape.key.add(association.getName());
+        return addCriteriaShape(association.getAssociatedEntity(), associationCriteria, allowJoins, shape);
+    }
+
+    private static PersistentProperty getProperty(PersistentEntity entity, String name) {
+        if (entity.getIdentity().getName().equals(name)) return entity.getIdentity();
+        return entity.getPropertyByName(name);
+    }
+
+    /**
+     * The shape of a query, which identifies the JPQL built for it, and the parameters for its values
+     */
+    private static class QueryShape {
+        final List<Object> key = new ArrayList<Object>();
+        List parameters = new ArrayList();
     }
 
     private void buildSelectClause(StringBuilder queryString) {
@@ -450,7 +648,7 @@ public class JpaQueryBuilder {
                 whereClause.append(logicalName)
                            .append(DOT)
                            .append(name)
-                           .append(" IS EMPTY ");
+                           .append(" IS NOT EMPTY ");
 
                 return position;
             }
@@ -725,13 +923,17 @@ public class JpaQueryBuilder {
     protected void appendOrder(StringBuilder queryString, String logicalName) {
         if (!orders.isEmpty()) {
             queryString.append( ORDER_BY_CLAUSE);
-            for (Query.Order order : orders) {
+            for (Iterator<Query.Order> i = orders.iterator(); i.hasNext();) {
+                Query.Order order = i.next();
                 queryString.append(logicalName)
                            .append(DOT)
                            .append(order.getProperty())
                            .append(SPACE)
-                           .append(order.getDirection().toString())
-                           .append(SPACE);
+                           .append(order.getDirection().toString());
+                if (i.hasNext()) {
+                    queryString.append(COMMA);
+                }
+                queryString.append(SPACE);
             }
         }
     }
@@ -0,0 +1,77 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query.jpa;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap.Builder;
+
+/**
+ * Caches the JPQL built by {@link JpaQueryBuilder} by the shape of the query: the entity, the type of statement,
+ * the structure of the criteria, the properties they refer to, the projections and the order. Queries that only
+ * differ in their values share one JPQL string, which is built once and also lets the JPA provider reuse its own
+ * query plan for it. The least recently used queries are evicted when the maximum size is reached.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+public class JpaQueryCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private static final JpaQueryCache DEFAULT = new JpaQueryCache();
+
+    private final ConcurrentMap<List<Object>, String> queries;
+
+    public JpaQueryCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public JpaQueryCache(int maximumSize) {
+        queries = new Builder<List<Object>, String>()
+                .maximumWeightedCapacity(maximumSize)
+                .build();
+    }
+
+    /**
+     * @return The cache shared by the sessions of the datastores that build JPQL
+     */
+    public static JpaQueryCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return The number of cached queries
+     */
+    public int size() {
+        return queries.size();
+    }
+
+    /**
+     * Removes all cached queries
+     */
+    public void clear() {
+        queries.clear();
+    }
+
+    String get(List<Object> shape) {
+        return queries.get(shape);
+    }
+
+    void put(List<Object> shape, String query) {
+        queries.put(shape, query);
+    }
+}
@@ -47,7 +47,8 @@ public class ClassPropertyFetcher {
     private Map<String, Field> fieldsByName = new HashMap<String, Field>();
     private Map<Class, List<PropertyDescriptor>> typeToPropertyMap = new HashMap<Class, List<PropertyDescriptor>>();
 
-    private static Map<Class, ClassPropertyFetcher> cachedClassPropertyFetchers = new WeakHashMap<Class, ClassPropertyFetcher>();
+    // fetchers may be created by several threads, for instance when a mapping context introspects its entities in parallel
+    private static Map<Class, ClassPropertyFetcher> cachedClassPropertyFetchers = Collections.synchronizedMap(new WeakHashMap<Class, ClassPropertyFetcher>());
 
     public static ClassPropertyFetcher forClass(final Class c) {
         ClassPropertyFetcher cpf = cachedClassPropertyFetchers.get(c);
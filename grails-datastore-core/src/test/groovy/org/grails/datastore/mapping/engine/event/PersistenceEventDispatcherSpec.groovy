@@ -0,0 +1,131 @@
+package org.grails.datastore.mapping.engine.event
+
+import org.grails.datastore.mapping.core.Datastore
+import org.grails.datastore.mapping.engine.EntityAccess
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.springframework.beans.factory.support.DefaultListableBeanFactory
+import org.springframework.beans.factory.support.RootBeanDefinition
+import org.springframework.context.ApplicationEvent
+import org.springframework.context.event.SimpleApplicationEventMulticaster
+import org.springframework.context.support.AbstractApplicationContext
+import org.springframework.context.support.AbstractRefreshableApplicationContext
+import org.springframework.context.support.GenericApplicationContext
+
+import spock.lang.Specification
+
+class PersistenceEventDispatcherSpec extends Specification {
+
+    Datastore datastore = Mock(Datastore)
+    PersistentEntity book = Mock(PersistentEntity)
+    PersistentEntity author = Mock(PersistentEntity)
+    GenericApplicationContext context = new GenericApplicationContext()
+
+    void "Test dispatching is not available before the context is refreshed"() {
+        given:"A dispatcher for a context that has not been refreshed"
+            def dispatcher = new PersistenceEventDispatcher(datastore, context)
+
+        expect:"Events cannot be dispatched until it is refreshed"
+            !dispatcher.available
+            context.refresh()
+            dispatcher.available
+    }
+
+    void "Test listener chains are narrowed by entity and event type"() {
+        given:"A listener that only handles inserts of books"
+            context.addApplicationListener(new RecordingListener(datastore, book))
+            context.refresh()
+            def dispatcher = new PersistenceEventDispatcher(datastore, context)
+
+        expect:"Only the chain for book inserts contains the listener"
+            dispatcher.hasListeners(book, EventType.PreInsert)
+            !dispatcher.hasListeners(book, EventType.PostInsert)
+            !dispatcher.hasListeners(author, EventType.PreInsert)
+    }
+
+    void "Test events are dispatched to listeners added after the chain was resolved"() {
+        given:"A dispatcher whose chain is resolved before any listener is added"
+            context.refresh()
+            def dispatcher = new PersistenceEventDispatcher(datastore, context)
+            assert !dispatcher.hasListeners(book, EventType.PreInsert)
+
+        when:"A listener is added and an event is dispatched"
+            def listener = new RecordingListener(datastore, book)
+            context.addApplicationListener(listener)
+            def event = new PreInsertEvent(datastore, book, new EntityAccess(book, new Object()))
+            dispatcher.dispatch(event)
+
+        then:"The listener receives the event"
+            listener.events == [event]
+    }
+
+    void "Test listener beans registered by a refresh receive events"() {
+        given:"A dispatcher whose chain is resolved before the context is refreshed with a listener bean"
+            def refreshable = new RefreshableContext()
+            refreshable.refresh()
+            def dispatcher = new PersistenceEventDispatcher(datastore, refreshable)
+            assert !dispatcher.hasListeners(book, EventType.PreInsert)
+
+        when:"A listener bean is defined, the context refreshed and an event dispatched"
+            def definition = new RootBeanDefinition(RecordingListener)
+            definition.constructorArgumentValues.addIndexedArgumentValue(0, datastore)
+            definition.constructorArgumentValues.addIndexedArgumentValue(1, book)
+            refreshable.beanDefinitions.bookListener = definition
+            refreshable.refresh()
+            def event = new PreInsertEvent(datastore, book, new EntityAccess(book, new Object()))
+            dispatcher.dispatch(event)
+
+        then:"The listener bean receives the event"
+            dispatcher.available
+            refreshable.getBean('bookListener').events == [event]
+
+        cleanup:
+            refreshable.close()
+    }
+
+    void "Test dispatching is not available with a configured multicaster"() {
+        given:"A context with a multicaster bean"
+            context.registerBeanDefinition(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+                new RootBeanDefinition(multicasterType))
+            context.refresh()
+
+        expect:"Events are published through the context"
+            !new PersistenceEventDispatcher(datastore, context).available
+
+        where:
+            multicasterType << [SimpleApplicationEventMulticaster, CustomMulticaster]
+    }
+
+    static class RefreshableContext extends AbstractRefreshableApplicationContext {
+        Map<String, RootBeanDefinition> beanDefinitions = [:]
+
+        protected void loadBeanDefinitions(DefaultListableBeanFactory beanFactory) {
+            beanDefinitions.each { name, definition -> beanFactory.registerBeanDefinition(name, definition) }
+        }
+    }
+
+    static class CustomMulticaster extends SimpleApplicationEventMulticaster {
+    }
+
+    static class RecordingListener extends AbstractPersistenceEventListener {
+        PersistentEntity supportedEntity
+        List events = []
+
+        RecordingListener(Datastore datastore, PersistentEntity supportedEntity) {
+            super(datastore)
+            this.supportedEntity = supportedEntity
+        }
+
+        protected void onPersistenceEvent(AbstractPersistenceEvent event) {
+            events << event
+        }
+
+        boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+            PreInsertEvent.isAssignableFrom(eventType)
+        }
+
+        @Override
+        boolean supportsEntityEvent(PersistentEntity entity, Class<? extends ApplicationEvent> eventType) {
+            entity.is(supportedEntity)
+        }
+    }
+}
@@ -72,6 +72,21 @@ class GormMappingInheritanceTests {
         assertTrue parentAssociation.inverseSide.owningSide
     }
 
+    @Test
+    void testInheritedAssociationsWithParallelIntrospection() {
+        def context = new TestMappingContext()
+        context.initializationParallelism = 4
+        context.addPersistentEntities(Parent, BaseChild, DerivedChild)
+        assertEquals 3, context.persistentEntities.size()
+
+        def derivedChild = context.getPersistentEntity(DerivedChild.name)
+        Association parentAssociation = derivedChild.getPropertyByName("parent")
+        assertTrue parentAssociation instanceof ManyToOne
+        assertTrue parentAssociation.bidirectional
+        assertEquals parentAssociation.associatedEntity, context.getPersistentEntity(Parent.name)
+        assertEquals context.getPersistentEntity(BaseChild.name), derivedChild.parentEntity
+    }
+
     @Test
     void testInheritedMapping() {
         def context = new TestMappingContext()
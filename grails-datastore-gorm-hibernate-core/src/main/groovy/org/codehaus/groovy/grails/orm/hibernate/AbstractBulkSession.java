@@ -0,0 +1,262 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.grails.orm.hibernate;
+
+import groovy.lang.GroovySystem;
+import groovy.lang.MetaClass;
+import groovy.lang.MetaProperty;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.groovy.grails.commons.GrailsDomainClassProperty;
+import org.codehaus.groovy.grails.orm.hibernate.cfg.Mapping;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.grails.datastore.gorm.support.TimestampFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+
+/**
+ * Writes large numbers of domain instances through a Hibernate {@link StatelessSession} in a transaction of its own.
+ * Instances aren't held in a first-level cache and aren't dirty checked, every write is executed as an insert, update
+ * or delete. The pending statements are sent to the database every batchSize writes, so they are grouped into JDBC
+ * batches when the hibernate.jdbc.batch_size setting is enabled and the identifiers aren't generated by the database.
+ * <p/>
+ * The dateCreated and lastUpdated properties are set as GORM auto timestamping would and versions are initialized on
+ * insert, other events, validation and cascades aren't applied.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+public abstract class AbstractBulkSession {
+
+    protected final SessionFactory sessionFactory;
+    protected final StatelessSession session;
+    protected final int batchSize;
+    private final Transaction transaction;
+    private final Map<Class<?>, Timestamps> timestamps = new HashMap<Class<?>, Timestamps>();
+    private int pending;
+    private boolean committed;
+
+    protected AbstractBulkSession(SessionFactory sessionFactory, int batchSize) {
+        this.sessionFactory = sessionFactory;
+        this.batchSize = batchSize > 0 ? batchSize : AbstractHibernateDatastore.DEFAULT_BULK_BATCH_SIZE;
+        session = sessionFactory.openStatelessSession();
+        try {
+            transaction = session.beginTransaction();
+        }
+        catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts the given instance if it is transient, otherwise updates it. Whether it is transient is decided by the
+     * unsaved values of its identifier and version, or by querying for the identifier if these don't tell, for
+     * instance for assigned identifiers without a version. Use {@link #insert(Object)} to avoid the query.
+     *
+     * @param instance The instance
+     * @return The identifier of the instance
+     */
+    public Serializable save(Object instance) {
+        if (isTransient(instance)) {
+            return insert(instance);
+        }
+        update(instance);
+        return getIdentifier(instance);
+    }
+
+    /**
+     * Inserts the given instance
+     *
+     * @param instance The instance
+     * @return The identifier of the instance
+     */
+    public Serializable insert(Object instance) {
+        applyTimestamps(instance, true);
+        initializeVersion(instance);
+        Serializable id = session.insert(instance);
+        written();
+        return id;
+    }
+
+    /**
+     * Updates the given instance
+     *
+     * @param instance The instance
+     */
+    public void update(Object instance) {
+        applyTimestamps(instance, false);
+        session.update(instance);
+        written();
+    }
+
+    /**
+     * Deletes the given instance
+     *
+     * @param instance The instance
+     */
+    public void delete(Object instance) {
+        session.delete(instance);
+        written();
+    }
+
+    /**
+     * Sends the pending statements to the database
+     */
+    public void flush() {
+        executeBatch();
+        pending = 0;
+    }
+
+    /**
+     * Flushes the pending statements and commits the transaction
+     */
+    public void commit() {
+        flush();
+        transaction.commit();
+        committed = true;
+    }
+
+    /**
+     * Closes the session, rolling back the transaction if it wasn't committed
+     */
+    public void close() {
+        try {
+            if (!committed && transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+        finally {
+            session.close();
+        }
+    }
+
+    /**
+     * @return The underlying stateless session, for instance to query or scroll through the instances to update
+     */
+    public StatelessSession getSession() {
+        return session;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Executes the statements the session has added to the current JDBC batch
+     */
+    protected abstract void executeBatch();
+
+    /**
+     * @param type The domain class
+     * @return The mapping of the domain class or null
+     */
+    protected abstract Mapping getMapping(Class<?> type);
+
+    /**
+     * @param instance The instance
+     * @return Whether the instance is transient according to the unsaved values of its identifier and version, or
+     * null if these don't tell
+     */
+    protected abstract Boolean isUnsaved(Object instance);
+
+    /**
+     * Sets the version of the given instance to its initial value if it has none
+     *
+     * @param instance The instance
+     */
+    protected abstract void initializeVersion(Object instance);
+
+    protected boolean isTransient(Object instance) {
+        Boolean unsaved = isUnsaved(instance);
+        if (unsaved != null) {
+            return unsaved;
+        }
+
+        Serializable id = getIdentifier(instance);
+        return id == null || session.createCriteria(instance.getClass())
+                .add(Restrictions.idEq(id))
+                .setProjection(Projections.id())
+                .uniqueResult() == null;
+    }
+
+    protected Serializable getIdentifier(Object instance) {
+        ClassMetadata metadata = sessionFactory.getClassMetadata(instance.getClass());
+        if (metadata == null) {
+            throw new IllegalArgumentException("Cannot save instance of non-persistent class [" + instance.getClass().getName() + "]");
+        }
+        String identifierName = metadata.getIdentifierPropertyName();
+        return identifierName == null ? null : (Serializable)InvokerHelper.getProperty(instance, identifierName);
+    }
+
+    private void written() {
+        if (++pending >= batchSize) {
+            flush();
+        }
+    }
+
+    private void applyTimestamps(Object instance, boolean insert) {
+        Class<?> type = instance.getClass();
+        Timestamps properties = timestamps.get(type);
+        if (properties == null) {
+            properties = new Timestamps(type, getMapping(type));
+            timestamps.put(type, properties);
+        }
+        properties.apply(instance, insert);
+    }
+
+    /**
+     * The timestamp properties of a domain class, resolved once per bulk session
+     */
+    private static class Timestamps {
+        MetaProperty dateCreatedProperty;
+        MetaProperty lastUpdatedProperty;
+        TimestampFactory dateCreatedFactory;
+        TimestampFactory lastUpdatedFactory;
+
+        Timestamps(Class<?> type, Mapping mapping) {
+            if (mapping != null && !mapping.isAutoTimestamp()) {
+                return;
+            }
+            MetaClass metaClass = GroovySystem.getMetaClassRegistry().getMetaClass(type);
+            dateCreatedProperty = metaClass.getMetaProperty(GrailsDomainClassProperty.DATE_CREATED);
+            lastUpdatedProperty = metaClass.getMetaProperty(GrailsDomainClassProperty.LAST_UPDATED);
+            if (dateCreatedProperty != null) {
+                dateCreatedFactory = TimestampFactory.forType(dateCreatedProperty.getType());
+            }
+            if (lastUpdatedProperty != null) {
+                lastUpdatedFactory = TimestampFactory.forType(lastUpdatedProperty.getType());
+            }
+        }
+
+        void apply(Object instance, boolean insert) {
+            long time = System.currentTimeMillis();
+            if (insert && dateCreatedProperty != null) {
+                dateCreatedProperty.setProperty(instance, dateCreatedFactory.createTimestamp(time));
+            }
+            if (lastUpdatedProperty != null) {
+                lastUpdatedProperty.setProperty(instance, lastUpdatedFactory.createTimestamp(time));
+            }
+        }
+    }
+}
@@ -16,6 +16,11 @@ package org.codehaus.groovy.grails.orm.hibernate;
 
 import groovy.util.ConfigObject;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.grails.datastore.mapping.core.AbstractDatastore;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.hibernate.SessionFactory;
@@ -30,15 +35,40 @@ import org.springframework.context.ApplicationContextAware;
  */
 public abstract class AbstractHibernateDatastore extends AbstractDatastore implements ApplicationContextAware {
 
+    public static final String CONFIG_PROPERTY_RETRIEVE_ALL_BATCH_SIZE = "grails.gorm.retrieveAll.batchSize";
+    public static final String CONFIG_PROPERTY_RETRIEVE_ALL_PARALLELISM = "grails.gorm.retrieveAll.parallelism";
+    public static final int DEFAULT_RETRIEVE_ALL_BATCH_SIZE = 500;
+    public static final String CONFIG_PROPERTY_BULK_BATCH_SIZE = "grails.gorm.bulk.batchSize";
+    public static final int DEFAULT_BULK_BATCH_SIZE = 50;
+
     protected SessionFactory sessionFactory;
     protected ConfigObject config;
     protected AbstractEventTriggeringInterceptor eventTriggeringInterceptor;
+    protected int retrieveAllBatchSize = DEFAULT_RETRIEVE_ALL_BATCH_SIZE;
+    protected int retrieveAllParallelism;
+    private ExecutorService retrieveAllExecutor;
+    protected int bulkBatchSize = DEFAULT_BULK_BATCH_SIZE;
 
     protected AbstractHibernateDatastore(MappingContext mappingContext, SessionFactory sessionFactory, ConfigObject config) {
         super(mappingContext);
         this.sessionFactory = sessionFactory;
         this.config = config;
         initializeConverters(mappingContext);
+
+        if (config != null) {
+            Object batchSize = config.flatten().get(CONFIG_PROPERTY_RETRIEVE_ALL_BATCH_SIZE);
+            if (batchSize instanceof Number) {
+                setRetrieveAllBatchSize(((Number)batchSize).intValue());
+            }
+            Object parallelism = config.flatten().get(CONFIG_PROPERTY_RETRIEVE_ALL_PARALLELISM);
+            if (parallelism instanceof Number) {
+                setRetrieveAllParallelism(((Number)parallelism).intValue());
+            }
+            Object bulkBatchSize = config.flatten().get(CONFIG_PROPERTY_BULK_BATCH_SIZE);
+            if (bulkBatchSize instanceof Number) {
+                setBulkBatchSize(((Number)bulkBatchSize).intValue());
+            }
+        }
     }
 
     public AbstractHibernateDatastore(MappingContext mappingContext, SessionFactory sessionFactory, ConfigObject config, ApplicationContext applicationContext) {
@@ -53,6 +83,75 @@ public abstract class AbstractHibernateDatastore extends AbstractDatastore imple
         return sessionFactory;
     }
 
+    /**
+     * @return The maximum number of identifiers in the IN list of a query issued by retrieveAll(..)
+     */
+    public int getRetrieveAllBatchSize() {
+        return retrieveAllBatchSize;
+    }
+
+    public void setRetrieveAllBatchSize(int retrieveAllBatchSize) {
+        this.retrieveAllBatchSize = retrieveAllBatchSize > 0 ? retrieveAllBatchSize : DEFAULT_RETRIEVE_ALL_BATCH_SIZE;
+    }
+
+    /**
+     * @return The number of writes after which a bulk session sends its pending statements to the database
+     */
+    public int getBulkBatchSize() {
+        return bulkBatchSize;
+    }
+
+    public void setBulkBatchSize(int bulkBatchSize) {
+        this.bulkBatchSize = bulkBatchSize > 0 ? bulkBatchSize : DEFAULT_BULK_BATCH_SIZE;
+    }
+
+    /**
+     * @return The number of batches retrieveAll(..) loads concurrently on separate sessions within read-only sessions,
+     * batches are loaded one after the other in the current session if less than 2
+     */
+    public int getRetrieveAllParallelism() {
+        return retrieveAllParallelism;
+    }
+
+    public synchronized void setRetrieveAllParallelism(int retrieveAllParallelism) {
+        this.retrieveAllParallelism = retrieveAllParallelism;
+        if (retrieveAllExecutor != null) {
+            retrieveAllExecutor.shutdown();
+            retrieveAllExecutor = null;
+        }
+    }
+
+    /**
+     * @return The executor batches of retrieveAll(..) are loaded with or null if they are not loaded in parallel
+     */
+    public synchronized ExecutorService getRetrieveAllExecutor() {
+        if (retrieveAllParallelism < 2) {
+            return null;
+        }
+        if (retrieveAllExecutor == null) {
+            retrieveAllExecutor = Executors.newFixedThreadPool(retrieveAllParallelism, new ThreadFactory() {
+                final AtomicInteger count = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "gorm-retrieve-all-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return retrieveAllExecutor;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        synchronized (this) {
+            if (retrieveAllExecutor != null) {
+                retrieveAllExecutor.shutdownNow();
+                retrieveAllExecutor = null;
+            }
+        }
+        super.destroy();
+    }
+
     @Override
     protected boolean registerValidationListener() {
         return false;
@@ -1,11 +1,13 @@
 package org.codehaus.groovy.grails.orm.hibernate
 
+import grails.gorm.DetachedCriteria
 import groovy.transform.CompileStatic
 import groovy.transform.TypeCheckingMode
 import org.codehaus.groovy.grails.commons.DomainClassArtefactHandler
 import org.codehaus.groovy.grails.commons.GrailsApplication
 import org.codehaus.groovy.grails.commons.GrailsDomainClass
 import org.codehaus.groovy.grails.commons.metaclass.StaticMethodInvocation
+import org.codehaus.groovy.grails.orm.hibernate.query.HqlQueryTemplate
 import org.grails.datastore.gorm.GormStaticApi
 import org.grails.datastore.gorm.config.GrailsDomainClassMappingContext
 import org.grails.datastore.gorm.finders.FinderMethod
@@ -44,6 +46,103 @@ abstract class AbstractHibernateGormStaticApi<D> extends GormStaticApi<D> {
         grailsApplication = datastore.applicationContext.getBean(GrailsApplication.class)
     }
 
+    /**
+     * Saves a list of objects in one go. With the batch argument set to true the objects are written through a bulk
+     * session, see {@link #withBulkSession(Map, Closure)}, otherwise as by saveAll(Iterable). Objects are inserted if
+     * they are transient and updated otherwise, or all inserted with the insert argument set to true. Example:
+     *
+     * <pre><code>
+     * Book.saveAll(books, batch: true, batchSize: 100)
+     * </code></pre>
+     *
+     * @param args The arguments, batch, batchSize and insert
+     * @param objectsToSave Collection of objects to save
+     * @return A list of object identifiers
+     */
+    List<Serializable> saveAll(Map args, Iterable<?> objectsToSave) {
+        if (!args?.batch) {
+            return saveAll(objectsToSave)
+        }
+        boolean insert = args.insert
+        (List<Serializable>)withBulkSession(args) { AbstractBulkSession session ->
+            List<Serializable> ids = []
+            for (object in objectsToSave) {
+                ids << (insert ? session.insert(object) : session.save(object))
+            }
+            ids
+        }
+    }
+
+    /**
+     * Executes the closure with a bulk session using the configured batch size
+     *
+     * @see #withBulkSession(Map, Closure)
+     */
+    def withBulkSession(Closure callable) {
+        withBulkSession(Collections.emptyMap(), callable)
+    }
+
+    /**
+     * Executes the closure with a bulk session that writes objects through a Hibernate stateless session in a
+     * transaction of its own, which is committed if the closure completes and rolled back otherwise. Written objects
+     * skip the first-level cache and dirty checking, and the pending statements are flushed every batchSize writes
+     * (grails.gorm.bulk.batchSize by default). Example:
+     *
+     * <pre><code>
+     * Book.withBulkSession(batchSize: 100) { session ->
+     *     rows.each { row -> session.insert(new Book(title: row.title)) }
+     * }
+     * </code></pre>
+     *
+     * @param args The arguments, batchSize
+     * @param callable The closure, passed the {@link AbstractBulkSession}
+     * @return The result of the closure
+     */
+    def withBulkSession(Map args, Closure callable) {
+        int batchSize = args?.batchSize ? args.batchSize as int : ((AbstractHibernateDatastore)datastore).bulkBatchSize
+        AbstractBulkSession session = createBulkSession(batchSize)
+        try {
+            def result = callable.call(session)
+            session.commit()
+            return result
+        }
+        finally {
+            session.close()
+        }
+    }
+
+    /**
+     * Creates the bulk session for the Hibernate version in use
+     *
+     * @param batchSize The number of writes after which pending statements are flushed
+     */
+    protected abstract AbstractBulkSession createBulkSession(int batchSize)
+
+    /**
+     * Compiles a criteria closure, whose parameters are bound on each execution, into a query template that is
+     * executed as HQL. Example:
+     *
+     * <pre><code>
+     * def byAuthor = Book.compileQuery { String author -> eq 'author', author }
+     * byAuthor.list('Stephen King')
+     * </code></pre>
+     *
+     * @param criteria The criteria closure
+     * @return The query template
+     */
+    HqlQueryTemplate<D> compileQuery(Closure criteria) {
+        new HqlQueryTemplate<D>(persistentClass, criteria)
+    }
+
+    /**
+     * Compiles the given criteria into a query template that is executed as HQL
+     *
+     * @param criteria The criteria
+     * @return The query template
+     */
+    HqlQueryTemplate<D> compileQuery(DetachedCriteria<D> criteria) {
+        new HqlQueryTemplate<D>(criteria)
+    }
 
 
     /**
@@ -18,19 +18,37 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.persistence.FlushModeType;
 
 import org.codehaus.groovy.grails.support.proxy.ProxyHandler;
 import org.grails.datastore.mapping.core.AbstractAttributeStoringSession;
 import org.grails.datastore.mapping.core.Datastore;
+import org.grails.datastore.mapping.engine.EntityAccess;
 import org.grails.datastore.mapping.engine.Persister;
 import org.grails.datastore.mapping.model.MappingContext;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.types.Association;
+import org.grails.datastore.mapping.model.types.ToOne;
 import org.grails.datastore.mapping.transactions.Transaction;
+import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
 import org.hibernate.LockMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 
 /**
@@ -178,6 +196,191 @@ public abstract class AbstractHibernateSession extends AbstractAttributeStoringS
         return retrieveAll(type, Arrays.asList(keys));
     }
 
+    /**
+     * Retrieves the instances of the given type with the given identifiers, in the order of the identifiers and with
+     * null for identifiers that don't exist. Instances already in the session are used as they are, the others are
+     * loaded with queries of at most {@link AbstractHibernateDatastore#getRetrieveAllBatchSize()} identifiers each.
+     * If the session is read-only and the datastore has a parallelism, the queries run concurrently in separate
+     * sessions and the instances are then attached to the given session, with their uninitialized to-one proxies
+     * replaced by proxies of the given session. Batches the executor rejects are loaded in the given session.
+     *
+     * @param session The native session
+     * @param type The type
+     * @param keys The identifiers
+     * @return The instances
+     */
+    protected List retrieveAllInBatches(Session session, Class type, Iterable keys) {
+        final PersistentEntity persistentEntity = getMappingContext().getPersistentEntity(type.getName());
+        final String idName = persistentEntity.getIdentity().getName();
+        final Class idType = persistentEntity.getIdentity().getType();
+
+        List<Serializable> ids = new ArrayList<Serializable>();
+        Map<Serializable, Object> instances = new HashMap<Serializable, Object>();
+        List<Serializable> toLoad = new ArrayList<Serializable>();
+        for (Object key : keys) {
+            Serializable id = convertIdentifier(key, idType);
+            ids.add(id);
+            if (id == null || instances.containsKey(id)) {
+                continue;
+            }
+            Object instance = getFromPersistenceContext(session, type, id);
+            instances.put(id, instance);
+            if (instance == null) {
+                toLoad.add(id);
+            }
+        }
+
+        if (!toLoad.isEmpty()) {
+            for (Object instance : loadInBatches(session, type, idName, toLoad)) {
+                instances.put(getObjectIdentifier(instance), instance);
+            }
+        }
+
+        List results = new ArrayList(ids.size());
+        for (Serializable id : ids) {
+            results.add(id == null ? null : instances.get(id));
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List loadInBatches(final Session session, final Class type, final String idName, List<Serializable> ids) {
+        final int batchSize = datastore.getRetrieveAllBatchSize();
+        List<List<Serializable>> batches = new ArrayList<List<Serializable>>();
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            batches.add(ids.subList(i, Math.min(i + batchSize, ids.size())));
+        }
+
+        List loaded = new ArrayList(ids.size());
+        ExecutorService executor = batches.size() > 1 && session.isDefaultReadOnly() ? datastore.getRetrieveAllExecutor() : null;
+        if (executor == null) {
+            for (List<Serializable> batch : batches) {
+                loaded.addAll(loadBatch(session, type, idName, batch));
+            }
+            return loaded;
+        }
+
+        List<Future<List>> futures = new ArrayList<Future<List>>(batches.size());
+        List<List<Serializable>> rejected = new ArrayList<List<Serializable>>();
+        for (final List<Serializable> batch : batches) {
+            try {
+                futures.add(executor.submit(new Callable<List>() {
+                    public List call() throws Exception {
+                        return loadBatchInNewSession(type, idName, batch);
+                    }
+                }));
+            }
+            catch (RejectedExecutionException e) {
+                // the executor was shut down meanwhile, e.g. because the parallelism changed
+                rejected.add(batch);
+            }
+        }
+        try {
+            for (Future<List> future : futures) {
+                loaded.addAll(future.get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("Interrupted while loading instances of " + type.getName(), e);
+        }
+        catch (ExecutionException e) {
+            for (Future<List> future : futures) {
+                future.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new DataAccessResourceFailureException("Could not load instances of " + type.getName() + ": " + cause.getMessage(), cause);
+        }
+
+        // the instances were loaded by other sessions, associate them with this one so lazy associations can be loaded
+        for (Object instance : loaded) {
+            replaceDetachedProxies(session, instance);
+            hibernateTemplate.lock(instance, LockMode.NONE);
+            session.setReadOnly(instance, true);
+        }
+
+        for (List<Serializable> batch : rejected) {
+            loaded.addAll(loadBatch(session, type, idName, batch));
+        }
+        return loaded;
+    }
+
+    /**
+     * Replaces the uninitialized to-one proxies of an instance loaded by another, closed session with proxies of the
+     * given session. Locking the instance only reassociates the instance and its collections, so its proxies would
+     * otherwise fail to initialize.
+     */
+    protected void replaceDetachedProxies(Session session, Object instance) {
+        PersistentEntity entity = getMappingContext().getPersistentEntity(instance.getClass().getName());
+        if (entity == null) {
+            return;
+        }
+
+        EntityAccess entityAccess = null;
+        for (Association association : entity.getAssociations()) {
+            if (!(association instanceof ToOne)) {
+                continue;
+            }
+            if (entityAccess == null) {
+                entityAccess = new EntityAccess(entity, instance);
+            }
+            Object value = entityAccess.getProperty(association.getName());
+            if (value instanceof HibernateProxy && !Hibernate.isInitialized(value)) {
+                LazyInitializer initializer = ((HibernateProxy)value).getHibernateLazyInitializer();
+                entityAccess.setProperty(association.getName(),
+                        session.load(initializer.getEntityName(), initializer.getIdentifier()));
+            }
+        }
+    }
+
+    /**
+     * Loads the instances with the given identifiers in the given session, applying the settings of the template
+     * as queries of the current session do
+     */
+    protected List loadBatch(Session session, Class type, String idName, List<Serializable> ids) {
+        Criteria criteria = session.createCriteria(type);
+        applySettings(criteria);
+        return criteria.add(Restrictions.in(idName, ids)).list();
+    }
+
+    protected Serializable convertIdentifier(Object key, Class idType) {
+        if (key == null || idType == null || idType.isInstance(key)) {
+            return (Serializable)key;
+        }
+        ConversionService conversionService = getMappingContext().getConversionService();
+        if (conversionService.canConvert(key.getClass(), idType)) {
+            return (Serializable)conversionService.convert(key, idType);
+        }
+        return (Serializable)key;
+    }
+
+    /**
+     * @return The instance with the given identifier if it is loaded in the given session, null otherwise
+     */
+    protected abstract Object getFromPersistenceContext(Session session, Class type, Serializable id);
+
+    /**
+     * Loads the instances with the given identifiers in a new read-only session with {@link #loadBatch}, called from
+     * a thread of the datastore's retrieveAll executor
+     */
+    protected abstract List loadBatchInNewSession(Class type, String idName, List<Serializable> ids);
+
+    protected abstract void applySettings(Criteria criteria);
+
+    /**
+     * Executes the given HQL query with positional parameters in the current Hibernate session
+     *
+     * @param hql The query
+     * @param parameters The parameters or null
+     * @param max The maximum number of results or -1 for no maximum
+     * @param offset The offset of the first result or -1 for no offset
+     * @return The results
+     */
+    public abstract List executeQuery(String hql, List parameters, int max, int offset);
+
     public Persister getPersister(Object o) {
         return null;
     }
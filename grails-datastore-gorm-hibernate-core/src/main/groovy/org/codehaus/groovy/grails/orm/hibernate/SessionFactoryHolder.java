@@ -28,7 +28,8 @@ public class SessionFactoryHolder {
 
     public static final String BEAN_ID = "org.grails.internal.SESSION_FACTORY_HOLDER";
 
-    private SessionFactory sessionFactory;
+    private volatile SessionFactory sessionFactory;
+    private volatile int generation;
 
     public SessionFactory getSessionFactory() {
         return sessionFactory;
@@ -36,5 +37,14 @@ public class SessionFactoryHolder {
 
     public void setSessionFactory(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
+        generation++;
+    }
+
+    /**
+     * @return A number that changes whenever the SessionFactory is replaced, so that the
+     * SessionFactory can be cached until it is
+     */
+    public int getGeneration() {
+        return generation;
     }
 }
@@ -35,6 +35,12 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
@@ -109,7 +115,11 @@ public abstract class AbstractGrailsDomainBinder {
     protected static final String CASCADE_NONE = "none";
     protected static final String BACKTICK = "`";
 
-    protected static final Map<Class<?>, Mapping> MAPPING_CACHE = new HashMap<Class<?>, Mapping>();
+    public static final String CONFIG_PROPERTY_MAPPING_PARALLELISM = "grails.gorm.mapping.parallelism";
+
+    protected static final Map<Class<?>, Mapping> MAPPING_CACHE = new ConcurrentHashMap<Class<?>, Mapping>();
+    // datasources of the domain classes, evaluated without the default mapping before the mappings are cached
+    protected static final Map<Class<?>, List<String>> DATASOURCE_NAMES_CACHE = new ConcurrentHashMap<Class<?>, List<String>>();
     protected static final String ENUM_TYPE_CLASS = "org.hibernate.type.EnumType";
     protected static final String ENUM_CLASS_PROP = "enumClass";
     protected static final String ENUM_TYPE_PROP = "type";
@@ -1289,13 +1299,14 @@ public abstract class AbstractGrailsDomainBinder {
                     if (ctx == null) ctx = application.getParentContext();
                 }
 
+                // the closures are shared by the classes and the configurations evaluating them, so evaluate copies
                 Mapping m = null;
                 if (defaultMapping != null) {
-                    m = builder.evaluate(defaultMapping,ctx);
+                    m = builder.evaluate((Closure<?>)defaultMapping.clone(),ctx);
                 }
 
                 if (o instanceof Closure) {
-                    m = builder.evaluate((Closure<?>) o,ctx);
+                    m = builder.evaluate((Closure<?>)((Closure<?>) o).clone(),ctx);
                 }
 
                 final Object identity = m.getIdentity();
@@ -1326,6 +1337,75 @@ public abstract class AbstractGrailsDomainBinder {
         }
     }
 
+    /**
+     * Evaluates and caches the mappings of the given domain classes. The mapping closures of different classes are
+     * independent of each other, so with a parallelism greater than one they are evaluated by that many threads.
+     *
+     * @param domainClasses The domain classes
+     * @param defaultMapping The default mapping or null
+     * @param parallelism The number of threads to evaluate the mappings with
+     */
+    public void evaluateMappings(java.util.Collection<GrailsDomainClass> domainClasses, final Closure<?> defaultMapping, int parallelism) {
+        if (parallelism < 2 || domainClasses.size() < 2) {
+            for (GrailsDomainClass domainClass : domainClasses) {
+                evaluateMapping(domainClass, defaultMapping);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, domainClasses.size()));
+        try {
+            List<Future<Mapping>> results = new ArrayList<Future<Mapping>>(domainClasses.size());
+            for (final GrailsDomainClass domainClass : domainClasses) {
+                results.add(executor.submit(new Callable<Mapping>() {
+                    public Mapping call() {
+                        return evaluateMapping(domainClass, defaultMapping);
+                    }
+                }));
+            }
+            for (Future<Mapping> result : results) {
+                result.get();
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new GrailsDomainException("Error evaluating ORM mappings: " + cause.getMessage(), cause);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrailsDomainException("Interrupted evaluating ORM mappings", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Obtains the names of the datasources a domain class is mapped to. The mapping closure is evaluated once per
+     * class without the default mapping, so this can be used before the mappings are evaluated and cached.
+     *
+     * @param domainClass The domain class
+     * @return The datasource names
+     */
+    public List<String> getDatasourceNames(GrailsDomainClass domainClass) {
+        List<String> names = DATASOURCE_NAMES_CACHE.get(domainClass.getClazz());
+        if (names == null) {
+            Mapping mapping = evaluateMapping(domainClass, null, false);
+            if (mapping == null) {
+                mapping = new Mapping();
+            }
+            names = mapping.getDatasources();
+            DATASOURCE_NAMES_CACHE.put(domainClass.getClazz(), names);
+        }
+        return names;
+    }
+
     /**
      * Checks for any custom cascading saves set up via the mapping DSL and records them within the persistent property.
      * @param mapping The Mapping.
@@ -1382,6 +1462,7 @@ public abstract class AbstractGrailsDomainBinder {
 
     public void clearMappingCache() {
         MAPPING_CACHE.clear();
+        DATASOURCE_NAMES_CACHE.clear();
     }
 
     public void clearMappingCache(Class<?> theClass) {
@@ -1392,6 +1473,11 @@ public abstract class AbstractGrailsDomainBinder {
                 it.remove();
             }
         }
+        for(Iterator<Class<?>> it = DATASOURCE_NAMES_CACHE.keySet().iterator(); it.hasNext();) {
+            if (className.equals(it.next().getName())) {
+                it.remove();
+            }
+        }
     }
 
     /**
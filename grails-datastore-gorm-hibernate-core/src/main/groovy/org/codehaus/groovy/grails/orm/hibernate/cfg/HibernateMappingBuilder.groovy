@@ -74,6 +74,8 @@ class HibernateMappingBuilder {
             return
         }
 
+        // included closures may be shared by classes whose mappings are evaluated in parallel
+        callable = callable.clone()
         callable.resolveStrategy = Closure.DELEGATE_ONLY
         callable.delegate = this
         try {
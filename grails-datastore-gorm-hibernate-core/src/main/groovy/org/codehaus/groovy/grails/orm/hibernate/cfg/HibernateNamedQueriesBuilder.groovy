@@ -19,9 +19,12 @@ import grails.util.GrailsNameUtils
 import org.grails.datastore.gorm.utils.GormConversionUtils
 
 import java.lang.reflect.Modifier
+import java.util.concurrent.ConcurrentHashMap
 
 import org.codehaus.groovy.grails.commons.GrailsDomainClass
+import org.codehaus.groovy.grails.orm.hibernate.query.HqlQueryTemplate
 import org.grails.datastore.gorm.finders.FinderMethod
+import org.grails.datastore.mapping.query.jpa.JpaQueryInfo
 import org.hibernate.criterion.CriteriaSpecification
 import org.springframework.core.convert.ConversionService
 
@@ -83,6 +86,9 @@ class HibernateNamedQueriesBuilder {
 
 class NamedCriteriaProxy<T> {
 
+    // the classes of the criteria closures that can't be translated to HQL, which are executed with the criteria builder
+    protected static final Set<Class> untranslatableCriteria = Collections.newSetFromMap(new ConcurrentHashMap<Class, Boolean>())
+
     protected criteriaClosure
     protected GrailsDomainClass domainClass
     protected dynamicMethods
@@ -122,10 +128,14 @@ class NamedCriteriaProxy<T> {
         }
 
         if (paramsMap) {
-            domainClass.clazz.createCriteria().list(paramsMap, listClosure)
-        } else {
-            domainClass.clazz.withCriteria(listClosure)
+            return domainClass.clazz.createCriteria().list(paramsMap, listClosure)
+        }
+
+        JpaQueryInfo queryInfo = translateCriteria([additionalCriteriaClosure], isDistinct, false)
+        if (queryInfo != null) {
+            return HqlQueryTemplate.execute(domainClass.clazz, queryInfo, null)
         }
+        domainClass.clazz.withCriteria(listClosure)
     }
 
     def list(Object[] params, Closure additionalCriteriaClosure = null) {
@@ -158,6 +168,12 @@ class NamedCriteriaProxy<T> {
     }
 
     T get() {
+        JpaQueryInfo queryInfo = translateCriteria([], false, false)
+        if (queryInfo != null) {
+            def results = HqlQueryTemplate.execute(domainClass.clazz, queryInfo, [max: 1])
+            return results ? results[0] : null
+        }
+
         def getClosure = {
             queryBuilder = delegate
             invokeCriteriaClosure()
@@ -169,6 +185,12 @@ class NamedCriteriaProxy<T> {
 
     T get(id) {
         id = GormConversionUtils.convertValueToType(id, domainClass.identifier.type, conversionService)
+        JpaQueryInfo queryInfo = translateCriteria([{ eq 'id', id }], false, false)
+        if (queryInfo != null) {
+            def results = HqlQueryTemplate.execute(domainClass.clazz, queryInfo, null)
+            return results ? results[0] : null
+        }
+
         def getClosure = {
             queryBuilder = delegate
             invokeCriteriaClosure()
@@ -179,6 +201,11 @@ class NamedCriteriaProxy<T> {
     }
 
     int count(Closure additionalCriteriaClosure = null) {
+        JpaQueryInfo queryInfo = translateCriteria([additionalCriteriaClosure], false, true)
+        if (queryInfo != null) {
+            return HqlQueryTemplate.execute(domainClass.clazz, queryInfo, null)[0] as int
+        }
+
         def countClosure = {
             inCountMethod = true
             queryBuilder = delegate
@@ -284,6 +311,53 @@ class NamedCriteriaProxy<T> {
         proxy
     }
 
+    /**
+     * Translates the named query to HQL, which is built once per shape of the criteria so that Hibernate reuses the
+     * query plan rather than the criteria being translated on every execution
+     *
+     * @param additionalCriteria Criteria closures applied after the named query, null elements are ignored
+     * @param distinct Whether distinct results are requested
+     * @param count Whether to count the results
+     * @return The query or null if the named query has to be executed with the criteria builder
+     */
+    protected JpaQueryInfo translateCriteria(List<Closure> additionalCriteria, boolean distinct, boolean count) {
+        if (previousInChain || untranslatableCriteria.contains(criteriaClosure.getClass())) {
+            return null
+        }
+
+        Closure closure = criteriaClosure
+        if (namedCriteriaParams) {
+            closure = closure.curry(*namedCriteriaParams)
+        }
+        def criteria = new HqlQueryTemplate.StrictCriteria(domainClass.clazz)
+        try {
+            HqlQueryTemplate.StrictCriteria.apply(criteria, closure)
+        }
+        catch (MissingMethodException e) {
+            // uses methods of the criteria builder, such as maxResults or fetchMode, from now on the criteria builder is used
+            untranslatableCriteria << criteriaClosure.getClass()
+            return null
+        }
+        catch (MissingPropertyException e) {
+            untranslatableCriteria << criteriaClosure.getClass()
+            return null
+        }
+
+        // only this execution falls back to the criteria builder if an additional closure can't be translated
+        try {
+            for (Closure additionalClosure in additionalCriteria.findAll()) {
+                HqlQueryTemplate.StrictCriteria.apply(criteria, additionalClosure)
+            }
+        }
+        catch (MissingMethodException e) {
+            return null
+        }
+        catch (MissingPropertyException e) {
+            return null
+        }
+        HqlQueryTemplate.translate(criteria, null, distinct, count)
+    }
+
     protected getPreparedCriteriaClosure(additionalCriteriaClosure = null) {
         def closureClone = criteriaClosure.clone()
         closureClone.resolveStrategy = Closure.DELEGATE_FIRST
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.grails.orm.hibernate.query
+
+import grails.gorm.DetachedCriteria
+
+import org.codehaus.groovy.grails.orm.hibernate.AbstractHibernateSession
+import org.grails.datastore.gorm.query.criteria.DetachedAssociationCriteria
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.model.PersistentProperty
+import org.grails.datastore.mapping.model.types.Association
+import org.grails.datastore.mapping.model.types.ToOne
+import org.grails.datastore.mapping.query.AssociationQuery
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.api.AssociationCriteria
+import org.grails.datastore.mapping.query.api.QueryableCriteria
+import org.grails.datastore.mapping.query.jpa.JpaQueryBuilder
+import org.grails.datastore.mapping.query.jpa.JpaQueryCache
+import org.grails.datastore.mapping.query.jpa.JpaQueryInfo
+import org.springframework.dao.InvalidDataAccessResourceUsageException
+
+/**
+ * A criteria query that is executed as HQL rather than being rebuilt with the Hibernate Criteria API every time.
+ * The criteria are given as a closure using the criteria DSL of {@link DetachedCriteria}, whose parameters are bound
+ * to the values passed on each execution, or as a {@link DetachedCriteria}. Example:
+ *
+ * <pre><code>
+ * def byAuthor = new HqlQueryTemplate(Book, { String author -> eq 'author', author })
+ * byAuthor.list('Stephen King')
+ * </code></pre>
+ *
+ * The HQL is looked up by the shape of the criteria in the {@link JpaQueryCache}, so executions that only differ in
+ * their values share one HQL string and reuse Hibernate's query plan for it. Criteria that can't be expressed in
+ * HQL by the {@link JpaQueryBuilder}, such as subqueries, size criteria or projections, are executed through the
+ * DetachedCriteria instead. Templates are immutable and can be shared between threads.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+class HqlQueryTemplate<T> {
+
+    final Class<T> targetClass
+    private final Closure criteriaClosure
+    private final DetachedCriteria<T> detachedCriteria
+
+    HqlQueryTemplate(Class<T> targetClass, Closure criteria) {
+        this.targetClass = targetClass
+        criteriaClosure = criteria.clone()
+        detachedCriteria = null
+    }
+
+    HqlQueryTemplate(DetachedCriteria<T> criteria) {
+        targetClass = criteria.persistentClass
+        criteriaClosure = null
+        detachedCriteria = criteria
+    }
+
+    /**
+     * Lists the results for the given parameters
+     */
+    List<T> list(Object... params) {
+        list(Collections.emptyMap(), params)
+    }
+
+    /**
+     * Lists the results for the given parameters
+     *
+     * @param args The max and offset arguments
+     * @param params The parameters
+     */
+    List<T> list(Map args, Object... params) {
+        DetachedCriteria<T> criteria = bind(params)
+        JpaQueryInfo queryInfo = translate(criteria, args, false, false)
+        if (queryInfo == null) {
+            return criteria.list(args)
+        }
+        execute(targetClass, queryInfo, paginate(criteria, args))
+    }
+
+    /**
+     * @return The first result for the given parameters or null
+     */
+    T get(Object... params) {
+        DetachedCriteria<T> criteria = bind(params)
+        JpaQueryInfo queryInfo = translate(criteria, null, false, false)
+        if (queryInfo == null) {
+            return criteria.get()
+        }
+        List<T> results = execute(targetClass, queryInfo, paginate(criteria, [max: 1]))
+        results ? results[0] : null
+    }
+
+    /**
+     * @return The number of results for the given parameters
+     */
+    Number count(Object... params) {
+        DetachedCriteria<T> criteria = bind(params)
+        JpaQueryInfo queryInfo = translate(criteria, null, false, true)
+        if (queryInfo == null) {
+            return criteria.count()
+        }
+        (Number)execute(targetClass, queryInfo, null)[0]
+    }
+
+    /**
+     * Binds the given parameters to the criteria
+     *
+     * @return The criteria for the parameters
+     */
+    DetachedCriteria<T> bind(Object... params) {
+        if (criteriaClosure == null) {
+            return detachedCriteria
+        }
+        evaluate(targetClass, criteriaClosure, params)
+    }
+
+    /**
+     * Evaluates the given criteria closure with the given parameters into a new DetachedCriteria
+     */
+    static DetachedCriteria evaluate(Class targetClass, Closure criteriaClosure, Object... params) {
+        DetachedCriteria criteria = new DetachedCriteria(targetClass)
+        Closure closure = criteriaClosure.clone()
+        closure.resolveStrategy = Closure.DELEGATE_FIRST
+        closure.delegate = criteria
+        closure.call(params)
+        criteria
+    }
+
+    /**
+     * Translates the given criteria to HQL
+     *
+     * @param criteria The criteria
+     * @param args The max and offset arguments or null
+     * @param distinct Whether distinct results are requested
+     * @param count Whether to count the results rather than list them
+     * @return The query or null if the criteria can't be translated to equivalent HQL
+     */
+    static JpaQueryInfo translate(DetachedCriteria criteria, Map args, boolean distinct, boolean count) {
+        // where queries are only applied to the criteria when they are executed
+        if (criteria.@lazyQuery != null || criteria.projections || criteria.fetchStrategies) {
+            return null
+        }
+        if (args && !(args.keySet().every { it == 'max' || it == 'offset' })) {
+            return null
+        }
+        if (!count && criteria.orders.any { Query.Order order -> order.property.contains('.') }) {
+            return null
+        }
+        if (!isTranslatable(criteria.criteria, distinct || count)) {
+            return null
+        }
+
+        PersistentEntity entity = criteria.persistentEntity
+        Query.ProjectionList projections = new Query.ProjectionList()
+        if (count) {
+            projections.count()
+        }
+        JpaQueryBuilder builder = new JpaQueryBuilder(entity, criteria.criteria, projections, count ? Collections.emptyList() : criteria.orders)
+        builder.hibernateCompatible = true
+        builder.conversionService = entity.mappingContext.conversionService
+        builder.queryCache = JpaQueryCache.getDefault()
+        try {
+            return builder.buildSelect()
+        }
+        catch (InvalidDataAccessResourceUsageException e) {
+            // criteria not supported by the builder
+            return null
+        }
+    }
+
+    /**
+     * Executes the given query in the current session
+     *
+     * @param targetClass The class queried
+     * @param queryInfo The query
+     * @param args The max and offset arguments or null
+     * @return The results
+     */
+    static List execute(Class targetClass, JpaQueryInfo queryInfo, Map args) {
+        int max = args?.max != null ? args.max as int : -1
+        int offset = args?.offset != null ? args.offset as int : -1
+        targetClass.withDatastoreSession { AbstractHibernateSession session ->
+            session.executeQuery(queryInfo.query, queryInfo.parameters, max, offset)
+        }
+    }
+
+    /**
+     * @return The max and offset arguments, defaulting to those of the criteria
+     */
+    private static Map paginate(DetachedCriteria criteria, Map args) {
+        Map pagination = [max: criteria.@defaultMax, offset: criteria.@defaultOffset]
+        if (args?.max != null) {
+            pagination.max = args.max
+        }
+        if (args?.offset != null) {
+            pagination.offset = args.offset
+        }
+        pagination
+    }
+
+    /**
+     * Whether the HQL built for the given criteria returns the same results as the Hibernate criteria, the HQL selects
+     * distinct instances so joins to collections are only allowed if duplicates aren't expected
+     */
+    private static boolean isTranslatable(List<Query.Criterion> criteria, boolean allowCollectionJoins) {
+        for (Query.Criterion criterion in criteria) {
+            if (criterion instanceof Query.Junction) {
+                if (!isTranslatable(((Query.Junction)criterion).criteria, allowCollectionJoins)) {
+                    return false
+                }
+            }
+            else if (criterion instanceof AssociationQuery || criterion instanceof AssociationCriteria) {
+                Association association = criterion.association
+                if (association == null || (!(association instanceof ToOne) && !allowCollectionJoins)) {
+                    return false
+                }
+                List<Query.Criterion> associationCriteria = criterion instanceof AssociationQuery ?
+                    ((AssociationQuery)criterion).criteria.criteria : ((AssociationCriteria)criterion).criteria
+                if (!isTranslatable(associationCriteria, allowCollectionJoins)) {
+                    return false
+                }
+            }
+            else if (criterion instanceof Query.PropertyNameCriterion) {
+                if (((Query.PropertyNameCriterion)criterion).property.contains('.')) {
+                    return false
+                }
+                if (criterion instanceof Query.In && !((Query.In)criterion).values) {
+                    return false
+                }
+                if (criterion instanceof Query.PropertyCriterion) {
+                    Object value = ((Query.PropertyCriterion)criterion).value
+                    if (value instanceof Closure || value instanceof QueryableCriteria) {
+                        return false
+                    }
+                }
+            }
+        }
+        return true
+    }
+
+    /**
+     * Evaluates criteria closures written for the Hibernate criteria builder, such as named queries. Methods that
+     * DetachedCriteria doesn't share with the criteria builder or that don't modify the criteria in place fail, so that
+     * the caller can fall back to the criteria builder rather than execute a different query.
+     */
+    static class StrictCriteria<T> extends DetachedCriteria<T> {
+
+        StrictCriteria(Class<T> targetClass) {
+            super(targetClass)
+        }
+
+        /**
+         * Evaluates the given criteria closures, in order, into one criteria
+         *
+         * @throws MissingMethodException If the closures use anything but the common criteria methods
+         */
+        static DetachedCriteria evaluate(Class targetClass, List<Closure> criteriaClosures) {
+            StrictCriteria criteria = new StrictCriteria(targetClass)
+            for (Closure criteriaClosure in criteriaClosures) {
+                apply(criteria, criteriaClosure)
+            }
+            criteria
+        }
+
+        /**
+         * Evaluates the given criteria closure into the given criteria
+         *
+         * @throws MissingMethodException If the closure uses anything but the common criteria methods
+         */
+        static void apply(StrictCriteria criteria, Closure criteriaClosure) {
+            Closure closure = criteriaClosure.clone()
+            closure.resolveStrategy = Closure.DELEGATE_ONLY
+            closure.delegate = criteria
+            closure.call()
+        }
+
+        @Override
+        DetachedCriteria<T> build(Closure callable) { unsupported 'build' }
+
+        @Override
+        DetachedCriteria<T> buildLazy(Closure callable) { unsupported 'buildLazy' }
+
+        @Override
+        DetachedCriteria<T> max(int max) { unsupported 'max' }
+
+        @Override
+        DetachedCriteria<T> offset(int offset) { unsupported 'offset' }
+
+        @Override
+        DetachedCriteria<T> sort(String property) { unsupported 'sort' }
+
+        @Override
+        DetachedCriteria<T> sort(String property, String direction) { unsupported 'sort' }
+
+        @Override
+        DetachedCriteria<T> property(String property) { unsupported 'property' }
+
+        @Override
+        DetachedCriteria<T> distinct(String property) { unsupported 'distinct' }
+
+        @Override
+        def propertyMissing(String name) {
+            throw new MissingPropertyException(name, StrictCriteria)
+        }
+
+        @Override
+        def methodMissing(String methodName, args) {
+            PersistentProperty property = persistentEntity.getPropertyByName(methodName)
+            if (!(property instanceof Association) || args?.size() != 1 || !(args[0] instanceof Closure)) {
+                throw new MissingMethodException(methodName, StrictCriteria, args)
+            }
+
+            Association association = (Association)property
+            DetachedAssociationCriteria associationCriteria = new DetachedAssociationCriteria(association.associatedEntity.javaClass, association)
+            add associationCriteria
+            Closure callable = ((Closure)args[0]).clone()
+            callable.resolveStrategy = Closure.DELEGATE_ONLY
+            callable.delegate = associationCriteria
+            callable.call()
+        }
+
+        private DetachedCriteria<T> unsupported(String methodName) {
+            throw new MissingMethodException(methodName, StrictCriteria, [] as Object[])
+        }
+    }
+}
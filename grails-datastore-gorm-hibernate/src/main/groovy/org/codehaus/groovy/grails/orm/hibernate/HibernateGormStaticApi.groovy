@@ -58,6 +58,11 @@ class HibernateGormStaticApi<D> extends AbstractHibernateGormStaticApi<D> {
         builder
     }
 
+    @Override
+    protected AbstractBulkSession createBulkSession(int batchSize) {
+        new HibernateBulkSession(sessionFactory, batchSize)
+    }
+
 
 
 }
@@ -27,13 +27,20 @@ import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.api.QueryableCriteria;
 import org.grails.datastore.mapping.query.jpa.JpaQueryBuilder;
+import org.grails.datastore.mapping.query.jpa.JpaQueryCache;
 import org.grails.datastore.mapping.query.jpa.JpaQueryInfo;
 import org.grails.datastore.mapping.reflect.ClassPropertyFetcher;
 import org.hibernate.Criteria;
+import org.hibernate.FlushMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.EntityEntry;
+import org.hibernate.engine.EntityKey;
+import org.hibernate.engine.PersistenceContext;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.engine.Status;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.proxy.HibernateProxy;
 import org.springframework.orm.hibernate3.HibernateCallback;
 
@@ -85,6 +92,7 @@ public class HibernateSession extends AbstractHibernateSession {
             public Integer doInHibernate(Session session) throws HibernateException, SQLException {
                 JpaQueryBuilder builder = new JpaQueryBuilder(criteria);
                 builder.setHibernateCompatible(true);
+                builder.setQueryCache(JpaQueryCache.getDefault());
                 JpaQueryInfo jpaQueryInfo = builder.buildDelete();
 
                 org.hibernate.Query query = session.createQuery(jpaQueryInfo.getQuery());
@@ -113,6 +121,7 @@ public class HibernateSession extends AbstractHibernateSession {
             public Integer doInHibernate(Session session) throws HibernateException, SQLException {
                 JpaQueryBuilder builder = new JpaQueryBuilder(criteria);
                 builder.setHibernateCompatible(true);
+                builder.setQueryCache(JpaQueryCache.getDefault());
                 JpaQueryInfo jpaQueryInfo = builder.buildUpdate(properties);
 
                 org.hibernate.Query query = session.createQuery(jpaQueryInfo.getQuery());
@@ -128,19 +137,73 @@ public class HibernateSession extends AbstractHibernateSession {
         });
     }
 
+    @Override
+    public List executeQuery(final String hql, final List parameters, final int max, final int offset) {
+        return getHibernateTemplate().execute(new HibernateCallback<List>() {
+            public List doInHibernate(Session session) throws HibernateException, SQLException {
+                org.hibernate.Query query = session.createQuery(hql);
+                getHibernateTemplate().applySettings(query);
+                if (parameters != null) {
+                    for (int i = 0, count = parameters.size(); i < count; i++) {
+                        query.setParameter(i, parameters.get(i));
+                    }
+                }
+                if (max > -1) {
+                    query.setMaxResults(max);
+                }
+                if (offset > -1) {
+                    query.setFirstResult(offset);
+                }
+                return query.list();
+            }
+        });
+    }
+
     public List retrieveAll(final Class type, final Iterable keys) {
-        final PersistentEntity persistentEntity = getMappingContext().getPersistentEntity(type.getName());
         return getHibernateTemplate().execute(new HibernateCallback<List>() {
             public List doInHibernate(org.hibernate.Session session) throws HibernateException, SQLException {
-                Criteria criteria = session.createCriteria(type);
-                getHibernateTemplate().applySettings(criteria);
-                return criteria.add(
-                        Restrictions.in(persistentEntity.getIdentity().getName(), getIterableAsCollection(keys)))
-                        .list();
+                return retrieveAllInBatches(session, type, keys);
             }
         });
     }
 
+    @Override
+    protected Object getFromPersistenceContext(org.hibernate.Session session, Class type, Serializable id) {
+        if (!(session instanceof SessionImplementor)) {
+            return null;
+        }
+        SessionImplementor sessionImplementor = (SessionImplementor)session;
+        EntityPersister persister = sessionImplementor.getFactory().getEntityPersister(type.getName());
+        PersistenceContext persistenceContext = sessionImplementor.getPersistenceContext();
+        Object instance = persistenceContext.getEntity(new EntityKey(id, persister, sessionImplementor.getEntityMode()));
+        if (instance == null || !type.isInstance(instance)) {
+            return null;
+        }
+        EntityEntry entry = persistenceContext.getEntry(instance);
+        if (entry == null || entry.getStatus() == Status.DELETED || entry.getStatus() == Status.GONE) {
+            return null;
+        }
+        return instance;
+    }
+
+    @Override
+    protected List loadBatchInNewSession(Class type, String idName, List<Serializable> ids) {
+        org.hibernate.Session session = getHibernateTemplate().getSessionFactory().openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            return loadBatch(session, type, idName, ids);
+        }
+        finally {
+            session.close();
+        }
+    }
+
+    @Override
+    protected void applySettings(Criteria criteria) {
+        getHibernateTemplate().applySettings(criteria);
+    }
+
     public Query createQuery(Class type) {
         final PersistentEntity persistentEntity = getMappingContext().getPersistentEntity(type.getName());
         final Criteria criteria = getHibernateTemplate().getSessionFactory().getCurrentSession().createCriteria(type);
@@ -113,14 +113,9 @@ public class DefaultGrailsDomainConfiguration extends Configuration implements G
 
     public static void configureDomainBinder(GrailsApplication grailsApplication, Set<GrailsDomainClass> domainClasses) {
         Object defaultMapping = Eval.x(grailsApplication, "x.config?.grails?.gorm?.default?.mapping");
+        Object parallelism = grailsApplication.getFlatConfig().get(GrailsDomainBinder.CONFIG_PROPERTY_MAPPING_PARALLELISM);
         // do Grails class configuration
-        for (GrailsDomainClass domainClass : domainClasses) {
-            if (defaultMapping instanceof Closure) {
-                binder.evaluateMapping(domainClass, (Closure<?>)defaultMapping);
-            }
-            else {
-                binder.evaluateMapping(domainClass);
-            }
-        }
+        binder.evaluateMappings(domainClasses, defaultMapping instanceof Closure ? (Closure<?>)defaultMapping : null,
+                parallelism instanceof Number ? ((Number)parallelism).intValue() : 1);
     }
 }
@@ -554,12 +554,8 @@ public class GrailsHibernateUtil {
 
     public static List<String> getDatasourceNames(GrailsDomainClass domainClass) {
         // Mappings won't have been built yet when this is called from
-        // HibernatePluginSupport.doWithSpring  so do a temporary evaluation but don't cache it
-        Mapping mapping = isMappedWithHibernate(domainClass) ? binder .evaluateMapping(domainClass, null, false) : null;
-        if (mapping == null) {
-            mapping = new Mapping();
-        }
-        return mapping.getDatasources();
+        // HibernatePluginSupport.doWithSpring so the binder evaluates them without caching the mapping
+        return isMappedWithHibernate(domainClass) ? binder.getDatasourceNames(domainClass) : new Mapping().getDatasources();
     }
 
     public static boolean isMappedWithHibernate(GrailsDomainClass domainClass) {
@@ -37,9 +37,10 @@ import org.codehaus.groovy.grails.orm.hibernate.cfg.Mapping;
 import org.codehaus.groovy.grails.orm.hibernate.metaclass.AbstractDynamicPersistentMethod;
 import org.codehaus.groovy.grails.orm.hibernate.metaclass.AbstractSavePersistentMethod;
 import org.codehaus.groovy.grails.orm.hibernate.metaclass.ValidatePersistentMethod;
-import org.codehaus.groovy.runtime.DefaultGroovyMethods;
 import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
 import org.grails.datastore.gorm.support.BeforeValidateHelper;
+import org.grails.datastore.gorm.support.EventMethodInvoker;
+import org.grails.datastore.gorm.support.TimestampFactory;
 import org.grails.datastore.mapping.engine.event.ValidationEvent;
 import org.hibernate.EntityMode;
 import org.hibernate.FlushMode;
@@ -104,10 +105,13 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
     boolean shouldTimestamp = false;
     MetaProperty dateCreatedProperty;
     MetaProperty lastUpdatedProperty;
+    TimestampFactory dateCreatedFactory;
+    TimestampFactory lastUpdatedFactory;
     MetaClass domainMetaClass;
     boolean failOnErrorEnabled = false;
     MetaProperty errorsProperty;
     Map validateParams;
+    Object[] validateArguments;
     MetaMethod validateMethod;
 
     public ClosureEventListener(Class<?> domainClazz, boolean failOnError, List failOnErrorPackages) {
@@ -118,6 +122,12 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
             Mapping m = new GrailsDomainBinder().getMapping(domainClazz);
             shouldTimestamp = m == null || m.isAutoTimestamp();
         }
+        if (dateCreatedProperty != null) {
+            dateCreatedFactory = TimestampFactory.forType(dateCreatedProperty.getType());
+        }
+        if (lastUpdatedProperty != null) {
+            lastUpdatedFactory = TimestampFactory.forType(lastUpdatedProperty.getType());
+        }
 
         saveOrUpdateCaller = buildCaller(domainClazz, ClosureEventTriggeringInterceptor.ONLOAD_SAVE);
         beforeInsertCaller = buildCaller(domainClazz, ClosureEventTriggeringInterceptor.BEFORE_INSERT_EVENT);
@@ -140,6 +150,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
 
         validateParams = new HashMap();
         validateParams.put(ValidatePersistentMethod.ARGUMENT_DEEP_VALIDATE, Boolean.FALSE);
+        validateArguments = new Object[] { validateParams };
 
         errorsProperty = domainMetaClass.getMetaProperty(AbstractDynamicPersistentMethod.ERRORS_PROPERTY);
 
@@ -150,8 +161,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
     private EventTriggerCaller buildCaller(Class<?> domainClazz, String event) {
         Method method = ReflectionUtils.findMethod(domainClazz, event);
         if (method != null) {
-            ReflectionUtils.makeAccessible(method);
-            return new MethodCaller(method);
+            return new MethodCaller(EventMethodInvoker.create(method));
         }
 
         Field field = ReflectionUtils.findField(domainClazz, event);
@@ -196,13 +206,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
             return;
         }
 
-        doWithManualSession(event, new Closure(this) {
-            @Override
-            public Object call() {
-                preLoadEventCaller.call(event.getEntity());
-                return null;
-            }
-        });
+        callWithManualSession(event, preLoadEventCaller, event.getEntity());
     }
 
     public void onPostLoad(final PostLoadEvent event) {
@@ -210,13 +214,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
             return;
         }
 
-       doWithManualSession(event, new Closure(this) {
-            @Override
-            public Object call() {
-                postLoadEventListener.call(event.getEntity());
-                return null;
-            }
-        });
+        callWithManualSession(event, postLoadEventListener, event.getEntity());
     }
 
     public void onPostInsert(PostInsertEvent event) {
@@ -226,13 +224,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
             return;
         }
 
-        doWithManualSession(event, new Closure(this) {
-            @Override
-            public Object call() {
-                postInsertEventListener.call(entity);
-                return null;
-            }
-        });
+        callWithManualSession(event, postInsertEventListener, entity);
     }
 
     public void onPostUpdate(PostUpdateEvent event) {
@@ -242,13 +234,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
             return;
         }
 
-        doWithManualSession(event, new Closure(this) {
-            @Override
-            public Object call() {
-                postUpdateEventListener.call(entity);
-                return null;
-            }
-        });
+        callWithManualSession(event, postUpdateEventListener, entity);
     }
 
     public void onPostDelete(PostDeleteEvent event) {
@@ -258,13 +244,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
             return;
         }
 
-        doWithManualSession(event, new Closure(this) {
-            @Override
-            public Object call() {
-                postDeleteEventListener.call(entity);
-                return null;
-            }
-        });
+        callWithManualSession(event, postDeleteEventListener, entity);
     }
 
     public boolean onPreDelete(final PreDeleteEvent event) {
@@ -272,12 +252,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
             return false;
         }
 
-        return doWithManualSession(event, new Closure<Boolean>(this) {
-            @Override
-            public Boolean call() {
-                return preDeleteEventListener.call(event.getEntity());
-            }
-        });
+        return callWithManualSession(event, preDeleteEventListener, event.getEntity());
     }
 
     public boolean onPreUpdate(final PreUpdateEvent event) {
@@ -291,12 +266,12 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
                     synchronizePersisterState(entity, event.getPersister(), event.getState());
                 }
                 if (lastUpdatedProperty != null && shouldTimestamp) {
-                    Object now = DefaultGroovyMethods.newInstance(lastUpdatedProperty.getType(), new Object[] { System.currentTimeMillis() });
+                    Object now = lastUpdatedFactory.createTimestamp(System.currentTimeMillis());
                     event.getState()[ArrayUtils.indexOf(event.getPersister().getPropertyNames(), GrailsDomainClassProperty.LAST_UPDATED)] = now;
                     lastUpdatedProperty.setProperty(entity, now);
                 }
                 if (!AbstractSavePersistentMethod.isAutoValidationDisabled(entity)
-                        && !DefaultTypeTransformation.castToBoolean(validateMethod.invoke(entity, new Object[] { validateParams }))) {
+                        && !DefaultTypeTransformation.castToBoolean(validateMethod.invoke(entity, validateArguments))) {
                     evict = true;
                     if (failOnErrorEnabled) {
                         Errors errors = (Errors) errorsProperty.getProperty(entity);
@@ -309,6 +284,17 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
         });
     }
 
+    private boolean callWithManualSession(AbstractEvent event, EventTriggerCaller caller, Object entity) {
+        Session session = event.getSession();
+        FlushMode current = session.getFlushMode();
+        try {
+            session.setFlushMode(FlushMode.MANUAL);
+            return caller.call(entity);
+        } finally {
+            session.setFlushMode(current);
+        }
+    }
+
     private <T> T doWithManualSession(AbstractEvent event, Closure<T> callable) {
         Session session = event.getSession();
         FlushMode current = session.getFlushMode();
@@ -335,12 +321,12 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
                 if (shouldTimestamp) {
                     long time = System.currentTimeMillis();
                     if (dateCreatedProperty != null) {
-                        Object now = DefaultGroovyMethods.newInstance(dateCreatedProperty.getType(), new Object[] { time });
+                        Object now = dateCreatedFactory.createTimestamp(time);
                         dateCreatedProperty.setProperty(entity, now);
                         synchronizeState = true;
                     }
                     if (lastUpdatedProperty != null) {
-                        Object now = DefaultGroovyMethods.newInstance(lastUpdatedProperty.getType(), new Object[] { time });
+                        Object now = lastUpdatedFactory.createTimestamp(time);
                         lastUpdatedProperty.setProperty(entity, now);
                         synchronizeState = true;
                     }
@@ -352,8 +338,7 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
 
                 boolean evict = false;
                 if (!AbstractSavePersistentMethod.isAutoValidationDisabled(entity)
-                        && !DefaultTypeTransformation.castToBoolean(validateMethod.invoke(entity,
-                                new Object[] { validateParams }))) {
+                        && !DefaultTypeTransformation.castToBoolean(validateMethod.invoke(entity, validateArguments))) {
                     evict = true;
                     if (failOnErrorEnabled) {
                         Errors errors = (Errors) errorsProperty.getProperty(entity);
@@ -384,15 +369,15 @@ public class ClosureEventListener implements SaveOrUpdateEventListener,
     }
 
     private static class MethodCaller extends EventTriggerCaller {
-        Method method;
+        EventMethodInvoker invoker;
 
-        MethodCaller(Method method) {
-            this.method = method;
+        MethodCaller(EventMethodInvoker invoker) {
+            this.invoker = invoker;
         }
 
         @Override
         public boolean call(Object entity) {
-            Object retval = ReflectionUtils.invokeMethod(method, entity);
+            Object retval = invoker.invoke(entity);
             return resolveReturnValue(retval);
         }
     }
@@ -0,0 +1,126 @@
+package grails.gorm.tests
+
+import grails.persistence.Entity
+
+import org.codehaus.groovy.grails.orm.hibernate.AbstractBulkSession
+
+/**
+ * Tests for writing instances through a bulk session
+ */
+class BulkSessionSpec extends GormDatastoreSpec {
+
+    void "Test saveAll with batch inserts new instances"() {
+        given:"Some new instances"
+            def books = ['One', 'Two', 'Three'].collect { new BulkBook(title: it) }
+
+        when:"They are saved as a batch"
+            def ids = BulkBook.saveAll(books, batch: true, batchSize: 2)
+            session.clear()
+
+        then:"They are inserted with initial versions and timestamps"
+            ids.size() == 3
+            ids.every { it != null }
+            books*.version == [0L, 0L, 0L]
+            BulkBook.count() == 3
+            BulkBook.get(ids[0]).title == 'One'
+            BulkBook.get(ids[0]).version == 0
+            BulkBook.get(ids[0]).dateCreated != null
+    }
+
+    void "Test saveAll with batch updates persisted instances"() {
+        given:"Some instances saved as a batch"
+            def books = ['One', 'Two'].collect { new BulkBook(title: it) }
+            BulkBook.saveAll(books, batch: true)
+
+        when:"They are changed and saved as a batch again"
+            books.each { it.title += ' Updated' }
+            def ids = BulkBook.saveAll(books, batch: true)
+            session.clear()
+
+        then:"They are updated rather than inserted again"
+            ids == books*.id
+            BulkBook.count() == 2
+            BulkBook.get(ids[0]).title == 'One Updated'
+            BulkBook.get(ids[0]).version == 1
+    }
+
+    void "Test saveAll with batch and assigned identifiers"() {
+        when:"New instances with assigned identifiers are saved as a batch"
+            BulkCode.saveAll([new BulkCode(code: 'A', name: 'First'), new BulkCode(code: 'B', name: 'Second')], batch: true)
+            session.clear()
+
+        then:"They are inserted"
+            BulkCode.count() == 2
+
+        when:"An instance with the identifier of a persisted instance is saved as a batch"
+            BulkCode.saveAll([new BulkCode(code: 'A', name: 'Changed'), new BulkCode(code: 'C', name: 'Third')], batch: true)
+            session.clear()
+
+        then:"The persisted instance is updated and the new one inserted"
+            BulkCode.count() == 3
+            BulkCode.get('A').name == 'Changed'
+
+        when:"Instances are saved with the insert argument"
+            BulkCode.saveAll([new BulkCode(code: 'D', name: 'Fourth')], batch: true, insert: true)
+            session.clear()
+
+        then:"They are inserted"
+            BulkCode.get('D').name == 'Fourth'
+    }
+
+    void "Test withBulkSession commits the writes"() {
+        when:"Instances are written with a bulk session"
+            def result = BulkBook.withBulkSession(batchSize: 10) { AbstractBulkSession bulk ->
+                assert bulk.batchSize == 10
+                def kept = new BulkBook(title: 'Kept')
+                bulk.insert(kept)
+                def deleted = new BulkBook(title: 'Deleted')
+                bulk.insert(deleted)
+                bulk.delete(deleted)
+                kept.id
+            }
+            session.clear()
+
+        then:"They are committed"
+            BulkBook.count() == 1
+            BulkBook.get(result).title == 'Kept'
+    }
+
+    void "Test withBulkSession rolls back when the closure fails"() {
+        when:"The closure fails after writing an instance"
+            BulkBook.withBulkSession { AbstractBulkSession bulk ->
+                bulk.insert(new BulkBook(title: 'Lost'))
+                bulk.flush()
+                throw new IllegalStateException('Failed')
+            }
+
+        then:"Nothing is written"
+            thrown IllegalStateException
+            BulkBook.count() == 0
+    }
+
+    @Override
+    List getDomainClasses() {
+        [BulkBook, BulkCode]
+    }
+}
+
+@Entity
+class BulkBook {
+    Long id
+    Long version
+    String title
+    Date dateCreated
+    Date lastUpdated
+}
+
+@Entity
+class BulkCode {
+    String code
+    String name
+
+    static mapping = {
+        id name: 'code', generator: 'assigned'
+        version false
+    }
+}
@@ -0,0 +1,127 @@
+package grails.gorm.tests
+
+import grails.persistence.Entity
+
+import java.sql.Timestamp
+
+/**
+ * Tests that the event methods of domain classes are invoked and the timestamps set when writing with Hibernate
+ */
+class ClosureEventListenerSpec extends GormDatastoreSpec {
+
+    void "Test event methods are invoked and timestamps set on insert and load"() {
+        given:"No events yet"
+            CallbackEvents.calls.clear()
+
+        when:"An instance is saved"
+            def book = new CallbackBook(title: 'One')
+            book.save(flush: true)
+
+        then:"The public beforeInsert method is invoked and the timestamps are set with their types"
+            CallbackEvents.calls == ['beforeInsert']
+            book.insertedBy == 'beforeInsert'
+            book.dateCreated instanceof Timestamp
+            book.lastUpdated instanceof Long
+            book.dateCreated.time == book.lastUpdated
+
+        when:"The instance is loaded"
+            session.clear()
+            CallbackEvents.calls.clear()
+            book = CallbackBook.get(book.id)
+
+        then:"The afterLoad method is invoked and the changes made by beforeInsert were written"
+            CallbackEvents.calls == ['afterLoad']
+            book.insertedBy == 'beforeInsert'
+            book.updatedBy == null
+            book.dateCreated.time == book.lastUpdated
+    }
+
+    void "Test a private event method is invoked on update"() {
+        given:"A saved instance"
+            def book = new CallbackBook(title: 'One').save(flush: true)
+            long created = book.lastUpdated
+            CallbackEvents.calls.clear()
+
+        when:"It is changed"
+            sleep 10
+            book.title = 'Two'
+            book.save(flush: true)
+
+        then:"The private beforeUpdate method is invoked and lastUpdated is changed"
+            CallbackEvents.calls == ['beforeUpdate']
+            book.lastUpdated > created
+
+        when:"The instance is loaded"
+            session.clear()
+            book = CallbackBook.get(book.id)
+
+        then:"The changes made by beforeUpdate were written"
+            book.title == 'Two'
+            book.updatedBy == 'beforeUpdate'
+            book.lastUpdated > created
+    }
+
+    void "Test an event method returning false vetoes the delete"() {
+        given:"Two saved instances"
+            def kept = new CallbackBook(title: 'Kept').save(flush: true)
+            def removed = new CallbackBook(title: 'Removed').save(flush: true)
+            CallbackEvents.calls.clear()
+
+        when:"Both are deleted"
+            kept.delete(flush: true)
+            removed.delete(flush: true)
+            session.clear()
+
+        then:"The beforeDelete method of the instance returning false vetoes its delete"
+            CallbackEvents.calls == ['beforeDelete', 'beforeDelete']
+            CallbackBook.get(kept.id) != null
+            CallbackBook.get(removed.id) == null
+    }
+
+    @Override
+    List getDomainClasses() {
+        [CallbackBook]
+    }
+}
+
+/**
+ * Records the event methods invoked
+ */
+class CallbackEvents {
+    static final List<String> calls = []
+}
+
+@Entity
+class CallbackBook {
+    Long id
+    Long version
+    String title
+    String insertedBy
+    String updatedBy
+    Timestamp dateCreated
+    Long lastUpdated
+
+    static constraints = {
+        insertedBy nullable: true
+        updatedBy nullable: true
+    }
+
+    def beforeInsert() {
+        CallbackEvents.calls << 'beforeInsert'
+        insertedBy = 'beforeInsert'
+    }
+
+    private beforeUpdate() {
+        CallbackEvents.calls << 'beforeUpdate'
+        updatedBy = 'beforeUpdate'
+    }
+
+    def afterLoad() {
+        CallbackEvents.calls << 'afterLoad'
+    }
+
+    def beforeDelete() {
+        CallbackEvents.calls << 'beforeDelete'
+        title != 'Kept'
+    }
+}
@@ -0,0 +1,198 @@
+package grails.gorm.tests
+
+import grails.gorm.DetachedCriteria
+import grails.persistence.Entity
+
+import org.codehaus.groovy.grails.orm.hibernate.cfg.NamedCriteriaProxy
+import org.codehaus.groovy.grails.orm.hibernate.query.HqlQueryTemplate
+
+/**
+ * Tests that criteria executed as HQL return the same results as the criteria builder
+ */
+class HqlQueryTemplateSpec extends GormDatastoreSpec {
+
+    void "Test named queries executed as HQL return the same results as the criteria builder"() {
+        given:"Some authors"
+            createAuthors()
+
+        expect:"The named queries return what the criteria builder returns"
+            names(NamedQueryAuthor.olderThan(30).list()) == names(NamedQueryAuthor.withCriteria { gt 'age', 30 })
+            names(NamedQueryAuthor.olderThan(30).listDistinct()) == names(NamedQueryAuthor.withCriteria { gt 'age', 30 })
+            NamedQueryAuthor.olderThan(30).count() == NamedQueryAuthor.createCriteria().count { gt 'age', 30 }
+            NamedQueryAuthor.olderThan(50).get().name == 'Carl'
+            NamedQueryAuthor.olderThan(50).get(NamedQueryAuthor.findByName('Bob').id) == null
+            NamedQueryAuthor.olderThan(30).get(NamedQueryAuthor.findByName('Bob').id).name == 'Bob'
+            names(NamedQueryAuthor.olderThan(30).list { lt 'age', 50 }) == ['Bob']
+            NamedQueryAuthor.byBookTitle('Second').count() == NamedQueryAuthor.createCriteria().count { books { eq 'title', 'Second' } }
+            names(NamedQueryAuthor.byBookTitle('Second').listDistinct()) == ['Alice']
+    }
+
+    void "Test is empty and is not empty are executed as HQL"() {
+        given:"Some authors"
+            createAuthors()
+
+        expect:"The named queries return what the criteria builder returns"
+            names(NamedQueryAuthor.withBooks.list()) == names(NamedQueryAuthor.withCriteria { isNotEmpty 'books' })
+            names(NamedQueryAuthor.withBooks.list()) == ['Alice', 'Bob']
+            names(NamedQueryAuthor.withoutBooks.list()) == names(NamedQueryAuthor.withCriteria { isEmpty 'books' })
+            names(NamedQueryAuthor.withoutBooks.list()) == ['Carl']
+            NamedQueryAuthor.withBooks.count() == 2
+    }
+
+    void "Test named query that uses criteria builder methods falls back to the criteria builder"() {
+        given:"Some authors"
+            createAuthors()
+
+        when:"A named query using criteria builder only methods is executed"
+            def results = NamedQueryAuthor.youngest.list()
+
+        then:"The criteria builder executes it and it isn't translated again"
+            names(results) == ['Alice']
+            NamedCriteriaProxy.untranslatableCriteria.contains(NamedQueryAuthor.youngest.@criteriaClosure.getClass())
+    }
+
+    void "Test additional criteria that can't be translated don't stop the named query being translated"() {
+        given:"Some authors"
+            createAuthors()
+
+        when:"A named query is executed with an additional closure using criteria builder only methods"
+            def results = NamedQueryAuthor.olderThan(30).list {
+                maxResults 1
+            }
+
+        then:"The criteria builder executes that query only"
+            results.size() == 1
+            !NamedCriteriaProxy.untranslatableCriteria.contains(NamedQueryAuthor.olderThan.@criteriaClosure.getClass())
+
+        when:"The named query is executed without it"
+            results = NamedQueryAuthor.olderThan(30).list()
+
+        then:"All results are returned"
+            names(results) == ['Bob', 'Carl']
+    }
+
+    void "Test compiled query closure"() {
+        given:"Some authors and a compiled query"
+            createAuthors()
+            def query = NamedQueryAuthor.compileQuery { String name -> eq 'name', name }
+
+        expect:"Each execution binds its own parameters"
+            names(query.list('Alice')) == ['Alice']
+            names(query.list('Bob')) == ['Bob']
+            query.get('Carl').name == 'Carl'
+            query.get('Nobody') == null
+            query.count('Bob') == 1
+    }
+
+    void "Test compiled query detached criteria with pagination"() {
+        given:"Some authors and a compiled query"
+            createAuthors()
+            def criteria = new DetachedCriteria(NamedQueryAuthor).build {
+                gt 'age', 10
+                order 'name'
+            }
+            def query = NamedQueryAuthor.compileQuery(criteria)
+
+        expect:"The results are those of the detached criteria"
+            query.list()*.name == criteria.list()*.name
+            query.list(max: 1, offset: 1)*.name == ['Bob']
+            query.count() == criteria.count()
+    }
+
+    void "Test criteria that can't be translated to HQL"() {
+        given:"A projection"
+            def projection = new DetachedCriteria(NamedQueryAuthor).build {
+                eq 'name', 'Alice'
+            }.property('name')
+            def simple = new DetachedCriteria(NamedQueryAuthor).build {
+                eq 'name', 'Alice'
+            }
+
+        expect:"Only the criteria without projections are translated"
+            HqlQueryTemplate.translate(projection, null, false, false) == null
+            HqlQueryTemplate.translate(simple, null, false, false).parameters == ['Alice']
+            HqlQueryTemplate.translate(simple, [sort: 'name'], false, false) == null
+    }
+
+    void "Test strict criteria reject criteria builder only methods"() {
+        when:"A closure using the criteria builder is evaluated"
+            HqlQueryTemplate.StrictCriteria.evaluate(NamedQueryAuthor, [{ maxResults 1 }])
+
+        then:"It fails"
+            thrown MissingMethodException
+
+        when:"A closure using an unknown property is evaluated"
+            HqlQueryTemplate.StrictCriteria.evaluate(NamedQueryAuthor, [{ eq 'name', unknown }])
+
+        then:"It fails"
+            thrown MissingPropertyException
+
+        when:"A closure using common criteria is evaluated"
+            def criteria = HqlQueryTemplate.StrictCriteria.evaluate(NamedQueryAuthor, [{ eq 'name', 'Alice' }, { books { eq 'title', 'First' } }])
+
+        then:"All criteria are added"
+            criteria.criteria.size() == 2
+    }
+
+    private void createAuthors() {
+        def alice = new NamedQueryAuthor(name: 'Alice', age: 20)
+        alice.addToBooks(title: 'First')
+        alice.addToBooks(title: 'Second')
+        alice.save()
+        def bob = new NamedQueryAuthor(name: 'Bob', age: 40)
+        bob.addToBooks(title: 'Second')
+        bob.save()
+        new NamedQueryAuthor(name: 'Carl', age: 60).save(flush: true)
+        session.clear()
+    }
+
+    private List<String> names(List authors) {
+        authors*.name.sort()
+    }
+
+    @Override
+    List getDomainClasses() {
+        [NamedQueryAuthor, NamedQueryBook]
+    }
+}
+
+@Entity
+class NamedQueryAuthor {
+    Long id
+    Long version
+    String name
+    Integer age
+    Set books
+
+    static hasMany = [books: NamedQueryBook]
+
+    static namedQueries = {
+        olderThan { int age ->
+            gt 'age', age
+        }
+        byBookTitle { String title ->
+            books {
+                eq 'title', title
+            }
+        }
+        withBooks {
+            isNotEmpty 'books'
+        }
+        withoutBooks {
+            isEmpty 'books'
+        }
+        youngest {
+            order 'age'
+            maxResults 1
+        }
+    }
+}
+
+@Entity
+class NamedQueryBook {
+    Long id
+    Long version
+    String title
+
+    static belongsTo = [author: NamedQueryAuthor]
+}
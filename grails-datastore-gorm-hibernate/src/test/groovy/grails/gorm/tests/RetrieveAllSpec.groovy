@@ -0,0 +1,153 @@
+package grails.gorm.tests
+
+import grails.persistence.Entity
+
+import org.hibernate.Hibernate
+import org.springframework.transaction.support.DefaultTransactionDefinition
+
+/**
+ * Tests that retrieveAll loads instances in batches and returns them in the order of the identifiers
+ */
+class RetrieveAllSpec extends GormDatastoreSpec {
+
+    void cleanup() {
+        session.datastore.retrieveAllBatchSize = 0
+        session.datastore.retrieveAllParallelism = 0
+    }
+
+    void "Test instances are returned in the order of the identifiers"() {
+        given:"Some books loaded in batches"
+            def ids = createBooks(5)
+            session.datastore.retrieveAllBatchSize = 2
+            session.clear()
+
+        when:"They are retrieved in another order with missing and duplicate identifiers"
+            def books = session.retrieveAll(RetrievedBook, [ids[3], -1L, ids[0], ids[3], ids[4], null, ids[1]])
+
+        then:"They are returned in the order of the identifiers with null for missing ones"
+            books.size() == 7
+            books*.title == ['Book 3', null, 'Book 0', 'Book 3', 'Book 4', null, 'Book 1']
+            books[0].is(books[3])
+    }
+
+    void "Test instances in the session are used as they are"() {
+        given:"A book loaded in the session and changed"
+            def ids = createBooks(3)
+            session.clear()
+            def loaded = RetrievedBook.get(ids[1])
+            loaded.title = 'Changed'
+
+        when:"The books are retrieved"
+            def books = session.retrieveAll(RetrievedBook, ids.reverse())
+
+        then:"The loaded instance is returned"
+            books*.title == ['Book 2', 'Changed', 'Book 0']
+            books[1].is(loaded)
+    }
+
+    void "Test identifiers are converted to the identifier type"() {
+        given:"Some books"
+            def ids = createBooks(2)
+            session.clear()
+
+        when:"They are retrieved with string identifiers"
+            def books = session.retrieveAll(RetrievedBook, ids.collect { it.toString() })
+
+        then:"They are found"
+            books*.title == ['Book 0', 'Book 1']
+    }
+
+    void "Test batches are loaded concurrently in read-only sessions"() {
+        given:"Some committed books and a read-only session"
+            def ids = createBooks(5)
+            setupClass.transactionManager.commit setupClass.transactionStatus
+            setupClass.transactionStatus = setupClass.transactionManager.getTransaction(new DefaultTransactionDefinition())
+            session.datastore.retrieveAllBatchSize = 2
+            session.datastore.retrieveAllParallelism = 2
+            def nativeSession = session.datastore.sessionFactory.currentSession
+            nativeSession.clear()
+            nativeSession.defaultReadOnly = true
+
+        when:"They are retrieved with missing and duplicate identifiers"
+            def books = session.retrieveAll(RetrievedBook, [ids[4], ids[2], -1L, ids[2], ids[0], ids[1], ids[3]])
+
+        then:"They are returned in the order of the identifiers and attached read-only to the session"
+            books*.title == ['Book 4', 'Book 2', null, 'Book 2', 'Book 0', 'Book 1', 'Book 3']
+            books[1].is(books[3])
+            nativeSession.contains(books[0])
+            nativeSession.isReadOnly(books[0])
+    }
+
+    void "Test lazy associations of instances loaded concurrently are loaded by the session"() {
+        given:"Some committed books with authors and a read-only session"
+            def ids = createBooks(4, true)
+            setupClass.transactionManager.commit setupClass.transactionStatus
+            setupClass.transactionStatus = setupClass.transactionManager.getTransaction(new DefaultTransactionDefinition())
+            session.datastore.retrieveAllBatchSize = 2
+            session.datastore.retrieveAllParallelism = 2
+            def nativeSession = session.datastore.sessionFactory.currentSession
+            nativeSession.clear()
+            nativeSession.defaultReadOnly = true
+
+        when:"They are retrieved"
+            def books = session.retrieveAll(RetrievedBook, ids)
+
+        then:"Their authors are loaded on access"
+            !Hibernate.isInitialized(books[0].@author)
+            books*.author*.name == ['Author 0', 'Author 1', 'Author 2', 'Author 3']
+            nativeSession.contains(books[3].author)
+    }
+
+    void "Test batches are loaded in the session once the executor was shut down"() {
+        given:"Some books and an executor that was shut down"
+            def ids = createBooks(5)
+            session.datastore.retrieveAllBatchSize = 2
+            session.datastore.retrieveAllParallelism = 2
+            def nativeSession = session.datastore.sessionFactory.currentSession
+            nativeSession.clear()
+            nativeSession.defaultReadOnly = true
+            session.datastore.retrieveAllExecutor.shutdown()
+
+        when:"They are retrieved"
+            def books = session.retrieveAll(RetrievedBook, ids.reverse())
+
+        then:"They are loaded by the session"
+            books*.title == ['Book 4', 'Book 3', 'Book 2', 'Book 1', 'Book 0']
+
+        cleanup:
+            nativeSession.defaultReadOnly = false
+    }
+
+    private List<Long> createBooks(int count, boolean withAuthors = false) {
+        def ids = (0..<count).collect {
+            def author = withAuthors ? new RetrievedAuthor(name: "Author $it").save() : null
+            new RetrievedBook(title: "Book $it", author: author).save().id
+        }
+        session.flush()
+        ids
+    }
+
+    @Override
+    List getDomainClasses() {
+        [RetrievedBook, RetrievedAuthor]
+    }
+}
+
+@Entity
+class RetrievedBook {
+    Long id
+    Long version
+    String title
+    RetrievedAuthor author
+
+    static constraints = {
+        author nullable: true
+    }
+}
+
+@Entity
+class RetrievedAuthor {
+    Long id
+    Long version
+    String name
+}
@@ -38,6 +38,23 @@ class SessionFactoryProxySpec extends Specification {
             eventListeners != null
     }
 
+    void "Ensure that SessionFactoryProxy switches to a SessionFactory replaced in the holder"() {
+        given:
+            def ctx = applicationContext
+            def sessionFactoryHolder = ctx.getBean("sessionFactoryHolder")
+            def sessionFactoryProxy = ctx.getBean("sessionFactoryProxy")
+            def originalSessionFactory = sessionFactoryProxy.currentSessionFactory
+            def reloadedSessionFactory = ctx.getBean("reloadedSessionFactory")
+
+        when:
+            sessionFactoryHolder.sessionFactory = reloadedSessionFactory
+
+        then:
+            !sessionFactoryProxy.currentSessionFactory.is(originalSessionFactory)
+            sessionFactoryProxy.currentSessionFactory.is(reloadedSessionFactory)
+            reloadedSessionFactory.@currentSessionContext.@sessionFactory == sessionFactoryProxy
+    }
+
     ApplicationContext getApplicationContext() {
         BeanBuilder bb = new BeanBuilder()
         bb.beans {
@@ -48,6 +65,10 @@ class SessionFactoryProxySpec extends Specification {
                 }
             }
 
+            reloadedSessionFactory(LocalSessionFactoryBean) {
+                hibernateProperties = ["hibernate.dialect":H2Dialect.name]
+            }
+
             sessionFactoryProxy(SessionFactoryProxy) {
                 targetBean = "sessionFactoryHolder"
             }
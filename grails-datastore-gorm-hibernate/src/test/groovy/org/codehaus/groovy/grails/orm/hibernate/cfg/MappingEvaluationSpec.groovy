@@ -0,0 +1,211 @@
+package org.codehaus.groovy.grails.orm.hibernate.cfg
+
+import grails.persistence.Entity
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.codehaus.groovy.grails.commons.DefaultGrailsApplication
+import org.codehaus.groovy.grails.commons.GrailsDomainClass
+
+import spock.lang.Specification
+
+/**
+ * Tests the evaluation of the mapping closures of domain classes in parallel and the caching of the datasource names
+ */
+class MappingEvaluationSpec extends Specification {
+
+    static final List<Class> CLASSES = [MappedAuthor, MappedBook, MappedPublisher, MappedReview]
+
+    GrailsDomainBinder binder = new GrailsDomainBinder()
+
+    void setup() {
+        clearMappings()
+    }
+
+    void cleanup() {
+        clearMappings()
+    }
+
+    void "Test mappings are evaluated in parallel with the shared default mapping and includes"() {
+        given:"An application evaluating the mappings with four threads and a default mapping"
+            def application = createApplication('''
+                grails.gorm.mapping.parallelism = 4
+                grails.gorm.default.mapping = { version false; batchSize 5 }
+            ''')
+            Closure defaultMapping = application.config.grails.gorm.default.mapping
+
+        when:"The mappings are evaluated"
+            DefaultGrailsDomainConfiguration.configureDomainBinder(application, domainClasses(application))
+
+        then:"Each mapping closure is evaluated once and by the threads of the pool"
+            CLASSES.every { MappingEvaluations.count(it) == 1 }
+            !MappingEvaluations.threads.contains(Thread.currentThread())
+
+        and:"Each class gets the default mapping, the included mapping and its own"
+            CLASSES.every { !binder.getMapping(it).versioned }
+            CLASSES.every { binder.getMapping(it).dynamicUpdate }
+            CLASSES.every { !binder.getMapping(it).autoTimestamp }
+            binder.getMapping(MappedAuthor).table.name == 'authors'
+            binder.getMapping(MappedBook).table.name == 'books'
+            binder.getMapping(MappedBook).batchSize == 10
+            binder.getMapping(MappedPublisher).batchSize == 5
+            binder.getMapping(MappedReview).table.name == 'reviews'
+
+        and:"The shared closures are left as they were"
+            defaultMapping.delegate.is(defaultMapping.owner)
+            MappingEvaluations.SHARED.delegate.is(MappingEvaluations.SHARED.owner)
+    }
+
+    void "Test mappings evaluated in parallel are the same as evaluated serially"() {
+        given:"The mappings evaluated serially"
+            def application = createApplication('grails.gorm.default.mapping = { version false; batchSize 5 }')
+            DefaultGrailsDomainConfiguration.configureDomainBinder(application, domainClasses(application))
+            def serial = CLASSES.collect { describe(binder.getMapping(it)) }
+            clearMappings()
+
+        when:"They are evaluated in parallel many times"
+            def parallel = (1..20).collect {
+                binder.evaluateMappings(domainClasses(application), application.config.grails.gorm.default.mapping, 4)
+                def described = CLASSES.collect { describe(binder.getMapping(it)) }
+                clearMappings()
+                described
+            }
+
+        then:"Each evaluation is the same"
+            parallel.every { it == serial }
+    }
+
+    void "Test datasource names are evaluated once and cleared with the mapping cache of the class"() {
+        given:"An application"
+            def application = createApplication('grails.gorm.mapping.parallelism = 4')
+            GrailsDomainClass author = application.getDomainClass(MappedAuthor.name)
+            GrailsDomainClass book = application.getDomainClass(MappedBook.name)
+
+        when:"The datasource names are obtained repeatedly"
+            def names = binder.getDatasourceNames(author)
+            def again = binder.getDatasourceNames(author)
+            def bookNames = binder.getDatasourceNames(book)
+
+        then:"The mapping closure is evaluated once and the mapping isn't cached"
+            names == ['books']
+            again.is(names)
+            bookNames == ['DEFAULT']
+            MappingEvaluations.count(MappedAuthor) == 1
+            binder.getMapping(MappedAuthor) == null
+
+        when:"The mapping cache of the class is cleared"
+            binder.clearMappingCache(MappedAuthor)
+            names = binder.getDatasourceNames(author)
+
+        then:"The names are evaluated again, those of other classes are kept"
+            names == ['books']
+            MappingEvaluations.count(MappedAuthor) == 2
+            binder.getDatasourceNames(book).is(bookNames)
+            MappingEvaluations.count(MappedBook) == 1
+
+        when:"The mappings are evaluated in parallel and the mapping cache of the class is cleared"
+            DefaultGrailsDomainConfiguration.configureDomainBinder(application, domainClasses(application))
+            binder.clearMappingCache(MappedAuthor)
+
+        then:"Only the mapping of the class is discarded"
+            binder.getMapping(MappedAuthor) == null
+            binder.getMapping(MappedBook) != null
+    }
+
+    private DefaultGrailsApplication createApplication(String config) {
+        def application = new DefaultGrailsApplication(CLASSES as Class[], getClass().classLoader)
+        application.initialise()
+        application.config = new ConfigSlurper().parse(config)
+        // only count the evaluations of the binder
+        MappingEvaluations.reset()
+        application
+    }
+
+    private Set<GrailsDomainClass> domainClasses(DefaultGrailsApplication application) {
+        CLASSES.collect { application.getDomainClass(it.name) } as LinkedHashSet
+    }
+
+    private Map describe(Mapping mapping) {
+        [table: mapping.table.name, versioned: mapping.versioned, dynamicUpdate: mapping.dynamicUpdate,
+         autoTimestamp: mapping.autoTimestamp, batchSize: mapping.batchSize, datasources: mapping.datasources]
+    }
+
+    private void clearMappings() {
+        CLASSES.each { binder.clearMappingCache(it) }
+        MappingEvaluations.reset()
+    }
+}
+
+/**
+ * Counts the evaluations of the mapping closures and records the threads evaluating them
+ */
+class MappingEvaluations {
+    static final Closure SHARED = { autoTimestamp false; dynamicUpdate true }
+    static final Map<Class, AtomicInteger> counts = new ConcurrentHashMap<Class, AtomicInteger>()
+    static final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>())
+
+    static void evaluated(Class mappedClass) {
+        threads << Thread.currentThread()
+        counts.putIfAbsent(mappedClass, new AtomicInteger())
+        counts[mappedClass].incrementAndGet()
+    }
+
+    static int count(Class mappedClass) {
+        counts[mappedClass]?.get() ?: 0
+    }
+
+    static void reset() {
+        counts.clear()
+        threads.clear()
+    }
+}
+
+@Entity
+class MappedAuthor {
+    Long id
+    String name
+
+    static mapping = {
+        MappingEvaluations.evaluated(MappedAuthor)
+        includes MappingEvaluations.SHARED
+        table 'authors'
+        datasource 'books'
+    }
+}
+
+@Entity
+class MappedBook {
+    Long id
+    String title
+
+    static mapping = {
+        MappingEvaluations.evaluated(MappedBook)
+        includes MappingEvaluations.SHARED
+        table 'books'
+        batchSize 10
+    }
+}
+
+@Entity
+class MappedPublisher {
+    Long id
+    String name
+
+    static mapping = {
+        MappingEvaluations.evaluated(MappedPublisher)
+        includes MappingEvaluations.SHARED
+    }
+}
+
+@Entity
+class MappedReview {
+    Long id
+    String text
+
+    static mapping = {
+        MappingEvaluations.evaluated(MappedReview)
+        includes MappingEvaluations.SHARED
+        table 'reviews'
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.grails.orm.hibernate;
+
+import org.codehaus.groovy.grails.orm.hibernate.cfg.GrailsDomainBinder;
+import org.codehaus.groovy.grails.orm.hibernate.cfg.Mapping;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Bulk session that executes the JDBC batch of the underlying stateless session directly.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+public class HibernateBulkSession extends AbstractBulkSession {
+
+    private final GrailsDomainBinder binder = new GrailsDomainBinder();
+
+    public HibernateBulkSession(SessionFactory sessionFactory, int batchSize) {
+        super(sessionFactory, batchSize);
+    }
+
+    @Override
+    protected void executeBatch() {
+        ((SessionImplementor)session).getTransactionCoordinator().getJdbcCoordinator().executeBatch();
+    }
+
+    @Override
+    protected Boolean isUnsaved(Object instance) {
+        SessionImplementor implementor = (SessionImplementor)session;
+        return implementor.getEntityPersister(null, instance).isTransient(instance, implementor);
+    }
+
+    @Override
+    protected void initializeVersion(Object instance) {
+        SessionImplementor implementor = (SessionImplementor)session;
+        EntityPersister persister = implementor.getEntityPersister(null, instance);
+        if (persister.isVersioned() && persister.getVersion(instance) == null) {
+            Object version = persister.getVersionType().seed(implementor);
+            persister.setPropertyValue(instance, persister.getVersionProperty(), version);
+        }
+    }
+
+    @Override
+    protected Mapping getMapping(Class<?> type) {
+        return binder.getMapping(type);
+    }
+}
@@ -56,6 +56,11 @@ class HibernateGormStaticApi<D> extends AbstractHibernateGormStaticApi<D> {
         builder
     }
 
+    @Override
+    protected AbstractBulkSession createBulkSession(int batchSize) {
+        new HibernateBulkSession(sessionFactory, batchSize)
+    }
+
     @Override
     Object withSession(Closure callable) {
         GrailsHibernateTemplate template = new GrailsHibernateTemplate(sessionFactory, grailsApplication)
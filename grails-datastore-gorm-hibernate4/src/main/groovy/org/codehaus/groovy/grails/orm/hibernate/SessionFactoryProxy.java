@@ -98,7 +98,8 @@ public class SessionFactoryProxy extends GroovyObjectSupport implements SessionF
     private String targetBean;
     private ApplicationContext applicationContext;
     private Class currentSessionContextClass = GrailsSessionContext.class;
-    private SessionFactory currentSessionFactory;
+    private transient volatile SessionFactoryHolder sessionFactoryHolder;
+    private transient volatile CachedSessionFactory currentSessionFactory;
 
     /**
      * The target bean to proxy
@@ -107,6 +108,8 @@ public class SessionFactoryProxy extends GroovyObjectSupport implements SessionF
      */
     public void setTargetBean(String targetBean) {
         this.targetBean = targetBean;
+        sessionFactoryHolder = null;
+        currentSessionFactory = null;
     }
 
     @Override
@@ -131,15 +134,25 @@ public class SessionFactoryProxy extends GroovyObjectSupport implements SessionF
      * @return The current SessionFactory being proxied
      */
     public SessionFactory getCurrentSessionFactory() {
-
-        SessionFactory sf = applicationContext.getBean(targetBean, SessionFactoryHolder.class).getSessionFactory();
-
-        if (!sf.equals(currentSessionFactory)) {
-            currentSessionFactory = sf;
-            updateCurrentSessionContext(sf);
+        SessionFactoryHolder holder = sessionFactoryHolder;
+        if (holder == null) {
+            holder = applicationContext.getBean(targetBean, SessionFactoryHolder.class);
+            sessionFactoryHolder = holder;
         }
 
-        return currentSessionFactory;
+        // the generation is read before the SessionFactory, so a SessionFactory replaced in between is picked up again
+        // by the next call rather than being missed
+        int generation = holder.getGeneration();
+        CachedSessionFactory cached = currentSessionFactory;
+        if (cached == null || cached.generation != generation) {
+            SessionFactory sf = holder.getSessionFactory();
+            if (cached == null || sf != cached.sessionFactory) {
+                updateCurrentSessionContext(sf);
+            }
+            cached = new CachedSessionFactory(sf, generation);
+            currentSessionFactory = cached;
+        }
+        return cached.sessionFactory;
     }
 
     /**
@@ -263,6 +276,8 @@ public class SessionFactoryProxy extends GroovyObjectSupport implements SessionF
 
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
+        sessionFactoryHolder = null;
+        currentSessionFactory = null;
     }
 
     public TypeResolver getTypeResolver() {
@@ -493,4 +508,17 @@ public class SessionFactoryProxy extends GroovyObjectSupport implements SessionF
     public CurrentTenantIdentifierResolver getCurrentTenantIdentifierResolver() {
         return getCurrentSessionFactoryImplementor().getCurrentTenantIdentifierResolver();
     }
+
+    /**
+     * The SessionFactory resolved from the holder along with the generation of the holder it was resolved at
+     */
+    private static class CachedSessionFactory {
+        final SessionFactory sessionFactory;
+        final int generation;
+
+        CachedSessionFactory(SessionFactory sessionFactory, int generation) {
+            this.sessionFactory = sessionFactory;
+            this.generation = generation;
+        }
+    }
 }
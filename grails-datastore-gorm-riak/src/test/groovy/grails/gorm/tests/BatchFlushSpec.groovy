@@ -0,0 +1,78 @@
+package grails.gorm.tests
+
+import java.util.concurrent.Callable
+
+import org.grails.datastore.mapping.riak.RiakSession
+import org.grails.datastore.mapping.riak.util.RiakBatchExecutor
+import org.springframework.dao.DataAccessResourceFailureException
+import org.springframework.dao.InvalidDataAccessResourceUsageException
+
+/**
+ * Tests that the batches of pending operations flushed by the Riak session only fire post events once stored
+ */
+class BatchFlushSpec extends GormDatastoreSpec {
+
+    void "Test post insert and update events fire once the batch is stored"() {
+        given:"Some new instances"
+            PersonEvent.resetStore()
+            def people = ['Bob', 'Fred', 'Joe'].collect { new PersonEvent(name: it).save() }
+
+        when:"The session is flushed"
+            session.flush()
+
+        then:"An event fires for each"
+            PersonEvent.STORE.afterInsert == 3
+
+        when:"They are updated"
+            people.each { it.name += ' Updated' }
+            people*.save()
+            session.flush()
+            session.clear()
+
+        then:"An event fires for each and they are stored"
+            PersonEvent.STORE.afterUpdate == 3
+            PersonEvent.get(people[0].id).name == 'Bob Updated'
+    }
+
+    void "Test a failed batch fires no post events and fails the session"() {
+        given:"A session whose stores fail"
+            PersonEvent.resetStore()
+            def failingSession = new FailingRiakSession(session)
+            failingSession.persist(new PersonEvent(name: 'Bob'))
+            failingSession.persist(new PersonEvent(name: 'Fred'))
+
+        when:"The session is flushed"
+            failingSession.flush()
+
+        then:"The flush fails before any post event fires"
+            thrown DataAccessResourceFailureException
+            PersonEvent.STORE.beforeInsert == 2
+            PersonEvent.STORE.afterInsert == 0
+
+        when:"The session is flushed again"
+            failingSession.flush()
+
+        then:"It is refused"
+            thrown InvalidDataAccessResourceUsageException
+
+        cleanup:
+            failingSession?.disconnect()
+    }
+}
+
+class FailingRiakSession extends RiakSession {
+
+    FailingRiakSession(RiakSession session) {
+        super(session.datastore, session.mappingContext, session.nativeInterface, session.datastore.applicationEventPublisher)
+    }
+
+    @Override
+    RiakBatchExecutor getBatchExecutor() {
+        new RiakBatchExecutor(1) {
+            @Override
+            public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+                throw new DataAccessResourceFailureException('Riak is unavailable')
+            }
+        }
+    }
+}
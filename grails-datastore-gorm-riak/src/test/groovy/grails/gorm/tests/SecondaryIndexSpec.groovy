@@ -0,0 +1,143 @@
+package grails.gorm.tests
+
+import grails.persistence.Entity
+
+import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValueMappingContext
+import org.grails.datastore.mapping.riak.RiakDatastore
+import org.grails.datastore.mapping.riak.engine.RiakEntityPersister
+import org.grails.datastore.mapping.riak.engine.RiakPropertyValueIndexer
+
+/**
+ * Tests that queries on indexed properties are answered from secondary indexes only when they are enabled and the
+ * buckets were reindexed or configured as indexed
+ */
+class SecondaryIndexSpec extends GormDatastoreSpec {
+
+    void setup() {
+        session.datastore.secondaryIndexes = true
+    }
+
+    void "Test index entries are neither written nor queried unless secondary indexes are enabled"() {
+        given:"A datastore without secondary indexes"
+            session.datastore.secondaryIndexes = false
+
+        when:"A book is saved"
+            def groovy = new IndexedBook(title: 'Groovy', pages: 300).save(flush: true)
+            session.clear()
+
+        then:"It has no index entries and is found with Map/Reduce"
+            !persister.fullyIndexed
+            indexer('pages').query(300) == []
+            IndexedBook.findAllByPages(300)*.id == [groovy.id]
+
+        when:"It is reindexed"
+            session.reindex(IndexedBook)
+
+        then:"Reindexing is refused"
+            thrown IllegalStateException
+    }
+
+    void "Test properties mapped to another key are indexed"() {
+        given:"An indexed bucket and some books"
+            session.reindex(IndexedBook)
+            def groovy = new IndexedBook(title: 'Groovy', pages: 300).save()
+            new IndexedBook(title: 'Java', pages: 500).save(flush: true)
+            session.clear()
+
+        expect:"The index entries are found"
+            persister.fullyIndexed
+            indexer('title').query('Groovy') == [groovy.id]
+            indexer('pages').queryRange(200, 400) == [groovy.id] as Set
+
+        and:"Queries return the books"
+            IndexedBook.findAllByTitle('Groovy')*.id == [groovy.id]
+            IndexedBook.findAllByPagesBetween(200, 400)*.id == [groovy.id]
+    }
+
+    void "Test objects stored without index entries are found until they are reindexed"() {
+        given:"A book stored without index entries and one stored with them"
+            def riak = session.nativeInterface
+            riak.setWithMetaData(IndexedBook.name, 1L, [book_title: 'Old', pages: 100, version: 0], [:], session.qosParameters)
+            new IndexedBook(title: 'New', pages: 200).save(flush: true)
+            session.clear()
+
+        expect:"The bucket isn't considered indexed and the book is found with Map/Reduce"
+            !persister.fullyIndexed
+            indexer('pages').query(100) == []
+            IndexedBook.findAllByPages(100)*.id == [1L]
+            IndexedBook.findAllByPages(200).size() == 1
+
+        when:"The books are reindexed"
+            session.reindex(IndexedBook)
+
+        then:"Both are found from the indexes"
+            persister.fullyIndexed
+            indexer('pages').query(100) == [1L]
+            indexer('title').query('Old') == [1L]
+            IndexedBook.findAllByPages(100)*.id == [1L]
+            IndexedBook.findAllByTitle('Old')*.id == [1L]
+            IndexedBook.get(1L).title == 'Old'
+
+        and:"Another datastore reads the indexed state of the bucket"
+            isIndexedForAnotherDatastore()
+    }
+
+    void "Test entities can be configured as indexed"() {
+        when:"A datastore is configured with secondary indexes and an indexed entity"
+            def datastore = new RiakDatastore(new KeyValueMappingContext(""), [
+                secondaryIndexes: 'true', indexedEntities: "${IndexedBook.name}, other.Entity"], null)
+
+        then:"The bucket of the entity is indexed"
+            datastore.secondaryIndexes
+            datastore.isBucketIndexed(IndexedBook.name)
+            datastore.isBucketIndexed('other.Entity')
+            datastore.isBucketIndexed('another.Entity') == null
+
+        cleanup:
+            datastore?.destroy()
+    }
+
+    private boolean isIndexedForAnotherDatastore() {
+        def datastore = new RiakDatastore(session.mappingContext, [secondaryIndexes: 'true'], null)
+        try {
+            datastore.connect().getPersister(IndexedBook).fullyIndexed
+        }
+        finally {
+            datastore.destroy()
+        }
+    }
+
+    void cleanup() {
+        def riak = session.nativeInterface
+        riak.deleteKeys("${IndexedBook.name}.metadata:indexes")
+        riak.getBucketSchema(IndexedBook.name, true).keys.each { key ->
+            riak.deleteKeys("${IndexedBook.name}:$key")
+        }
+    }
+
+    private RiakEntityPersister getPersister() {
+        session.getPersister(IndexedBook)
+    }
+
+    private RiakPropertyValueIndexer indexer(String property) {
+        persister.getPropertyIndexer(persister.persistentEntity.getPropertyByName(property))
+    }
+
+    @Override
+    List getDomainClasses() {
+        [IndexedBook]
+    }
+}
+
+@Entity
+class IndexedBook {
+    Long id
+    Long version
+    String title
+    Integer pages
+
+    static mapping = {
+        title index: true, key: 'book_title'
+        pages index: true
+    }
+}
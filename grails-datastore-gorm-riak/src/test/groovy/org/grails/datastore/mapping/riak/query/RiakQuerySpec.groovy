@@ -0,0 +1,238 @@
+package org.grails.datastore.mapping.riak.query
+
+import grails.persistence.Entity
+
+import java.nio.charset.Charset
+
+import org.grails.datastore.mapping.core.Session
+import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValueMappingContext
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.Restrictions
+import org.grails.datastore.mapping.riak.RiakDatastore
+import org.grails.datastore.mapping.riak.engine.RiakEntityPersister
+import org.springframework.data.keyvalue.riak.core.RiakTemplate
+import org.springframework.http.HttpStatus
+import org.springframework.web.client.HttpServerErrorException
+
+import spock.lang.Specification
+
+/**
+ * Tests the Map/Reduce jobs RiakQuery runs and how it reads their results, without a Riak server
+ */
+class RiakQuerySpec extends Specification {
+
+    RiakDatastore datastore
+    Session session
+    PersistentEntity entity
+    RiakEntityPersister persister
+
+    void setup() {
+        datastore = new RiakDatastore(new KeyValueMappingContext(""), [maxCompiledFunctions: "2"], null)
+        entity = datastore.mappingContext.addPersistentEntity(QueriedPerson)
+        session = datastore.connect()
+        persister = new RiakEntityPersister(datastore.mappingContext, entity, session, session.nativeInterface, null) {
+            List<String> getBuckets(PersistentEntity e) { [e.name] }
+        }
+    }
+
+    void cleanup() {
+        session.disconnect()
+        datastore.destroy()
+    }
+
+    void "Test queries of the same shape reuse the compiled functions and pass their values as arguments"() {
+        given:"Two queries differing only in their values"
+            def bob = createQuery()
+            bob.eq("name", "Bob")
+            bob.gt("age", 20)
+            bob.add(Restrictions.in("age", [30, 40]))
+            def alice = createQuery()
+            alice.eq("name", "Alice")
+            alice.gt("age", 25)
+            alice.add(Restrictions.in("age", [50]))
+
+        when:"They are run"
+            bob.list()
+            alice.list()
+            Map bobJob = bob.jobs[0]
+            Map aliceJob = alice.jobs[0]
+
+        then:"Both reference the same stored function"
+            bobJob.inputs == QueriedPerson.name
+            bobJob.query[0].map.bucket == RiakQuery.FUNCTION_BUCKET
+            bobJob.query[0].map.key == aliceJob.query[0].map.key
+            datastore.mapReduceFunctions.compiledCount == 1
+
+        and:"The function is stored once"
+            bob.putKeys == [bobJob.query[0].map.key]
+            alice.putKeys == []
+            datastore.mapReduceFunctions.isStored(session.nativeInterface.defaultUri, bobJob.query[0].map.key)
+
+        and:"The values are passed as the phase argument"
+            bobJob.query[0].map.arg == [p: ["Bob", 20, ["30", "40"]]]
+            aliceJob.query[0].map.arg == [p: ["Alice", 25, ["50"]]]
+    }
+
+    void "Test reading stops once the page is full"() {
+        given:"A query for the second page of two"
+            def query = createQuery()
+            query.responses << (1..5).collect { [id: it, name: "Person $it".toString(), age: 20 + it] }
+            query.offset(1)
+            query.max(2)
+
+        when:"It is run"
+            def results = query.list()
+
+        then:"Only the entries up to the end of the page are read"
+            results*.id == [2L, 3L]
+            results*.name == ["Person 2", "Person 3"]
+            query.consumed == 3
+    }
+
+    void "Test average projection"() {
+        given:"A query for the average age"
+            def query = createQuery()
+            query.projections().avg("age")
+            query.responses << [[total: 90.0, count: 3]]
+
+        when:"It is run"
+            def results = query.list()
+
+        then:"The reduce function sums the property and the average is computed from the total and count"
+            query.jobs[0].query[1].reduce.key
+            def compiled = datastore.mapReduceFunctions.getCompiled("and:|AvgProjection:age")
+            compiled.reduceSource.contains("reduced[i]['age']")
+            compiled.reduceSource.contains("parseFloat(reduced[i].age)")
+            results == [30]
+    }
+
+    void "Test id projection excluding an id"() {
+        given:"A query for the ids other than one"
+            def query = createQuery()
+            query.add(Restrictions.ne("id", 5L))
+            query.projections().id()
+            query.responses << [1.0, 2.0]
+
+        when:"It is run"
+            def results = query.list()
+
+        then:"The id is compared to the key and the ids are returned"
+            def compiled = datastore.mapReduceFunctions.getCompiled("and:NotEquals:id:n;|IdProjection")
+            compiled.mapSource.contains("v.key !== String(arg.p[0])")
+            query.jobs[0].query[0].map.arg == [p: [5L]]
+            results == [1.0, 2.0]
+    }
+
+    void "Test functions reported missing are stored again and the job retried"() {
+        given:"A query whose first job reports its function missing"
+            def query = createQuery()
+            query.eq("name", "Bob")
+            query.failures << new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error",
+                '{"error":"notfound"}'.getBytes("UTF-8"), Charset.forName("UTF-8"))
+            query.responses << [[id: 1, name: "Bob", age: 30]]
+
+        when:"It is run"
+            def results = query.list()
+            String mapKey = query.jobs[0].query[0].map.key
+
+        then:"The function is stored again and the job retried"
+            query.putKeys == [mapKey, mapKey]
+            query.jobs.size() == 2
+            results*.name == ["Bob"]
+            datastore.mapReduceFunctions.isStored(session.nativeInterface.defaultUri, mapKey)
+    }
+
+    void "Test other errors are not retried"() {
+        given:"A query whose job fails"
+            def query = createQuery()
+            query.eq("name", "Bob")
+            query.failures << new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error",
+                '{"error":"timeout"}'.getBytes("UTF-8"), Charset.forName("UTF-8"))
+
+        when:"It is run"
+            query.list()
+
+        then:"The error is thrown"
+            thrown HttpServerErrorException
+            query.jobs.size() == 1
+    }
+
+    void "Test the least recently used compiled functions are discarded"() {
+        when:"Queries of three shapes are run"
+            ["name", "age", "id"].each { property ->
+                def query = createQuery()
+                query.eq(property, property == "name" ? "Bob" : 1)
+                query.list()
+            }
+
+        then:"Only the maximum number of compiled functions is kept"
+            datastore.mapReduceFunctions.compiledCount == 2
+            datastore.mapReduceFunctions.getCompiled("and:Equals:name:s;") == null
+            datastore.mapReduceFunctions.getCompiled("and:Equals:id:n;") != null
+    }
+
+    void "Test each datastore keeps its own functions"() {
+        given:"Another datastore"
+            def other = new RiakDatastore(new KeyValueMappingContext(""))
+
+        when:"A query is run against the first datastore"
+            def query = createQuery()
+            query.eq("name", "Bob")
+            query.list()
+
+        then:"Only that datastore knows the function"
+            datastore.mapReduceFunctions.compiledCount == 1
+            other.mapReduceFunctions.compiledCount == 0
+            other.mapReduceFunctions.maxCompiled == MapReduceFunctions.DEFAULT_MAX_COMPILED
+
+        cleanup:
+            other.destroy()
+    }
+
+    private RecordingQuery createQuery() {
+        new RecordingQuery(session, entity, session.nativeInterface, persister)
+    }
+}
+
+/**
+ * Records the jobs and stored functions instead of sending them to Riak and answers jobs with canned entries
+ */
+class RecordingQuery extends RiakQuery {
+
+    List<Map> jobs = []
+    List<List> responses = []
+    List<Exception> failures = []
+    List<String> putKeys = []
+    int consumed
+
+    RecordingQuery(Session session, PersistentEntity entity, RiakTemplate riak, RiakEntityPersister persister) {
+        super(session, entity, riak, persister)
+    }
+
+    protected void streamMapReduce(Map job, Closure callback) {
+        jobs << job
+        if (failures) {
+            throw failures.remove(0)
+        }
+        List entries = responses ? responses.remove(0) : []
+        for (entry in entries) {
+            consumed++
+            if (callback(entry) == false) {
+                break
+            }
+        }
+    }
+
+    protected void putFunction(String key, String source) {
+        putKeys << key
+    }
+}
+
+@Entity
+class QueriedPerson {
+    Long id
+    Long version
+    String name
+    Integer age
+}
@@ -0,0 +1,204 @@
+package org.grails.datastore.mapping.simpledb.util
+
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+import org.grails.datastore.mapping.simpledb.SimpleDBDatastore
+import org.grails.datastore.mapping.simpledb.config.SimpleDBMappingContext
+
+import com.amazonaws.services.simpledb.AmazonSimpleDB
+import com.amazonaws.services.simpledb.model.Attribute
+import com.amazonaws.services.simpledb.model.Item
+import com.amazonaws.services.simpledb.model.SelectRequest
+import com.amazonaws.services.simpledb.model.SelectResult
+
+import spock.lang.Specification
+
+/**
+ * Tests how SimpleDBTemplateImpl follows the pages of select results, without AWS
+ */
+class SimpleDBTemplateImplSpec extends Specification {
+
+    List<SelectRequest> requests = []
+    Map<String, SelectResult> pages = [:]
+    SimpleDBTemplateImpl template = new SimpleDBTemplateImpl([select: { SelectRequest request ->
+        requests << request
+        pages[request.nextToken]
+    }] as AmazonSimpleDB)
+
+    void "Test items are streamed page by page following the next token"() {
+        given:"A select with three pages"
+            page(null, 't1', 'a', 'b')
+            page('t1', 't2', 'c')
+            page('t2', null, 'd', 'e')
+
+        when:"An iterator is created"
+            def iterator = template.queryIterator("select * from `domain`", 10)
+
+        then:"Only the first page is fetched"
+            requests*.nextToken == [null]
+
+        when:"The items of the first page are read"
+            def names = [iterator.next().name, iterator.next().name]
+
+        then:"The second page is still not fetched"
+            names == ['a', 'b']
+            requests*.nextToken == [null]
+
+        when:"The remaining items are read"
+            names = iterator.collect { it.name }
+
+        then:"The pages are fetched in turn with the next token and the select expression"
+            names == ['c', 'd', 'e']
+            requests*.nextToken == [null, 't1', 't2']
+            requests*.selectExpression.every { it == "select * from `domain`" }
+            !iterator.hasNext()
+    }
+
+    void "Test no more pages are fetched than needed for the maximum"() {
+        given:"A select with three pages"
+            page(null, 't1', 'a', 'b')
+            page('t1', 't2', 'c', 'd')
+            page('t2', null, 'e')
+
+        when:"At most three items are queried"
+            def items = template.query("select * from `domain`", 3)
+
+        then:"The third page isn't fetched"
+            items*.name == ['a', 'b', 'c']
+            requests*.nextToken == [null, 't1']
+    }
+
+    void "Test the next page is prefetched on the prefetch executor"() {
+        given:"A prefetch executor and a select with two pages"
+            def executor = new HeldTasksExecutor()
+            template.prefetchExecutor = executor
+            page(null, 't1', 'a')
+            page('t1', null, 'b')
+
+        when:"An iterator is created"
+            def iterator = template.queryIterator("select * from `domain`", 10)
+
+        then:"The fetch of the next page is submitted"
+            executor.tasks.size() == 1
+            requests*.nextToken == [null]
+
+        when:"The fetch runs and the items are read"
+            executor.runAll()
+            def names = iterator.collect { it.name }
+
+        then:"The prefetched page is used"
+            names == ['a', 'b']
+            requests*.nextToken == [null, 't1']
+    }
+
+    void "Test a prefetch that hasn't started is run by the reader"() {
+        given:"A prefetch executor that never runs its tasks"
+            def executor = new HeldTasksExecutor()
+            template.prefetchExecutor = executor
+            page(null, 't1', 'a')
+            page('t1', null, 'b')
+
+        when:"The items are read"
+            def names = template.queryIterator("select * from `domain`", 10).collect { it.name }
+
+        then:"The next page is fetched by the reader, once"
+            names == ['a', 'b']
+            requests*.nextToken == [null, 't1']
+
+        when:"The executor runs the task afterwards"
+            executor.runAll()
+
+        then:"The page isn't fetched again"
+            requests*.nextToken == [null, 't1']
+    }
+
+    void "Test pages are fetched when needed if the prefetch executor rejects them"() {
+        given:"A prefetch executor rejecting all tasks"
+            template.prefetchExecutor = { Runnable r -> throw new RejectedExecutionException("busy") } as Executor
+            page(null, 't1', 'a')
+            page('t1', null, 'b')
+
+        when:"The items are read"
+            def names = template.queryIterator("select * from `domain`", 10).collect { it.name }
+
+        then:"All pages are fetched"
+            names == ['a', 'b']
+            requests*.nextToken == [null, 't1']
+    }
+
+    void "Test the counts of all pages are summed"() {
+        given:"A count that is split into pages"
+            pages[null] = countPage(2500, 't1')
+            pages['t1'] = countPage(2500, 't2')
+            pages['t2'] = countPage(7, null)
+
+        when:"The count is obtained"
+            int count = template.count("select count(*) from `domain`")
+
+        then:"The counts of the pages are summed"
+            count == 5007
+            requests*.nextToken == [null, 't1', 't2']
+    }
+
+    void "Test the datastore owns a bounded prefetch executor"() {
+        given:"A datastore with two prefetch threads"
+            def datastore = new SimpleDBDatastore(new SimpleDBMappingContext(),
+                [accessKey: 'access', secretKey: 'secret', prefetchThreads: '2'])
+
+        when:"Its template is created"
+            datastore.createSimpleDBTemplate(null)
+            def executor = datastore.simpleDBTemplate.prefetchExecutor
+
+        then:"It prefetches on at most two threads"
+            executor.maximumPoolSize == 2
+            !executor.shutdown
+
+        when:"The datastore is destroyed"
+            datastore.destroy()
+
+        then:"The executor is shut down"
+            executor.shutdown
+    }
+
+    void "Test prefetching can be disabled"() {
+        given:"A datastore without prefetch threads"
+            def datastore = new SimpleDBDatastore(new SimpleDBMappingContext(),
+                [accessKey: 'access', secretKey: 'secret', prefetchThreads: '0'])
+
+        when:"Its template is created"
+            datastore.createSimpleDBTemplate(null)
+
+        then:"It has no prefetch executor"
+            datastore.simpleDBTemplate.prefetchExecutor == null
+
+        cleanup:
+            datastore.destroy()
+    }
+
+    private void page(String token, String nextToken, String... names) {
+        pages[token] = new SelectResult().withItems(names.collect { new Item(it, []) }).withNextToken(nextToken)
+    }
+
+    private SelectResult countPage(int count, String nextToken) {
+        new SelectResult().withItems(new Item('Domain', [new Attribute('Count', count.toString())]))
+                .withNextToken(nextToken)
+    }
+}
+
+/**
+ * Holds the submitted tasks until asked to run them
+ */
+class HeldTasksExecutor implements Executor {
+    List<Runnable> tasks = []
+
+    void execute(Runnable task) {
+        tasks << task
+    }
+
+    void runAll() {
+        def pending = new ArrayList<Runnable>(tasks)
+        tasks.clear()
+        pending*.run()
+    }
+}
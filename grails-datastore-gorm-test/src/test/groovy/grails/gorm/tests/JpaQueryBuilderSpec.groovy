@@ -2,7 +2,9 @@ package grails.gorm.tests
 
 import grails.gorm.DetachedCriteria
 
+import org.grails.datastore.mapping.query.Query
 import org.grails.datastore.mapping.query.jpa.JpaQueryBuilder
+import org.grails.datastore.mapping.query.jpa.JpaQueryCache
 import org.springframework.dao.InvalidDataAccessResourceUsageException
 
 /**
@@ -159,4 +161,153 @@ class JpaQueryBuilderSpec extends GormDatastoreSpec{
             queryInfo.parameters == ['Bob', 'Fred']
 
     }
+
+    void "Test build select with multiple orders"() {
+        given:"Some criteria"
+            DetachedCriteria criteria = new DetachedCriteria(Person).build {
+                eq 'firstName', 'Bob'
+                order 'lastName'
+                order 'age', 'desc'
+            }
+
+        when:"A jpa query is built"
+            def builder = new JpaQueryBuilder(session.mappingContext.getPersistentEntity(Person.name), criteria.criteria, new Query.ProjectionList(), criteria.orders)
+            final queryInfo = builder.buildSelect()
+
+        then:"The orders are separated by commas"
+            queryInfo.query == 'SELECT DISTINCT person FROM grails.gorm.tests.Person AS person WHERE (person.firstName=?1) ORDER BY person.lastName ASC, person.age DESC '
+            queryInfo.parameters == ['Bob']
+    }
+
+    void "Test build select with is empty and is not empty"() {
+        given:"Some criteria"
+            DetachedCriteria empty = new DetachedCriteria(Person).build {
+                isEmpty 'pets'
+            }
+            DetachedCriteria notEmpty = new DetachedCriteria(Person).build {
+                isNotEmpty 'pets'
+            }
+
+        when:"A jpa query is built"
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            def emptyQuery = new JpaQueryBuilder(entity, empty.criteria).buildSelect().query
+            def notEmptyQuery = new JpaQueryBuilder(entity, notEmpty.criteria).buildSelect().query
+
+        then:"The queries are valid"
+            emptyQuery.contains('person.pets IS EMPTY')
+            notEmptyQuery.contains('person.pets IS NOT EMPTY')
+    }
+
+    void "Test queries that only differ in their values share a cached query"() {
+        given:"A query cache and criteria of the same shape"
+            def queryCache = new JpaQueryCache()
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            DetachedCriteria first = new DetachedCriteria(Person).build {
+                eq 'firstName', 'Bob'
+                inList 'age', [10, 11]
+            }
+            DetachedCriteria second = new DetachedCriteria(Person).build {
+                eq 'firstName', 'Fred'
+                inList 'age', [20, 21]
+            }
+
+        when:"Queries are built for both"
+            def builder = new JpaQueryBuilder(entity, first.criteria)
+            builder.queryCache = queryCache
+            def firstInfo = builder.buildSelect()
+            builder = new JpaQueryBuilder(entity, second.criteria)
+            builder.queryCache = queryCache
+            def secondInfo = builder.buildSelect()
+
+        then:"The query is built once and the parameters are those of each criteria"
+            queryCache.size() == 1
+            firstInfo.query == 'SELECT DISTINCT person FROM grails.gorm.tests.Person AS person WHERE (person.firstName=?1 AND person.age IN (?2,?3))'
+            secondInfo.query == firstInfo.query
+            firstInfo.parameters == ['Bob', 10, 11]
+            secondInfo.parameters == ['Fred', 20, 21]
+
+        when:"A query with a different number of values in the list is built"
+            DetachedCriteria third = new DetachedCriteria(Person).build {
+                eq 'firstName', 'Joe'
+                inList 'age', [30]
+            }
+            builder = new JpaQueryBuilder(entity, third.criteria)
+            builder.queryCache = queryCache
+            def thirdInfo = builder.buildSelect()
+
+        then:"It has a query of its own"
+            queryCache.size() == 2
+            thirdInfo.query == 'SELECT DISTINCT person FROM grails.gorm.tests.Person AS person WHERE (person.firstName=?1 AND person.age IN (?2))'
+            thirdInfo.parameters == ['Joe', 30]
+    }
+
+    void "Test nested junctions that only differ in where a block ends don't share a cached query"() {
+        given:"A query cache and criteria whose flattened criteria are the same"
+            def queryCache = new JpaQueryCache()
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            DetachedCriteria first = new DetachedCriteria(Person).build {
+                or {
+                    and {
+                        eq 'firstName', 'Bob'
+                        eq 'lastName', 'Builder'
+                    }
+                    eq 'age', 10
+                }
+            }
+            DetachedCriteria second = new DetachedCriteria(Person).build {
+                or {
+                    and {
+                        eq 'firstName', 'Bob'
+                    }
+                    eq 'lastName', 'Builder'
+                    eq 'age', 10
+                }
+            }
+
+        when:"Queries are built for both"
+            def firstInfo = buildSelect(entity, first, queryCache)
+            def secondInfo = buildSelect(entity, second, queryCache)
+
+        then:"Each has a query of its own, the same as built without a cache"
+            queryCache.size() == 2
+            firstInfo.query != secondInfo.query
+            firstInfo.query == buildSelect(entity, first, null).query
+            secondInfo.query == buildSelect(entity, second, null).query
+            firstInfo.parameters == ['Bob', 'Builder', 10]
+            secondInfo.parameters == ['Bob', 'Builder', 10]
+    }
+
+    void "Test association criteria that only differ in where the block ends don't share a cached query"() {
+        given:"A query cache and criteria whose flattened criteria are the same"
+            def queryCache = new JpaQueryCache()
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            DetachedCriteria first = new DetachedCriteria(Person).build {
+                pets {
+                    eq 'name', 'Jack'
+                }
+                eq 'age', 10
+            }
+            DetachedCriteria second = new DetachedCriteria(Person).build {
+                pets {
+                    eq 'name', 'Jack'
+                    eq 'age', 10
+                }
+            }
+
+        when:"Queries are built for both"
+            def firstInfo = buildSelect(entity, first, queryCache)
+            def secondInfo = buildSelect(entity, second, queryCache)
+
+        then:"Each has a query of its own, the same as built without a cache"
+            queryCache.size() == 2
+            firstInfo.query != secondInfo.query
+            firstInfo.query == buildSelect(entity, first, null).query
+            secondInfo.query == buildSelect(entity, second, null).query
+    }
+
+    private buildSelect(entity, DetachedCriteria criteria, JpaQueryCache queryCache) {
+        def builder = new JpaQueryBuilder(entity, criteria.criteria)
+        builder.queryCache = queryCache
+        builder.buildSelect()
+    }
 }
@@ -0,0 +1,149 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.DetachedCriteria
+import grails.gorm.tests.GormDatastoreSpec
+import grails.persistence.Entity
+
+/**
+ * Tests the bulk deleteAll and updateAll operations of the SimpleMap session
+ */
+class BulkOperationsSpec extends GormDatastoreSpec {
+
+    void "Test deleteAll deletes the matching entities and returns their number"() {
+        given:"Some vehicles"
+            createVehicles()
+
+        when:"The Fords are deleted"
+            int deleted = new DetachedCriteria(BulkVehicle).build { eq 'make', 'Ford' }.deleteAll()
+            session.clear()
+
+        then:"Only the Fiat is left"
+            deleted == 2
+            BulkVehicle.count() == 1
+            BulkVehicle.list()*.make == ['Fiat']
+    }
+
+    void "Test deleteAll evicts the deleted instances from the session"() {
+        given:"Some vehicles loaded into the session"
+            def (focus, fiesta, panda) = createVehicles()
+
+        when:"The Fords are deleted without clearing the session"
+            new DetachedCriteria(BulkVehicle).build { eq 'make', 'Ford' }.deleteAll()
+
+        then:"They are no longer returned"
+            BulkVehicle.get(focus.id) == null
+            BulkVehicle.get(fiesta.id) == null
+            BulkVehicle.get(panda.id).make == 'Fiat'
+    }
+
+    void "Test updateAll updates the matching entities and evicts them from the session"() {
+        given:"Some vehicles loaded into the session"
+            def (focus, fiesta, panda) = createVehicles()
+
+        when:"The Fords are updated without clearing the session"
+            int updated = new DetachedCriteria(BulkVehicle).build { eq 'make', 'Ford' }.updateAll(wheels: 6)
+
+        then:"The updated values are read"
+            updated == 2
+            BulkVehicle.get(focus.id).wheels == 6
+            BulkVehicle.get(fiesta.id).wheels == 6
+            BulkVehicle.get(panda.id).wheels == 4
+    }
+
+    void "Test bulk operations on a subclass only affect its instances"() {
+        given:"A vehicle and a car of the same make"
+            def vehicle = new BulkVehicle(make: 'Ford', wheels: 4).save()
+            def car = new BulkCar(make: 'Ford', wheels: 4, doors: 5).save(flush: true)
+
+        when:"The cars are updated"
+            int updated = new DetachedCriteria(BulkCar).build { eq 'make', 'Ford' }.updateAll(wheels: 3)
+            session.clear()
+
+        then:"Only the car is updated"
+            updated == 1
+            BulkVehicle.get(vehicle.id).wheels == 4
+            BulkCar.get(car.id).wheels == 3
+
+        when:"The cars are deleted"
+            int deleted = new DetachedCriteria(BulkCar).build { eq 'make', 'Ford' }.deleteAll()
+            session.clear()
+
+        then:"Only the car is deleted"
+            deleted == 1
+            BulkCar.count() == 0
+            BulkVehicle.count() == 1
+            BulkVehicle.get(vehicle.id) != null
+    }
+
+    void "Test queries on properties changed by updateAll return the updated entities"() {
+        given:"Some vehicles"
+            createVehicles()
+
+        when:"The make of the Fords is changed"
+            new DetachedCriteria(BulkVehicle).build { eq 'make', 'Ford' }.updateAll(make: 'Audi')
+            session.clear()
+
+        then:"They are found by their new make only"
+            BulkVehicle.findAllByMake('Ford') == []
+            BulkVehicle.findAllByMake('Audi').size() == 2
+            BulkVehicle.findAllByMake('Fiat').size() == 1
+    }
+
+    void "Test updateAll of an association updates each entity"() {
+        given:"Some vehicles and an owner"
+            createVehicles()
+            def owner = new BulkOwner(name: 'Bob').save(flush: true)
+
+        when:"The owner of the Fords is set"
+            int updated = new DetachedCriteria(BulkVehicle).build { eq 'make', 'Ford' }.updateAll(owner: owner)
+            session.flush()
+            session.clear()
+
+        then:"The Fords are owned by Bob"
+            updated == 2
+            BulkVehicle.list().findAll { it.owner?.id == owner.id }*.make == ['Ford', 'Ford']
+    }
+
+    private List createVehicles() {
+        def vehicles = [
+            new BulkVehicle(make: 'Ford', wheels: 4).save(),
+            new BulkVehicle(make: 'Ford', wheels: 4).save(),
+            new BulkVehicle(make: 'Fiat', wheels: 4).save(flush: true)
+        ]
+        vehicles
+    }
+
+    @Override
+    List getDomainClasses() {
+        [BulkVehicle, BulkCar, BulkOwner]
+    }
+}
+
+@Entity
+class BulkVehicle {
+    Long id
+    Long version
+    String make
+    Integer wheels
+    BulkOwner owner
+
+    static constraints = {
+        owner nullable: true
+    }
+
+    static mapping = {
+        make index: true
+    }
+}
+
+@Entity
+class BulkCar extends BulkVehicle {
+    Integer doors
+}
+
+@Entity
+class BulkOwner {
+    Long id
+    Long version
+    String name
+}
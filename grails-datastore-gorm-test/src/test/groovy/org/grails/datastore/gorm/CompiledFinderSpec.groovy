@@ -0,0 +1,144 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.persistence.Entity
+
+import org.grails.datastore.gorm.finders.FindAllByFinder
+import org.grails.datastore.mapping.transactions.DatastoreTransactionManager
+
+import spock.lang.Unroll
+
+/**
+ * Tests that the compiled forms of dynamic finder methods are bound to the arguments of each invocation
+ */
+class CompiledFinderSpec extends GormDatastoreSpec {
+
+    @Unroll
+    void "Test #methodName is bound to #arguments"() {
+        given:"A finder"
+            def finder = new FindAllByFinder(session.datastore)
+
+        when:"The method is invoked twice, with other arguments first"
+            finder.createFinderInvocation(CompiledPerson, methodName, null, otherArguments as Object[])
+            def invocation = finder.createFinderInvocation(CompiledPerson, methodName, null, arguments as Object[])
+
+        then:"The expressions of the method are bound to the arguments of the invocation"
+            invocation.operator == operator
+            invocation.expressions*.getClass()*.simpleName == expressions
+            invocation.expressions*.propertyName == properties
+            boundArguments(invocation.expressions) == bound
+            invocation.arguments.toList() == remaining
+
+        where:
+            methodName                               | otherArguments         | arguments                         | operator | expressions                | properties             | bound                  | remaining
+            'findAllByName'                          | ['Fred']               | ['Bob']                           | null     | ['Equal']                  | ['name']               | [['Bob']]              | []
+            'findAllByName'                          | ['Fred']               | [null]                            | null     | ['IsNull']                 | ['name']               | [null]                 | []
+            'findAllByName'                          | ['Fred']               | ['Bob', [max: 1]]                 | null     | ['Equal']                  | ['name']               | [['Bob']]              | [[max: 1]]
+            'findAllByNameAndAgeGreaterThan'         | ['Fred', 40]           | ['Bob', 20]                       | 'And'    | ['Equal', 'GreaterThan']   | ['name', 'age']        | [['Bob'], [20]]        | []
+            'findAllByNameOrAgeLessThanEquals'       | ['Fred', 40]           | ['Bob', 20]                       | 'Or'     | ['Equal', 'LessThanEquals']| ['name', 'age']        | [['Bob'], [20]]        | []
+            'findAllByAgeBetweenAndNameLike'         | [1, 2, 'F%']           | [20, 30, 'B%']                    | 'And'    | ['Between', 'Like']        | ['age', 'name']        | [[20, 30], ['B%']]     | []
+            'findAllByNameNotEqualAndNickNameIsNull' | ['Fred']               | ['Bob']                           | 'And'    | ['NotEqual', 'IsNull']     | ['name', 'nickName']   | [['Bob'], []]          | []
+            'findAllByAgeInList'                     | [[1]]                  | [[20, 30]]                        | null     | ['InList']                 | ['age']                | [[[20, 30]]]           | []
+            'findAllByNameRlike'                     | ['^F']                 | ['^B']                            | null     | ['Rlike']                  | ['name']               | [['^B']]               | []
+            'findAllByNameIlike'                     | ['f%']                 | ['b%', [ignoreCase: true]]        | null     | ['Ilike']                  | ['name']               | [['b%']]               | [[ignoreCase: true]]
+            'findAllByNameIlikeOrNickNameIlike'      | ['f%', 'g%']           | ['b%', 'r%']                      | 'Or'     | ['Ilike', 'Ilike']         | ['name', 'nickName']   | [['b%'], ['r%']]       | []
+    }
+
+    @Unroll
+    void "Test #methodName with the wrong number of arguments"() {
+        given:"A finder"
+            def finder = new FindAllByFinder(session.datastore)
+
+        when:"The method is invoked with too few arguments"
+            finder.createFinderInvocation(CompiledPerson, methodName, null, arguments as Object[])
+
+        then:"The method is missing"
+            thrown MissingMethodException
+
+        when:"It is invoked again with the right arguments"
+            def invocation = finder.createFinderInvocation(CompiledPerson, methodName, null, valid as Object[])
+
+        then:"The compiled form is bound to them"
+            boundArguments(invocation.expressions).sum() == valid
+
+        where:
+            methodName                       | arguments | valid
+            'findAllByNameAndAge'            | ['Bob']   | ['Bob', 20]
+            'findAllByAgeBetween'            | [20]      | [20, 30]
+            'findAllByName'                  | []        | ['Bob']
+            'findAllByNameIlikeAndAgeInList' | ['b%']    | ['b%', [20]]
+    }
+
+    void "Test the compiled form is reused and expressions are not shared between invocations"() {
+        given:"A finder"
+            def finder = new FindAllByFinder(session.datastore)
+
+        when:"A method is invoked twice"
+            def first = finder.createFinderInvocation(CompiledPerson, 'findAllByNameAndAge', null, ['Bob', 20] as Object[])
+            def compiled = finder.getCompiledFinder(CompiledPerson, 'findAllByNameAndAge')
+            def second = finder.createFinderInvocation(CompiledPerson, 'findAllByNameAndAge', null, ['Fred', 30] as Object[])
+
+        then:"The same compiled form is used and each invocation has its own arguments"
+            finder.getCompiledFinder(CompiledPerson, 'findAllByNameAndAge').is(compiled)
+            boundArguments(first.expressions) == [['Bob'], [20]]
+            boundArguments(second.expressions) == [['Fred'], [30]]
+            boundArguments(compiled.expressions).every { it == null }
+    }
+
+    void "Test finders are invoked with the bound arguments"() {
+        given:"Some people"
+            new CompiledPerson(name: 'Bob', nickName: 'Bobby', age: 20).save()
+            new CompiledPerson(name: 'Fred', age: 30).save(flush: true)
+            session.clear()
+
+        expect:"Each invocation returns the results for its arguments"
+            CompiledPerson.findAllByNameIlike('BO%')*.name == ['Bob']
+            CompiledPerson.findAllByNameIlike('fr%')*.name == ['Fred']
+            CompiledPerson.findAllByNameAndAge('Bob', 20)*.name == ['Bob']
+            CompiledPerson.findAllByNameAndAge('Bob', 30).empty
+            CompiledPerson.findAllByNickNameIsNullOrAgeLessThan(25)*.name.sort() == ['Bob', 'Fred']
+            CompiledPerson.findAllByAgeBetween(25, 35)*.name == ['Fred']
+    }
+
+    void "Test the compiled finders of a class are discarded when it is enhanced again"() {
+        given:"An enhancer and a finder compiled by it"
+            def datastore = session.datastore
+            def enhancer = new GormEnhancer(datastore, new DatastoreTransactionManager(datastore: datastore))
+            def finder = enhancer.finders.find { it instanceof FindAllByFinder }
+            def compiled = finder.getCompiledFinder(CompiledPerson, 'findAllByName')
+            def other = finder.getCompiledFinder(CompiledOwner, 'findAllByName')
+
+        when:"The class is enhanced again, as it is when reloaded"
+            enhancer.enhance(datastore.mappingContext.getPersistentEntity(CompiledPerson.name))
+
+        then:"Its finders are compiled again, those of other classes are kept"
+            !finder.getCompiledFinder(CompiledPerson, 'findAllByName').is(compiled)
+            finder.getCompiledFinder(CompiledOwner, 'findAllByName').is(other)
+    }
+
+    /**
+     * @return The arguments bound to each expression, read from the field since unbound expressions have none
+     */
+    private List boundArguments(List expressions) {
+        expressions.collect { it.@arguments?.toList() }
+    }
+
+    @Override
+    List getDomainClasses() {
+        [CompiledPerson, CompiledOwner]
+    }
+}
+
+@Entity
+class CompiledPerson {
+    Long id
+    String name
+    String nickName
+    Integer age
+}
+
+@Entity
+class CompiledOwner {
+    Long id
+    String name
+}
@@ -0,0 +1,94 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.persistence.Entity
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+/**
+ * Tests for the caching of the plans used to populate loaded instances
+ */
+class EntityHydrationPlanSpec extends GormDatastoreSpec {
+
+    void "Test the plan is created once and shared by sessions"() {
+        given:"The entity"
+            def entity = session.mappingContext.getPersistentEntity(HydratedBook.name)
+            def otherSession = session.datastore.connect()
+
+        when:"The plan is obtained repeatedly and by another session"
+            def plan = session.getPersister(HydratedBook).getHydrationPlan(entity)
+
+        then:"It is the same plan"
+            session.getPersister(HydratedBook).getHydrationPlan(entity).is(plan)
+            otherSession.getPersister(HydratedBook).getHydrationPlan(entity).is(plan)
+            plan.getSlot('title').nativeKey == 'title'
+
+        cleanup:
+            otherSession?.disconnect()
+    }
+
+    void "Test the plan is replaced when the properties of the entity change"() {
+        given:"The plan of the entity"
+            def entity = session.mappingContext.getPersistentEntity(HydratedBook.name)
+            def persister = session.getPersister(HydratedBook)
+            def plan = persister.getHydrationPlan(entity)
+            def properties = entity.persistentProperties
+
+        when:"The entity gets another list with the same number of properties"
+            entity.@persistentProperties = new ArrayList(properties.reverse())
+
+        then:"A new plan is created for it"
+            !persister.getHydrationPlan(entity).is(plan)
+            persister.getHydrationPlan(entity).getSlot(0).name == entity.persistentProperties[0].name
+
+        when:"Instances are loaded"
+            def id = new HydratedBook(title: 'Groovy', pages: 300).save(flush: true).id
+            session.clear()
+            def book = HydratedBook.get(id)
+
+        then:"They are populated"
+            book.title == 'Groovy'
+            book.pages == 300
+
+        cleanup:
+            entity.@persistentProperties = properties
+    }
+
+    void "Test plans are obtained concurrently"() {
+        given:"Sessions on several threads"
+            def entity = session.mappingContext.getPersistentEntity(HydratedBook.name)
+            def executor = Executors.newFixedThreadPool(4)
+
+        when:"Each obtains the plan"
+            def plans = executor.invokeAll((1..8).collect {
+                { ->
+                    def threadSession = session.datastore.connect()
+                    try {
+                        threadSession.getPersister(HydratedBook).getHydrationPlan(entity)
+                    }
+                    finally {
+                        threadSession.disconnect()
+                    }
+                } as Callable
+            })*.get()
+
+        then:"All get a plan for the current properties"
+            plans.every { it.getSlot('pages') != null }
+
+        cleanup:
+            executor.shutdown()
+    }
+
+    @Override
+    List getDomainClasses() {
+        [HydratedBook]
+    }
+}
+
+@Entity
+class HydratedBook {
+    Long id
+    String title
+    Integer pages
+}
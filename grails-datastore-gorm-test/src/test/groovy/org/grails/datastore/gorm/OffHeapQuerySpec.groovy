@@ -0,0 +1,147 @@
+package org.grails.datastore.gorm
+
+import grails.persistence.Entity
+
+import org.grails.datastore.mapping.core.Session
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.simple.SimpleMapDatastore
+import org.springframework.context.support.GenericApplicationContext
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Tests that the queries answered from the indices of off-heap storage find the entries a scan comparing the values
+ * with Groovy's operators finds
+ */
+class OffHeapQuerySpec extends Specification {
+
+    SimpleMapDatastore datastore = createDatastore()
+    Session session = datastore.connect()
+    List<IndexedItem> items = [
+        new IndexedItem(name: 'one', price: 1.0G, weight: 1.0d, quantity: 1, added: new Date(1000)),
+        new IndexedItem(name: 'one', price: 1.00G, weight: 1.5d, quantity: 2, added: new Date(2000)),
+        new IndexedItem(name: 'two', price: 2.5G, weight: 2d, quantity: 2, added: new Date(3000)),
+        new IndexedItem(name: 'three', price: 10G, weight: 10.25d, quantity: 10, added: null),
+        new IndexedItem(name: null, price: null, weight: null, quantity: null, added: null)]
+
+    void setup() {
+        items.each { session.persist(it) }
+        session.flush()
+        session.clear()
+    }
+
+    void cleanup() {
+        session.disconnect()
+        datastore.destroy()
+    }
+
+    void "Test the family is stored off-heap"() {
+        expect:"The entries are stored off-heap"
+            session.getPersister(IndexedItem).offHeap
+    }
+
+    @Unroll
+    void "Test #property equal to #value"() {
+        expect:"The index finds the entries equal by =="
+            names { eq(property, value) } == scan { it[property] == value }
+            names { eq(property, value) } == expected
+
+        where:
+            property   | value          | expected
+            'price'    | 1              | ['one', 'one']
+            'price'    | 1.000G         | ['one', 'one']
+            'price'    | 1.0d           | ['one', 'one']
+            'price'    | 2.50G          | ['two']
+            'price'    | 10L            | ['three']
+            'weight'   | 1              | ['one']
+            'weight'   | 1.50G          | ['one']
+            'weight'   | 10.25G         | ['three']
+            'quantity' | 2.0G           | ['one', 'two']
+            'quantity' | 10.0d          | ['three']
+            'quantity' | 1.5d           | []
+            'name'     | "${'two'}"     | ['two']
+            'added'    | new Date(2000) | ['one']
+    }
+
+    @Unroll
+    void "Test #property between #from and #to"() {
+        expect:"The index finds the entries within the bounds"
+            names { between(property, from, to) } == scan { it[property] >= from && it[property] <= to }
+            names { between(property, from, to) } == expected
+
+        where:
+            property   | from  | to      | expected
+            'price'    | 1     | 2.5G    | ['one', 'one', 'two']
+            'price'    | 1.01G | 10      | ['three', 'two']
+            'weight'   | 1     | 2       | ['one', 'one', 'two']
+            'weight'   | 1.25d | 10.5d   | ['one', 'three', 'two']
+            'quantity' | 1.5G  | 10.0d   | ['one', 'three', 'two']
+            'name'     | 'one' | 'three' | ['one', 'one', 'three']
+    }
+
+    @Unroll
+    void "Test #property compared with #value"() {
+        expect:"The index finds the entries a scan finds, the null values comparing lower than any value"
+            names { gt(property, value) } == scan { it[property] > value }
+            names { ge(property, value) } == scan { it[property] >= value }
+            names { lt(property, value) } == scan { it[property] < value }
+            names { le(property, value) } == scan { it[property] <= value }
+
+        where:
+            property   | value
+            'price'    | 1
+            'price'    | 2.5d
+            'weight'   | 1.5G
+            'weight'   | 2
+            'quantity' | 1.5d
+            'quantity' | 2G
+            'added'    | new Date(2000)
+    }
+
+    void "Test null values"() {
+        expect:"The index finds the entries without a value"
+            names { isNull('price') } == [null]
+            names { isNull('added') } == [null, 'three']
+            names { isNotNull('weight') } == ['one', 'one', 'three', 'two']
+    }
+
+    private List names(Closure criteria) {
+        Query query = session.createQuery(IndexedItem)
+        criteria.delegate = query
+        criteria.resolveStrategy = Closure.DELEGATE_FIRST
+        criteria.call()
+        query.list()*.name.sort()
+    }
+
+    private List scan(Closure condition) {
+        items.findAll(condition)*.name.sort()
+    }
+
+    private static SimpleMapDatastore createDatastore() {
+        def ctx = new GenericApplicationContext()
+        ctx.refresh()
+        def datastore = new SimpleMapDatastore(ctx)
+        datastore.offHeapStorage = true
+        datastore.mappingContext.addPersistentEntity(IndexedItem)
+        datastore
+    }
+}
+
+@Entity
+class IndexedItem {
+    Long id
+    String name
+    BigDecimal price
+    Double weight
+    Integer quantity
+    Date added
+
+    static mapping = {
+        name index: true
+        price index: true
+        weight index: true
+        quantity index: true
+        added index: true
+    }
+}
@@ -0,0 +1,250 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.PagedResultList
+import grails.gorm.tests.GormDatastoreSpec
+import grails.persistence.Entity
+
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+import org.grails.datastore.gorm.query.PagedResultCountSettings
+import org.grails.datastore.mapping.core.Session
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.query.api.EstimatedCountQuery
+import org.grails.datastore.mapping.simple.SimpleMapDatastore
+import org.grails.datastore.mapping.simple.SimpleMapSession
+import org.grails.datastore.mapping.simple.engine.SimpleMapEntityPersister
+import org.grails.datastore.mapping.simple.query.SimpleMapQuery
+import org.springframework.context.support.GenericApplicationContext
+
+/**
+ * Tests for how the total counts of paged results are obtained
+ */
+class PagedResultListCountSpec extends GormDatastoreSpec {
+
+    ManualClockCountSettings settings = new ManualClockCountSettings()
+
+    void setup() {
+        PagedResultCountSettings.register(session.datastore, settings)
+    }
+
+    void cleanup() {
+        PagedResultCountSettings.register(session.datastore, new PagedResultCountSettings())
+    }
+
+    void "Test counts are cached until they expire"() {
+        given:"Cached counts and some instances"
+            settings.countCacheTimeout = 200
+            createCountedBooks(session, 2)
+
+        when:"The total count is obtained"
+            int count = totalCount(session, 'Groovy')
+
+        then:"It is counted"
+            count == 2
+
+        when:"Another instance is added and the count is obtained again before the cached count expired"
+            createCountedBooks(session, 1)
+            settings.now += 199
+            count = totalCount(session, 'Groovy')
+
+        then:"The cached count is returned"
+            count == 2
+
+        when:"The count is obtained with other criteria"
+            count = totalCount(session, 'Java')
+
+        then:"It is counted separately"
+            count == 0
+
+        when:"The count is obtained once the cached count expired"
+            settings.now += 1
+            count = totalCount(session, 'Groovy')
+
+        then:"It is counted again"
+            count == 3
+    }
+
+    void "Test counts are cached per datastore"() {
+        given:"Another datastore for the same entity"
+            settings.countCacheTimeout = 10000
+            def ctx = new GenericApplicationContext()
+            ctx.refresh()
+            def other = new SimpleMapDatastore(ctx)
+            other.mappingContext.addPersistentEntity(CountedBook)
+            PagedResultCountSettings.forDatastore(other).countCacheTimeout = 10000
+            Session otherSession = other.connect()
+
+        when:"Each has a different number of instances"
+            createCountedBooks(session, 2)
+            createCountedBooks(otherSession, 5)
+
+        then:"Each datastore returns its own count"
+            totalCount(session, 'Groovy') == 2
+            totalCount(otherSession, 'Groovy') == 5
+            totalCount(session, 'Groovy') == 2
+
+        cleanup:
+            otherSession?.disconnect()
+    }
+
+    void "Test settings are made per datastore"() {
+        given:"Another datastore"
+            def ctx = new GenericApplicationContext()
+            ctx.refresh()
+            def other = new SimpleMapDatastore(ctx)
+
+        when:"The settings of this datastore are changed"
+            settings.countCacheTimeout = 10000
+            settings.estimatedCount = true
+            settings.countExecutor = new QueuedExecutor()
+
+        then:"The other datastore keeps the defaults"
+            PagedResultCountSettings.forDatastore(session.datastore).is(settings)
+            PagedResultCountSettings.forDatastore(other).countCacheTimeout == 0
+            !PagedResultCountSettings.forDatastore(other).estimatedCount
+            PagedResultCountSettings.forDatastore(other).countExecutor == null
+    }
+
+    void "Test counts aren't cached by default"() {
+        given:"Some instances"
+            createCountedBooks(session, 2)
+
+        when:"The count is obtained, another instance is added and the count is obtained again"
+            totalCount(session, 'Groovy')
+            createCountedBooks(session, 1)
+
+        then:"The new instance is counted"
+            totalCount(session, 'Groovy') == 3
+    }
+
+    void "Test the count is started on the count executor when the list is created"() {
+        given:"A count executor and some instances"
+            def executor = new QueuedExecutor()
+            settings.countExecutor = executor
+            createCountedBooks(session, 2)
+
+        when:"A list is created"
+            def list = pagedResultList(session, 'Groovy')
+
+        then:"The count is submitted to the executor"
+            executor.tasks.size() == 1
+
+        when:"The count runs and an instance is added before the total count is requested"
+            executor.runAll()
+            createCountedBooks(session, 1)
+
+        then:"The count of the executor is returned"
+            list.totalCount == 2
+            list.size() == 3
+    }
+
+    void "Test the count is obtained on demand if the count executor rejects it"() {
+        given:"A count executor rejecting all tasks and some instances"
+            settings.countExecutor = { Runnable r -> throw new RejectedExecutionException("full") } as Executor
+            createCountedBooks(session, 2)
+
+        when:"A list is created"
+            def list = pagedResultList(session, 'Groovy')
+            createCountedBooks(session, 1)
+
+        then:"The count is obtained when requested"
+            list.totalCount == 3
+    }
+
+    void "Test the count isn't started concurrently while there are pending changes"() {
+        given:"A count executor and an unflushed instance"
+            def executor = new QueuedExecutor()
+            settings.countExecutor = executor
+            createCountedBooks(session, 2)
+            session.persist(new CountedBook(title: 'Groovy'))
+
+        when:"A list is created"
+            def list = pagedResultList(session, 'Groovy')
+
+        then:"The count is obtained on demand"
+            executor.tasks.empty
+            list.totalCount == 3
+    }
+
+    void "Test estimated counts are used when enabled and the query provides one"() {
+        given:"Some instances and a query providing an estimate"
+            createCountedBooks(session, 2)
+            def entity = session.mappingContext.getPersistentEntity(CountedBook.name)
+
+        when:"Estimated counts are disabled"
+            def query = new EstimatingQuery(session, entity, session.getPersister(CountedBook))
+
+        then:"The instances are counted"
+            new PagedResultList(query).totalCount == 2
+
+        when:"Estimated counts are enabled"
+            settings.estimatedCount = true
+            query = new EstimatingQuery(session, entity, session.getPersister(CountedBook))
+
+        then:"The estimate is returned"
+            new PagedResultList(query).totalCount == 42
+    }
+
+    private int totalCount(Session session, String title) {
+        pagedResultList(session, title).totalCount
+    }
+
+    private PagedResultList pagedResultList(Session session, String title) {
+        def query = session.createQuery(CountedBook)
+        query.eq('title', title)
+        new PagedResultList(query)
+    }
+
+    private void createCountedBooks(Session session, int count) {
+        count.times { session.persist(new CountedBook(title: 'Groovy')) }
+        session.flush()
+    }
+
+    @Override
+    List getDomainClasses() {
+        [CountedBook]
+    }
+}
+
+@Entity
+class CountedBook {
+    Long id
+    String title
+}
+
+/**
+ * Runs the submitted tasks only when asked to
+ */
+class QueuedExecutor implements Executor {
+    List<Runnable> tasks = []
+
+    void execute(Runnable task) {
+        tasks << task
+    }
+
+    void runAll() {
+        def pending = new ArrayList<Runnable>(tasks)
+        tasks.clear()
+        pending*.run()
+    }
+}
+
+class ManualClockCountSettings extends PagedResultCountSettings {
+    long now = 1000
+
+    protected long currentTimeMillis() {
+        now
+    }
+}
+
+class EstimatingQuery extends SimpleMapQuery implements EstimatedCountQuery {
+
+    EstimatingQuery(SimpleMapSession session, PersistentEntity entity, SimpleMapEntityPersister entityPersister) {
+        super(session, entity, entityPersister)
+    }
+
+    Number estimatedCount() {
+        42
+    }
+}
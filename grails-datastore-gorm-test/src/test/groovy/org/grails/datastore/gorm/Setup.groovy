@@ -30,6 +30,8 @@ class Setup {
         def ctx = new GenericApplicationContext()
         ctx.refresh()
         def simple = new SimpleMapDatastore(ctx)
+        // the offHeapTest task runs the specs again with the entries stored off-heap
+        simple.offHeapStorage = Boolean.getBoolean("gorm.simple.offHeapStorage")
 
         simple.mappingContext.mappingFactory.registerCustomType(new AbstractMappingAwareCustomTypeMarshaller<Birthday, Map, SimpleMapResultList>(Birthday) {
             @Override
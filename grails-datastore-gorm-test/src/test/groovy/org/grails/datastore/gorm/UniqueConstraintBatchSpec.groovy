@@ -0,0 +1,132 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.persistence.Entity
+
+import org.codehaus.groovy.grails.commons.GrailsDomainConfigurationUtil
+import org.codehaus.groovy.grails.validation.ConstrainedProperty
+import org.grails.datastore.gorm.validation.constraints.UniqueConstraint
+import org.grails.datastore.gorm.validation.constraints.UniqueConstraintBatch
+import org.springframework.validation.Errors
+import org.springframework.validation.Validator
+
+/**
+ * Tests for validating the unique constraints of a batch of instances together
+ */
+class UniqueConstraintBatchSpec extends GormDatastoreSpec {
+
+    void "Test duplicates within a batch are rejected"() {
+        given:"New instances sharing a value"
+            def books = [new BatchBook(isbn: '1', title: 'First'),
+                         new BatchBook(isbn: '1', title: 'Second'),
+                         new BatchBook(isbn: '2', title: 'Third')]
+
+        when:"They are validated as a batch"
+            def valid = UniqueConstraintBatch.withBatch(books) { books.collect { it.validate() } }
+
+        then:"Only the later duplicate is rejected"
+            valid == [true, false, true]
+            books[1].errors.getFieldError('isbn').code == 'unique'
+    }
+
+    void "Test persisted values are rejected"() {
+        given:"A persisted instance"
+            new BatchBook(isbn: '1', title: 'First').save(flush: true)
+            def books = [new BatchBook(isbn: '1', title: 'Second'), new BatchBook(isbn: '2', title: 'Third')]
+
+        when:"New instances are validated as a batch"
+            def valid = UniqueConstraintBatch.withBatch(books) { books.collect { it.validate() } }
+
+        then:"The one holding the persisted value is rejected"
+            valid == [false, true]
+    }
+
+    void "Test an invalid instance doesn't reject later duplicates"() {
+        given:"An instance failing another constraint followed by one with the same value"
+            def books = [new BatchBook(isbn: '1', title: ''), new BatchBook(isbn: '1', title: 'Second')]
+
+        when:"They are validated as a batch"
+            def valid = UniqueConstraintBatch.withBatch(books) { books.collect { it.validate() } }
+
+        then:"Only the invalid instance is rejected"
+            valid == [false, true]
+            books[0].errors.getFieldError('title')
+            !books[0].errors.getFieldError('isbn')
+    }
+
+    void "Test a changed value is released"() {
+        given:"New instances with different values"
+            def books = [new BatchBook(isbn: '1', title: 'First'), new BatchBook(isbn: '2', title: 'Second')]
+
+        when:"The first is validated, changed and validated again before the second takes its old value"
+            def valid = UniqueConstraintBatch.withBatch(books) {
+                books[0].validate()
+                books[0].isbn = '3'
+                books[1].isbn = '1'
+                books.collect { it.validate() }
+            }
+
+        then:"Both are valid"
+            valid == [true, true]
+
+        when:"The second is changed to the new value of the first"
+            valid = UniqueConstraintBatch.withBatch(books) {
+                books[0].validate()
+                books[1].isbn = '3'
+                books[1].validate()
+            }
+
+        then:"It is rejected"
+            !valid
+    }
+
+    void "Test more values than fit into one query"() {
+        given:"More persisted instances than values looked up with one query"
+            int count = UniqueConstraint.BATCH_QUERY_SIZE + 10
+            (1..count).each { new BatchBook(isbn: "$it".toString(), title: 'Book').save() }
+            session.flush()
+            session.clear()
+
+        when:"New instances with the same and new values are validated as a batch"
+            def books = (1..count + 10).collect { new BatchBook(isbn: "$it".toString(), title: 'New') }
+            def valid = UniqueConstraintBatch.withBatch(books) { books.collect { it.validate() } }
+
+        then:"The values of every chunk are found"
+            valid.count(false) == count
+            !valid[0]
+            !valid[count - 1]
+            valid[count..-1].every { it }
+    }
+
+    @Override
+    List getDomainClasses() {
+        [BatchBook]
+    }
+
+    void setup() {
+        def validator = [supports: {Class cls -> true},
+                validate: {Object target, Errors errors ->
+                    def constrainedProperties = GrailsDomainConfigurationUtil.evaluateConstraints(BatchBook)
+                    for (ConstrainedProperty cp in constrainedProperties.values()) {
+                        cp.validate(target, target[cp.propertyName], errors)
+                    }
+                }] as Validator
+
+        final context = session.datastore.mappingContext
+        final entity = context.getPersistentEntity(BatchBook.name)
+        context.addEntityValidator(entity, validator)
+    }
+}
+
+@Entity
+class BatchBook {
+
+    Long id
+    String isbn
+    String title
+
+    static constraints = {
+        isbn unique: true
+        title blank: false
+    }
+}
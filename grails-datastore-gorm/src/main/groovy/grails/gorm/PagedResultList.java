@@ -15,13 +15,37 @@
 package grails.gorm;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.grails.datastore.gorm.query.PagedResultCountSettings;
+import org.grails.datastore.mapping.core.Datastore;
+import org.grails.datastore.mapping.core.Session;
+import org.grails.datastore.mapping.core.SessionImplementor;
+import org.grails.datastore.mapping.core.StatelessDatastore;
+import org.grails.datastore.mapping.query.AssociationQuery;
 import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.api.EstimatedCountQuery;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * A result list implementation that provides an additional property called 'totalCount' to obtain the total number of
  * records. Useful for pagination.
+ * <p/>
+ * By default the total count is obtained with a second query the first time it is requested. If a count executor
+ * is configured for the datastore the count query is instead started in its own session on that executor as soon as
+ * the list is created, so that it runs concurrently with the query for the page. Counts can additionally be cached for
+ * a short time, keyed by entity and criteria, and datastores whose queries implement {@link EstimatedCountQuery} can be
+ * asked for an estimate instead of an exact count. These settings are made per datastore, see
+ * {@link PagedResultCountSettings}.
  *
  * @author Graeme Rocher
  * @since 1.0
@@ -32,9 +56,14 @@ public class PagedResultList extends AbstractList {
     private Query query;
     private List resultList;
     private int totalCount = Integer.MIN_VALUE;
+    private Future<Integer> pendingTotalCount;
 
     public PagedResultList(Query query) {
         this.query = query;
+        Executor executor = getSettings(query).getCountExecutor();
+        if (executor != null) {
+            startTotalCount(executor);
+        }
     }
 
     /**
@@ -42,11 +71,15 @@ public class PagedResultList extends AbstractList {
      */
     public int getTotalCount() {
         initialize();
-        if (totalCount == Integer.MIN_VALUE) {
+        if (totalCount == Integer.MIN_VALUE && pendingTotalCount != null) {
+            totalCount = awaitTotalCount();
+        }
+        if (totalCount == Integer.MIN_VALUE && !lookupTotalCount()) {
             Query newQuery = (Query)query.clone();
             newQuery.projections().count();
             Number result = (Number) newQuery.singleResult();
             totalCount = result == null ? 0 : result.intValue();
+            cacheTotalCount(query, totalCount);
         }
 
         return totalCount;
@@ -87,4 +120,216 @@ public class PagedResultList extends AbstractList {
         initialize();
         return resultList.size();
     }
+
+    /**
+     * Obtains the total count from an estimate or the cache
+     *
+     * @return True if the total count was found
+     */
+    private boolean lookupTotalCount() {
+        if (getSettings(query).isEstimatedCount() && query instanceof EstimatedCountQuery) {
+            Number estimate = ((EstimatedCountQuery) query).estimatedCount();
+            if (estimate != null) {
+                totalCount = estimate.intValue();
+                return true;
+            }
+        }
+
+        Integer cached = getCachedTotalCount(query);
+        if (cached != null) {
+            totalCount = cached;
+            return true;
+        }
+        return false;
+    }
+
+    private void startTotalCount(Executor executor) {
+        if (lookupTotalCount() || !canCountConcurrently()) {
+            return;
+        }
+
+        final Datastore datastore = query.getSession().getDatastore();
+        final Class type = query.getEntity().getJavaClass();
+        final List<Query.Criterion> criteria = new ArrayList<Query.Criterion>(query.getCriteria().getCriteria());
+        FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+            public Integer call() {
+                // sessions are not thread safe, so the count is run in a session of its own
+                Session session = datastore instanceof StatelessDatastore ?
+                        ((StatelessDatastore) datastore).connectStateless() : datastore.connect();
+                try {
+                    Query countQuery = session.createQuery(type);
+                    for (Query.Criterion criterion : criteria) {
+                        countQuery.add(criterion);
+                    }
+                    countQuery.projections().count();
+                    Number result = (Number) countQuery.singleResult();
+                    int count = result == null ? 0 : result.intValue();
+                    cacheTotalCount(countQuery, count);
+                    return count;
+                }
+                finally {
+                    session.disconnect();
+                }
+            }
+        });
+
+        try {
+            executor.execute(task);
+            pendingTotalCount = task;
+        }
+        catch (RejectedExecutionException e) {
+            // the count query is executed on demand instead
+        }
+    }
+
+    /**
+     * A count in another session only sees what has been written, so the count is only started
+     * concurrently if the current session has nothing to flush and no transaction is active
+     */
+    private boolean canCountConcurrently() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+
+        Session session = query.getSession();
+        if (!(session instanceof SessionImplementor)) {
+            return false;
+        }
+
+        SessionImplementor implementor = (SessionImplementor) session;
+        return implementor.getPendingInserts().isEmpty() && implementor.getPendingUpdates().isEmpty() &&
+               implementor.getPendingDeletes().isEmpty();
+    }
+
+    private int awaitTotalCount() {
+        try {
+            return pendingTotalCount.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("Interrupted while waiting for count query: " + e.getMessage(), e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new DataAccessResourceFailureException("Count query failed: " + cause.getMessage(), cause);
+        }
+        finally {
+            pendingTotalCount = null;
+        }
+    }
+
+    private static PagedResultCountSettings getSettings(Query query) {
+        return PagedResultCountSettings.forDatastore(query.getSession().getDatastore());
+    }
+
+    private static Integer getCachedTotalCount(Query query) {
+        PagedResultCountSettings settings = getSettings(query);
+        if (settings.getCountCacheTimeout() <= 0) {
+            return null;
+        }
+
+        String key = createCacheKey(query);
+        return key == null ? null : settings.getCachedCount(key);
+    }
+
+    private static void cacheTotalCount(Query query, int count) {
+        PagedResultCountSettings settings = getSettings(query);
+        if (settings.getCountCacheTimeout() <= 0) {
+            return;
+        }
+
+        String key = createCacheKey(query);
+        if (key != null) {
+            settings.cacheCount(key, count);
+        }
+    }
+
+    /**
+     * Creates a key that identifies the entity and criteria of the given query within its datastore
+     *
+     * @return The key or null if the criteria contain a criterion that cannot be described
+     */
+    private static String createCacheKey(Query query) {
+        StringBuilder key = new StringBuilder();
+        key.append(query.getEntity().getName())
+           .append(':');
+        return appendCriteria(query.getSession(), key, query.getCriteria().getCriteria()) ? key.toString() : null;
+    }
+
+    private static boolean appendCriteria(Session session, StringBuilder key, List<Query.Criterion> criteria) {
+        for (Query.Criterion criterion : criteria) {
+            key.append(criterion.getClass().getName()).append('(');
+            if (criterion instanceof Query.Junction) {
+                if (!appendCriteria(session, key, ((Query.Junction) criterion).getCriteria())) {
+                    return false;
+                }
+            }
+            else if (criterion instanceof AssociationQuery) {
+                AssociationQuery associationQuery = (AssociationQuery) criterion;
+                key.append(associationQuery.getAssociation().getName()).append(',');
+                if (!appendCriteria(session, key, associationQuery.getCriteria().getCriteria())) {
+                    return false;
+                }
+            }
+            else if (criterion instanceof Query.SubqueryCriterion) {
+                return false;
+            }
+            else if (criterion instanceof Query.In) {
+                Query.In in = (Query.In) criterion;
+                key.append(in.getProperty()).append(',');
+                appendValues(session, key, in.getValues());
+            }
+            else if (criterion instanceof Query.Between) {
+                Query.Between between = (Query.Between) criterion;
+                key.append(between.getProperty()).append(',');
+                appendValue(session, key, between.getFrom());
+                key.append(',');
+                appendValue(session, key, between.getTo());
+            }
+            else if (criterion instanceof Query.PropertyCriterion) {
+                Query.PropertyCriterion propertyCriterion = (Query.PropertyCriterion) criterion;
+                key.append(propertyCriterion.getProperty()).append(',');
+                appendValue(session, key, propertyCriterion.getValue());
+            }
+            else if (criterion instanceof Query.PropertyComparisonCriterion) {
+                Query.PropertyComparisonCriterion comparison = (Query.PropertyComparisonCriterion) criterion;
+                key.append(comparison.getProperty()).append(',').append(comparison.getOtherProperty());
+            }
+            else if (criterion instanceof Query.PropertyNameCriterion) {
+                key.append(((Query.PropertyNameCriterion) criterion).getProperty());
+            }
+            else {
+                return false;
+            }
+            key.append(')');
+        }
+        return true;
+    }
+
+    private static void appendValues(Session session, StringBuilder key, Collection values) {
+        key.append('[');
+        if (values != null) {
+            for (Object value : values) {
+                appendValue(session, key, value);
+                key.append(',');
+            }
+        }
+        key.append(']');
+    }
+
+    private static void appendValue(Session session, StringBuilder key, Object value) {
+        if (value == null) {
+            key.append("null");
+        }
+        else if (session.getMappingContext().isPersistentEntity(value)) {
+            // entities are identified by their type and identifier, not their toString()
+            key.append(value.getClass().getName()).append('#').append(session.getObjectIdentifier(value));
+        }
+        else {
+            key.append(value.getClass().getName()).append(':').append(value);
+        }
+    }
 }
@@ -20,6 +20,7 @@ import groovy.transform.TypeCheckingMode
 
 import java.lang.reflect.Method
 import java.lang.reflect.Modifier
+import java.util.concurrent.ConcurrentHashMap
 
 import org.grails.datastore.gorm.utils.ReflectionUtils
 import org.grails.datastore.mapping.core.Datastore
@@ -53,6 +54,9 @@ abstract class AbstractGormApi<D> extends AbstractDatastoreApi {
         'setTransactionManager'
     ]
 
+    // the methods and extended methods of each API class, which are the same for the API instances of all entities
+    private static final Map<Class, List<List<Method>>> API_METHODS = new ConcurrentHashMap<Class, List<List<Method>>>()
+
     protected Class<D> persistentClass
     protected PersistentEntity persistentEntity
     private List<Method> methods = []
@@ -63,8 +67,18 @@ abstract class AbstractGormApi<D> extends AbstractDatastoreApi {
         this.persistentClass = persistentClass
         this.persistentEntity = datastore.getMappingContext().getPersistentEntity(persistentClass.name)
 
-        final clazz = getClass()
-        clazz = initializeMethods(clazz)
+        final Class clazz = getClass()
+        List<List<Method>> apiMethods = API_METHODS.get(clazz)
+        if (apiMethods == null) {
+            initializeMethods(clazz)
+            methods = Collections.unmodifiableList(methods)
+            extendedMethods = Collections.unmodifiableList(extendedMethods)
+            API_METHODS.put(clazz, [methods, extendedMethods])
+        }
+        else {
+            methods = apiMethods[0]
+            extendedMethods = apiMethods[1]
+        }
     }
 
     @CompileStatic(TypeCheckingMode.SKIP)
@@ -25,6 +25,7 @@ import org.codehaus.groovy.grails.commons.GrailsMetaClassUtils
 import org.codehaus.groovy.grails.validation.ConstrainedProperty
 import org.codehaus.groovy.runtime.metaclass.ClosureStaticMetaMethod
 import org.grails.datastore.gorm.finders.CountByFinder
+import org.grails.datastore.gorm.finders.DynamicFinder
 import org.grails.datastore.gorm.finders.FindAllByBooleanFinder
 import org.grails.datastore.gorm.finders.FindAllByFinder
 import org.grails.datastore.gorm.finders.FindByBooleanFinder
@@ -99,6 +100,12 @@ class GormEnhancer {
      */
     void enhance(PersistentEntity e, boolean onlyExtendedMethods = false) {
         def cls = e.javaClass
+        // the entity may have been reloaded, so discard the finders compiled for the previous version of its class
+        for (finder in getFinders()) {
+            if (finder instanceof DynamicFinder) {
+                ((DynamicFinder)finder).clearCompiledFinders(cls.name)
+            }
+        }
         def cpf = ClassPropertyFetcher.forClass(cls)
         def staticMethods = getStaticApi(cls)
         staticMethods.transactionManager = transactionManager
@@ -25,6 +25,7 @@ import org.grails.datastore.gorm.async.GormAsyncStaticApi
 import org.grails.datastore.gorm.finders.DynamicFinder
 import org.grails.datastore.gorm.finders.FinderMethod
 import org.grails.datastore.gorm.utils.GormConversionUtils
+import org.grails.datastore.gorm.validation.constraints.UniqueConstraintBatch
 import org.grails.datastore.mapping.core.AbstractDatastore
 import org.grails.datastore.mapping.core.Datastore
 import org.grails.datastore.mapping.core.DatastoreUtils
@@ -176,9 +177,7 @@ class GormStaticApi<D> extends AbstractGormApi<D> {
      * @return A list of object identifiers
      */
     List<Serializable> saveAll(Object... objectsToSave) {
-        (List<Serializable>)execute({ Session session ->
-           session.persist Arrays.asList(objectsToSave)
-        } as SessionCallback)
+        saveAll((Iterable<?>)Arrays.asList(objectsToSave))
     }
 
     /**
@@ -188,7 +187,9 @@ class GormStaticApi<D> extends AbstractGormApi<D> {
      */
     List<Serializable> saveAll(Iterable<?> objectsToSave) {
         (List<Serializable>)execute({ Session session ->
-            session.persist objectsToSave
+            UniqueConstraintBatch.withBatch(objectsToSave) {
+                session.persist objectsToSave
+            }
         } as SessionCallback)
     }
 
@@ -30,12 +30,14 @@ class AsyncQuery<E> implements PromiseDecoratorProvider{
     @DelegateAsync GormOperations<E> gormOperations
 
     /**
-     * Wraps each promise in a new persistence session
+     * Wraps each promise in a new persistence session, submitted to the {@link GormAsyncExecutor} of the datastore
+     * when the promise is created
      */
     private List<PromiseDecorator> decorators = [ { Closure callable ->
-        return { args ->
-            gormOperations.persistentClass.withNewSession {
-                callable.call(*args)
+        def persistentClass = gormOperations.persistentClass
+        GormAsyncExecutor.forDatastore(persistentClass.currentGormStaticApi().datastore).decorate {
+            persistentClass.withNewSession {
+                callable.call()
             }
         }
     } as PromiseDecorator ]
@@ -0,0 +1,372 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.async
+
+import groovy.transform.CompileStatic
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.RejectedExecutionHandler
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+import org.grails.datastore.mapping.core.Datastore
+import org.springframework.dao.DataAccessResourceFailureException
+
+/**
+ * Executes the work of the asynchronous GORM API for a single datastore on a dedicated, bounded pool of threads.
+ * <p/>
+ * Every task opens its own session, so the size of the pool is also the maximum number of sessions (and therefore
+ * connections) that asynchronous calls hold against the datastore at the same time. Tasks that cannot start
+ * immediately wait in a bounded queue. If the queue is full the submitting thread blocks until there is room again,
+ * or until the queue timeout elapses, in which case the task fails with a {@link DataAccessResourceFailureException}.
+ * <p/>
+ * Promises of the asynchronous API don't run their work themselves, the work is submitted to the executor when the
+ * promise is created (see {@link #decorate(Closure)}) so that threads of the promise factory never wait for a thread
+ * of this pool. Work of promises created from within a task of this executor runs on the promise's thread instead,
+ * since a task waiting for work queued behind it would deadlock a saturated pool.
+ * <p/>
+ * An executor is created for each datastore on first use with the default settings, a differently configured one can
+ * be registered with {@link #register(Datastore, GormAsyncExecutor)}.
+ *
+ * @author Graeme Rocher
+ * @since 2.3
+ */
+@CompileStatic
+class GormAsyncExecutor {
+
+    static final int DEFAULT_POOL_SIZE = 10
+    static final int DEFAULT_QUEUE_CAPACITY = 1000
+
+    /**
+     * The pool size of executors created on first use
+     */
+    static volatile int defaultPoolSize = DEFAULT_POOL_SIZE
+
+    /**
+     * The queue capacity of executors created on first use
+     */
+    static volatile int defaultQueueCapacity = DEFAULT_QUEUE_CAPACITY
+
+    /**
+     * The time in milliseconds executors created on first use wait for room in a full queue, -1 to wait indefinitely
+     */
+    static volatile long defaultQueueTimeout = -1
+
+    private static final Map<Datastore, GormAsyncExecutor> executors =
+            Collections.synchronizedMap(new WeakHashMap<Datastore, GormAsyncExecutor>())
+
+    private static final ThreadLocal<Boolean> insideTask = new ThreadLocal<Boolean>()
+
+    private final ThreadPoolExecutor executor
+    private final int poolSize
+    private final int queueCapacity
+    private final long queueTimeout
+
+    private final AtomicInteger activeSessions = new AtomicInteger()
+    private final AtomicLong completedTasks = new AtomicLong()
+    private final AtomicLong totalQueueTime = new AtomicLong()
+    private final AtomicLong totalLatency = new AtomicLong()
+    private final AtomicLong maxLatency = new AtomicLong()
+
+    GormAsyncExecutor() {
+        this(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY, -1)
+    }
+
+    GormAsyncExecutor(int poolSize, int queueCapacity, long queueTimeout) {
+        this(poolSize, queueCapacity, queueTimeout, new DaemonThreadFactory())
+    }
+
+    /**
+     * @param poolSize The maximum number of tasks, and therefore sessions, active at the same time
+     * @param queueCapacity The maximum number of tasks waiting for a thread
+     * @param queueTimeout The time in milliseconds to wait for room in a full queue, -1 to wait indefinitely
+     * @param threadFactory The factory used to create the threads of the pool
+     */
+    GormAsyncExecutor(int poolSize, int queueCapacity, long queueTimeout, ThreadFactory threadFactory) {
+        this.poolSize = poolSize
+        this.queueCapacity = queueCapacity
+        this.queueTimeout = queueTimeout
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory, new WaitForQueueHandler(queueTimeout))
+        executor.allowCoreThreadTimeOut(true)
+    }
+
+    /**
+     * @param datastore The datastore
+     * @return The executor for the given datastore, created with the default settings if none is registered
+     */
+    static GormAsyncExecutor forDatastore(Datastore datastore) {
+        synchronized (executors) {
+            GormAsyncExecutor executor = executors.get(datastore)
+            if (executor == null) {
+                executor = new GormAsyncExecutor(defaultPoolSize, defaultQueueCapacity, defaultQueueTimeout)
+                executors.put(datastore, executor)
+            }
+            return executor
+        }
+    }
+
+    /**
+     * Registers the executor to use for the given datastore, shutting down the one used previously. The tasks queued
+     * on the previous executor still run, submitters waiting for room in its queue are rejected.
+     *
+     * @param datastore The datastore
+     * @param executor The executor
+     */
+    static void register(Datastore datastore, GormAsyncExecutor executor) {
+        GormAsyncExecutor previous
+        synchronized (executors) {
+            previous = executors.put(datastore, executor)
+        }
+        if (previous != null && !previous.is(executor)) {
+            previous.shutdown()
+        }
+    }
+
+    /**
+     * Submits the given work to the pool. The calling thread blocks while the queue is full.
+     *
+     * @param work The work, usually a call wrapped in a new session
+     * @return The future result of the work
+     * @throws DataAccessResourceFailureException If the queue is still full once the queue timeout elapsed
+     */
+    public <T> Future<T> submit(final Closure<T> work) {
+        final long submitted = System.nanoTime()
+        try {
+            return executor.submit(new Callable<T>() {
+                T call() {
+                    long started = System.nanoTime()
+                    totalQueueTime.addAndGet(started - submitted)
+                    activeSessions.incrementAndGet()
+                    try {
+                        return runInsideTask(work)
+                    }
+                    finally {
+                        activeSessions.decrementAndGet()
+                        recordLatency(System.nanoTime() - submitted)
+                    }
+                }
+            })
+        }
+        catch (RejectedExecutionException e) {
+            throw new DataAccessResourceFailureException("Asynchronous GORM task rejected: " + e.message, e)
+        }
+    }
+
+    /**
+     * Executes the given work on the pool and waits for its result. Work executed from within a task of
+     * this executor is run directly, since waiting for a free thread could otherwise deadlock the pool.
+     *
+     * @param work The work, usually a call wrapped in a new session
+     * @return The result of the work
+     */
+    public <T> T execute(final Closure<T> work) {
+        if (insideTask.get()) {
+            return runInsideTask(work)
+        }
+        await(submit(work))
+    }
+
+    /**
+     * Decorates the work of a promise, must be called on the thread creating the promise. The work is submitted to
+     * the pool right away and the returned closure, which the promise runs, only waits for its result. If the calling
+     * thread is a task of this executor the returned closure runs the work itself instead.
+     *
+     * @param work The work, usually a call wrapped in a new session
+     * @return The closure for the promise to run
+     */
+    public <T> Closure<T> decorate(final Closure<T> work) {
+        if (insideTask.get()) {
+            return (Closure<T>) { Object[] args -> runInsideTask(work) }
+        }
+
+        Future<T> future
+        try {
+            future = submit(work)
+        }
+        catch (DataAccessResourceFailureException e) {
+            // fail the promise rather than the call creating it
+            return (Closure<T>) { Object[] args -> throw e }
+        }
+        return (Closure<T>) { Object[] args -> await(future) }
+    }
+
+    int getPoolSize() {
+        poolSize
+    }
+
+    int getQueueCapacity() {
+        queueCapacity
+    }
+
+    long getQueueTimeout() {
+        queueTimeout
+    }
+
+    /**
+     * @return The number of tasks waiting for a thread
+     */
+    int getQueueDepth() {
+        executor.queue.size()
+    }
+
+    /**
+     * @return The number of tasks currently running, each of which holds a session
+     */
+    int getActiveSessions() {
+        activeSessions.get()
+    }
+
+    /**
+     * @return The number of tasks that have finished, successfully or not
+     */
+    long getCompletedTaskCount() {
+        completedTasks.get()
+    }
+
+    /**
+     * @return The average time in milliseconds tasks waited in the queue
+     */
+    double getAverageQueueTime() {
+        long count = completedTasks.get()
+        count == 0 ? 0d : (double) totalQueueTime.get() / count / 1000000d
+    }
+
+    /**
+     * @return The average time in milliseconds from submitting a task until it finished
+     */
+    double getAverageLatency() {
+        long count = completedTasks.get()
+        count == 0 ? 0d : (double) totalLatency.get() / count / 1000000d
+    }
+
+    /**
+     * @return The longest time in milliseconds from submitting a task until it finished
+     */
+    double getMaxLatency() {
+        (double) maxLatency.get() / 1000000d
+    }
+
+    /**
+     * Shuts down the executor. Queued tasks still run, submitters waiting for room in the queue are rejected.
+     */
+    void shutdown() {
+        executor.shutdown()
+    }
+
+    protected static <T> T runInsideTask(Closure<T> work) {
+        Boolean outer = insideTask.get()
+        insideTask.set(Boolean.TRUE)
+        try {
+            return work.call()
+        }
+        finally {
+            if (outer == null) {
+                insideTask.remove()
+            }
+        }
+    }
+
+    protected static <T> T await(Future<T> future) {
+        try {
+            return future.get()
+        }
+        catch (InterruptedException e) {
+            future.cancel(true)
+            Thread.currentThread().interrupt()
+            throw new DataAccessResourceFailureException("Interrupted while waiting for asynchronous GORM task", e)
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.cause
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause
+            }
+            throw new DataAccessResourceFailureException("Asynchronous GORM task failed: " + cause.message, cause)
+        }
+    }
+
+    private void recordLatency(long latency) {
+        totalLatency.addAndGet(latency)
+        long max = maxLatency.get()
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get()
+        }
+        completedTasks.incrementAndGet()
+    }
+
+    /**
+     * Applies back-pressure by blocking the submitting thread until the queue has room. Waiting submitters are
+     * rejected once the executor is shut down, the threads of the pool may already be gone by the time there is room.
+     */
+    private static class WaitForQueueHandler implements RejectedExecutionHandler {
+        private static final long SHUTDOWN_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50)
+
+        private final long timeout
+
+        WaitForQueueHandler(long timeout) {
+            this.timeout = timeout
+        }
+
+        void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout)
+            try {
+                while (true) {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Executor has been shut down")
+                    }
+                    long wait = SHUTDOWN_CHECK_INTERVAL
+                    if (timeout > -1) {
+                        long remaining = deadline - System.nanoTime()
+                        if (remaining <= 0) {
+                            throw new RejectedExecutionException("Queue still full after waiting ${timeout}ms".toString())
+                        }
+                        wait = Math.min(wait, remaining)
+                    }
+                    if (executor.queue.offer(r, wait, TimeUnit.NANOSECONDS)) {
+                        break
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt()
+                throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e)
+            }
+            // shut down while the task was queued, take it back unless a thread of the pool has already taken it
+            if (executor.isShutdown() && executor.queue.remove(r)) {
+                throw new RejectedExecutionException("Executor has been shut down")
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger()
+
+        Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gorm-async-" + count.incrementAndGet())
+            thread.daemon = true
+            thread
+        }
+    }
+}
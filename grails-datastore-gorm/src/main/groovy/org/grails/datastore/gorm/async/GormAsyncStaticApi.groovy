@@ -31,10 +31,13 @@ class GormAsyncStaticApi<D> implements PromiseDecoratorProvider{
     @grails.async.DelegateAsync GormStaticApi<D> staticApi
 
     /**
-     * Wraps each promise in a new persistence session
+     * Wraps each promise in a new persistence session, submitted to the {@link GormAsyncExecutor} of the datastore
+     * when the promise is created
      */
     private List<PromiseDecorator> decorators = [ { Closure callable ->
-        return { args -> staticApi.withNewSession{ callable.call(*args) } }
+        GormAsyncExecutor.forDatastore(staticApi.datastore).decorate {
+            staticApi.withNewSession{ callable.call() }
+        }
     } as PromiseDecorator ]
 
     GormAsyncStaticApi(GormStaticApi<D> staticApi) {
@@ -22,6 +22,7 @@ import org.codehaus.groovy.grails.plugins.GrailsPluginManager
 import org.codehaus.groovy.grails.plugins.support.aware.GrailsApplicationAware
 import org.grails.datastore.gorm.proxy.GroovyProxyFactory
 import org.grails.datastore.mapping.engine.types.CustomTypeMarshaller
+import org.grails.datastore.mapping.model.AbstractMappingContext
 import org.grails.datastore.mapping.model.MappingContext
 import org.grails.datastore.mapping.model.PersistentEntity
 import org.springframework.beans.factory.FactoryBean
@@ -36,6 +37,8 @@ import org.springframework.context.ApplicationContextAware
  */
 abstract class AbstractMappingContextFactoryBean implements FactoryBean<MappingContext>, GrailsApplicationAware, ApplicationContextAware {
 
+    static final String CONFIG_PROPERTY_MAPPING_PARALLELISM = "grails.gorm.mapping.parallelism"
+
     private static final Log LOG = LogFactory.getLog(AbstractMappingContextFactoryBean)
 
     GrailsApplication grailsApplication
@@ -55,6 +58,14 @@ abstract class AbstractMappingContextFactoryBean implements FactoryBean<MappingC
         }
 
         if (grailsApplication) {
+            if (mappingContext instanceof AbstractMappingContext) {
+                def parallelism = grailsApplication.flatConfig.get(CONFIG_PROPERTY_MAPPING_PARALLELISM)
+                if (parallelism instanceof Number) {
+                    mappingContext.initializationParallelism = parallelism.intValue()
+                }
+                mappingContext.introspectClasses(grailsApplication.domainClasses*.clazz)
+            }
+
             for (GrailsDomainClass domainClass in grailsApplication.domainClasses) {
                 def domainMappingStrategy = domainClass.mappingStrategy
                 PersistentEntity entity
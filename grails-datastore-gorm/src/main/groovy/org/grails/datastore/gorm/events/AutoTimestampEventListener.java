@@ -70,6 +70,20 @@ public class AutoTimestampEventListener extends AbstractPersistenceEventListener
                PreUpdateEvent.class.isAssignableFrom(eventType);
     }
 
+    /**
+     * Leaves this listener out of the listener chain of entities without timestamp properties
+     */
+    @Override
+    public boolean supportsEntityEvent(PersistentEntity entity, Class<? extends ApplicationEvent> eventType) {
+        if (PreInsertEvent.class.isAssignableFrom(eventType)) {
+            return hasDateCreated(entity);
+        }
+        if (PreUpdateEvent.class.isAssignableFrom(eventType)) {
+            return hasLastupdated(entity);
+        }
+        return true;
+    }
+
     public boolean beforeInsert(PersistentEntity entity, EntityAccess ea) {
         if (hasDateCreated(entity)) {
             final Date now = new Date();
@@ -14,7 +14,6 @@
  */
 package org.grails.datastore.gorm.events;
 
-import java.lang.reflect.Method;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Date;
@@ -22,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.grails.datastore.gorm.support.EventMethodInvoker;
 import org.grails.datastore.mapping.core.Datastore;
 import org.grails.datastore.mapping.dirty.checking.DirtyCheckable;
 import org.grails.datastore.mapping.engine.EntityAccess;
@@ -30,7 +30,6 @@ import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationEvent;
-import org.springframework.util.ReflectionUtils;
 
 /**
  * An event listener that provides support for GORM domain events.
@@ -41,7 +40,7 @@ import org.springframework.util.ReflectionUtils;
 public class DomainEventListener extends AbstractPersistenceEventListener
        implements MappingContext.Listener {
 
-    private Map<PersistentEntity, Map<String, Method>> entityEvents = new ConcurrentHashMap<PersistentEntity, Map<String, Method>>();
+    private Map<PersistentEntity, Map<String, EventMethodInvoker>> entityEvents = new ConcurrentHashMap<PersistentEntity, Map<String, EventMethodInvoker>>();
 
     @SuppressWarnings("rawtypes")
     public static final Class[] ZERO_PARAMS = {};
@@ -131,13 +130,14 @@ public class DomainEventListener extends AbstractPersistenceEventListener
     }    
 
     protected void setVersion(final EntityAccess ea) {
-        if (Number.class.isAssignableFrom(ea.getPropertyType("version"))) {
+        final Class<?> versionType = ea.getPropertyType("version");
+        if (Number.class.isAssignableFrom(versionType)) {
             ea.setProperty("version", 0);
         }
-        else if (Timestamp.class.isAssignableFrom(ea.getPropertyType("version"))) {
+        else if (Timestamp.class.isAssignableFrom(versionType)) {
             ea.setProperty("version", new Timestamp(System.currentTimeMillis()));
         }
-        else if (Date.class.isAssignableFrom(ea.getPropertyType("version"))) {
+        else if (Date.class.isAssignableFrom(versionType)) {
             ea.setProperty("version", new Date());
         }
     }
@@ -232,26 +232,63 @@ public class DomainEventListener extends AbstractPersistenceEventListener
         return AbstractPersistenceEvent.class.isAssignableFrom(eventType);
     }
 
+    /**
+     * Leaves this listener out of the listener chain for events that neither have an event method on the entity
+     * nor need the version, dirty checking or autowiring support of this listener
+     */
+    @Override
+    public boolean supportsEntityEvent(PersistentEntity entity, Class<? extends ApplicationEvent> eventType) {
+        if (PostLoadEvent.class.isAssignableFrom(eventType)) {
+            return true;
+        }
+        if (PreInsertEvent.class.isAssignableFrom(eventType)) {
+            return entity.isVersioned() || hasEvent(entity, EVENT_BEFORE_INSERT);
+        }
+        if (PostInsertEvent.class.isAssignableFrom(eventType)) {
+            return isDirtyCheckable(entity) || hasEvent(entity, EVENT_AFTER_INSERT);
+        }
+        if (PostUpdateEvent.class.isAssignableFrom(eventType)) {
+            return isDirtyCheckable(entity) || hasEvent(entity, EVENT_AFTER_UPDATE);
+        }
+        if (PreUpdateEvent.class.isAssignableFrom(eventType)) {
+            return hasEvent(entity, EVENT_BEFORE_UPDATE);
+        }
+        if (PreDeleteEvent.class.isAssignableFrom(eventType)) {
+            return hasEvent(entity, EVENT_BEFORE_DELETE);
+        }
+        if (PostDeleteEvent.class.isAssignableFrom(eventType)) {
+            return hasEvent(entity, EVENT_AFTER_DELETE);
+        }
+        if (PreLoadEvent.class.isAssignableFrom(eventType)) {
+            return hasEvent(entity, EVENT_BEFORE_LOAD);
+        }
+        if (SaveOrUpdateEvent.class.isAssignableFrom(eventType) || ValidationEvent.class.isAssignableFrom(eventType)) {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean hasEvent(PersistentEntity entity, String eventName) {
+        final Map<String, EventMethodInvoker> events = entityEvents.get(entity);
+        return events != null && events.containsKey(eventName);
+    }
+
+    private boolean isDirtyCheckable(PersistentEntity entity) {
+        return DirtyCheckable.class.isAssignableFrom(entity.getJavaClass());
+    }
+
     private boolean invokeEvent(String eventName, PersistentEntity entity, EntityAccess ea, ApplicationEvent event) {
-        final Map<String, Method> events = entityEvents.get(entity);
+        final Map<String, EventMethodInvoker> events = entityEvents.get(entity);
         if (events == null) {
             return true;
         }
 
-        final Method eventMethod = events.get(eventName);
-        if (eventMethod == null) {
+        final EventMethodInvoker invoker = events.get(eventName);
+        if (invoker == null) {
             return true;
         }
 
-        
-        final Object result;
-        if (eventMethod.getParameterTypes().length == 1) {
-            result = ReflectionUtils.invokeMethod(eventMethod, ea.getEntity(), event); 
-        }
-        else {
-            result = ReflectionUtils.invokeMethod(eventMethod, ea.getEntity());
-        }
-        
+        final Object result = invoker.invoke(ea.getEntity(), event);
         boolean booleanResult = (result instanceof Boolean) ? (Boolean)result : true;
         if (booleanResult && REFRESH_EVENTS.contains(eventName)) {
             ea.refresh();
@@ -261,7 +298,7 @@ public class DomainEventListener extends AbstractPersistenceEventListener
 
     private void createEventCaches(PersistentEntity entity) {
         Class<?> javaClass = entity.getJavaClass();
-        final ConcurrentHashMap<String, Method> events = new ConcurrentHashMap<String, Method>();
+        final ConcurrentHashMap<String, EventMethodInvoker> events = new ConcurrentHashMap<String, EventMethodInvoker>();
         entityEvents.put(entity, events);
 
         findAndCacheEvent(EVENT_BEFORE_INSERT, javaClass, events);
@@ -274,10 +311,10 @@ public class DomainEventListener extends AbstractPersistenceEventListener
         findAndCacheEvent(EVENT_AFTER_LOAD,    javaClass, events);
     }
 
-    private void findAndCacheEvent(String event, Class<?> javaClass, Map<String, Method> events) {
-        final Method method = ReflectionUtils.findMethod(javaClass, event);
-        if (method != null) {
-            events.put(event, method);
+    private void findAndCacheEvent(String event, Class<?> javaClass, Map<String, EventMethodInvoker> events) {
+        final EventMethodInvoker invoker = EventMethodInvoker.find(javaClass, event);
+        if (invoker != null) {
+            events.put(event, invoker);
         }
     }
 }
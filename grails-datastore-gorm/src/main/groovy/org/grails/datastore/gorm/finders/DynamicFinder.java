@@ -20,10 +20,14 @@ import groovy.lang.MissingMethodException;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -76,6 +80,10 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
     private String[] operators;
 
     private static Pattern methodExpressinPattern;
+    /**
+     * Incremented whenever the method expressions change, which invalidates compiled finders
+     */
+    private static volatile int methodExpressionsVersion;
     private static final Object[] EMPTY_OBJECT_ARRAY = {};
 
     private static final String NOT = "Not";
@@ -105,8 +113,12 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
     static void resetMethodExpressionPattern() {
         String expressionPattern = DefaultGroovyMethods.join(methodExpressions.keySet(), "|");
         methodExpressinPattern = Pattern.compile("\\p{Upper}[\\p{Lower}\\d]+(" + expressionPattern + ")");
+        methodExpressionsVersion++;
     }
 
+    private final ConcurrentMap<Class, ConcurrentMap<String, CompiledFinder>> compiledFinders =
+            new ConcurrentHashMap<Class, ConcurrentMap<String, CompiledFinder>>();
+
     protected DynamicFinder(final Pattern pattern, final String[] operators, final Datastore datastore) {
         super(datastore);
         this.pattern = pattern;
@@ -141,6 +153,22 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
 
     public void setPattern(String pattern) {
         this.pattern = Pattern.compile(pattern);
+        compiledFinders.clear();
+    }
+
+    /**
+     * Discards the finders compiled for the class of the given name, for example when the class is reloaded.
+     * Classes are matched by name so the finders compiled for previous versions of the class are discarded too,
+     * since their expressions keep those classes from being unloaded.
+     *
+     * @param className The name of the class
+     */
+    public void clearCompiledFinders(String className) {
+        for (Iterator<Class> i = compiledFinders.keySet().iterator(); i.hasNext();) {
+            if (className.equals(i.next().getName())) {
+                i.remove();
+            }
+        }
     }
 
     public boolean isMethodMatch(String methodName) {
@@ -163,19 +191,126 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
     public DynamicFinderInvocation createFinderInvocation(Class clazz, String methodName,
             Closure additionalCriteria, Object[] arguments) {
 
-        List expressions = new ArrayList();
         if (arguments == null) arguments = EMPTY_OBJECT_ARRAY;
         else {
             Object[] tmp = new Object[arguments.length];
             System.arraycopy(arguments,0,tmp, 0, arguments.length);
             arguments = tmp;
         }
+
+        CompiledFinder finder = getCompiledFinder(clazz, methodName);
+
+        List expressions = new ArrayList();
+        int totalRequiredArguments = 0;
+        if (finder.booleanExpression != null) {
+            MethodExpression booleanExpression = finder.booleanExpression.copy();
+            booleanExpression.setArguments(new Object[]{finder.booleanArgument});
+            expressions.add(booleanExpression);
+        }
+
+        if (!finder.expressions.isEmpty()) {
+            PersistentEntity persistentEntity = datastore.getMappingContext().getPersistentEntity(clazz.getName());
+            if (finder.operator != null) {
+                // calculating the number of arguments required for each expression
+                int argumentCursor = 0;
+                for (MethodExpression expression : finder.expressions) {
+                    MethodExpression currentExpression = expression.copy();
+                    final int requiredArgs = currentExpression.getArgumentsRequired();
+                    // populate the arguments into the GrailsExpression from the argument list
+                    Object[] currentArguments = new Object[requiredArgs];
+                    if ((argumentCursor + requiredArgs) > arguments.length) {
+                        throw new MissingMethodException(methodName, clazz, arguments);
+                    }
+
+                    for (int k = 0; k < requiredArgs; k++, argumentCursor++) {
+                        currentArguments[k] = arguments[argumentCursor];
+                    }
+                    currentExpression = getInitializedExpression(currentExpression, currentArguments);
+
+                    try {
+                        currentExpression.convertArguments(persistentEntity);
+                    } catch (ConversionException e) {
+                        throw new MissingMethodException(methodName, clazz, arguments);
+                    }
+
+                    // add to list of expressions
+                    totalRequiredArguments += currentExpression.argumentsRequired;
+                    expressions.add(currentExpression);
+                }
+            }
+            else {
+                // otherwise there is only one expression
+                MethodExpression solo = finder.expressions.get(0).copy();
+
+                final int requiredArguments = solo.getArgumentsRequired();
+                if (requiredArguments  > arguments.length) {
+                    throw new MissingMethodException(methodName,clazz,arguments);
+                }
+
+                totalRequiredArguments += requiredArguments;
+                solo = getInitializedExpression(solo, arguments);
+                try {
+                    solo.convertArguments(persistentEntity);
+                } catch (ConversionException e) {
+                    if (!(persistentEntity.getPropertyByName(solo.propertyName) instanceof Basic)) {
+                        throw new MissingMethodException(methodName, clazz, arguments);
+                    }
+                }
+                expressions.add(solo);
+            }
+        }
+
+        // if the total of all the arguments necessary does not equal the number of arguments
+        // throw exception
+        if (totalRequiredArguments > arguments.length) {
+            throw new MissingMethodException(methodName,clazz,arguments);
+        }
+
+        // calculate the remaining arguments
+        Object[] remainingArguments = new Object[arguments.length - totalRequiredArguments];
+        if (remainingArguments.length > 0) {
+            for (int i = 0, j = totalRequiredArguments; i < remainingArguments.length; i++,j++) {
+                remainingArguments[i] = arguments[j];
+            }
+        }
+
+        return new DynamicFinderInvocation(clazz, methodName, remainingArguments,
+                expressions, additionalCriteria, finder.operator);
+    }
+
+    /**
+     * Obtains the compiled form of the given finder method, parsing the method name on first use only.
+     *
+     * @param clazz The class the finder is invoked on
+     * @param methodName The name of the finder method
+     * @return The compiled finder
+     */
+    protected CompiledFinder getCompiledFinder(Class clazz, String methodName) {
+        ConcurrentMap<String, CompiledFinder> finders = compiledFinders.get(clazz);
+        if (finders == null) {
+            finders = new ConcurrentHashMap<String, CompiledFinder>();
+            ConcurrentMap<String, CompiledFinder> existing = compiledFinders.putIfAbsent(clazz, finders);
+            if (existing != null) {
+                finders = existing;
+            }
+        }
+
+        CompiledFinder finder = finders.get(methodName);
+        if (finder == null || finder.version != methodExpressionsVersion) {
+            finder = compileFinder(clazz, methodName);
+            finders.put(methodName, finder);
+        }
+        return finder;
+    }
+
+    private CompiledFinder compileFinder(Class clazz, String methodName) {
+        final int version = methodExpressionsVersion;
         Matcher match = pattern.matcher(methodName);
         // find match
         match.find();
 
-        String[] queryParameters;
-        int totalRequiredArguments = 0;
+        MethodExpression booleanExpression = null;
+        Boolean booleanArgument = null;
         // get the sequence clauses
         final String querySequence;
         int groupCount = match.groupCount();
@@ -188,102 +323,38 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
             else {
                 querySequence = match.group(5);
             }
-            Boolean arg = Boolean.TRUE;
+            booleanArgument = Boolean.TRUE;
             if (booleanProperty.matches("Not[A-Z].*")) {
                 booleanProperty = booleanProperty.substring(3);
-                arg = Boolean.FALSE;
+                booleanArgument = Boolean.FALSE;
             }
-            MethodExpression booleanExpression = findMethodExpression(clazz, booleanProperty);
-            booleanExpression.setArguments(new Object[]{arg});
-            expressions.add(booleanExpression);
+            booleanExpression = findMethodExpression(clazz, booleanProperty);
         }
         else {
             querySequence = match.group(2);
         }
+
+        List<MethodExpression> expressions = new ArrayList<MethodExpression>();
         // if it contains operator and split
-        boolean containsOperator = false;
         String operatorInUse = null;
         if (querySequence != null) {
             for (int i = 0; i < operators.length; i++) {
                 Matcher currentMatcher = operatorPatterns[i].matcher(querySequence);
                 if (currentMatcher.find()) {
-                    containsOperator = true;
                     operatorInUse = operators[i];
-
-                    queryParameters = querySequence.split(operatorInUse);
-
-                    // loop through query parameters and create expressions
-                    // calculating the number of arguments required for the expression
-                    int argumentCursor = 0;
-                    for (String queryParameter : queryParameters) {
-                        MethodExpression currentExpression = findMethodExpression(clazz, queryParameter);
-                        final int requiredArgs = currentExpression.getArgumentsRequired();
-                        // populate the arguments into the GrailsExpression from the argument list
-                        Object[] currentArguments = new Object[requiredArgs];
-                        if ((argumentCursor + requiredArgs) > arguments.length) {
-                            throw new MissingMethodException(methodName, clazz, arguments);
-                        }
-
-                        for (int k = 0; k < requiredArgs; k++, argumentCursor++) {
-                            currentArguments[k] = arguments[argumentCursor];
-                        }
-                        currentExpression = getInitializedExpression(currentExpression, currentArguments);
-                        PersistentEntity persistentEntity = datastore.getMappingContext().getPersistentEntity(clazz.getName());
-
-                        try {
-                            currentExpression.convertArguments(persistentEntity);
-                        } catch (ConversionException e) {
-                            throw new MissingMethodException(methodName, clazz, arguments);
-                        }
-
-                        // add to list of expressions
-                        totalRequiredArguments += currentExpression.argumentsRequired;
-                        expressions.add(currentExpression);
+                    for (String queryParameter : querySequence.split(operatorInUse)) {
+                        expressions.add(findMethodExpression(clazz, queryParameter));
                     }
                     break;
                 }
             }
-        }
-        // otherwise there is only one expression
-        if (!containsOperator && querySequence != null) {
-            MethodExpression solo =findMethodExpression(clazz,querySequence);
-
-            final int requiredArguments = solo.getArgumentsRequired();
-            if (requiredArguments  > arguments.length) {
-                throw new MissingMethodException(methodName,clazz,arguments);
-            }
-
-            totalRequiredArguments += requiredArguments;
-            Object[] soloArgs = new Object[requiredArguments];
-            System.arraycopy(arguments, 0, soloArgs, 0, requiredArguments);
-            solo = getInitializedExpression(solo, arguments);
-            PersistentEntity persistentEntity = datastore.getMappingContext().getPersistentEntity(clazz.getName());
-            try {
-                solo.convertArguments(persistentEntity);
-            } catch (ConversionException e) {
-                if (!(persistentEntity.getPropertyByName(solo.propertyName) instanceof Basic)) {
-                    throw new MissingMethodException(methodName, clazz, arguments);
-                }
-            }
-            expressions.add(solo);
-        }
-
-        // if the total of all the arguments necessary does not equal the number of arguments
-        // throw exception
-        if (totalRequiredArguments > arguments.length) {
-            throw new MissingMethodException(methodName,clazz,arguments);
-        }
-
-        // calculate the remaining arguments
-        Object[] remainingArguments = new Object[arguments.length - totalRequiredArguments];
-        if (remainingArguments.length > 0) {
-            for (int i = 0, j = totalRequiredArguments; i < remainingArguments.length; i++,j++) {
-                remainingArguments[i] = arguments[j];
+            // otherwise there is only one expression
+            if (operatorInUse == null) {
+                expressions.add(findMethodExpression(clazz, querySequence));
             }
         }
 
-        return new DynamicFinderInvocation(clazz, methodName, remainingArguments,
-                expressions, additionalCriteria, operatorInUse);
+        return new CompiledFinder(version, booleanExpression, booleanArgument, expressions, operatorInUse);
     }
 
     /**
@@ -348,6 +419,28 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
 
     protected abstract Object doInvokeInternal(DynamicFinderInvocation invocation);
 
+    /**
+     * The result of parsing a finder method name: the method expressions, without arguments, in the
+     * order in which they consume the arguments of an invocation. Compiled finders are immutable and
+     * the expressions are copied before being bound to arguments, so they can be shared between threads.
+     */
+    protected static final class CompiledFinder {
+        final int version;
+        final MethodExpression booleanExpression;
+        final Boolean booleanArgument;
+        final List<MethodExpression> expressions;
+        final String operator;
+
+        CompiledFinder(int version, MethodExpression booleanExpression, Boolean booleanArgument,
+                List<MethodExpression> expressions, String operator) {
+            this.version = version;
+            this.booleanExpression = booleanExpression;
+            this.booleanArgument = booleanArgument;
+            this.expressions = Collections.unmodifiableList(expressions);
+            this.operator = operator;
+        }
+    }
+
     public Object invoke(final Class clazz, String methodName, Object[] arguments) {
         return invoke(clazz, methodName, (Closure)null, arguments);
     }
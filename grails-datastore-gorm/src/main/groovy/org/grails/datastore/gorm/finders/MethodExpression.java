@@ -33,7 +33,7 @@ import org.springframework.util.Assert;
 /**
  *  Method expression used to evaluate a dynamic finder.
  */
-public abstract class MethodExpression {
+public abstract class MethodExpression implements Cloneable {
 
     protected String propertyName;
     protected Object[] arguments;
@@ -93,6 +93,22 @@ public abstract class MethodExpression {
         return Arrays.copyOf(arguments, arguments.length);
     }
 
+    /**
+     * Creates a copy of this expression without arguments. Used to bind the expressions of a
+     * compiled dynamic finder to the arguments of an invocation.
+     *
+     * @return The copy
+     */
+    public MethodExpression copy() {
+        try {
+            MethodExpression copy = (MethodExpression) clone();
+            copy.arguments = null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static class GreaterThan extends MethodExpression {
         public GreaterThan(Class<?> targetClass, String propertyName) {
             super(targetClass, propertyName);
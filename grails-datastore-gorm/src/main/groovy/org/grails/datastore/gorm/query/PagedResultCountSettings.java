@@ -0,0 +1,187 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.query;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import org.grails.datastore.mapping.core.Datastore;
+import org.grails.datastore.mapping.query.api.EstimatedCountQuery;
+
+/**
+ * How the total counts of {@link grails.gorm.PagedResultList} instances of a single datastore are obtained, along
+ * with the counts cached for the datastore.
+ * <p/>
+ * By default counts are obtained on demand, exactly and without caching. Settings are created for each datastore on
+ * first use with these defaults, differently configured ones can be registered with
+ * {@link #register(Datastore, PagedResultCountSettings)}.
+ *
+ * @author Graeme Rocher
+ * @since 2.3
+ */
+public class PagedResultCountSettings {
+
+    public static final int MAX_CACHED_COUNTS = 1000;
+
+    private static final Map<Datastore, PagedResultCountSettings> settings =
+            Collections.synchronizedMap(new WeakHashMap<Datastore, PagedResultCountSettings>());
+
+    private volatile Executor countExecutor;
+    private volatile long countCacheTimeout;
+    private volatile boolean estimatedCount;
+    private final ConcurrentMap<String, CachedCount> cachedCounts = new ConcurrentHashMap<String, CachedCount>();
+
+    /**
+     * @param datastore The datastore
+     * @return The settings for the given datastore, created with the defaults if none are registered
+     */
+    public static PagedResultCountSettings forDatastore(Datastore datastore) {
+        synchronized (settings) {
+            PagedResultCountSettings datastoreSettings = settings.get(datastore);
+            if (datastoreSettings == null) {
+                datastoreSettings = new PagedResultCountSettings();
+                settings.put(datastore, datastoreSettings);
+            }
+            return datastoreSettings;
+        }
+    }
+
+    /**
+     * Registers the settings to use for the given datastore, discarding the counts cached with the previous ones
+     *
+     * @param datastore The datastore
+     * @param datastoreSettings The settings
+     */
+    public static void register(Datastore datastore, PagedResultCountSettings datastoreSettings) {
+        settings.put(datastore, datastoreSettings);
+    }
+
+    /**
+     * Sets the executor used to run count queries concurrently with the query for the page. If null, which is the
+     * default, the count query is executed on demand by the thread that requests the total count.
+     *
+     * @param executor The executor
+     */
+    public void setCountExecutor(Executor executor) {
+        countExecutor = executor;
+    }
+
+    public Executor getCountExecutor() {
+        return countExecutor;
+    }
+
+    /**
+     * Sets the time in milliseconds for which total counts are cached. A timeout of zero, the default, disables
+     * caching. Cached counts do not reflect changes made within the timeout, so it should be kept short.
+     *
+     * @param timeout The timeout in milliseconds
+     */
+    public void setCountCacheTimeout(long timeout) {
+        countCacheTimeout = timeout;
+        if (timeout <= 0) {
+            cachedCounts.clear();
+        }
+    }
+
+    public long getCountCacheTimeout() {
+        return countCacheTimeout;
+    }
+
+    /**
+     * Sets whether an estimated count should be used when the query is able to provide one
+     *
+     * @param estimated True if estimated counts should be used
+     * @see EstimatedCountQuery
+     */
+    public void setEstimatedCount(boolean estimated) {
+        estimatedCount = estimated;
+    }
+
+    public boolean isEstimatedCount() {
+        return estimatedCount;
+    }
+
+    /**
+     * @param key The key identifying the entity and criteria of a query
+     * @return The cached count or null if there is none or it expired
+     */
+    public Integer getCachedCount(String key) {
+        if (countCacheTimeout <= 0) {
+            return null;
+        }
+
+        CachedCount cached = cachedCounts.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.isExpired(currentTimeMillis())) {
+            cachedCounts.remove(key, cached);
+            return null;
+        }
+        return cached.count;
+    }
+
+    /**
+     * Caches the given count unless caching is disabled or the maximum number of counts are cached
+     *
+     * @param key The key identifying the entity and criteria of a query
+     * @param count The count
+     */
+    public void cacheCount(String key, int count) {
+        long timeout = countCacheTimeout;
+        if (timeout <= 0) {
+            return;
+        }
+
+        long now = currentTimeMillis();
+        if (cachedCounts.size() >= MAX_CACHED_COUNTS) {
+            for (Iterator<CachedCount> i = cachedCounts.values().iterator(); i.hasNext();) {
+                if (i.next().isExpired(now)) {
+                    i.remove();
+                }
+            }
+            if (cachedCounts.size() >= MAX_CACHED_COUNTS) {
+                return;
+            }
+        }
+        cachedCounts.put(key, new CachedCount(count, now + timeout));
+    }
+
+    /**
+     * @return The current time in milliseconds, against which cached counts expire
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static class CachedCount {
+        final int count;
+        final long expires;
+
+        CachedCount(int count, long expires) {
+            this.count = count;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expires;
+        }
+    }
+}
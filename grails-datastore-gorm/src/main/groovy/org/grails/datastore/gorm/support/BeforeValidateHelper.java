@@ -16,40 +16,55 @@ package org.grails.datastore.gorm.support;
 
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.util.ReflectionUtils;
 
 public class BeforeValidateHelper {
     public static final String BEFORE_VALIDATE = "beforeValidate";
 
+    private final Map<Class<?>, BeforeValidateMethods> methodsByClass = new ConcurrentHashMap<Class<?>, BeforeValidateMethods>();
+
     public void invokeBeforeValidate(final Object target, final List<?> validatedFieldsList) {
-        Class<?> domainClass = target.getClass();
-        Method method = null;
+        BeforeValidateMethods methods = getMethods(target.getClass());
+        EventMethodInvoker invoker;
         if (validatedFieldsList == null) {
             // prefer the no-arg version of beforeValidate() if validatedFieldsList
             // is null...
-            method = ReflectionUtils.findMethod(domainClass, BEFORE_VALIDATE);
-            if (method == null) {
-                method = ReflectionUtils.findMethod(domainClass, BEFORE_VALIDATE, List.class);
-            }
+            invoker = methods.noArgs != null ? methods.noArgs : methods.listArg;
         }
         else {
             // prefer the list-arg version of beforeValidate() if
             // validatedFieldsList is not null...
-            method = ReflectionUtils.findMethod(domainClass, BEFORE_VALIDATE, List.class);
-            if (method == null) {
-                method = ReflectionUtils.findMethod(domainClass, BEFORE_VALIDATE);
-            }
+            invoker = methods.listArg != null ? methods.listArg : methods.noArgs;
+        }
+        if (invoker != null) {
+            invoker.invoke(target, validatedFieldsList);
+        }
+    }
+
+    private BeforeValidateMethods getMethods(Class<?> domainClass) {
+        BeforeValidateMethods methods = methodsByClass.get(domainClass);
+        if (methods == null) {
+            methods = new BeforeValidateMethods(
+                    ReflectionUtils.findMethod(domainClass, BEFORE_VALIDATE),
+                    ReflectionUtils.findMethod(domainClass, BEFORE_VALIDATE, List.class));
+            methodsByClass.put(domainClass, methods);
         }
-        if (method != null) {
-            ReflectionUtils.makeAccessible(method);
-            Class<?>[] parameterTypes = method.getParameterTypes();
-            if (parameterTypes.length == 1) {
-                ReflectionUtils.invokeMethod(method, target, validatedFieldsList);
-            }
-            else {
-                ReflectionUtils.invokeMethod(method, target);
-            }
+        return methods;
+    }
+
+    /**
+     * The invokers of the beforeValidate methods of a class, resolved once per class
+     */
+    private static class BeforeValidateMethods {
+        final EventMethodInvoker noArgs;
+        final EventMethodInvoker listArg;
+
+        BeforeValidateMethods(Method noArgs, Method listArg) {
+            this.noArgs = noArgs == null ? null : EventMethodInvoker.create(noArgs);
+            this.listArg = listArg == null ? null : EventMethodInvoker.create(listArg);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,162 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cglib.core.CodeGenerationException;
+import org.springframework.cglib.reflect.FastClass;
+import org.springframework.cglib.reflect.FastMethod;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Invokes an event method, such as <code>beforeInsert</code> or <code>afterLoad</code>, of a domain class.
+ * <p/>
+ * Invokers are created once per domain class and method when the class is mapped. Public methods of public
+ * classes are called through a class generated for the domain class (see {@link FastClass}), which invokes
+ * the method directly instead of going through reflection. Any other method is made accessible once and
+ * invoked reflectively.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+public abstract class EventMethodInvoker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventMethodInvoker.class);
+    private static final Object[] NO_ARGS = {};
+
+    private final Method method;
+    private final boolean takesArgument;
+
+    protected EventMethodInvoker(Method method) {
+        this.method = method;
+        takesArgument = method.getParameterTypes().length == 1;
+    }
+
+    /**
+     * Creates an invoker for the given method
+     *
+     * @param method The method, which takes at most one argument
+     * @return The invoker
+     */
+    public static EventMethodInvoker create(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(declaringClass.getModifiers())) {
+            try {
+                FastMethod fastMethod = FastClass.create(declaringClass).getMethod(method);
+                if (fastMethod.getIndex() > -1) {
+                    return new GeneratedInvoker(method, fastMethod);
+                }
+            }
+            catch (CodeGenerationException e) {
+                logFallback(method, e);
+            }
+            catch (SecurityException e) {
+                logFallback(method, e);
+            }
+        }
+        return new ReflectiveInvoker(method);
+    }
+
+    private static void logFallback(Method method, Exception e) {
+        LOG.debug("Could not generate invoker for method [" + method + "], falling back to reflection: " + e.getMessage());
+    }
+
+    /**
+     * Finds the given no-argument method and creates an invoker for it
+     *
+     * @param type The class
+     * @param name The name of the method
+     * @return The invoker or null if no such method exists
+     */
+    public static EventMethodInvoker find(Class<?> type, String name) {
+        Method method = ReflectionUtils.findMethod(type, name);
+        return method == null ? null : create(method);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return Whether the method takes an argument
+     */
+    public boolean isTakesArgument() {
+        return takesArgument;
+    }
+
+    /**
+     * Invokes the method, passing the given argument if the method takes one
+     *
+     * @param target The object to invoke the method on
+     * @param argument The argument
+     * @return The return value of the method
+     */
+    public Object invoke(Object target, Object argument) {
+        try {
+            return doInvoke(target, takesArgument ? new Object[] { argument } : NO_ARGS);
+        }
+        catch (InvocationTargetException e) {
+            ReflectionUtils.rethrowRuntimeException(e.getTargetException());
+            return null;
+        }
+        catch (IllegalAccessException e) {
+            ReflectionUtils.handleReflectionException(e);
+            return null;
+        }
+    }
+
+    /**
+     * Invokes the method without an argument
+     *
+     * @param target The object to invoke the method on
+     * @return The return value of the method
+     */
+    public Object invoke(Object target) {
+        return invoke(target, null);
+    }
+
+    protected abstract Object doInvoke(Object target, Object[] args) throws InvocationTargetException, IllegalAccessException;
+
+    private static class GeneratedInvoker extends EventMethodInvoker {
+        private final FastMethod fastMethod;
+
+        GeneratedInvoker(Method method, FastMethod fastMethod) {
+            super(method);
+            this.fastMethod = fastMethod;
+        }
+
+        @Override
+        protected Object doInvoke(Object target, Object[] args) throws InvocationTargetException {
+            return fastMethod.invoke(target, args);
+        }
+    }
+
+    private static class ReflectiveInvoker extends EventMethodInvoker {
+        ReflectiveInvoker(Method method) {
+            super(method);
+            ReflectionUtils.makeAccessible(method);
+        }
+
+        @Override
+        protected Object doInvoke(Object target, Object[] args) throws InvocationTargetException, IllegalAccessException {
+            return getMethod().invoke(target, args);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.support;
+
+import java.lang.reflect.Constructor;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.codehaus.groovy.runtime.DefaultGroovyMethods;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates the values of timestamp properties such as <code>dateCreated</code> and <code>lastUpdated</code> from
+ * the current time in milliseconds.
+ * <p/>
+ * A factory is resolved once for the type of a property, so the common date types are created directly and
+ * other types through their <code>long</code> constructor, without looking the constructor up for every value.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+public abstract class TimestampFactory {
+
+    /**
+     * @param time The time in milliseconds
+     * @return The timestamp
+     */
+    public abstract Object createTimestamp(long time);
+
+    /**
+     * Obtains the factory for the given property type
+     *
+     * @param type The type of the timestamp property
+     * @return The factory
+     */
+    public static TimestampFactory forType(final Class<?> type) {
+        if (type == Date.class) {
+            return new TimestampFactory() {
+                @Override
+                public Object createTimestamp(long time) {
+                    return new Date(time);
+                }
+            };
+        }
+        if (type == Timestamp.class) {
+            return new TimestampFactory() {
+                @Override
+                public Object createTimestamp(long time) {
+                    return new Timestamp(time);
+                }
+            };
+        }
+        if (type == java.sql.Date.class) {
+            return new TimestampFactory() {
+                @Override
+                public Object createTimestamp(long time) {
+                    return new java.sql.Date(time);
+                }
+            };
+        }
+        if (type == Time.class) {
+            return new TimestampFactory() {
+                @Override
+                public Object createTimestamp(long time) {
+                    return new Time(time);
+                }
+            };
+        }
+        if (type == Long.class || type == long.class) {
+            return new TimestampFactory() {
+                @Override
+                public Object createTimestamp(long time) {
+                    return time;
+                }
+            };
+        }
+
+        final Constructor<?> constructor = ClassUtils.getConstructorIfAvailable(type, long.class);
+        if (constructor != null) {
+            return new TimestampFactory() {
+                @Override
+                public Object createTimestamp(long time) {
+                    return BeanUtils.instantiateClass(constructor, time);
+                }
+            };
+        }
+
+        // leave it to Groovy to find a constructor the time can be coerced to
+        return new TimestampFactory() {
+            @Override
+            public Object createTimestamp(long time) {
+                return DefaultGroovyMethods.newInstance(type, new Object[] { time });
+            }
+        };
+    }
+}
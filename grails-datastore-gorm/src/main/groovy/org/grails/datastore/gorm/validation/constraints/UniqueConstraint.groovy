@@ -34,6 +34,11 @@ class UniqueConstraint extends AbstractConstraint {
         this.datastore = datastore
     }
 
+    /**
+     * The maximum number of values looked up with a single <code>in</code> query when validating a batch
+     */
+    static final int BATCH_QUERY_SIZE = 500
+
     @Override
     protected void processValidate(Object target, Object propertyValue, Errors errors) {
         withManualFlushMode { Session session ->
@@ -43,13 +48,15 @@ class UniqueConstraint extends AbstractConstraint {
             if (constraintParameter instanceof Boolean) {
                 if (constraintParameter) {
                     if (propertyValue != null) {
+                        if (checkBatch(target, propertyValue, [], id, persister, errors)) {
+                            return
+                        }
 
                         final existing = constraintOwningClass."findBy${GrailsNameUtils.getClassName(constraintPropertyName, '')}"(propertyValue)
                         if (existing != null) {
                             def existingId = getIdentifier(existing, persister)
                             if (id != existingId) {
-                                def args = [ constraintPropertyName, constraintOwningClass, propertyValue ] as Object[]
-                                rejectValue(target, errors, "unique", args, getDefaultMessage("default.not.unique.message"))
+                                rejectNotUnique(target, propertyValue, errors)
                             }
                         }
                     }
@@ -66,6 +73,10 @@ class UniqueConstraint extends AbstractConstraint {
 
                 def notIncludeNull = group.every { target[it] != null }
                 if (notIncludeNull) {
+                    if (checkBatch(target, propertyValue, group, id, persister, errors)) {
+                        return
+                    }
+
                     def existing = constraintOwningClass.createCriteria().get {
                         eq constraintPropertyName, propertyValue
                         for (prop in group) {
@@ -75,8 +86,7 @@ class UniqueConstraint extends AbstractConstraint {
                     if (existing) {
                         def existingId = getIdentifier(existing, persister)
                         if (id != existingId) {
-                            def args = [constraintPropertyName, constraintOwningClass, propertyValue] as Object[]
-                            rejectValue(target, errors, "unique", args, getDefaultMessage("default.not.unique.message"))
+                            rejectNotUnique(target, propertyValue, errors)
                         }
                     }
                 }
@@ -84,6 +94,113 @@ class UniqueConstraint extends AbstractConstraint {
         }
     }
 
+    private void rejectNotUnique(target, propertyValue, Errors errors) {
+        def args = [constraintPropertyName, constraintOwningClass, propertyValue] as Object[]
+        rejectValue(target, errors, "unique", args, getDefaultMessage("default.not.unique.message"))
+    }
+
+    /**
+     * Checks the target against the results resolved for the active {@link UniqueConstraintBatch}
+     *
+     * @return True if the target was checked, false if it has to be checked with a query of its own
+     */
+    private boolean checkBatch(target, propertyValue, List group, id, EntityPersister persister, Errors errors) {
+        UniqueConstraintBatch batch = UniqueConstraintBatch.current
+        if (batch == null || isEntityValue(propertyValue)) {
+            return false
+        }
+
+        def key = getBatchKey(target, group)
+        if (key == null) {
+            return false
+        }
+
+        String constraintKey = "${constraintOwningClass.name}.${constraintPropertyName}${group}"
+        List<Serializable> existingIds = batch.getExistingIds(constraintKey, key) { List instances ->
+            findExistingIds(instances, group, persister)
+        }
+        if (existingIds != null && existingIds.any { it != id }) {
+            rejectNotUnique(target, propertyValue, errors)
+            return true
+        }
+
+        // the value is only claimed by instances that aren't rejected, other constraints are checked once
+        // the claim is contested
+        if (batch.claim(constraintKey, key, target, errors, { getBatchKey(it, group) }) != null) {
+            rejectNotUnique(target, propertyValue, errors)
+            return true
+        }
+        return existingIds != null
+    }
+
+    /**
+     * Finds the persisted instances holding any of the values of the given instances, using one
+     * <code>in</code> query per chunk of values and matching the group properties in memory
+     */
+    private Map<Object, List<Serializable>> findExistingIds(List instances, List group, EntityPersister persister) {
+        Map<Object, List<Serializable>> existingIds = [:]
+        Set values = new LinkedHashSet()
+        for (instance in instances) {
+            if (!constraintOwningClass.isInstance(instance)) continue
+
+            def value = instance[constraintPropertyName]
+            if (value == null || isEntityValue(value)) continue
+
+            def key = getBatchKey(instance, group)
+            if (key != null) {
+                existingIds[key] = []
+                values << value
+            }
+        }
+
+        for (List chunk in new ArrayList(values).collate(BATCH_QUERY_SIZE)) {
+            def found = constraintOwningClass.createCriteria().list {
+                'in' constraintPropertyName, chunk
+            }
+            for (existing in found) {
+                def key = getBatchKey(existing, group)
+                if (key != null && existingIds.containsKey(key)) {
+                    existingIds[key] << getIdentifier(existing, persister)
+                }
+            }
+        }
+        existingIds
+    }
+
+    /**
+     * @return The value of the constrained property, or a list of it and the values of the group. Null if a
+     * value of the group is a transient instance which cannot be matched by identifier
+     */
+    private getBatchKey(instance, List group) {
+        def value = instance[constraintPropertyName]
+        if (!group) {
+            return value
+        }
+
+        List key = [value]
+        for (prop in group) {
+            def groupValue = instance[prop]
+            if (isEntityValue(groupValue)) {
+                groupValue = getEntityIdentifier(groupValue)
+                if (groupValue == null) {
+                    return null
+                }
+            }
+            key << groupValue
+        }
+        key
+    }
+
+    private boolean isEntityValue(value) {
+        value != null && (datastore.mappingContext.proxyFactory.isProxy(value) ||
+                          datastore.mappingContext.getPersistentEntity(value.getClass().name) != null)
+    }
+
+    private Serializable getEntityIdentifier(value) {
+        def proxyFactory = datastore.mappingContext.proxyFactory
+        proxyFactory.isProxy(value) ? proxyFactory.getIdentifier(value) : getIdentifier(value, null)
+    }
+
     private Serializable getIdentifier(target, EntityPersister persister) {
         if (target == null) {
             return
@@ -0,0 +1,148 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.validation.constraints
+
+import org.springframework.validation.Errors
+
+/**
+ * Holds the state of a batch of instances whose unique constraints are validated together.
+ * <p/>
+ * While a batch is active on the current thread, the first time a {@link UniqueConstraint} is validated it
+ * looks up the persisted instances for the values of all instances in the batch at once, using one
+ * <code>in</code> query per constrained property or group. The remaining instances are then checked
+ * against these results. An instance is also rejected if it has the same value as another valid instance
+ * of the batch that was validated before it, because that value is not visible to the datastore yet. An
+ * instance only keeps its value from the other instances of the batch while it is valid and holds the value,
+ * so an instance that failed validation or was changed and validated again doesn't reject the later ones.
+ * <p/>
+ * Usage:
+ * <pre>
+ * UniqueConstraintBatch.withBatch(books) {
+ *     books.each { it.validate() }
+ * }
+ * </pre>
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+class UniqueConstraintBatch {
+
+    private static final ThreadLocal<UniqueConstraintBatch> currentBatch = new ThreadLocal<UniqueConstraintBatch>()
+
+    private final List instances = []
+    private final Map<String, Map<Object, List<Serializable>>> existingIds = [:]
+    private final Map<String, Map<Object, Claim>> claimedValues = [:]
+    private final Map<String, Map<Object, Object>> claimedKeys = [:]
+
+    /**
+     * Validates the unique constraints of the given instances as one batch within the given closure.
+     * If a batch is already active, the instances are added to it.
+     *
+     * @param instances The instances that will be validated
+     * @param callable The closure that validates or saves them
+     * @return The result of the closure
+     */
+    static withBatch(Iterable instances, Closure callable) {
+        UniqueConstraintBatch batch = currentBatch.get()
+        if (batch != null) {
+            batch.instances.addAll(instances.findAll { it != null })
+            return callable.call()
+        }
+
+        batch = new UniqueConstraintBatch()
+        batch.instances.addAll(instances.findAll { it != null })
+        currentBatch.set(batch)
+        try {
+            return callable.call()
+        }
+        finally {
+            currentBatch.remove()
+        }
+    }
+
+    /**
+     * @return The batch active on the current thread or null
+     */
+    static UniqueConstraintBatch getCurrent() {
+        currentBatch.get()
+    }
+
+    /**
+     * Obtains the identifiers of the persisted instances holding the given value, resolving the values of the
+     * whole batch with the given closure the first time the constraint is checked.
+     *
+     * @param constraintKey Identifies the constraint
+     * @param value The value, or the values of the group
+     * @param resolver Called with the instances of the batch, returns the identifiers found for each of their values
+     * @return The identifiers or null if the value was not part of the batch when it was resolved
+     */
+    List<Serializable> getExistingIds(String constraintKey, Object value, Closure<Map<Object, List<Serializable>>> resolver) {
+        Map<Object, List<Serializable>> resolved = existingIds[constraintKey]
+        if (resolved == null) {
+            resolved = resolver.call(new ArrayList(instances))
+            existingIds[constraintKey] = resolved
+        }
+        resolved.get(value)
+    }
+
+    /**
+     * Records that the given instance holds the given value, unless another instance of the batch still does.
+     * The value the instance held before is released. Whether the other instance is valid is only checked
+     * here, once its validation has completed.
+     *
+     * @param constraintKey Identifies the constraint
+     * @param value The value, or the values of the group
+     * @param instance The instance
+     * @param errors The errors of the instance
+     * @param valueOf Called with another instance, returns the value it currently holds
+     * @return Another valid instance of the batch that holds the value or null
+     */
+    Object claim(String constraintKey, Object value, Object instance, Errors errors, Closure valueOf) {
+        Map<Object, Claim> claimed = claimedValues[constraintKey]
+        Map<Object, Object> keys = claimedKeys[constraintKey]
+        if (claimed == null) {
+            claimed = [:]
+            claimedValues[constraintKey] = claimed
+            keys = new IdentityHashMap<Object, Object>()
+            claimedKeys[constraintKey] = keys
+        }
+
+        Claim holder = claimed.get(value)
+        if (holder != null && !holder.instance.is(instance) && !holder.errors.hasErrors() &&
+                valueOf.call(holder.instance) == value) {
+            return holder.instance
+        }
+
+        if (keys.containsKey(instance)) {
+            Object previous = keys.get(instance)
+            if (previous != value && claimed.get(previous)?.instance?.is(instance)) {
+                claimed.remove(previous)
+            }
+        }
+        claimed.put(value, new Claim(instance, errors))
+        keys.put(instance, value)
+        null
+    }
+
+    private static class Claim {
+        final Object instance
+        final Errors errors
+
+        Claim(Object instance, Errors errors) {
+            this.instance = instance
+            this.errors = errors
+        }
+    }
+}
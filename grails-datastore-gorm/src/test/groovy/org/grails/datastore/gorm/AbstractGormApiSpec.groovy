@@ -18,6 +18,16 @@ class AbstractGormApiSpec extends Specification {
             api.extendedMethods.size() == 1
             api.extendedMethods[0].name == 'myNewMethod'
     }
+
+    void "Test API methods are resolved once per API class"() {
+        when:
+            def first = new TestGormStaticApi(AbstractGormApiSpec)
+            def second = new TestGormStaticApi(String)
+
+        then:
+            first.methods.is(second.methods)
+            first.extendedMethods.is(second.extendedMethods)
+    }
 }
 
 class TestGormStaticApi<D> extends GormStaticApi<D> {
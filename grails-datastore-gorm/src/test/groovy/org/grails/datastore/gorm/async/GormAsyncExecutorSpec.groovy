@@ -0,0 +1,167 @@
+package org.grails.datastore.gorm.async
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.grails.datastore.mapping.core.Datastore
+import org.springframework.dao.DataAccessResourceFailureException
+
+import spock.lang.Specification
+
+/**
+ * Tests for the executor of the asynchronous GORM API
+ */
+class GormAsyncExecutorSpec extends Specification {
+
+    GormAsyncExecutor executor = new GormAsyncExecutor(1, 1, 100)
+
+    void cleanup() {
+        executor.shutdown()
+    }
+
+    void "Test work is submitted when decorated"() {
+        given:"A latch the work counts down"
+            def latch = new CountDownLatch(1)
+
+        when:"Work is decorated"
+            def decorated = executor.decorate { latch.countDown(); 'done' }
+
+        then:"It runs without the decorated closure being called"
+            latch.await(5, TimeUnit.SECONDS)
+            decorated.call() == 'done'
+            executor.completedTaskCount == 1
+    }
+
+    void "Test saturated executor fails the promise instead of blocking it forever"() {
+        given:"A task occupying the only thread and another filling the queue"
+            def release = new CountDownLatch(1)
+            def running = new CountDownLatch(1)
+            def first = executor.decorate { running.countDown(); release.await(); 1 }
+            running.await(5, TimeUnit.SECONDS)
+            def second = executor.decorate { 2 }
+
+        when:"More work is decorated"
+            def third = executor.decorate { 3 }
+
+        then:"It is queued on the calling thread and rejected after the queue timeout"
+            executor.queueDepth == 1
+
+        when:"The promise runs"
+            third.call()
+
+        then:"It fails"
+            thrown DataAccessResourceFailureException
+
+        when:"The thread is released"
+            release.countDown()
+
+        then:"The accepted work completes"
+            first.call() == 1
+            second.call() == 2
+    }
+
+    void "Test nested work doesn't deadlock a saturated executor"() {
+        when:"A task creates a promise and waits for it on another thread"
+            def result = executor.execute {
+                def nested = executor.decorate { 'nested' }
+                def value = null
+                def promiseThread = Thread.start { value = nested.call() }
+                promiseThread.join(5000)
+                value
+            }
+
+        then:"The nested work runs on the promise's thread"
+            result == 'nested'
+    }
+
+    void "Test executing from within a task runs the work directly"() {
+        when:"A task executes more work"
+            def result = executor.execute {
+                executor.execute { Thread.currentThread().name }
+            }
+
+        then:"It runs on the same thread"
+            result.startsWith('gorm-async-')
+            executor.completedTaskCount == 1
+    }
+
+    void "Test registering an executor shuts down the previous one"() {
+        given:"A datastore"
+            def datastore = [:] as Datastore
+            def registered = new GormAsyncExecutor(1, 1, -1)
+
+        when:"The executor is looked up"
+            def previous = GormAsyncExecutor.forDatastore(datastore)
+
+        then:"One is created on first use"
+            previous.is(GormAsyncExecutor.forDatastore(datastore))
+            previous.poolSize == GormAsyncExecutor.defaultPoolSize
+
+        when:"Another is registered"
+            GormAsyncExecutor.register(datastore, registered)
+
+        then:"It replaces the previous one"
+            GormAsyncExecutor.forDatastore(datastore).is(registered)
+
+        when:"Work is executed with the previous one"
+            previous.execute { 1 }
+
+        then:"It was shut down"
+            thrown DataAccessResourceFailureException
+
+        cleanup:
+            registered.shutdown()
+    }
+
+    void "Test submitters waiting for room in the queue are rejected when another executor is registered"() {
+        given:"A registered executor with a task occupying the only thread and another filling the queue"
+            def datastore = [:] as Datastore
+            def previous = new GormAsyncExecutor(1, 1, -1)
+            def registered = new GormAsyncExecutor(1, 1, -1)
+            GormAsyncExecutor.register(datastore, previous)
+            def release = new CountDownLatch(1)
+            def running = new CountDownLatch(1)
+            def first = previous.submit { running.countDown(); release.await(); 1 }
+            running.await(5, TimeUnit.SECONDS)
+            def second = previous.submit { 2 }
+
+        when:"Another thread waits for room in the queue"
+            def outcome = null
+            def submitter = Thread.start {
+                try {
+                    outcome = previous.submit { 3 }
+                }
+                catch (DataAccessResourceFailureException e) {
+                    outcome = e
+                }
+            }
+            waitFor { submitter.state == Thread.State.TIMED_WAITING }
+
+        and:"Another executor is registered while it waits"
+            GormAsyncExecutor.register(datastore, registered)
+            submitter.join(5000)
+
+        then:"The waiting submitter is rejected rather than queued on an executor that may have no threads left"
+            !submitter.alive
+            outcome instanceof DataAccessResourceFailureException
+
+        when:"The thread is released"
+            release.countDown()
+
+        then:"The tasks accepted before the shutdown complete and the previous executor terminates"
+            first.get(5, TimeUnit.SECONDS) == 1
+            second.get(5, TimeUnit.SECONDS) == 2
+            previous.@executor.awaitTermination(5, TimeUnit.SECONDS)
+
+        cleanup:
+            release.countDown()
+            registered.shutdown()
+    }
+
+    private void waitFor(Closure<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 5000
+        while (!condition.call() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.grails.datastore.gorm.support
+
+import groovy.transform.PackageScope
+
+import java.lang.reflect.UndeclaredThrowableException
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Tests for the invokers of event methods
+ */
+class EventMethodInvokerSpec extends Specification {
+
+    @Unroll
+    void "Test #name of #type.simpleName is invoked #how"() {
+        given:"An entity and an invoker for one of its event methods"
+            def entity = type.newInstance()
+            def invoker = EventMethodInvoker.find(type, name)
+
+        when:"The method is invoked"
+            def result = invoker.invoke(entity)
+
+        then:"It is called on the entity and its result returned"
+            invoker.getClass().simpleName == invokerType
+            invoker.method.name == name
+            !invoker.takesArgument
+            result == false
+            entity.calls == [name]
+
+        where:
+            type                | name            | invokerType          | how
+            PublicCallbacks     | 'beforeInsert'  | 'GeneratedInvoker'   | 'through a generated class'
+            PublicCallbacks     | 'beforeUpdate'  | 'ReflectiveInvoker'  | 'reflectively as it is private'
+            PublicCallbacks     | 'inheritedOnly' | 'GeneratedInvoker'   | 'through a generated class of the superclass'
+            PackageCallbacks    | 'beforeInsert'  | 'ReflectiveInvoker'  | "reflectively as its class isn't public"
+    }
+
+    void "Test the argument is passed to methods taking one"() {
+        given:"An invoker for a method with an argument"
+            def entity = new PublicCallbacks()
+            def invoker = EventMethodInvoker.create(PublicCallbacks.getMethod('beforeValidate', List))
+
+        when:"It is invoked with and without an argument"
+            invoker.invoke(entity, ['name'])
+            invoker.invoke(entity)
+
+        then:"The argument is passed"
+            invoker.takesArgument
+            entity.calls == ['beforeValidate [name]', 'beforeValidate null']
+    }
+
+    void "Test an invoker isn't found for a missing method"() {
+        expect:"No invoker"
+            EventMethodInvoker.find(PublicCallbacks, 'afterLoad') == null
+    }
+
+    @Unroll
+    void "Test the exceptions of #name are rethrown"() {
+        given:"An invoker for a failing method"
+            def invoker = EventMethodInvoker.find(FailingCallbacks, name)
+
+        when:"It is invoked"
+            invoker.invoke(new FailingCallbacks())
+
+        then:"Runtime exceptions are rethrown as they are, checked exceptions are wrapped"
+            def e = thrown(RuntimeException)
+            e.getClass() == exception
+            (e instanceof UndeclaredThrowableException ? e.cause : e).message == name
+
+        where:
+            name                | exception
+            'failPublic'        | IllegalStateException
+            'failPrivate'       | IllegalStateException
+            'failCheckedPublic' | UndeclaredThrowableException
+    }
+}
+
+class BaseCallbacks {
+    List calls = []
+
+    boolean inheritedOnly() {
+        calls << 'inheritedOnly'
+        false
+    }
+}
+
+class PublicCallbacks extends BaseCallbacks {
+
+    boolean beforeInsert() {
+        calls << 'beforeInsert'
+        false
+    }
+
+    private boolean beforeUpdate() {
+        calls << 'beforeUpdate'
+        false
+    }
+
+    void beforeValidate(List properties) {
+        calls << "beforeValidate $properties".toString()
+    }
+}
+
+@PackageScope
+class PackageCallbacks {
+    List calls = []
+
+    boolean beforeInsert() {
+        calls << 'beforeInsert'
+        false
+    }
+}
+
+class FailingCallbacks {
+
+    void failPublic() {
+        throw new IllegalStateException('failPublic')
+    }
+
+    private void failPrivate() {
+        throw new IllegalStateException('failPrivate')
+    }
+
+    void failCheckedPublic() throws IOException {
+        throw new IOException('failCheckedPublic')
+    }
+}
@@ -0,0 +1,59 @@
+package org.grails.datastore.gorm.support
+
+import java.sql.Time
+import java.sql.Timestamp
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Tests for the factories of timestamp property values
+ */
+class TimestampFactorySpec extends Specification {
+
+    @Unroll
+    void "Test timestamps of type #type.name"() {
+        given:"The factory for the type"
+            def factory = TimestampFactory.forType(type)
+
+        when:"A timestamp is created"
+            def timestamp = factory.createTimestamp(123456789L)
+
+        then:"It is of the type and holds the time"
+            type.isPrimitive() ? timestamp instanceof Long : timestamp.getClass() == type
+            time(timestamp) == 123456789L
+
+        and:"Each timestamp holds its own time"
+            factory.createTimestamp(987654321L).getClass() == timestamp.getClass()
+            time(factory.createTimestamp(987654321L)) == 987654321L
+
+        where:
+            type << [Date, Timestamp, java.sql.Date, Time, Long, long, LongConstructorTimestamp, ObjectConstructorTimestamp]
+    }
+
+    private long time(timestamp) {
+        timestamp instanceof Long ? timestamp : timestamp.time
+    }
+}
+
+/**
+ * A timestamp type created through its long constructor
+ */
+class LongConstructorTimestamp {
+    long time
+
+    LongConstructorTimestamp(long time) {
+        this.time = time
+    }
+}
+
+/**
+ * A timestamp type without a long constructor, created by Groovy
+ */
+class ObjectConstructorTimestamp {
+    long time
+
+    ObjectConstructorTimestamp(Object time) {
+        this.time = time as long
+    }
+}
@@ -35,6 +35,7 @@ import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.api.QueryableCriteria;
 import org.grails.datastore.mapping.query.jpa.JpaQueryBuilder;
+import org.grails.datastore.mapping.query.jpa.JpaQueryCache;
 import org.grails.datastore.mapping.query.jpa.JpaQueryInfo;
 import org.grails.datastore.mapping.transactions.Transaction;
 import org.springframework.core.convert.ConversionService;
@@ -231,6 +232,7 @@ public class JpaSession extends AbstractAttributeStoringSession {
         return jpaTemplate.execute(new JpaCallback<Integer>() {
             public Integer doInJpa(EntityManager em) throws PersistenceException {
                 JpaQueryBuilder builder = new JpaQueryBuilder(criteria);
+                builder.setQueryCache(JpaQueryCache.getDefault());
                 JpaQueryInfo jpaQueryInfo = builder.buildDelete();
                 javax.persistence.Query query = em.createQuery(jpaQueryInfo.getQuery());
                 List parameters = jpaQueryInfo.getParameters();
@@ -255,6 +257,7 @@ public class JpaSession extends AbstractAttributeStoringSession {
         return jpaTemplate.execute(new JpaCallback<Integer>() {
             public Integer doInJpa(EntityManager em) throws PersistenceException {
                 JpaQueryBuilder builder = new JpaQueryBuilder(criteria);
+                builder.setQueryCache(JpaQueryCache.getDefault());
                 JpaQueryInfo jpaQueryInfo = builder.buildUpdate(properties);
                 javax.persistence.Query query = em.createQuery(jpaQueryInfo.getQuery());
                 List parameters = jpaQueryInfo.getParameters();
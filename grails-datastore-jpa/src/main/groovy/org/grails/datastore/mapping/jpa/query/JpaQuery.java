@@ -27,6 +27,7 @@ import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.Restrictions;
 import org.grails.datastore.mapping.query.jpa.JpaQueryBuilder;
+import org.grails.datastore.mapping.query.jpa.JpaQueryCache;
 import org.grails.datastore.mapping.query.jpa.JpaQueryInfo;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
@@ -107,6 +108,7 @@ public class JpaQuery extends Query {
 
         JpaQueryBuilder queryBuilder = new JpaQueryBuilder(entity, criteria, projections, orderBy);
         queryBuilder.setConversionService(session.getDatastore().getMappingContext().getConversionService());
+        queryBuilder.setQueryCache(JpaQueryCache.getDefault());
         JpaQueryInfo jpaQueryInfo = queryBuilder.buildSelect();
         List parameters = jpaQueryInfo.getParameters();
         final String queryToString = jpaQueryInfo.getQuery();
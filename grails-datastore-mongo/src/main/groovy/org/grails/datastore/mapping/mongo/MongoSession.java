@@ -22,16 +22,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.persistence.FlushModeType;
+
 import org.grails.datastore.mapping.core.AbstractSession;
 import org.grails.datastore.mapping.core.impl.PendingInsert;
 import org.grails.datastore.mapping.core.impl.PendingOperation;
 import org.grails.datastore.mapping.document.config.DocumentMappingContext;
 import org.grails.datastore.mapping.engine.Persister;
+import org.grails.datastore.mapping.engine.internal.MappingUtils;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.model.types.Simple;
 import org.grails.datastore.mapping.mongo.config.MongoCollection;
 import org.grails.datastore.mapping.mongo.engine.MongoEntityPersister;
 import org.grails.datastore.mapping.mongo.query.MongoQuery;
+import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.api.QueryableCriteria;
 import org.grails.datastore.mapping.transactions.SessionOnlyTransaction;
 import org.grails.datastore.mapping.transactions.Transaction;
 import org.springframework.context.ApplicationEventPublisher;
@@ -180,6 +187,95 @@ public class MongoSession extends AbstractSession<DB> {
         }
     }
 
+    /**
+     * Deletes all documents matching the given criteria with a single remove command. As with
+     * bulk deletes in other datastores no events are fired and no cascades are applied. All cached
+     * instances of the entity are evicted from the session.
+     *
+     * @param criteria The criteria
+     * @return The number of documents removed
+     */
+    @Override
+    public int deleteAll(QueryableCriteria criteria) {
+        final PersistentEntity entity = criteria.getPersistentEntity();
+        final DBObject query = createBulkQuery(criteria);
+
+        return executeBulkOperation(entity, new BulkOperation() {
+            public WriteResult execute(DBCollection collection, WriteConcern writeConcern) {
+                return writeConcern != null ? collection.remove(query, writeConcern) : collection.remove(query);
+            }
+        });
+    }
+
+    /**
+     * Updates all documents matching the given criteria with a single multi update using <code>$set</code>.
+     * As with bulk updates in other datastores no events are fired and versions are not incremented. If
+     * any of the properties is not a simple property the default implementation is used instead. All cached instances of the entity are evicted from the session.
+     *
+     * @param criteria The criteria
+     * @param properties The properties
+     * @return The number of documents updated
+     */
+    @Override
+    public int updateAll(QueryableCriteria criteria, Map<String, Object> properties) {
+        final PersistentEntity entity = criteria.getPersistentEntity();
+        final DBObject set = new BasicDBObject();
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            PersistentProperty property = entity.getPropertyByName(entry.getKey());
+            if (!(property instanceof Simple)) {
+                return super.updateAll(criteria, properties);
+            }
+            set.put(MappingUtils.getTargetKey(property),
+                    MongoEntityPersister.getSimpleNativePropertyValue(entry.getValue(), getMappingContext()));
+        }
+        if (set.keySet().isEmpty()) {
+            return 0;
+        }
+
+        final DBObject query = createBulkQuery(criteria);
+        final DBObject update = new BasicDBObject("$set", set);
+        return executeBulkOperation(entity, new BulkOperation() {
+            public WriteResult execute(DBCollection collection, WriteConcern writeConcern) {
+                return writeConcern != null ? collection.update(query, update, false, true, writeConcern)
+                                            : collection.update(query, update, false, true);
+            }
+        });
+    }
+
+    private DBObject createBulkQuery(QueryableCriteria criteria) {
+        // pending changes have to reach the collection before the bulk operation is applied
+        if (getFlushMode() == FlushModeType.AUTO) {
+            flush();
+        }
+
+        MongoQuery query = createQuery(criteria.getPersistentEntity().getJavaClass());
+        for (Object criterion : criteria.getCriteria()) {
+            query.add((Query.Criterion) criterion);
+        }
+        return query.getMongoQuery();
+    }
+
+    private int executeBulkOperation(final PersistentEntity entity, final BulkOperation operation) {
+        final PersistentEntity root = entity.isRoot() ? entity : entity.getRootEntity();
+        final String collectionName = getCollectionName(root);
+        Integer count = getMongoTemplate(root).execute(new DbCallback<Integer>() {
+            public Integer doInDB(DB db) throws MongoException, DataAccessException {
+                WriteResult writeResult = operation.execute(db.getCollection(collectionName), getDeclaredWriteConcern(entity));
+                if (writeResult.getError() != null) {
+                    throw new DataIntegrityViolationException(writeResult.getError());
+                }
+                return writeResult.getN();
+            }
+        });
+        // the identifiers of the affected documents aren't known, so all cached instances of the entity are evicted
+        evictCachedInstances(entity, null);
+        return count;
+    }
+
+    private static interface BulkOperation {
+        WriteResult execute(DBCollection collection, WriteConcern writeConcern);
+    }
+
     public WriteConcern getDeclaredWriteConcern(PersistentEntity entity) {
         return getDeclaredWriteConcern(this.writeConcern, entity);
     }
@@ -37,6 +37,7 @@ import org.grails.datastore.mapping.mongo.engine.MongoEntityPersister;
 import org.grails.datastore.mapping.query.AssociationQuery;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.Restrictions;
+import org.grails.datastore.mapping.query.api.EstimatedCountQuery;
 import org.grails.datastore.mapping.query.api.QueryArgumentsAware;
 import org.grails.datastore.mapping.query.projections.ManualProjections;
 import org.springframework.dao.DataAccessException;
@@ -47,6 +48,7 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import org.springframework.util.StringUtils;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -60,7 +62,7 @@ import com.mongodb.MongoException;
  * @since 1.0
  */
 @SuppressWarnings("rawtypes")
-public class MongoQuery extends Query implements QueryArgumentsAware {
+public class MongoQuery extends Query implements QueryArgumentsAware, EstimatedCountQuery {
 
     private static Map<Class, QueryHandler> queryHandlers = new HashMap<Class, QueryHandler>();
     private static Map<Class, QueryHandler> negatedHandlers = new HashMap<Class, QueryHandler>();
@@ -499,6 +501,27 @@ public class MongoQuery extends Query implements QueryArgumentsAware {
         return query;
     }
 
+    /**
+     * Estimates the number of results from the collection statistics. An estimate is only available
+     * for root entities queried without criteria, since the statistics cover the whole collection.
+     *
+     * @return The estimated count or null
+     */
+    public Number estimatedCount() {
+        if (!criteria.isEmpty() || !entity.isRoot()) {
+            return null;
+        }
+
+        final String collectionName = mongoSession.getCollectionName(entity);
+        return mongoSession.getMongoTemplate(entity).execute(new DbCallback<Number>() {
+            public Number doInDB(DB db) throws MongoException, DataAccessException {
+                CommandResult stats = db.getCollection(collectionName).getStats();
+                Object count = stats.get("count");
+                return count instanceof Number ? (Number) count : null;
+            }
+        });
+    }
+
     @Override
     protected List executeQuery(final PersistentEntity entity, final Junction criteria) {
         final MongoTemplate template = mongoSession.getMongoTemplate(entity);
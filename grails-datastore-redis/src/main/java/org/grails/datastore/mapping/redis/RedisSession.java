@@ -16,7 +16,9 @@ package org.grails.datastore.mapping.redis;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +39,10 @@ import org.grails.datastore.mapping.engine.NonPersistentTypeException;
 import org.grails.datastore.mapping.engine.Persister;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.model.types.Simple;
+import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.api.QueryableCriteria;
 import org.grails.datastore.mapping.redis.collection.RedisSet;
 import org.grails.datastore.mapping.redis.engine.RedisEntityPersister;
 import org.grails.datastore.mapping.redis.util.RedisCallback;
@@ -296,12 +302,79 @@ public class RedisSession extends AbstractSession<RedisTemplate> {
             return;
         }
 
+        clearCachedQueryResults();
+    }
+
+    private void clearCachedQueryResults() {
         final Set<String> keys = redisTemplate.keys("~*");
         if (keys != null && !keys.isEmpty()) {
             redisTemplate.del(keys.toArray(new String[keys.size()]));
         }
     }
 
+    /**
+     * Deletes all entities matching the given criteria. The matching identifiers are resolved from the
+     * indices and the entries are then removed in a single pipeline. As with bulk deletes in other
+     * datastores no events are fired and no cascades are applied. The deleted instances are evicted from the session.
+     *
+     * @param criteria The criteria
+     * @return The number of entities deleted
+     */
+    @Override
+    public int deleteAll(QueryableCriteria criteria) {
+        final PersistentEntity entity = criteria.getPersistentEntity();
+        final List<Long> keys = queryIdentifiers(criteria);
+
+        ((RedisEntityPersister)getPersister(entity)).deleteAllEntries(keys);
+        clearCachedQueryResults();
+        evictCachedInstances(entity, keys);
+        return keys.size();
+    }
+
+    /**
+     * Updates all entities matching the given criteria. The entries are updated with pipelined HMSET
+     * commands and the indices of indexed properties are maintained. As with bulk updates in other
+     * datastores no events are fired and versions are not incremented. If any of the properties is not
+     * a simple property, or a transaction is in progress, the default implementation is used instead. Otherwise the updated
+     * instances are evicted from the session.
+     *
+     * @param criteria The criteria
+     * @param properties The properties
+     * @return The number of entities updated
+     */
+    @Override
+    public int updateAll(QueryableCriteria criteria, Map<String, Object> properties) {
+        final PersistentEntity entity = criteria.getPersistentEntity();
+        if (redisTemplate.isInMulti()) {
+            // the previous values of indexed properties can't be read inside MULTI
+            return super.updateAll(criteria, properties);
+        }
+
+        final Map<PersistentProperty, Object> values = new HashMap<PersistentProperty, Object>();
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            PersistentProperty property = entity.getPropertyByName(entry.getKey());
+            if (!(property instanceof Simple)) {
+                return super.updateAll(criteria, properties);
+            }
+            values.put(property, entry.getValue());
+        }
+
+        final List<Long> keys = queryIdentifiers(criteria);
+        ((RedisEntityPersister)getPersister(entity)).updateAllEntries(keys, values);
+        clearCachedQueryResults();
+        evictCachedInstances(entity, keys);
+        return keys.size();
+    }
+
+    private List<Long> queryIdentifiers(QueryableCriteria criteria) {
+        Query query = createQuery(criteria.getPersistentEntity().getJavaClass());
+        for (Object criterion : criteria.getCriteria()) {
+            query.add((Query.Criterion) criterion);
+        }
+        query.projections().id();
+        return new ArrayList<Long>(query.list());
+    }
+
     /**
      * Locates a random entity and removes it within the same operation
      *
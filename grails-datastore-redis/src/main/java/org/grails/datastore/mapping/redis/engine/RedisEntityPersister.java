@@ -17,16 +17,20 @@ package org.grails.datastore.mapping.redis.engine;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import org.grails.datastore.mapping.config.Property;
 import org.grails.datastore.mapping.core.OptimisticLockingException;
 import org.grails.datastore.mapping.core.SessionImplementor;
 import org.grails.datastore.mapping.engine.AssociationIndexer;
 import org.grails.datastore.mapping.engine.EntityAccess;
 import org.grails.datastore.mapping.engine.PropertyValueIndexer;
+import org.grails.datastore.mapping.engine.internal.MappingUtils;
 import org.grails.datastore.mapping.keyvalue.engine.AbstractKeyValueEntityPersister;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
@@ -374,6 +378,122 @@ public class RedisEntityPersister extends AbstractKeyValueEntityPersister<Map, L
         redisTemplate.del(actualKey);
     }
 
+    /**
+     * Deletes the entries with the given keys in a single pipeline. Unlike deleting instances one
+     * at a time no events are fired and no cascades are applied.
+     *
+     * @param keys The keys of the entries to delete
+     */
+    public void deleteAllEntries(final List<Long> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        final PersistentEntity persistentEntity = getPersistentEntity();
+        redisTemplate.pipeline(new RedisCallback<RedisTemplate>() {
+            public Object doInRedis(RedisTemplate redis) throws IOException {
+                for (Long key : keys) {
+                    redis.del(getEntryKey(persistentEntity, getFamily(), key));
+                    getAllEntityIndex().remove(key);
+                    PersistentEntity parent = persistentEntity.getParentEntity();
+                    while (parent != null) {
+                        ((RedisEntityPersister) session.getPersister(parent)).getAllEntityIndex().remove(key);
+                        parent = parent.getParentEntity();
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Sets the given property values on the entries with the given keys. The previous values of indexed
+     * properties are read in one pipeline and the entries and their indices are then updated in a second
+     * one. Unlike updating instances one at a time no events are fired and versions are not incremented.
+     *
+     * @param keys The keys of the entries to update
+     * @param properties The simple properties to update and their new values
+     */
+    public void updateAllEntries(final List<Long> keys, final Map<PersistentProperty, Object> properties) {
+        if (keys.isEmpty() || properties.isEmpty()) {
+            return;
+        }
+
+        final PersistentEntity persistentEntity = getPersistentEntity();
+        final ConversionService conversionService = getMappingContext().getConversionService();
+        final Map<String, String> entry = new HashMap<String, String>();
+        final List<String> removedFields = new ArrayList<String>();
+        final List<PersistentProperty> indexed = new ArrayList<PersistentProperty>();
+        final Map<PersistentProperty, Object> valuesToIndex = new HashMap<PersistentProperty, Object>();
+        for (Map.Entry<PersistentProperty, Object> property : properties.entrySet()) {
+            final PersistentProperty prop = property.getKey();
+            final String field = MappingUtils.getTargetKey(prop);
+            Object value = property.getValue();
+            if (value != null && !prop.getType().isInstance(value)) {
+                value = conversionService.convert(value, prop.getType());
+            }
+
+            setEntryValue(entry, field, value);
+            if (!entry.containsKey(field)) {
+                removedFields.add(field);
+            }
+            if (isPropertyIndexed((Property) prop.getMapping().getMappedForm())) {
+                indexed.add(prop);
+                valuesToIndex.put(prop, value);
+            }
+        }
+
+        final List<Object> previousValues;
+        if (indexed.isEmpty()) {
+            previousValues = Collections.emptyList();
+        }
+        else {
+            final String[] indexedFields = new String[indexed.size()];
+            for (int i = 0; i < indexedFields.length; i++) {
+                indexedFields[i] = MappingUtils.getTargetKey(indexed.get(i));
+            }
+            previousValues = redisTemplate.pipeline(new RedisCallback<RedisTemplate>() {
+                public Object doInRedis(RedisTemplate redis) throws IOException {
+                    for (Long key : keys) {
+                        redis.hmget(getEntryKey(persistentEntity, getFamily(), key), indexedFields);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        redisTemplate.pipeline(new RedisCallback<RedisTemplate>() {
+            public Object doInRedis(RedisTemplate redis) throws IOException {
+                Iterator<Object> previousIter = previousValues.iterator();
+                for (Long key : keys) {
+                    final String hashKey = getEntryKey(persistentEntity, getFamily(), key);
+
+                    // deindex first, the new value may share an index with the old one
+                    List<String> previous = previousIter.hasNext() ? (List<String>) previousIter.next() : null;
+                    for (int i = 0; previous != null && i < indexed.size(); i++) {
+                        final String value = previous.get(i);
+                        if (value != null) {
+                            final PersistentProperty prop = indexed.get(i);
+                            getPropertyIndexer(prop).deindex(conversionService.convert(value, prop.getType()), key);
+                        }
+                    }
+
+                    if (!entry.isEmpty()) {
+                        redis.hmset(hashKey, entry);
+                    }
+                    for (String field : removedFields) {
+                        redis.hdel(hashKey, field);
+                    }
+
+                    for (PersistentProperty prop : indexed) {
+                        getPropertyIndexer(prop).index(valuesToIndex.get(prop), key);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
     @Override
     public PropertyValueIndexer getPropertyIndexer(PersistentProperty property) {
         return new RedisPropertyValueIndexer(getMappingContext(),this, property);
@@ -32,6 +32,7 @@ import org.grails.datastore.mapping.model.PersistentProperty;
 import org.grails.datastore.mapping.model.types.Identity;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.Restrictions;
+import org.grails.datastore.mapping.query.api.EstimatedCountQuery;
 import org.grails.datastore.mapping.redis.RedisSession;
 import org.grails.datastore.mapping.redis.engine.RedisEntityPersister;
 import org.grails.datastore.mapping.redis.engine.RedisPropertyValueIndexer;
@@ -49,7 +50,7 @@ import org.springframework.dao.InvalidDataAccessResourceUsageException;
  * @since 1.0
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
-public class RedisQuery extends Query {
+public class RedisQuery extends Query implements EstimatedCountQuery {
     private RedisEntityPersister entityPersister;
     private RedisTemplate template;
     private ConversionService conversionService;
@@ -61,6 +62,17 @@ public class RedisQuery extends Query {
         conversionService = getSession().getMappingContext().getConversionService();
     }
 
+    /**
+     * Without criteria the number of results is the cardinality of the set indexing all entities,
+     * which is obtained with a single SCARD
+     */
+    public Number estimatedCount() {
+        if (!criteria.isEmpty()) {
+            return null;
+        }
+        return entityPersister.getAllEntityIndex().size();
+    }
+
     @Override
     protected List executeQuery(PersistentEntity entity, Junction criteria) {
         final ProjectionList projectionList = projections();
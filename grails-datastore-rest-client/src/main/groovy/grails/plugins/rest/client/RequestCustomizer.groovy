@@ -22,6 +22,8 @@ import groovy.util.slurpersupport.GPathResult
 import groovy.xml.StreamingMarkupBuilder
 import org.apache.commons.codec.binary.Base64
 import org.codehaus.groovy.grails.web.json.JSONElement
+import org.grails.datastore.gorm.rest.client.json.JsonArrayIterator
+import org.grails.datastore.gorm.rest.client.xml.XmlRecordIterator
 import org.springframework.core.io.FileSystemResource
 import org.springframework.core.io.InputStreamResource
 import org.springframework.core.io.UrlResource
@@ -51,6 +53,11 @@ class RequestCustomizer {
 
     Map<String, Object> urlVariables = [:]
 
+    /**
+     * Handles the response body as a stream instead of converting it, called with the stream and the charset of the response
+     */
+    Closure responseHandler
+
     /**
      * Used to configure BASIC authentication. Example:
      *
@@ -362,6 +369,107 @@ class RequestCustomizer {
         return this
     }
 
+    /**
+     * Hands the body of the response to the given closure as an InputStream instead of reading it into memory. The body of
+     * the returned response is then null. Example:
+     *
+     * <pre><code>
+     * restBuilder.get("http://..") {
+     *      stream { InputStream body ->
+     *          file << body
+     *      }
+     * }
+     * </code></pre>
+     *
+     * @param handler The closure called with the body of the response
+     * @return This customizer
+     */
+    RequestCustomizer stream(Closure handler) {
+        responseHandler = { InputStream body, String charset ->
+            handler.call(body)
+        }
+        return this
+    }
+
+    /**
+     * Reads the elements of the JSON array returned by the request one at a time, without reading the whole response into memory.
+     * See {@link #eachJson(String, Closure)}
+     *
+     * @param handler The closure called with each element of the array
+     * @return This customizer
+     */
+    RequestCustomizer eachJson(Closure handler) {
+        eachJson(null, handler)
+    }
+
+    /**
+     * Reads the elements of a JSON array of the response one at a time, without reading the whole response into memory.
+     * The array is located with a path of property names separated by dots. Example:
+     *
+     * <pre><code>
+     * restBuilder.get("http://..") {
+     *      eachJson("data.books") { JSONObject book ->
+     *          println book.title
+     *      }
+     * }
+     * </code></pre>
+     *
+     * @param path The path of the array or null if the response is the array
+     * @param handler The closure called with each element of the array
+     * @return This customizer
+     */
+    RequestCustomizer eachJson(String path, Closure handler) {
+        if (!headers.accept) {
+            accept MediaType.APPLICATION_JSON_VALUE
+        }
+        responseHandler = { InputStream body, String charset ->
+            final iterator = new JsonArrayIterator(body, charset ?: "UTF-8", path)
+            try {
+                while (iterator.hasNext()) {
+                    handler.call(iterator.next())
+                }
+            }
+            finally {
+                iterator.close()
+            }
+        }
+        return this
+    }
+
+    /**
+     * Reads the elements with the given name of the XML response one at a time, without reading the whole response into
+     * memory. Example:
+     *
+     * <pre><code>
+     * restBuilder.get("http://..") {
+     *      eachXml("book") { GPathResult book ->
+     *          println book.title.text()
+     *      }
+     * }
+     * </code></pre>
+     *
+     * @param recordName The name of the elements to read
+     * @param handler The closure called with each element
+     * @return This customizer
+     */
+    RequestCustomizer eachXml(String recordName, Closure handler) {
+        if (!headers.accept) {
+            accept MediaType.APPLICATION_XML_VALUE
+        }
+        responseHandler = { InputStream body, String charset ->
+            final iterator = new XmlRecordIterator(body, charset, recordName)
+            try {
+                while (iterator.hasNext()) {
+                    handler.call(iterator.next())
+                }
+            }
+            finally {
+                iterator.close()
+            }
+        }
+        return this
+    }
+
     HttpEntity createEntity() {
         return mvm ? new HttpEntity(mvm, headers) : new HttpEntity(body, headers)
     }
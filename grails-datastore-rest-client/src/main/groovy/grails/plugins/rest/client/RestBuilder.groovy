@@ -15,6 +15,9 @@
 package grails.plugins.rest.client
 
 import grails.converters.JSON
+import grails.plugins.rest.client.transport.PooledRestTransport
+import grails.plugins.rest.client.transport.RestTransport
+import grails.plugins.rest.client.transport.SimpleRestTransport
 import groovy.transform.CompileStatic
 import org.codehaus.groovy.grails.commons.DefaultGrailsApplication
 import org.codehaus.groovy.grails.web.converters.configuration.ConvertersConfigurationHolder
@@ -22,10 +25,13 @@ import org.codehaus.groovy.grails.web.converters.configuration.ConvertersConfigu
 import org.codehaus.groovy.grails.web.converters.configuration.DefaultConverterConfiguration
 import org.grails.datastore.gorm.rest.client.json.GsonHttpMessageConverter
 import org.grails.datastore.gorm.rest.client.json.JsonHttpMessageConverter
+import org.grails.datastore.gorm.rest.client.utils.EntityRequestCallback
 import org.grails.datastore.gorm.rest.client.utils.GrailsConverterHttpMessageConverter
 import org.grails.datastore.gorm.rest.client.utils.NullSafeStringHttpMessageConverter
+import org.grails.datastore.gorm.rest.client.utils.StreamingResponseExtractor
 import org.grails.datastore.gorm.rest.client.utils.WritableHttpMessageConverter
 import org.grails.datastore.gorm.rest.client.xml.GPathXmlHttpMessageConverter
+import org.springframework.beans.factory.DisposableBean
 import org.springframework.http.HttpMethod
 import org.springframework.http.converter.HttpMessageConverter
 import org.springframework.http.converter.StringHttpMessageConverter
@@ -33,21 +39,24 @@ import org.springframework.util.ClassUtils
 
 import static org.springframework.http.HttpMethod.*
 import org.springframework.http.ResponseEntity
-import org.springframework.http.client.SimpleClientHttpRequestFactory
 import org.springframework.web.client.HttpStatusCodeException
 import org.springframework.web.client.RestTemplate
 
 
 /**
- * Main API entry to the synchronous version of the REST low-level client API
+ * Main API entry to the synchronous version of the REST low-level client API. A builder created with pooled:true
+ * owns its connection pool and should be closed with {@link #close()} once it is no longer used, a transport passed
+ * to the builder is left to its creator to shut down
  *
  * @author Graeme Rocher
  * @since 1.0
  */
 @CompileStatic
-class RestBuilder {
+class RestBuilder implements DisposableBean {
 
     RestTemplate restTemplate = new RestTemplate()
+    RestTransport transport
+    private boolean ownsTransport
 
     RestBuilder() {
         this(Collections.emptyMap())
@@ -73,18 +82,30 @@ class RestBuilder {
             }
         }
 
-        final customRequestFactory = new SimpleClientHttpRequestFactory()
-        final metaClass = GroovySystem.metaClassRegistry.getMetaClass(SimpleClientHttpRequestFactory)
-        for(key in settings.keySet()) {
-            final prop = key.toString()
-            if(customRequestFactory.hasProperty(prop)) {
-                metaClass.setProperty(customRequestFactory, prop, settings.get(key))
-            }
+        if (settings.transport instanceof RestTransport) {
+            transport = (RestTransport)settings.transport
+        }
+        else if (settings.pooled) {
+            transport = new PooledRestTransport(settings)
+            ownsTransport = true
+        }
+        else {
+            transport = new SimpleRestTransport(settings)
+            ownsTransport = true
         }
-        restTemplate.setRequestFactory(customRequestFactory)
+        restTemplate.setRequestFactory(transport.requestFactory)
         registerMessageConverters(restTemplate)
     }
 
+    /**
+     * Creates a builder that sends its requests through the given transport, which allows several builders to share a connection pool
+     *
+     * @param transport The transport
+     */
+    RestBuilder(RestTransport transport) {
+        this([transport: transport])
+    }
+
     static Proxy getProxyForSystemProperties() {
         def proxyHost = System.getProperty("http.proxyHost")
         def proxyPort = System.getProperty("http.proxyPort")
@@ -100,6 +121,20 @@ class RestBuilder {
         this.restTemplate = restTemplate
         registerMessageConverters(restTemplate)
     }
+
+    /**
+     * Shuts down the transport if it was created by this builder, releasing its pooled connections and threads
+     */
+    void close() {
+        if (ownsTransport && transport != null) {
+            transport.shutdown()
+        }
+    }
+
+    void destroy() {
+        close()
+    }
+
     /**
      * Issues a GET request and returns the response in the most appropriate type
      * @param url The URL
@@ -273,7 +308,9 @@ class RestBuilder {
         }
 
         try {
-            ResponseEntity responseEntity = invokeRestTemplate(url, method, requestCustomizer)
+            ResponseEntity responseEntity = requestCustomizer.responseHandler != null ?
+                    streamRestTemplate(url, method, requestCustomizer) :
+                    invokeRestTemplate(url, method, requestCustomizer)
             handleResponse(responseEntity)
         }
         catch (HttpStatusCodeException e) {
@@ -304,6 +341,14 @@ class RestBuilder {
         responseEntity
     }
 
+    /**
+     * Sends the request and hands the body of the response to the response handler of the customizer as it is received
+     */
+    protected ResponseEntity streamRestTemplate(String url, HttpMethod method, RequestCustomizer requestCustomizer) {
+        final requestCallback = new EntityRequestCallback(restTemplate.messageConverters, requestCustomizer.createEntity(), requestCustomizer.acceptType)
+        restTemplate.execute(url, method, requestCallback, new StreamingResponseExtractor(requestCustomizer.responseHandler), requestCustomizer.getUrlVariables())
+    }
+
     protected RestResponse handleResponse(ResponseEntity responseEntity) {
         return new RestResponse(responseEntity)
     }
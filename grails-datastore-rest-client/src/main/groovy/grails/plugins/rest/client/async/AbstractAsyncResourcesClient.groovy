@@ -16,13 +16,12 @@ package grails.plugins.rest.client.async
 
 import grails.async.Promise
 import grails.plugins.rest.client.RequestCustomizer
-import grails.plugins.rest.client.RestBuilder
 import grails.plugins.rest.client.RestResponse
 import groovy.transform.CompileStatic
-import static grails.async.Promises.*
 
 /**
- * Abstract base class for Asynchronous resource clients
+ * Abstract base class for Asynchronous resource clients. Responses are converted when the request promise completes,
+ * so no thread is held while a request is in flight when the client uses a {@link NonBlockingRestBuilder}
  *
  * @author Graeme Rocher
  * @since 1.0
@@ -64,17 +63,14 @@ abstract class AbstractAsyncResourcesClient<T> {
      * @return The result
      */
     Promise<T> get(Object id, String acceptContentType = getAcceptContentType()) {
-        task {
-            RestBuilder syncRestBuilder = restBuilder.restBuilder
-            final response = syncRestBuilder.get(templatedUrl, [id: id]) {
-                accept getAcceptType(), acceptContentType
-                if (customizer) {
-                    this.customizer.delegate = delegate
-                    this.customizer.call()
-                }
+        Promise<RestResponse> response = restBuilder.get(templatedUrl, [id: id]) {
+            accept getAcceptType(), acceptContentType
+            if (customizer) {
+                this.customizer.delegate = delegate
+                this.customizer.call()
             }
-            return (T)response.body
         }
+        (Promise<T>)response.then { RestResponse r -> r.body }
     }
 
     /**
@@ -266,19 +262,14 @@ abstract class AbstractAsyncResourcesClient<T> {
      * @return The result
      */
     Promise<T> getAll(String acceptContentType = getAcceptContentType()) {
-        task {
-            final syncRestBuilder = restBuilder.restBuilder
-            final response = syncRestBuilder.get(url) {
-                accept getAcceptType(), acceptContentType
-                if(customizer) {
-                    this.customizer.delegate = delegate
-                    this.customizer.call()
-                }
+        Promise<RestResponse> response = restBuilder.get(url) {
+            accept getAcceptType(), acceptContentType
+            if(customizer) {
+                this.customizer.delegate = delegate
+                this.customizer.call()
             }
-
-            return (T)response.body
-
         }
+        (Promise<T>)response.then { RestResponse r -> r.body }
     }
 
     /**
@@ -16,15 +16,18 @@ package grails.plugins.rest.client.async
 
 import grails.async.DelegateAsync
 import grails.plugins.rest.client.RestBuilder
+import org.springframework.beans.factory.DisposableBean
 import org.springframework.web.client.RestTemplate
 
 /**
  * Asynchronous version of the {@link RestBuilder} class. Uses the {@DelegateAsync} annotation to provide the same API
+ * by running each request of the blocking builder on a thread of the promise factory. See {@link NonBlockingRestBuilder}
+ * for an implementation that doesn't hold a thread per request
  *
  * @author Graeme Rocher
  * @since 1.0
  */
-class AsyncRestBuilder {
+class AsyncRestBuilder implements DisposableBean {
 
     @DelegateAsync RestBuilder restBuilder
 
@@ -42,4 +45,15 @@ class AsyncRestBuilder {
     RestTemplate getRestTemplate() {
         return restBuilder.restTemplate
     }
+
+    /**
+     * Closes the underlying {@link RestBuilder}
+     */
+    void close() {
+        restBuilder.close()
+    }
+
+    void destroy() {
+        close()
+    }
 }
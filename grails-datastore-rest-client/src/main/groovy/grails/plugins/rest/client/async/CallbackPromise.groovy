@@ -0,0 +1,170 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.plugins.rest.client.async
+
+import grails.async.Promise
+import groovy.transform.CompileStatic
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * A {@link Promise} that is bound by whoever produces its value, typically an I/O callback, rather than by a task
+ * running on a thread of its own. Callbacks registered with {@link #onComplete(Closure)}, {@link #onError(Closure)} and
+ * {@link #then(Closure)} are invoked by the thread that binds the promise, or immediately if it is already bound.
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class CallbackPromise<T> implements Promise<T> {
+
+    private final CountDownLatch latch = new CountDownLatch(1)
+    private final List<Closure> completeCallbacks = []
+    private final List<Closure> errorCallbacks = []
+    private boolean bound
+    private T value
+    private Throwable error
+
+    /**
+     * Binds the promise to the given value
+     *
+     * @param value The value
+     * @return true if the promise was bound by this call
+     */
+    boolean complete(T value) {
+        List<Closure> callbacks
+        synchronized (this) {
+            if (bound) return false
+            this.value = value
+            bound = true
+            callbacks = new ArrayList<Closure>(completeCallbacks)
+            completeCallbacks.clear()
+            errorCallbacks.clear()
+        }
+        latch.countDown()
+        for (Closure callback in callbacks) {
+            callback.call(value)
+        }
+        return true
+    }
+
+    /**
+     * Binds the promise to the given error
+     *
+     * @param error The error
+     * @return true if the promise was bound by this call
+     */
+    boolean fail(Throwable error) {
+        List<Closure> callbacks
+        synchronized (this) {
+            if (bound) return false
+            this.error = error
+            bound = true
+            callbacks = new ArrayList<Closure>(errorCallbacks)
+            completeCallbacks.clear()
+            errorCallbacks.clear()
+        }
+        latch.countDown()
+        for (Closure callback in callbacks) {
+            callback.call(error)
+        }
+        return true
+    }
+
+    Promise<T> accept(T value) {
+        complete(value)
+        return this
+    }
+
+    T get() throws Throwable {
+        latch.await()
+        return result()
+    }
+
+    T get(long timeout, TimeUnit units) throws Throwable {
+        if (!latch.await(timeout, units)) {
+            throw new TimeoutException("Timed out waiting for promise to complete")
+        }
+        return result()
+    }
+
+    boolean cancel(boolean mayInterruptIfRunning) {
+        false
+    }
+
+    boolean isCancelled() {
+        false
+    }
+
+    boolean isDone() {
+        latch.count == 0
+    }
+
+    Promise<T> onComplete(Closure callable) {
+        boolean invoke = false
+        synchronized (this) {
+            if (!bound) {
+                completeCallbacks.add(callable)
+            }
+            else {
+                invoke = error == null
+            }
+        }
+        if (invoke) {
+            callable.call(value)
+        }
+        return this
+    }
+
+    Promise<T> onError(Closure callable) {
+        boolean invoke = false
+        synchronized (this) {
+            if (!bound) {
+                errorCallbacks.add(callable)
+            }
+            else {
+                invoke = error != null
+            }
+        }
+        if (invoke) {
+            callable.call(error)
+        }
+        return this
+    }
+
+    Promise<T> then(Closure callable) {
+        final CallbackPromise next = new CallbackPromise()
+        onComplete { Object result ->
+            try {
+                next.complete(callable.call(result))
+            } catch (Throwable e) {
+                next.fail(e)
+            }
+        }
+        onError { Throwable e ->
+            next.fail(e)
+        }
+        return (Promise<T>)next
+    }
+
+    private T result() {
+        if (error != null) {
+            throw error
+        }
+        return value
+    }
+}
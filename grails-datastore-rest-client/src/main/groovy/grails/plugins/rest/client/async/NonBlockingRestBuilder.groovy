@@ -0,0 +1,525 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.plugins.rest.client.async
+
+import grails.async.Promise
+import grails.plugins.rest.client.RequestCustomizer
+import grails.plugins.rest.client.RestBuilder
+import grails.plugins.rest.client.RestResponse
+import groovy.transform.CompileStatic
+
+import java.nio.charset.Charset
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.apache.http.HttpEntityEnclosingRequest
+import org.apache.http.HttpHost
+import org.apache.http.HttpResponse
+import org.apache.http.client.methods.HttpDelete
+import org.apache.http.client.methods.HttpGet
+import org.apache.http.client.methods.HttpHead
+import org.apache.http.client.methods.HttpOptions
+import org.apache.http.client.methods.HttpPatch
+import org.apache.http.client.methods.HttpPost
+import org.apache.http.client.methods.HttpPut
+import org.apache.http.client.methods.HttpRequestBase
+import org.apache.http.client.methods.HttpTrace
+import org.apache.http.client.protocol.RequestAcceptEncoding
+import org.apache.http.client.protocol.ResponseContentEncoding
+import org.apache.http.concurrent.FutureCallback
+import org.apache.http.conn.params.ConnRoutePNames
+import org.apache.http.entity.ByteArrayEntity
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient
+import org.apache.http.impl.nio.conn.PoolingClientAsyncConnectionManager
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor
+import org.apache.http.impl.nio.reactor.IOReactorConfig
+import org.apache.http.params.HttpConnectionParams
+import org.apache.http.util.EntityUtils
+import org.grails.datastore.gorm.rest.client.utils.EntityRequestCallback
+import org.springframework.beans.factory.DisposableBean
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpOutputMessage
+import org.springframework.http.HttpStatus
+import org.springframework.http.ResponseEntity
+import org.springframework.http.client.ClientHttpResponse
+import org.springframework.web.client.HttpMessageConverterExtractor
+import org.springframework.web.util.UriTemplate
+
+import static org.springframework.http.HttpMethod.*
+
+/**
+ * An {@link AsyncRestBuilder} that doesn't hold a thread for the duration of a request. Requests are sent through
+ * an Apache HttpAsyncClient, whose I/O reactor multiplexes all connections over a few threads.
+ *
+ * <p>The I/O callbacks only hand the buffered responses over to a completion executor, which converts them and
+ * completes the returned promises. Promise callbacks therefore run on the threads of that executor and may block
+ * without stalling the I/O of other requests.</p>
+ *
+ * <p>At most maxInFlight requests are sent at once, further requests are queued and sent as soon as one of the
+ * requests in flight completes. Request bodies are written and responses read with the message converters of the
+ * underlying {@link RestBuilder}, so the responses are the same as those of the blocking builder.</p>
+ *
+ * <p>The following settings are supported in addition to the settings of {@link RestBuilder}:</p>
+ *
+ * <ul>
+ *  <li>maxInFlight - The maximum number of requests sent concurrently (defaults to 256)</li>
+ *  <li>maxPerRoute - The maximum number of connections to a single host (defaults to maxInFlight)</li>
+ *  <li>ioThreads - The number of I/O reactor threads (defaults to the number of processors)</li>
+ *  <li>connectTimeout - The timeout in milliseconds to establish a connection</li>
+ *  <li>readTimeout - The timeout in milliseconds to wait for data</li>
+ *  <li>gzip - Whether to ask for and decompress gzip encoded responses (defaults to true)</li>
+ *  <li>proxy - A {@link Proxy} to route the requests through</li>
+ *  <li>executor - The {@link Executor} responses are converted and promises completed on</li>
+ *  <li>completionThreads - The number of threads of the completion executor created when no executor is given
+ *  (defaults to the number of processors)</li>
+ * </ul>
+ *
+ * The builder should be shut down with {@link #shutdown()} once it is no longer used, an executor passed to the
+ * builder is left to its creator to shut down.
+ *
+ * <p>HttpAsyncClient is not a dependency of this library, applications using this builder need to add
+ * <code>org.apache.httpcomponents:httpasyncclient:4.0-beta3</code>, the release matching the httpclient 4.2 line.</p>
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class NonBlockingRestBuilder extends AsyncRestBuilder implements DisposableBean {
+
+    static final int DEFAULT_MAX_IN_FLIGHT = 256
+
+    final int maxInFlight
+    final PoolingClientAsyncConnectionManager connectionManager
+    final DefaultHttpAsyncClient httpClient
+    final Executor completionExecutor
+
+    private final ExecutorService ownedExecutor
+    private final AtomicInteger inFlight = new AtomicInteger()
+    private final Queue<PendingRequest> queue = new ConcurrentLinkedQueue<PendingRequest>()
+
+    NonBlockingRestBuilder() {
+        this(new HashMap())
+    }
+
+    NonBlockingRestBuilder(Map settings) {
+        // only the message converters of the builder are used, so it doesn't need a connection pool of its own
+        super(new RestBuilder(withoutPooling(settings)))
+        maxInFlight = intSetting(settings, 'maxInFlight', DEFAULT_MAX_IN_FLIGHT)
+
+        final ioConfig = new IOReactorConfig()
+        ioConfig.ioThreadCount = intSetting(settings, 'ioThreads', Runtime.runtime.availableProcessors())
+        connectionManager = new PoolingClientAsyncConnectionManager(new DefaultConnectingIOReactor(ioConfig))
+        connectionManager.maxTotal = maxInFlight
+        connectionManager.defaultMaxPerRoute = intSetting(settings, 'maxPerRoute', maxInFlight)
+
+        httpClient = new DefaultHttpAsyncClient(connectionManager)
+        final params = httpClient.params
+        if (settings.connectTimeout != null) {
+            HttpConnectionParams.setConnectionTimeout(params, intSetting(settings, 'connectTimeout', 0))
+        }
+        if (settings.readTimeout != null) {
+            HttpConnectionParams.setSoTimeout(params, intSetting(settings, 'readTimeout', 0))
+        }
+        if (settings.proxy instanceof Proxy) {
+            final address = ((Proxy)settings.proxy).address()
+            if (address instanceof InetSocketAddress) {
+                final socketAddress = (InetSocketAddress)address
+                params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(socketAddress.hostName, socketAddress.port))
+            }
+        }
+        if (settings.gzip == null || settings.gzip) {
+            httpClient.addRequestInterceptor(new RequestAcceptEncoding())
+            httpClient.addResponseInterceptor(new ResponseContentEncoding())
+        }
+
+        if (settings.executor instanceof Executor) {
+            completionExecutor = (Executor)settings.executor
+            ownedExecutor = null
+        }
+        else {
+            ownedExecutor = Executors.newFixedThreadPool(intSetting(settings, 'completionThreads', Runtime.runtime.availableProcessors()), { Runnable r ->
+                final thread = new Thread(r, "rest-client-completion")
+                thread.daemon = true
+                thread
+            } as ThreadFactory)
+            completionExecutor = ownedExecutor
+        }
+        httpClient.start()
+    }
+
+    /**
+     * @return The number of requests currently sent
+     */
+    int getInFlight() {
+        inFlight.get()
+    }
+
+    /**
+     * @return The number of requests waiting to be sent
+     */
+    int getQueued() {
+        queue.size()
+    }
+
+    Promise<RestResponse> get(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, GET
+    }
+
+    Promise<RestResponse> get(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, GET, urlVariables
+    }
+
+    Promise<RestResponse> put(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, PUT
+    }
+
+    Promise<RestResponse> put(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, PUT, urlVariables
+    }
+
+    Promise<RestResponse> post(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, POST
+    }
+
+    Promise<RestResponse> post(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, POST, urlVariables
+    }
+
+    Promise<RestResponse> patch(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, PATCH
+    }
+
+    Promise<RestResponse> patch(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, PATCH, urlVariables
+    }
+
+    Promise<RestResponse> delete(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, DELETE
+    }
+
+    Promise<RestResponse> delete(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, DELETE, urlVariables
+    }
+
+    Promise<RestResponse> head(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, HEAD
+    }
+
+    Promise<RestResponse> head(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, HEAD, urlVariables
+    }
+
+    Promise<RestResponse> options(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, OPTIONS
+    }
+
+    Promise<RestResponse> options(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, OPTIONS, urlVariables
+    }
+
+    Promise<RestResponse> trace(String url, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, TRACE
+    }
+
+    Promise<RestResponse> trace(String url, Map<String, Object> urlVariables, @DelegatesTo(RequestCustomizer) Closure customizer = null) {
+        doRequestAsync url, customizer, TRACE, urlVariables
+    }
+
+    /**
+     * Shuts down the I/O reactor and the completion executor created by the builder, and fails the requests that
+     * weren't sent yet
+     */
+    void shutdown() {
+        httpClient.shutdown()
+        PendingRequest pending
+        while ((pending = queue.poll()) != null) {
+            pending.promise.fail(new IllegalStateException("Rest builder was shut down before the request to [${pending.request.URI}] was sent"))
+        }
+        ownedExecutor?.shutdown()
+        super.close()
+    }
+
+    @Override
+    void close() {
+        shutdown()
+    }
+
+    protected Promise<RestResponse> doRequestAsync(String url, Closure customizer, HttpMethod method, Map<String, Object> urlVariables = Collections.emptyMap()) {
+        final promise = new CallbackPromise<RestResponse>()
+        try {
+            def requestCustomizer = new RequestCustomizer()
+            if(urlVariables)
+                requestCustomizer.urlVariables.putAll(urlVariables)
+            if (customizer != null) {
+                customizer.delegate = requestCustomizer
+                customizer.resolveStrategy = Closure.DELEGATE_FIRST
+                customizer.call()
+            }
+
+            queue.offer(new PendingRequest(createHttpRequest(url, method, requestCustomizer), method, requestCustomizer.acceptType, requestCustomizer.responseHandler, promise))
+            dispatch()
+        }
+        catch (Throwable e) {
+            promise.fail(e)
+        }
+        return promise
+    }
+
+    /**
+     * Sends queued requests while fewer than maxInFlight requests are in flight
+     */
+    protected void dispatch() {
+        while (!queue.isEmpty()) {
+            final int current = inFlight.get()
+            if (current >= maxInFlight) {
+                return
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue
+            }
+            final pending = queue.poll()
+            if (pending == null) {
+                inFlight.decrementAndGet()
+                continue
+            }
+            try {
+                httpClient.execute(pending.request, new ResponseCallback(this, pending))
+            }
+            catch (Throwable e) {
+                inFlight.decrementAndGet()
+                pending.promise.fail(e)
+            }
+        }
+    }
+
+    /**
+     * Runs the completion of a request on the completion executor, or fails the request if the executor rejects it
+     */
+    protected void complete(PendingRequest pending, Runnable completion) {
+        try {
+            completionExecutor.execute(completion)
+        }
+        catch (RejectedExecutionException e) {
+            requestCompleted()
+            pending.promise.fail(e)
+        }
+    }
+
+    protected void requestCompleted() {
+        inFlight.decrementAndGet()
+        dispatch()
+    }
+
+    protected HttpRequestBase createHttpRequest(String url, HttpMethod method, RequestCustomizer requestCustomizer) {
+        final URI uri = new UriTemplate(url).expand(requestCustomizer.urlVariables)
+        final HttpRequestBase request = createHttpMethod(method, uri)
+        final RequestOutputMessage output = new RequestOutputMessage()
+        new EntityRequestCallback(restTemplate.messageConverters, requestCustomizer.createEntity(), requestCustomizer.acceptType).write(output)
+
+        if (output.body.size() > 0 && request instanceof HttpEntityEnclosingRequest) {
+            ((HttpEntityEnclosingRequest)request).entity = new ByteArrayEntity(output.body.toByteArray())
+        }
+        for (Map.Entry<String, List<String>> header in output.headers.entrySet()) {
+            // computed by the client from the entity
+            if ('Content-Length'.equalsIgnoreCase(header.key) || 'Transfer-Encoding'.equalsIgnoreCase(header.key)) {
+                continue
+            }
+            for (String value in header.value) {
+                request.addHeader(header.key, value)
+            }
+        }
+        return request
+    }
+
+    protected HttpRequestBase createHttpMethod(HttpMethod method, URI uri) {
+        switch (method) {
+            case GET: return new HttpGet(uri)
+            case POST: return new HttpPost(uri)
+            case PUT: return new HttpPut(uri)
+            case PATCH: return new HttpPatch(uri)
+            case DELETE: return new HttpDelete(uri)
+            case HEAD: return new HttpHead(uri)
+            case OPTIONS: return new HttpOptions(uri)
+            case TRACE: return new HttpTrace(uri)
+            default: throw new IllegalArgumentException("Invalid HTTP method: $method")
+        }
+    }
+
+    /**
+     * Converts the buffered response the same way as {@link RestBuilder}: error responses are returned with their
+     * body as text, other responses with their body converted to the accepted type
+     */
+    protected RestResponse createRestResponse(PendingRequest pending, HttpResponse httpResponse) {
+        final response = new BufferedClientHttpResponse(httpResponse)
+        try {
+            final HttpStatus status = response.statusCode
+            if (restTemplate.errorHandler.hasError(response)) {
+                return new RestResponse(new ResponseEntity(response.bodyAsString, response.headers, status))
+            }
+            if (pending.responseHandler != null) {
+                // the response is already buffered by the client, the handler still reads it from the stream
+                if (httpResponse.entity != null) {
+                    pending.responseHandler.call(response.body, response.headers.contentType?.charSet?.name())
+                }
+                return new RestResponse(new ResponseEntity(response.headers, status))
+            }
+            Object body = null
+            if (pending.method != HEAD && httpResponse.entity != null) {
+                body = new HttpMessageConverterExtractor(pending.responseType, restTemplate.messageConverters).extractData(response)
+            }
+            return new RestResponse(new ResponseEntity(body, response.headers, status))
+        }
+        finally {
+            response.close()
+        }
+    }
+
+    private static Map withoutPooling(Map settings) {
+        final builderSettings = new HashMap(settings)
+        builderSettings.remove('pooled')
+        builderSettings
+    }
+
+    private static int intSetting(Map settings, String name, int defaultValue) {
+        final value = settings.get(name)
+        value != null ? value.toString().toInteger() : defaultValue
+    }
+
+    protected static class PendingRequest {
+        final HttpRequestBase request
+        final HttpMethod method
+        final Class responseType
+        final Closure responseHandler
+        final CallbackPromise<RestResponse> promise
+
+        PendingRequest(HttpRequestBase request, HttpMethod method, Class responseType, Closure responseHandler, CallbackPromise<RestResponse> promise) {
+            this.request = request
+            this.method = method
+            this.responseType = responseType
+            this.responseHandler = responseHandler
+            this.promise = promise
+        }
+    }
+
+    protected static class ResponseCallback implements FutureCallback<HttpResponse> {
+        final NonBlockingRestBuilder builder
+        final PendingRequest pending
+
+        ResponseCallback(NonBlockingRestBuilder builder, PendingRequest pending) {
+            this.builder = builder
+            this.pending = pending
+        }
+
+        void completed(final HttpResponse result) {
+            builder.complete(pending, {
+                RestResponse response = null
+                Throwable error = null
+                try {
+                    response = builder.createRestResponse(pending, result)
+                }
+                catch (Throwable e) {
+                    error = e
+                }
+                builder.requestCompleted()
+                if (error != null) {
+                    pending.promise.fail(error)
+                }
+                else {
+                    pending.promise.complete(response)
+                }
+            } as Runnable)
+        }
+
+        void failed(final Exception ex) {
+            builder.complete(pending, {
+                builder.requestCompleted()
+                pending.promise.fail(ex)
+            } as Runnable)
+        }
+
+        void cancelled() {
+            builder.complete(pending, {
+                builder.requestCompleted()
+                pending.promise.fail(new IllegalStateException("Request to [${pending.request.URI}] was cancelled"))
+            } as Runnable)
+        }
+    }
+
+    protected static class RequestOutputMessage implements HttpOutputMessage {
+        final HttpHeaders headers = new HttpHeaders()
+        final ByteArrayOutputStream body = new ByteArrayOutputStream()
+
+        HttpHeaders getHeaders() {
+            headers
+        }
+
+        OutputStream getBody() {
+            body
+        }
+    }
+
+    protected static class BufferedClientHttpResponse implements ClientHttpResponse {
+        final HttpResponse response
+        private HttpHeaders headers
+
+        BufferedClientHttpResponse(HttpResponse response) {
+            this.response = response
+        }
+
+        HttpStatus getStatusCode() {
+            HttpStatus.valueOf(rawStatusCode)
+        }
+
+        int getRawStatusCode() {
+            response.statusLine.statusCode
+        }
+
+        String getStatusText() {
+            response.statusLine.reasonPhrase
+        }
+
+        HttpHeaders getHeaders() {
+            if (headers == null) {
+                headers = new HttpHeaders()
+                for (org.apache.http.Header header in response.allHeaders) {
+                    headers.add(header.name, header.value)
+                }
+            }
+            headers
+        }
+
+        InputStream getBody() {
+            response.entity != null ? response.entity.content : new ByteArrayInputStream(new byte[0])
+        }
+
+        String getBodyAsString() {
+            if (response.entity == null) {
+                return ''
+            }
+            final Charset charset = getHeaders().contentType?.charSet
+            new String(EntityUtils.toByteArray(response.entity), charset?.name() ?: 'UTF-8')
+        }
+
+        void close() {
+            EntityUtils.consumeQuietly(response.entity)
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.plugins.rest.client.transport
+
+import groovy.transform.CompileStatic
+
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+
+import org.apache.http.HttpHost
+import org.apache.http.client.params.ClientPNames
+import org.apache.http.client.protocol.RequestAcceptEncoding
+import org.apache.http.client.protocol.ResponseContentEncoding
+import org.apache.http.conn.params.ConnRoutePNames
+import org.apache.http.conn.routing.HttpRoute
+import org.apache.http.impl.client.DefaultHttpClient
+import org.apache.http.impl.conn.PoolingClientConnectionManager
+import org.apache.http.params.HttpConnectionParams
+import org.apache.http.params.HttpParams
+import org.apache.http.pool.PoolStats
+import org.springframework.beans.factory.DisposableBean
+import org.springframework.http.client.ClientHttpRequestFactory
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory
+
+/**
+ * A transport that keeps connections alive in a pool of Apache HttpClient connections, so that subsequent
+ * requests to the same host don't pay for the TCP and TLS handshakes again.
+ *
+ * <p>The following settings are supported:</p>
+ *
+ * <ul>
+ *  <li>maxTotal - The maximum number of connections in the pool (defaults to 200)</li>
+ *  <li>maxPerRoute - The maximum number of connections to a single host (defaults to 20)</li>
+ *  <li>connectTimeout - The timeout in milliseconds to establish a connection</li>
+ *  <li>readTimeout - The timeout in milliseconds to wait for data</li>
+ *  <li>connectionRequestTimeout - The timeout in milliseconds to wait for a connection from the pool</li>
+ *  <li>idleTimeout - The time in milliseconds after which idle connections are closed (defaults to 30 seconds)</li>
+ *  <li>evictionInterval - The interval in milliseconds at which idle and expired connections are evicted (defaults to 5 seconds)</li>
+ *  <li>gzip - Whether to ask for and decompress gzip encoded responses (defaults to true)</li>
+ *  <li>proxy - A {@link Proxy} to route the requests through</li>
+ * </ul>
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class PooledRestTransport implements RestTransport, DisposableBean {
+
+    static final int DEFAULT_MAX_TOTAL = 200
+    static final int DEFAULT_MAX_PER_ROUTE = 20
+    static final long DEFAULT_IDLE_TIMEOUT = 30000
+    static final long DEFAULT_EVICTION_INTERVAL = 5000
+
+    final PoolingClientConnectionManager connectionManager
+    final DefaultHttpClient httpClient
+    private final HttpComponentsClientHttpRequestFactory requestFactory
+    private final ScheduledExecutorService evictor
+    private volatile boolean shutDown
+
+    PooledRestTransport() {
+        this(Collections.emptyMap())
+    }
+
+    PooledRestTransport(Map settings) {
+        connectionManager = new PoolingClientConnectionManager()
+        connectionManager.maxTotal = intSetting(settings, 'maxTotal', DEFAULT_MAX_TOTAL)
+        connectionManager.defaultMaxPerRoute = intSetting(settings, 'maxPerRoute', DEFAULT_MAX_PER_ROUTE)
+
+        httpClient = new DefaultHttpClient(connectionManager)
+        final HttpParams params = httpClient.params
+        if (settings.connectTimeout != null) {
+            HttpConnectionParams.setConnectionTimeout(params, intSetting(settings, 'connectTimeout', 0))
+        }
+        if (settings.readTimeout != null) {
+            HttpConnectionParams.setSoTimeout(params, intSetting(settings, 'readTimeout', 0))
+        }
+        if (settings.connectionRequestTimeout != null) {
+            params.setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, longSetting(settings, 'connectionRequestTimeout', 0))
+        }
+        if (settings.proxy instanceof Proxy) {
+            final address = ((Proxy)settings.proxy).address()
+            if (address instanceof InetSocketAddress) {
+                final socketAddress = (InetSocketAddress)address
+                params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(socketAddress.hostName, socketAddress.port))
+            }
+        }
+        if (settings.gzip == null || settings.gzip) {
+            httpClient.addRequestInterceptor(new RequestAcceptEncoding())
+            httpClient.addResponseInterceptor(new ResponseContentEncoding())
+        }
+
+        requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient)
+
+        final long idleTimeout = longSetting(settings, 'idleTimeout', DEFAULT_IDLE_TIMEOUT)
+        final long evictionInterval = longSetting(settings, 'evictionInterval', DEFAULT_EVICTION_INTERVAL)
+        if (evictionInterval > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor({ Runnable r ->
+                final thread = new Thread(r, "rest-client-connection-evictor")
+                thread.daemon = true
+                thread
+            } as ThreadFactory)
+            evictor.scheduleWithFixedDelay({
+                connectionManager.closeExpiredConnections()
+                if (idleTimeout > 0) {
+                    connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+                }
+            } as Runnable, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS)
+        }
+        else {
+            evictor = null
+        }
+    }
+
+    ClientHttpRequestFactory getRequestFactory() {
+        requestFactory
+    }
+
+    /**
+     * Overrides the maximum number of connections to the host of the given URL
+     *
+     * @param url The URL
+     * @param max The maximum number of connections
+     */
+    void setMaxPerRoute(String url, int max) {
+        connectionManager.setMaxPerRoute(routeFor(url), max)
+    }
+
+    /**
+     * @return The statistics of the whole pool
+     */
+    PoolStats getTotalStats() {
+        connectionManager.totalStats
+    }
+
+    /**
+     * @param url The URL
+     * @return The statistics of the connections to the host of the given URL
+     */
+    PoolStats getStats(String url) {
+        connectionManager.getStats(routeFor(url))
+    }
+
+    /**
+     * @return The number of connections currently used by requests
+     */
+    int getLeased() {
+        totalStats.leased
+    }
+
+    /**
+     * @return The number of requests waiting for a connection
+     */
+    int getPending() {
+        totalStats.pending
+    }
+
+    /**
+     * @return The number of idle connections that can be reused
+     */
+    int getAvailable() {
+        totalStats.available
+    }
+
+    /**
+     * @return Whether the pool was shut down
+     */
+    boolean isShutDown() {
+        shutDown
+    }
+
+    void shutdown() {
+        shutDown = true
+        evictor?.shutdownNow()
+        connectionManager.shutdown()
+    }
+
+    void destroy() {
+        shutdown()
+    }
+
+    protected HttpRoute routeFor(String url) {
+        final uri = new URI(url)
+        final scheme = uri.scheme ?: 'http'
+        int port = uri.port
+        if (port < 0) {
+            port = scheme == 'https' ? 443 : 80
+        }
+        new HttpRoute(new HttpHost(uri.host, port, scheme))
+    }
+
+    private static int intSetting(Map settings, String name, int defaultValue) {
+        final value = settings.get(name)
+        value != null ? value.toString().toInteger() : defaultValue
+    }
+
+    private static long longSetting(Map settings, String name, long defaultValue) {
+        final value = settings.get(name)
+        value != null ? value.toString().toLong() : defaultValue
+    }
+}
@@ -0,0 +1,37 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.plugins.rest.client.transport
+
+import org.springframework.http.client.ClientHttpRequestFactory
+
+/**
+ * Strategy that provides the HTTP connections used by a {@link grails.plugins.rest.client.RestBuilder}.
+ * A transport can be shared by several builders and should be shut down once none of them is used anymore
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+interface RestTransport {
+
+    /**
+     * @return The request factory requests are created with
+     */
+    ClientHttpRequestFactory getRequestFactory()
+
+    /**
+     * Releases the connections and any other resource held by the transport
+     */
+    void shutdown()
+}
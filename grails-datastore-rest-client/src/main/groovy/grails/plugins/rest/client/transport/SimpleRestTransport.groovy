@@ -0,0 +1,54 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.plugins.rest.client.transport
+
+import groovy.transform.CompileStatic
+import org.springframework.http.client.ClientHttpRequestFactory
+import org.springframework.http.client.SimpleClientHttpRequestFactory
+
+/**
+ * The default transport, which opens a {@link HttpURLConnection} per request. Settings matching a property
+ * of {@link SimpleClientHttpRequestFactory} (proxy, connectTimeout, readTimeout etc.) are applied to the factory
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class SimpleRestTransport implements RestTransport {
+
+    private final SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory()
+
+    SimpleRestTransport() {
+        this(Collections.emptyMap())
+    }
+
+    SimpleRestTransport(Map settings) {
+        final metaClass = GroovySystem.metaClassRegistry.getMetaClass(SimpleClientHttpRequestFactory)
+        for(key in settings.keySet()) {
+            final prop = key.toString()
+            if(requestFactory.hasProperty(prop)) {
+                metaClass.setProperty(requestFactory, prop, settings.get(key))
+            }
+        }
+    }
+
+    ClientHttpRequestFactory getRequestFactory() {
+        requestFactory
+    }
+
+    void shutdown() {
+        // nothing to release, connections are handled by HttpURLConnection
+    }
+}
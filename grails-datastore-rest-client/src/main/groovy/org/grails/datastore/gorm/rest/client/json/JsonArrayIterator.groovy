@@ -0,0 +1,268 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.rest.client.json
+
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.grails.web.json.JSONException
+import org.codehaus.groovy.grails.web.json.JSONTokener
+
+import java.nio.charset.Charset
+
+/**
+ * Pulls the elements of a JSON array one at a time from a stream. Only the text of the current element is held in
+ * memory, so arbitrarily large arrays can be processed. The array can be the document itself or nested within objects,
+ * in which case it is located with a path of property names separated by dots. Example:
+ *
+ * <pre><code>
+ * // {"total":2, "data":{"books":[{"title":"The Stand"},{"title":"It"}]}}
+ * def books = new JsonArrayIterator(inputStream, "UTF-8", "data.books")
+ * for (book in books) {
+ *     println book.title
+ * }
+ * </code></pre>
+ *
+ * Objects and arrays are returned as JSONObject and JSONArray instances, other values as their Java equivalent.
+ * If the path doesn't lead to an array the iterator is empty.
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class JsonArrayIterator implements Iterator<Object>, Closeable {
+
+    private static final int END = -1
+
+    private final Reader reader
+    private final List<String> path
+    private final char[] buffer = new char[8192]
+    private int position
+    private int limit
+    private boolean started
+    private boolean first = true
+    private boolean finished
+    private boolean hasNextElement
+    private Object nextElement
+    private final StringBuilder element = new StringBuilder()
+
+    JsonArrayIterator(InputStream inputStream, String encoding = "UTF-8", String path = null) {
+        this(new InputStreamReader(inputStream, Charset.forName(encoding)), path)
+    }
+
+    JsonArrayIterator(Reader reader, String path = null) {
+        this.reader = reader
+        this.path = path ? path.tokenize('.') : Collections.<String>emptyList()
+    }
+
+    boolean hasNext() {
+        if (hasNextElement) {
+            return true
+        }
+        if (finished) {
+            return false
+        }
+        if (!started) {
+            started = true
+            if (!locateArray()) {
+                finished = true
+                return false
+            }
+        }
+
+        int c = nextNonWhitespace()
+        if (c == ']' as char) {
+            finished = true
+            return false
+        }
+        if (!first) {
+            if (c != ',' as char) {
+                throw syntaxError("Expected ',' or ']'")
+            }
+            c = nextNonWhitespace()
+        }
+        first = false
+
+        element.setLength(0)
+        readValue(c, element)
+        nextElement = new JSONTokener(element.toString()).nextValue()
+        hasNextElement = true
+        return true
+    }
+
+    Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException()
+        }
+        hasNextElement = false
+        final value = nextElement
+        nextElement = null
+        return value
+    }
+
+    void remove() {
+        throw new UnsupportedOperationException("remove() not supported by JsonArrayIterator")
+    }
+
+    void close() {
+        finished = true
+        reader.close()
+    }
+
+    /**
+     * Reads up to the opening bracket of the array at the configured path
+     *
+     * @return false if there is no array at the path
+     */
+    private boolean locateArray() {
+        int c = nextNonWhitespace()
+        for (String name in path) {
+            if (c != '{' as char) {
+                return false
+            }
+            boolean found = false
+            c = nextNonWhitespace()
+            while (c != '}' as char) {
+                if (c != '"' as char) {
+                    throw syntaxError("Expected property name")
+                }
+                element.setLength(0)
+                readString(element)
+                if (nextNonWhitespace() != ':' as char) {
+                    throw syntaxError("Expected ':'")
+                }
+                c = nextNonWhitespace()
+                if (element.toString() == name) {
+                    found = true
+                    break
+                }
+                readValue(c, null)
+                c = nextNonWhitespace()
+                if (c == ',' as char) {
+                    c = nextNonWhitespace()
+                }
+            }
+            if (!found) {
+                return false
+            }
+        }
+        return c == '[' as char
+    }
+
+    /**
+     * Reads the value starting with the given character, appending its text to the given builder unless it is null
+     */
+    private void readValue(int c, StringBuilder out) {
+        if (c == '"' as char) {
+            out?.append('"' as char)
+            readString(out)
+            out?.append('"' as char)
+            return
+        }
+        if (c == '{' as char || c == '[' as char) {
+            int depth = 1
+            out?.append((char)c)
+            while (depth > 0) {
+                c = read()
+                if (c == END) {
+                    throw syntaxError("Unterminated object or array")
+                }
+                if (c == '"' as char) {
+                    out?.append('"' as char)
+                    readString(out)
+                    out?.append('"' as char)
+                    continue
+                }
+                if (c == '{' as char || c == '[' as char) {
+                    depth++
+                }
+                else if (c == '}' as char || c == ']' as char) {
+                    depth--
+                }
+                out?.append((char)c)
+            }
+            return
+        }
+        if (c == END) {
+            throw syntaxError("Unexpected end of input")
+        }
+        // number, true, false or null
+        out?.append((char)c)
+        while (true) {
+            c = peek()
+            if (c == END || c == ',' as char || c == ']' as char || c == '}' as char || Character.isWhitespace((char)c)) {
+                return
+            }
+            out?.append((char)read())
+        }
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote was read, appending its raw text without the quotes
+     */
+    private void readString(StringBuilder out) {
+        while (true) {
+            int c = read()
+            if (c == END) {
+                throw syntaxError("Unterminated string")
+            }
+            if (c == '"' as char) {
+                return
+            }
+            out?.append((char)c)
+            if (c == '\\' as char) {
+                c = read()
+                if (c == END) {
+                    throw syntaxError("Unterminated string")
+                }
+                out?.append((char)c)
+            }
+        }
+    }
+
+    private int nextNonWhitespace() {
+        int c = read()
+        while (c != END && Character.isWhitespace((char)c)) {
+            c = read()
+        }
+        return c
+    }
+
+    private int peek() {
+        if (position == limit && !fill()) {
+            return END
+        }
+        return (int) buffer[position]
+    }
+
+    private int read() {
+        if (position == limit && !fill()) {
+            return END
+        }
+        return (int) buffer[position++]
+    }
+
+    private boolean fill() {
+        limit = reader.read(buffer, 0, buffer.length)
+        position = 0
+        if (limit <= 0) {
+            limit = 0
+            return false
+        }
+        return true
+    }
+
+    private JSONException syntaxError(String message) {
+        new JSONException("$message while reading JSON array${path ? ' at ' + path.join('.') : ''}".toString())
+    }
+}
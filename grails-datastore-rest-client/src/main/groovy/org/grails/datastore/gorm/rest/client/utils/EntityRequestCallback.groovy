@@ -0,0 +1,97 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.rest.client.utils
+
+import groovy.transform.CompileStatic
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpOutputMessage
+import org.springframework.http.MediaType
+import org.springframework.http.client.ClientHttpRequest
+import org.springframework.http.converter.HttpMessageConverter
+import org.springframework.web.client.RequestCallback
+import org.springframework.web.client.RestClientException
+
+/**
+ * A {@link RequestCallback} that writes the headers and body of an {@link HttpEntity} with the given message converters,
+ * setting the Accept header to the media types readable as the response type if it isn't set. Does the same as the
+ * request callback RestTemplate uses internally for exchange(..), for requests that aren't sent through exchange(..)
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class EntityRequestCallback implements RequestCallback {
+
+    final List<HttpMessageConverter<?>> messageConverters
+    final HttpEntity entity
+    final Class responseType
+
+    EntityRequestCallback(List<HttpMessageConverter<?>> messageConverters, HttpEntity entity, Class responseType) {
+        this.messageConverters = messageConverters
+        this.entity = entity
+        this.responseType = responseType
+    }
+
+    void doWithRequest(ClientHttpRequest request) throws IOException {
+        write(request)
+    }
+
+    /**
+     * Writes the headers and the body of the entity to the given message
+     *
+     * @param outputMessage The message
+     */
+    void write(HttpOutputMessage outputMessage) {
+        final headers = outputMessage.headers
+        headers.putAll(entity.headers)
+        if (!headers.accept && responseType != null) {
+            final acceptable = getAcceptableMediaTypes()
+            if (acceptable) {
+                headers.accept = acceptable
+            }
+        }
+        if (!entity.hasBody()) {
+            return
+        }
+
+        final Object body = entity.body
+        final MediaType contentType = headers.contentType
+        final Class bodyType = body.getClass()
+        for (HttpMessageConverter converter in messageConverters) {
+            if (converter.canWrite(bodyType, contentType)) {
+                converter.write(body, contentType, outputMessage)
+                return
+            }
+        }
+        String message = "Could not write request: no suitable HttpMessageConverter found for request type [${bodyType.name}]"
+        if (contentType != null) {
+            message += " and content type [$contentType]"
+        }
+        throw new RestClientException(message)
+    }
+
+    protected List<MediaType> getAcceptableMediaTypes() {
+        final List<MediaType> acceptable = []
+        for (HttpMessageConverter converter in messageConverters) {
+            if (converter.canRead(responseType, null)) {
+                for (MediaType mediaType in converter.supportedMediaTypes) {
+                    acceptable.add(mediaType.charSet != null ? new MediaType(mediaType.type, mediaType.subtype) : mediaType)
+                }
+            }
+        }
+        MediaType.sortBySpecificity(acceptable)
+        return acceptable
+    }
+}
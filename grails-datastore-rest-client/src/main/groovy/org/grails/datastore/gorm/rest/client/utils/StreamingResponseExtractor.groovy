@@ -0,0 +1,47 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.rest.client.utils
+
+import groovy.transform.CompileStatic
+import org.springframework.http.ResponseEntity
+import org.springframework.http.client.ClientHttpResponse
+import org.springframework.web.client.ResponseExtractor
+
+/**
+ * A {@link ResponseExtractor} that hands the body stream to a handler instead of converting it, so the body is never
+ * held in memory as a whole. The handler is called with the stream and the charset of the response, or null if the
+ * response doesn't specify one. The resulting entity has the status and headers of the response but no body
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class StreamingResponseExtractor implements ResponseExtractor<ResponseEntity> {
+
+    final Closure handler
+
+    StreamingResponseExtractor(Closure handler) {
+        this.handler = handler
+    }
+
+    ResponseEntity extractData(ClientHttpResponse response) throws IOException {
+        final headers = response.headers
+        final body = response.body
+        if (body != null) {
+            handler.call(body, headers.contentType?.charSet?.name())
+        }
+        return new ResponseEntity(headers, response.statusCode)
+    }
+}
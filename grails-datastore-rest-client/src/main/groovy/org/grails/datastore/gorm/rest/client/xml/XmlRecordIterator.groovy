@@ -0,0 +1,205 @@
+/* Copyright (C) 2013 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.rest.client.xml
+
+import grails.converters.XML
+import groovy.transform.CompileStatic
+import groovy.util.slurpersupport.GPathResult
+
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLOutputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
+
+/**
+ * Pulls the elements with a given name, the records of a document, one at a time from a stream using StAX.
+ * Each record is parsed into a GPathResult on its own, so only one record is held in memory no matter how large the
+ * document is. Example:
+ *
+ * <pre><code>
+ * // &lt;books&gt;&lt;book&gt;&lt;title&gt;The Stand&lt;/title&gt;&lt;/book&gt;...&lt;/books&gt;
+ * def books = new XmlRecordIterator(inputStream, "UTF-8", "book")
+ * for (book in books) {
+ *     println book.title.text()
+ * }
+ * </code></pre>
+ *
+ * Records are matched by local name at any depth, records nested within a record are part of that record.
+ *
+ * @author Graeme Rocher
+ * @since 1.0
+ */
+@CompileStatic
+class XmlRecordIterator implements Iterator<GPathResult>, Closeable {
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory()
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance()
+
+    private final InputStream inputStream
+    private final XMLStreamReader reader
+    private final String recordName
+    // namespace declarations of the enclosing elements, written to each record so that it can be parsed on its own
+    private final LinkedList<Map<String, String>> namespaces = new LinkedList<Map<String, String>>()
+    private GPathResult nextRecord
+    private boolean finished
+
+    XmlRecordIterator(InputStream inputStream, String recordName) {
+        this(inputStream, null, recordName)
+    }
+
+    XmlRecordIterator(InputStream inputStream, String encoding, String recordName) {
+        this.inputStream = inputStream
+        // without an encoding it is detected from the XML declaration
+        this.reader = encoding ? INPUT_FACTORY.createXMLStreamReader(inputStream, encoding) : INPUT_FACTORY.createXMLStreamReader(inputStream)
+        this.recordName = recordName
+    }
+
+    boolean hasNext() {
+        if (nextRecord != null) {
+            return true
+        }
+        if (finished) {
+            return false
+        }
+        while (reader.hasNext()) {
+            final int event = reader.next()
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (reader.localName == recordName) {
+                    nextRecord = (GPathResult)XML.parse(readRecord())
+                    return true
+                }
+                namespaces.addLast(getDeclaredNamespaces())
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                namespaces.pollLast()
+            }
+        }
+        finished = true
+        return false
+    }
+
+    GPathResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException()
+        }
+        final record = nextRecord
+        nextRecord = null
+        return record
+    }
+
+    void remove() {
+        throw new UnsupportedOperationException("remove() not supported by XmlRecordIterator")
+    }
+
+    void close() {
+        finished = true
+        try {
+            reader.close()
+        }
+        finally {
+            inputStream.close()
+        }
+    }
+
+    /**
+     * Copies the element the reader is positioned at and its content to a string
+     */
+    protected String readRecord() {
+        final StringWriter out = new StringWriter()
+        final XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out)
+        try {
+            final Map<String, String> inScope = [:]
+            for (Map<String, String> declarations in namespaces) {
+                inScope.putAll(declarations)
+            }
+            inScope.putAll(getDeclaredNamespaces())
+            writeStartElement(writer, inScope)
+
+            int depth = 1
+            while (depth > 0) {
+                final int event = reader.next()
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++
+                        writeStartElement(writer, getDeclaredNamespaces())
+                        break
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--
+                        writer.writeEndElement()
+                        break
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        writer.writeCharacters(reader.textCharacters, reader.textStart, reader.textLength)
+                        break
+                    case XMLStreamConstants.CDATA:
+                        writer.writeCData(reader.text)
+                        break
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        writer.writeCharacters(reader.text)
+                        break
+                }
+            }
+            writer.flush()
+        }
+        finally {
+            writer.close()
+        }
+        return out.toString()
+    }
+
+    private void writeStartElement(XMLStreamWriter writer, Map<String, String> declarations) {
+        final String prefix = reader.prefix ?: ''
+        final String namespace = reader.namespaceURI ?: ''
+        writer.writeStartElement(prefix, reader.localName, namespace)
+        for (Map.Entry<String, String> declaration in declarations.entrySet()) {
+            if (declaration.key) {
+                writer.writeNamespace(declaration.key, declaration.value)
+            }
+            else {
+                writer.writeDefaultNamespace(declaration.value)
+            }
+        }
+        for (int i = 0; i < reader.attributeCount; i++) {
+            final String attributePrefix = reader.getAttributePrefix(i)
+            if (attributePrefix) {
+                writer.writeAttribute(attributePrefix, reader.getAttributeNamespace(i), reader.getAttributeLocalName(i), reader.getAttributeValue(i))
+            }
+            else {
+                writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i))
+            }
+        }
+    }
+
+    private Map<String, String> getDeclaredNamespaces() {
+        final int count = reader.namespaceCount
+        if (count == 0) {
+            return Collections.<String, String>emptyMap()
+        }
+        final Map<String, String> declarations = [:]
+        for (int i = 0; i < count; i++) {
+            declarations.put(reader.getNamespacePrefix(i) ?: '', reader.getNamespaceURI(i))
+        }
+        return declarations
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final factory = XMLInputFactory.newInstance()
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true)
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false)
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+        factory
+    }
+}
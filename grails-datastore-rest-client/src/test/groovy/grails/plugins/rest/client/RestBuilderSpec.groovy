@@ -327,4 +327,53 @@ class RestBuilderSpec extends Specification {
             resp.json instanceof JSONObject
             resp.json.name == 'acegi'
     }
+
+    def "Test that the elements of a JSON array are streamed to the handler"() {
+        given:"A rest client instance"
+            def rest = new RestBuilder()
+            final mockServer = MockRestServiceServer.createServer(rest.restTemplate)
+            mockServer.expect(requestTo("http://grails.org/api/v1.0/plugins"))
+                    .andExpect(method(HttpMethod.GET))
+                    .andExpect(header(HttpHeaders.ACCEPT, "application/json"))
+                    .andRespond(withSuccess('{"total":2,"data":{"plugins":[{"name":"acegi"},{"name":"[gorm]"}]}}', MediaType.APPLICATION_JSON))
+
+        when:"A get request is issued with a JSON array handler"
+            def names = []
+            def resp = rest.get("http://grails.org/api/v1.0/plugins") {
+                eachJson("data.plugins") { JSONObject plugin ->
+                    names << plugin.name
+                }
+            }
+
+        then:"Each element was handled and the body was not converted"
+            mockServer.verify()
+            resp.status == 200
+            resp.body == null
+            names == ['acegi', '[gorm]']
+    }
+
+    def "Test that the records of an XML response are streamed to the handler"() {
+        given:"A rest client instance"
+            def rest = new RestBuilder()
+            final mockServer = MockRestServiceServer.createServer(rest.restTemplate)
+            mockServer.expect(requestTo("http://grails.org/api/v1.0/plugins"))
+                    .andExpect(method(HttpMethod.GET))
+                    .andExpect(header(HttpHeaders.ACCEPT, "application/xml"))
+                    .andRespond(withSuccess('<plugins><plugin name="acegi"><title>Spring Security</title></plugin><plugin name="gorm"/></plugins>', MediaType.APPLICATION_XML))
+
+        when:"A get request is issued with an XML record handler"
+            def names = []
+            def titles = []
+            rest.get("http://grails.org/api/v1.0/plugins") {
+                eachXml("plugin") { GPathResult plugin ->
+                    names << plugin.@name.text()
+                    titles << plugin.title.text()
+                }
+            }
+
+        then:"Each record was handled"
+            mockServer.verify()
+            names == ['acegi', 'gorm']
+            titles == ['Spring Security', '']
+    }
 }
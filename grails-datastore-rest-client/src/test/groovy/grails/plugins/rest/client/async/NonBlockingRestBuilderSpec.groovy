@@ -0,0 +1,189 @@
+package grails.plugins.rest.client.async
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpHandler
+import com.sun.net.httpserver.HttpServer
+import grails.async.Promise
+import grails.plugins.rest.client.RestResponse
+import grails.plugins.rest.client.transport.SimpleRestTransport
+import org.codehaus.groovy.grails.web.json.JSONObject
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class NonBlockingRestBuilderSpec extends Specification {
+
+    HttpServer server
+    String baseUrl
+    AtomicInteger concurrent = new AtomicInteger()
+    AtomicInteger maxConcurrent = new AtomicInteger()
+
+    void setup() {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+        server.executor = Executors.newCachedThreadPool()
+        server.createContext("/books", { HttpExchange exchange ->
+            final current = concurrent.incrementAndGet()
+            synchronized (maxConcurrent) {
+                if (current > maxConcurrent.get()) maxConcurrent.set(current)
+            }
+            Thread.sleep(20)
+            final id = exchange.requestURI.path.tokenize('/').last()
+            final requestBody = exchange.requestBody.text
+            String response
+            int status = 200
+            if (id == 'missing') {
+                status = 404
+                response = 'Not here'
+            }
+            else {
+                response = """{"id":"$id","method":"${exchange.requestMethod}","body":${requestBody ? requestBody : 'null'}}"""
+            }
+            concurrent.decrementAndGet()
+            exchange.responseHeaders.add("Content-Type", status == 200 ? "application/json" : "text/plain")
+            final bytes = response.getBytes("UTF-8")
+            exchange.sendResponseHeaders(status, bytes.length)
+            exchange.responseBody.write(bytes)
+            exchange.close()
+        } as HttpHandler)
+        server.start()
+        baseUrl = "http://localhost:${server.address.port}/books"
+    }
+
+    void cleanup() {
+        server.stop(0)
+    }
+
+    def "Test that a GET request completes the promise with a JSON response"() {
+        given:"A non-blocking rest builder"
+            def rest = new NonBlockingRestBuilder()
+
+        when:"A get request is issued"
+            Promise<RestResponse> promise = rest.get("$baseUrl/{id}", [id: 1]) {
+                accept "application/json"
+            }
+            def resp = promise.get(10, TimeUnit.SECONDS)
+
+        then:"The response is converted with the message converters"
+            resp.status == 200
+            resp.json instanceof JSONObject
+            resp.json.id == '1'
+            resp.json.method == 'GET'
+
+        cleanup:
+            rest.shutdown()
+    }
+
+    def "Test that a POST request sends the converted body"() {
+        given:"A non-blocking rest builder"
+            def rest = new NonBlockingRestBuilder()
+
+        when:"A post request with a JSON body is issued"
+            def resp = rest.post("$baseUrl/2") {
+                json {
+                    title = "The Stand"
+                }
+            }.get(10, TimeUnit.SECONDS)
+
+        then:"The body was written"
+            resp.json.method == 'POST'
+            resp.json.body.title == 'The Stand'
+
+        cleanup:
+            rest.shutdown()
+    }
+
+    def "Test that an error response is returned for inspection"() {
+        given:"A non-blocking rest builder"
+            def rest = new NonBlockingRestBuilder()
+
+        when:"A request for a missing resource is issued"
+            def resp = rest.get("$baseUrl/missing").get(10, TimeUnit.SECONDS)
+
+        then:"The response holds the status and the text"
+            resp.status == 404
+            resp.text == 'Not here'
+
+        cleanup:
+            rest.shutdown()
+    }
+
+    def "Test that callbacks are invoked and the in-flight limit is respected"() {
+        given:"A non-blocking rest builder limited to 4 requests in flight"
+            def rest = new NonBlockingRestBuilder(maxInFlight: 4)
+            def latch = new CountDownLatch(40)
+            def ids = Collections.synchronizedList([])
+
+        when:"40 requests are issued"
+            40.times { int i ->
+                rest.get("$baseUrl/$i").onComplete { RestResponse resp ->
+                    ids << resp.json.id
+                    latch.countDown()
+                }
+            }
+
+        then:"All requests complete without exceeding the limit"
+            latch.await(30, TimeUnit.SECONDS)
+            ids.size() == 40
+            maxConcurrent.get() <= 4
+            rest.inFlight == 0
+            rest.queued == 0
+
+        cleanup:
+            rest.shutdown()
+    }
+
+    def "Test that then chains are completed by the request callback"() {
+        given:"A non-blocking rest builder"
+            def rest = new NonBlockingRestBuilder()
+
+        when:"A transformation is chained to a request"
+            def promise = rest.get("$baseUrl/3").then { RestResponse resp -> resp.json.id.toInteger() * 2 }
+
+        then:"The transformed value is available"
+            promise.get(10, TimeUnit.SECONDS) == 6
+
+        cleanup:
+            rest.shutdown()
+    }
+
+    def "Test that responses are completed on the completion executor"() {
+        given:"A non-blocking rest builder with its own completion executor"
+            def executor = Executors.newSingleThreadExecutor({ Runnable r -> new Thread(r, "test-completion") } as ThreadFactory)
+            def rest = new NonBlockingRestBuilder(executor: executor)
+            def threadName = null
+
+        when:"A request is issued with a callback"
+            def promise = rest.get("$baseUrl/4").then { RestResponse resp ->
+                threadName = Thread.currentThread().name
+                resp.json.id
+            }
+
+        then:"The callback runs on the executor"
+            promise.get(10, TimeUnit.SECONDS) == '4'
+            threadName == 'test-completion'
+
+        when:"The builder is shut down"
+            rest.shutdown()
+
+        then:"The executor passed to it is left running"
+            !executor.isShutdown()
+
+        cleanup:
+            executor.shutdown()
+    }
+
+    def "Test that the pooled setting doesn't create an unused connection pool"() {
+        when:"A non-blocking rest builder is created with pooled:true"
+            def rest = new NonBlockingRestBuilder(pooled: true)
+
+        then:"The underlying builder only serves the message converters"
+            rest.restBuilder.transport instanceof SimpleRestTransport
+
+        cleanup:
+            rest.shutdown()
+    }
+}
@@ -0,0 +1,98 @@
+package grails.plugins.rest.client.transport
+
+import grails.plugins.rest.client.RestBuilder
+import org.apache.http.conn.params.ConnRoutePNames
+import org.apache.http.params.HttpConnectionParams
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory
+import spock.lang.Specification
+
+class PooledRestTransportSpec extends Specification {
+
+    def "Test pool and timeout settings are applied"() {
+        when:"A pooled transport is created with custom settings"
+            def transport = new PooledRestTransport(maxTotal:50, maxPerRoute:5, connectTimeout:1000, readTimeout:2000)
+
+        then:"The connection manager and client are configured"
+            transport.connectionManager.maxTotal == 50
+            transport.connectionManager.defaultMaxPerRoute == 5
+            HttpConnectionParams.getConnectionTimeout(transport.httpClient.params) == 1000
+            HttpConnectionParams.getSoTimeout(transport.httpClient.params) == 2000
+            transport.requestFactory instanceof HttpComponentsClientHttpRequestFactory
+
+        cleanup:
+            transport?.shutdown()
+    }
+
+    def "Test pool metrics of an unused pool"() {
+        when:"A pooled transport is created and a route limit is overridden"
+            def transport = new PooledRestTransport(maxTotal:10)
+            transport.setMaxPerRoute("https://grails.org/api", 3)
+
+        then:"No connections are leased, pending or available"
+            transport.leased == 0
+            transport.pending == 0
+            transport.available == 0
+            transport.totalStats.max == 10
+            transport.getStats("https://grails.org:443/other").max == 3
+
+        cleanup:
+            transport?.shutdown()
+    }
+
+    def "Test RestBuilder uses a pooled transport"() {
+        when:"RestBuilder is configured to use a pool with a proxy"
+            def rest = new RestBuilder(pooled:true, proxy:['localhost':8888])
+
+        then:"The requests go through the pool and the proxy"
+            rest.transport instanceof PooledRestTransport
+            rest.restTemplate.requestFactory instanceof HttpComponentsClientHttpRequestFactory
+            rest.transport.httpClient.params.getParameter(ConnRoutePNames.DEFAULT_PROXY).port == 8888
+
+        cleanup:
+            rest?.close()
+    }
+
+    def "Test closing a builder shuts down the pool it created"() {
+        given:"A builder with a pool"
+            def rest = new RestBuilder(pooled:true)
+            def transport = (PooledRestTransport)rest.transport
+
+        when:"The builder is closed"
+            rest.close()
+
+        then:"The pool is shut down"
+            transport.shutDown
+    }
+
+    def "Test closing a builder leaves a transport passed to it open"() {
+        given:"Builders sharing a pooled transport"
+            def transport = new PooledRestTransport()
+            def first = new RestBuilder(transport)
+            def second = new RestBuilder(transport)
+
+        when:"One of the builders is destroyed"
+            first.destroy()
+
+        then:"The transport is still open for the other one"
+            !transport.shutDown
+            second.restTemplate.requestFactory.is(transport.requestFactory)
+
+        cleanup:
+            transport.shutdown()
+    }
+
+    def "Test a transport can be shared by several builders"() {
+        given:"A pooled transport"
+            def transport = new PooledRestTransport()
+
+        when:"Two builders are created with it"
+            def first = new RestBuilder(transport)
+            def second = new RestBuilder(transport)
+
+        then:"They use the same request factory"
+            first.restTemplate.requestFactory.is(second.restTemplate.requestFactory)
+
+        cleanup:
+            transport.shutdown()
+    }
+}
@@ -18,19 +18,31 @@
 
 package org.grails.datastore.mapping.riak;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.data.keyvalue.riak.core.RiakTemplate;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.util.StringUtils;
 import org.grails.datastore.mapping.core.AbstractDatastore;
 import org.grails.datastore.mapping.core.Session;
 import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValueMappingContext;
 import org.grails.datastore.mapping.model.MappingContext;
+import org.grails.datastore.mapping.riak.query.MapReduceFunctions;
 import org.grails.datastore.mapping.riak.util.Ignore404sErrorHandler;
+import org.grails.datastore.mapping.riak.util.RiakBatchExecutor;
 
 /**
  * A {@link org.grails.datastore.mapping.core.Datastore} implemenation for the Riak
@@ -43,10 +55,16 @@ public class RiakDatastore extends AbstractDatastore implements InitializingBean
     public static final String CONFIG_DEFAULT_URI = "defaultUri";
     public static final String CONFIG_MAPRED_URI = "mapReduceUri";
     public static final String CONFIG_USE_CACHE = "useCache";
+    public static final String CONFIG_MAX_CONNECTIONS = "maxConnections";
+    public static final String CONFIG_BATCH_CONCURRENCY = "batchConcurrency";
+    public static final String CONFIG_SECONDARY_INDEXES = "secondaryIndexes";
+    public static final String CONFIG_INDEXED_ENTITIES = "indexedEntities";
+    public static final String CONFIG_MAX_COMPILED_FUNCTIONS = "maxCompiledFunctions";
 
     public static final String DEFAULT_URI = "http://localhost:8098/riak/{bucket}/{key}";
     public static final String DEFAULT_MAPRED_URI = "http://localhost:8098/mapred";
     public static final boolean DEFAULT_USE_CACHE = true;
+    public static final int DEFAULT_MAX_CONNECTIONS = 50;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -62,6 +80,33 @@ public class RiakDatastore extends AbstractDatastore implements InitializingBean
      * Whether or not to use the internal, ETag-based object cache.
      */
     private boolean useCache = DEFAULT_USE_CACHE;
+    /**
+     * The maximum number of pooled HTTP connections, shared by all sessions.
+     */
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    /**
+     * The maximum number of requests a single batch get or put issues concurrently.
+     */
+    private int batchConcurrency = RiakBatchExecutor.DEFAULT_CONCURRENCY;
+    /**
+     * Whether indexed properties are written to and queried from Riak secondary indexes. Off by default,
+     * since secondary indexes need a backend that supports them (e.g. LevelDB) and Bitcask rejects the writes.
+     */
+    private boolean secondaryIndexes;
+    /**
+     * The names of the entities whose objects are known to have been stored with their index entries.
+     */
+    private Set<String> indexedEntities = Collections.emptySet();
+    /**
+     * The maximum number of compiled Map/Reduce functions kept for reuse.
+     */
+    private int maxCompiledFunctions = MapReduceFunctions.DEFAULT_MAX_COMPILED;
+
+    private PoolingClientConnectionManager connectionManager;
+    private HttpClient httpClient;
+    private RiakBatchExecutor batchExecutor;
+    private MapReduceFunctions mapReduceFunctions;
+    private final ConcurrentMap<String, Boolean> indexedBuckets = new ConcurrentHashMap<String, Boolean>();
 
     public RiakDatastore() {
         this(new KeyValueMappingContext(""));
@@ -83,7 +128,28 @@ public class RiakDatastore extends AbstractDatastore implements InitializingBean
             useCache = connectionDetails.containsKey(CONFIG_USE_CACHE) ? Boolean.parseBoolean(
                     connectionDetails.get(
                             CONFIG_USE_CACHE).toString()) : DEFAULT_USE_CACHE;
+            maxConnections = connectionDetails.containsKey(CONFIG_MAX_CONNECTIONS) ? Integer.parseInt(
+                    connectionDetails.get(CONFIG_MAX_CONNECTIONS)) : DEFAULT_MAX_CONNECTIONS;
+            batchConcurrency = connectionDetails.containsKey(CONFIG_BATCH_CONCURRENCY) ? Integer.parseInt(
+                    connectionDetails.get(CONFIG_BATCH_CONCURRENCY)) : RiakBatchExecutor.DEFAULT_CONCURRENCY;
+            secondaryIndexes = connectionDetails.containsKey(CONFIG_SECONDARY_INDEXES) && Boolean.parseBoolean(
+                    String.valueOf(connectionDetails.get(CONFIG_SECONDARY_INDEXES)));
+            if (connectionDetails.containsKey(CONFIG_INDEXED_ENTITIES)) {
+                indexedEntities = new HashSet<String>(StringUtils.commaDelimitedListToSet(
+                        StringUtils.trimAllWhitespace(String.valueOf(connectionDetails.get(CONFIG_INDEXED_ENTITIES)))));
+            }
+            maxCompiledFunctions = connectionDetails.containsKey(CONFIG_MAX_COMPILED_FUNCTIONS) ? Integer.parseInt(
+                    connectionDetails.get(CONFIG_MAX_COMPILED_FUNCTIONS)) : MapReduceFunctions.DEFAULT_MAX_COMPILED;
         }
+
+        // All sessions share one connection pool, so that batches reuse keep-alive connections
+        // rather than opening a new connection per request.
+        connectionManager = new PoolingClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        httpClient = new DefaultHttpClient(connectionManager);
+        batchExecutor = new RiakBatchExecutor(Math.min(batchConcurrency, maxConnections));
+        mapReduceFunctions = new MapReduceFunctions(maxCompiledFunctions);
     }
 
     @Override
@@ -100,6 +166,7 @@ public class RiakDatastore extends AbstractDatastore implements InitializingBean
         }
         RiakTemplate riak = new RiakTemplate(defaultUri, mapReduceUri);
         riak.setUseCache(useCache);
+        riak.getRestTemplate().setRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
         riak.getRestTemplate().setErrorHandler(new Ignore404sErrorHandler());
         try {
             riak.afterPropertiesSet();
@@ -109,7 +176,56 @@ public class RiakDatastore extends AbstractDatastore implements InitializingBean
         return new RiakSession(this, mappingContext, riak, getApplicationEventPublisher());
     }
 
+    /**
+     * @return The executor used to issue batched requests concurrently
+     */
+    public RiakBatchExecutor getBatchExecutor() {
+        return batchExecutor;
+    }
+
+    /**
+     * @return The Map/Reduce functions compiled and stored by the queries against this datastore
+     */
+    public MapReduceFunctions getMapReduceFunctions() {
+        return mapReduceFunctions;
+    }
+
+    /**
+     * @return Whether indexed properties are written to and queried from Riak secondary indexes
+     */
+    public boolean isSecondaryIndexes() {
+        return secondaryIndexes;
+    }
+
+    public void setSecondaryIndexes(boolean secondaryIndexes) {
+        this.secondaryIndexes = secondaryIndexes;
+    }
+
+    /**
+     * @param bucket The bucket
+     * @return Whether all objects of the bucket are known to have their index entries, or null if not yet known
+     */
+    public Boolean isBucketIndexed(String bucket) {
+        if (indexedEntities.contains(bucket)) {
+            return Boolean.TRUE;
+        }
+        return indexedBuckets.get(bucket);
+    }
+
+    /**
+     * Records whether all objects of the bucket have their index entries. Objects stored from now on always have
+     * them, so this only changes once the objects stored without them are reindexed.
+     *
+     * @param bucket The bucket
+     * @param indexed Whether all objects have their index entries
+     */
+    public void setBucketIndexed(String bucket, boolean indexed) {
+        indexedBuckets.put(bucket, indexed);
+    }
+
     public void destroy() throws Exception {
+        batchExecutor.shutdown();
+        connectionManager.shutdown();
     }
 
     public void afterPropertiesSet() throws Exception {
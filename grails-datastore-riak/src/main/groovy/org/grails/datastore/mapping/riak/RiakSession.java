@@ -19,6 +19,12 @@
 package org.grails.datastore.mapping.riak;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.convert.converter.Converter;
@@ -26,10 +32,14 @@ import org.springframework.data.keyvalue.riak.core.QosParameters;
 import org.springframework.data.keyvalue.riak.core.RiakTemplate;
 import org.grails.datastore.mapping.core.AbstractSession;
 import org.grails.datastore.mapping.core.Datastore;
+import org.grails.datastore.mapping.core.impl.PendingInsert;
+import org.grails.datastore.mapping.core.impl.PendingOperation;
+import org.grails.datastore.mapping.core.impl.PendingUpdate;
 import org.grails.datastore.mapping.engine.Persister;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.riak.engine.RiakEntityPersister;
+import org.grails.datastore.mapping.riak.util.RiakBatchExecutor;
 import org.grails.datastore.mapping.transactions.Transaction;
 
 /**
@@ -43,6 +53,14 @@ public class RiakSession extends AbstractSession {
 
     private RiakTemplate riakTemplate;
     private QosParameters qosParameters;
+    /**
+     * Stores deferred by the persisters while a batch of pending operations is flushed, null otherwise.
+     */
+    private List<Callable<Object>> deferredStores;
+    /**
+     * Work that relies on the deferred stores having succeeded, such as post events and cache updates.
+     */
+    private List<Runnable> deferredPostStores;
 
     public RiakSession(Datastore datastore, MappingContext mappingContext,
              RiakTemplate riakTemplate, ApplicationEventPublisher publisher) {
@@ -69,6 +87,97 @@ public class RiakSession extends AbstractSession {
         return riakTemplate;
     }
 
+    public RiakBatchExecutor getBatchExecutor() {
+        return ((RiakDatastore) getDatastore()).getBatchExecutor();
+    }
+
+    /**
+     * Defers the given store until the batch of pending operations currently being flushed
+     * has been prepared, so that the stores of the batch can be issued concurrently.
+     *
+     * @param store The store
+     * @return false if no batch is being flushed, in which case the caller should store immediately
+     */
+    public boolean deferStore(Callable<Object> store) {
+        if (null == deferredStores) {
+            return false;
+        }
+        deferredStores.add(store);
+        return true;
+    }
+
+    /**
+     * Defers the given work until the stores of the batch currently being flushed have succeeded.
+     * The work is dropped if they fail.
+     *
+     * @param work The work, such as firing a post insert event
+     * @return false if no batch is being flushed, in which case the caller should run the work immediately
+     */
+    public boolean deferPostStore(Runnable work) {
+        if (null == deferredPostStores) {
+            return false;
+        }
+        deferredPostStores.add(work);
+        return true;
+    }
+
+    @Override
+    protected void flushPendingInserts(Map<PersistentEntity, Collection<PendingInsert>> inserts) {
+        for (Collection<PendingInsert> pending : inserts.values()) {
+            flushBatch(pending);
+        }
+    }
+
+    @Override
+    protected void flushPendingUpdates(Map<PersistentEntity, Collection<PendingUpdate>> updates) {
+        for (Collection<PendingUpdate> pending : updates.values()) {
+            flushBatch(pending);
+        }
+    }
+
+    /**
+     * Runs the given operations with stores deferred, issues the deferred stores concurrently
+     * and then runs the work that relies on the stores, such as post events, and the cascade
+     * operations, which may rely on the entries having been stored.
+     */
+    private void flushBatch(Collection<? extends PendingOperation> operations) {
+        List<PendingOperation> cascadeOperations = new LinkedList<PendingOperation>();
+        try {
+            List<Callable<Object>> stores;
+            List<Runnable> postStores;
+            deferredStores = new ArrayList<Callable<Object>>();
+            deferredPostStores = new ArrayList<Runnable>();
+            try {
+                for (PendingOperation operation : operations) {
+                    for (PendingOperation preOperation : (List<PendingOperation>) operation.getPreOperations()) {
+                        preOperation.run();
+                    }
+                    operation.run();
+                    if (!operation.isVetoed()) {
+                        cascadeOperations.addAll(operation.getCascadeOperations());
+                    }
+                }
+                stores = deferredStores;
+                postStores = deferredPostStores;
+            } finally {
+                deferredStores = null;
+                deferredPostStores = null;
+            }
+
+            getBatchExecutor().invokeAll(stores);
+
+            for (Runnable postStore : postStores) {
+                postStore.run();
+            }
+            for (PendingOperation cascadeOperation : cascadeOperations) {
+                cascadeOperation.run();
+            }
+        } catch (RuntimeException e) {
+            markExceptionOccurred();
+            throw e;
+        }
+    }
+
     public QosParameters getQosParameters() {
         return qosParameters;
     }
@@ -82,6 +191,21 @@ public class RiakSession extends AbstractSession {
         this.qosParameters = qosParameters;
     }
 
+    /**
+     * Stores every instance of the given type again, so that instances stored before their properties were
+     * indexed get their index entries and queries for the type can be answered from secondary indexes.
+     *
+     * @param type The type
+     * @see RiakEntityPersister#reindex()
+     */
+    public void reindex(Class type) {
+        RiakEntityPersister persister = (RiakEntityPersister) getPersister(type);
+        if (persister == null) {
+            throw new IllegalArgumentException("Type [" + type.getName() + "] is not a persistent entity");
+        }
+        persister.reindex();
+    }
+
     protected class BigIntegerToLongConverter implements Converter<BigInteger, Long> {
         public Long convert(BigInteger integer) {
             return Long.valueOf(integer.longValue());
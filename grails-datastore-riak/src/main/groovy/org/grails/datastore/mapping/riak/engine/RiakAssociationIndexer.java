@@ -20,6 +20,7 @@ package org.grails.datastore.mapping.riak.engine;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import org.springframework.core.convert.ConversionService;
@@ -27,6 +28,7 @@ import org.springframework.data.keyvalue.riak.core.RiakTemplate;
 import org.grails.datastore.mapping.engine.AssociationIndexer;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.model.types.Association;
+import org.grails.datastore.mapping.riak.util.RiakBatchExecutor;
 
 /**
  * @author J. Brisbin <jon@jbrisbin.com>
@@ -41,21 +43,43 @@ public class RiakAssociationIndexer implements AssociationIndexer<Long, Long> {
     @SuppressWarnings("unused")
     private ConversionService conversionService;
     private Association association;
+    private RiakBatchExecutor batchExecutor;
     PersistentEntity owner;
     PersistentEntity child;
 
     public RiakAssociationIndexer(RiakTemplate riakTemplate, ConversionService conversionService, Association association) {
+        this(riakTemplate, conversionService, association, null);
+    }
+
+    public RiakAssociationIndexer(RiakTemplate riakTemplate, ConversionService conversionService,
+               Association association, RiakBatchExecutor batchExecutor) {
         this.riakTemplate = riakTemplate;
+        this.batchExecutor = batchExecutor;
         this.conversionService = conversionService;
         this.association = association;
         this.owner = association.getOwner();
         this.child = association.getAssociatedEntity();
     }
 
-    public void index(Long primaryKey, List<Long> foreignKeys) {
-        for (Long foreignKey : foreignKeys) {
-            link(foreignKey, primaryKey);
+    public void index(final Long primaryKey, List<Long> foreignKeys) {
+        if (null == batchExecutor) {
+            for (Long foreignKey : foreignKeys) {
+                link(foreignKey, primaryKey);
+            }
+            return;
+        }
+
+        // Each link is a couple of requests of its own, so link the children concurrently
+        List<Callable<Object>> links = new ArrayList<Callable<Object>>(foreignKeys.size());
+        for (final Long foreignKey : foreignKeys) {
+            links.add(new Callable<Object>() {
+                public Object call() {
+                    link(foreignKey, primaryKey);
+                    return null;
+                }
+            });
         }
+        batchExecutor.invokeAll(links);
     }
 
     public void index(Long primaryKey, Long foreignKey) {
@@ -18,8 +18,12 @@
 
 package org.grails.datastore.mapping.riak.engine;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -28,7 +32,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
@@ -36,6 +44,9 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.data.keyvalue.riak.core.QosParameters;
 import org.springframework.data.keyvalue.riak.core.RiakTemplate;
 import org.springframework.data.keyvalue.riak.core.RiakValue;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
 import org.grails.datastore.mapping.core.Session;
 import org.grails.datastore.mapping.engine.AssociationIndexer;
 import org.grails.datastore.mapping.engine.EntityAccess;
@@ -47,6 +58,7 @@ import org.grails.datastore.mapping.model.PersistentProperty;
 import org.grails.datastore.mapping.model.types.Association;
 import org.grails.datastore.mapping.proxy.EntityProxy;
 import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.riak.RiakDatastore;
 import org.grails.datastore.mapping.riak.RiakEntry;
 import org.grails.datastore.mapping.riak.RiakSession;
 import org.grails.datastore.mapping.riak.collection.RiakEntityIndex;
@@ -63,6 +75,8 @@ public class RiakEntityPersister extends AbstractKeyValueEntityPersister<Map, Lo
 
     private final static String DISCRIMINATOR = "__entity__";
     private final static String DESCENDANTS = "descendants";
+    private final static String INDEXES = "indexes";
+    private final static String SIGNATURE = "signature";
     private final Logger log = LoggerFactory.getLogger(getClass());
     private RiakTemplate riakTemplate;
 
@@ -95,7 +109,7 @@ public class RiakEntityPersister extends AbstractKeyValueEntityPersister<Map, Lo
     public AssociationIndexer getAssociationIndexer(Map nativeEntry, Association association) {
         return new RiakAssociationIndexer(riakTemplate,
                 getMappingContext().getConversionService(),
-                association);
+                association, ((RiakSession) getSession()).getBatchExecutor());
     }
 
     @Override
@@ -170,29 +184,77 @@ public class RiakEntityPersister extends AbstractKeyValueEntityPersister<Map, Lo
         if (null == key) {
             return null;
         }
+        return retrieveEntry(persistentEntity, family, key, getDescendants(persistentEntity));
+    }
+
+    /**
+     * Riak has no multi-get, so the entries are fetched with concurrent requests instead of one
+     * after the other. The descendants of the entity are looked up once for the whole batch and
+     * the entities are created on the calling thread, in the order of the keys.
+     */
+    @Override
+    protected List<Object> retrieveAllEntities(final PersistentEntity persistentEntity, Iterable<Serializable> keys) {
+        final String family = getEntityFamily();
+        final Set<String> descendants = getDescendants(persistentEntity);
+
+        List<Serializable> nativeKeys = new ArrayList<Serializable>();
+        List<Callable<Map>> fetches = new ArrayList<Callable<Map>>();
+        for (final Serializable key : keys) {
+            nativeKeys.add(key);
+            final Map cached = null != key ? getFromTPCache(persistentEntity, key) : null;
+            fetches.add(new Callable<Map>() {
+                public Map call() {
+                    if (null == key) {
+                        return null;
+                    }
+                    return null != cached ? cached : retrieveEntry(persistentEntity, family, key, descendants);
+                }
+            });
+        }
+
+        List<Map> entries = ((RiakSession) getSession()).getBatchExecutor().invokeAll(fetches);
+
+        List<Serializable> keys = new ArrayList<Serializable>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            keys.add(null != entries.get(i) ? convertToNativeKey(nativeKeys.get(i)) : null);
+        }
+        return createObjectsFromNativeEntries(persistentEntity, keys, entries);
+    }
 
-        Set<String> descendants = null;
-        RiakValue<Map> v = null;
+    @Override
+    protected List<Object> retrieveAllEntities(PersistentEntity persistentEntity, Serializable[] keys) {
+        return retrieveAllEntities(persistentEntity, Arrays.asList(keys));
+    }
 
-        // Check for any descendants this entity might have.
+    /**
+     * @return The descendants of the given entity, or null if no descendants metadata has been stored
+     */
+    private Set<String> getDescendants(PersistentEntity persistentEntity) {
         String bucket = persistentEntity.getName() + ".metadata";
-        if (riakTemplate.containsKey(bucket, DESCENDANTS)) {
-            descendants = riakTemplate.getAsType(bucket, DESCENDANTS, Set.class);
-            v = riakTemplate.getWithMetaData(family,
-                    (key instanceof Long ? (Long) key : Long.parseLong(key.toString())),
-                    Map.class);
-            if (log.isDebugEnabled()) {
-                log.debug(String.format("retrieveEntry(): entity=%s, family=%s, key=%s, values=%s",
-                        persistentEntity.getName(), family, key, v));
-            }
+        if (!riakTemplate.containsKey(bucket, DESCENDANTS)) {
+            return null;
         }
+        Set<String> descendants = riakTemplate.getAsType(bucket, DESCENDANTS, Set.class);
+        return null != descendants ? descendants : Collections.<String>emptySet();
+    }
 
-        if (null == v && null != descendants) {
+    private Map retrieveEntry(PersistentEntity persistentEntity, String family, Serializable key,
+                              Set<String> descendants) {
+        if (null == descendants) {
+            return null;
+        }
+
+        Long id = (key instanceof Long ? (Long) key : Long.parseLong(key.toString()));
+        RiakValue<Map> v = riakTemplate.getWithMetaData(family, id, Map.class);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("retrieveEntry(): entity=%s, family=%s, key=%s, values=%s",
+                    persistentEntity.getName(), family, key, v));
+        }
+
+        if (null == v) {
             // Search through all descendants, as well.
             for (String d : descendants) {
-                v = riakTemplate.getWithMetaData(d,
-                        (key instanceof Long ? (Long) key : Long.parseLong(key.toString())),
-                        Map.class);
+                v = riakTemplate.getWithMetaData(d, id, Map.class);
                 if (null != v) {
                     break;
                 }
@@ -208,7 +270,8 @@ public class RiakEntityPersister extends AbstractKeyValueEntityPersister<Map, Lo
         Map<String, String> metaData = null;
 
         // Quality Of Service parameters (r, w, dw)
-        QosParameters qosParams = ((RiakSession) getSession()).getQosParameters();
+        final RiakSession riakSession = (RiakSession) getSession();
+        final QosParameters qosParams = riakSession.getQosParameters();
 
         if (!persistentEntity.isRoot()) {
             // This is a subclass, find our ancestry.
@@ -239,8 +302,33 @@ public class RiakEntityPersister extends AbstractKeyValueEntityPersister<Map, Lo
             nativeEntry.put(DISCRIMINATOR, persistentEntity.getDiscriminator());
         }
 
-        riakTemplate.setWithMetaData(persistentEntity.getName(),
-                storeId, nativeEntry, metaData, qosParams);
+        // Secondary index entries travel with the object so that queries can avoid Map/Reduce
+        Map<String, String> indexHeaders = Collections.emptyMap();
+        if (getRiakDatastore().isSecondaryIndexes()) {
+            indexHeaders = RiakPropertyValueIndexer.createIndexHeaders(persistentEntity, nativeEntry,
+                    new LinkedHashMap<String, String>());
+        }
+        if (!indexHeaders.isEmpty()) {
+            if (null == metaData) {
+                metaData = indexHeaders;
+            } else {
+                metaData.putAll(indexHeaders);
+            }
+        }
+
+        // While the session flushes a batch, the write is deferred so that the batch is written concurrently
+        final Map<String, String> storeMetaData = metaData;
+        boolean deferred = riakSession.deferStore(new Callable<Object>() {
+            public Object call() {
+                riakTemplate.setWithMetaData(persistentEntity.getName(),
+                        storeId, nativeEntry, storeMetaData, qosParams);
+                return null;
+            }
+        });
+        if (!deferred) {
+            riakTemplate.setWithMetaData(persistentEntity.getName(),
+                    storeId, nativeEntry, metaData, qosParams);
+        }
 
         return storeId;
     }
@@ -251,6 +339,43 @@ public class RiakEntityPersister extends AbstractKeyValueEntityPersister<Map, Lo
         storeEntry(persistentEntity, entityAccess, key, entry);
     }
 
+    @Override
+    protected void updateTPCache(final PersistentEntity persistentEntity, final Map e, final Serializable id) {
+        // while a batch is flushed the entry is only cached once it has been stored
+        boolean deferred = ((RiakSession) getSession()).deferPostStore(new Runnable() {
+            public void run() {
+                RiakEntityPersister.super.updateTPCache(persistentEntity, e, id);
+            }
+        });
+        if (!deferred) {
+            super.updateTPCache(persistentEntity, e, id);
+        }
+    }
+
+    @Override
+    public void firePostInsertEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        boolean deferred = ((RiakSession) getSession()).deferPostStore(new Runnable() {
+            public void run() {
+                RiakEntityPersister.super.firePostInsertEvent(persistentEntity, entityAccess);
+            }
+        });
+        if (!deferred) {
+            super.firePostInsertEvent(persistentEntity, entityAccess);
+        }
+    }
+
+    @Override
+    public void firePostUpdateEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        boolean deferred = ((RiakSession) getSession()).deferPostStore(new Runnable() {
+            public void run() {
+                RiakEntityPersister.super.firePostUpdateEvent(persistentEntity, entityAccess);
+            }
+        });
+        if (!deferred) {
+            super.firePostUpdateEvent(persistentEntity, entityAccess);
+        }
+    }
+
     @Override
     protected void deleteEntries(String family, List<Long> keys) {
         for (Long key : keys) {
@@ -258,12 +383,158 @@ public class RiakEntityPersister extends AbstractKeyValueEntityPersister<Map, Lo
         }
     }
 
+    /**
+     * Obtains the buckets that may hold instances of the given entity, which are the bucket
+     * of the entity itself followed by those of any known descendants.
+     *
+     * @param entity The entity
+     * @return The bucket names
+     */
+    public List<String> getBuckets(PersistentEntity entity) {
+        List<String> buckets = new LinkedList<String>();
+        buckets.add(entity.getName());
+        Set<String> descendants = getDescendants(entity);
+        if (null != descendants) {
+            buckets.addAll(descendants);
+        }
+        return buckets;
+    }
+
+    /**
+     * Whether queries can be answered from secondary indexes, which is only the case if secondary indexes are
+     * enabled and every bucket of the entity is known to hold objects stored with their index entries. A bucket
+     * is known to be indexed once {@link #reindex()} has run with the current indexes of its entity, or if its
+     * entity is configured as indexed on the datastore. The state is read once per bucket and remembered by the
+     * datastore.
+     *
+     * @return True if every object has its index entries
+     */
+    public boolean isFullyIndexed() {
+        RiakDatastore datastore = getRiakDatastore();
+        if (!datastore.isSecondaryIndexes()) {
+            return false;
+        }
+        for (String bucket : getBuckets(getPersistentEntity())) {
+            Boolean indexed = datastore.isBucketIndexed(bucket);
+            if (indexed == null) {
+                indexed = readIndexedState(bucket);
+                datastore.setBucketIndexed(bucket, indexed);
+            }
+            if (!indexed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores every object in the buckets of the entity again, so that objects stored before its properties
+     * were indexed get their index entries, and records that queries can be answered from the indexes. Keys are
+     * streamed from Riak and each chunk of keys is stored again concurrently.
+     */
+    public void reindex() {
+        RiakDatastore datastore = getRiakDatastore();
+        if (!datastore.isSecondaryIndexes()) {
+            throw new IllegalStateException("Secondary indexes are not enabled, set [" +
+                    RiakDatastore.CONFIG_SECONDARY_INDEXES + "] to reindex");
+        }
+
+        for (String bucket : getBuckets(getPersistentEntity())) {
+            PersistentEntity entity = getMappingContext().getPersistentEntity(bucket);
+            if (null == entity) {
+                continue;
+            }
+
+            streamKeys(bucket, entity);
+            String signature = RiakPropertyValueIndexer.getIndexSignature(entity);
+            if (null != signature) {
+                riakTemplate.set(bucket + ".metadata", INDEXES, Collections.singletonMap(SIGNATURE, signature));
+            }
+            datastore.setBucketIndexed(bucket, null != signature);
+        }
+    }
+
+    private boolean readIndexedState(String bucket) {
+        PersistentEntity entity = getMappingContext().getPersistentEntity(bucket);
+        String signature = null != entity ? RiakPropertyValueIndexer.getIndexSignature(entity) : null;
+        if (null == signature || !riakTemplate.containsKey(bucket + ".metadata", INDEXES)) {
+            return false;
+        }
+
+        // the signature only matches as long as no property was indexed since the bucket was reindexed
+        Map state = riakTemplate.getAsType(bucket + ".metadata", INDEXES, Map.class);
+        boolean indexed = null != state && signature.equals(state.get(SIGNATURE));
+        if (!indexed && log.isDebugEnabled()) {
+            log.debug(String.format("Bucket %s has not been reindexed with indexes %s, queries use Map/Reduce", bucket, signature));
+        }
+        return indexed;
+    }
+
+    private void streamKeys(final String bucket, final PersistentEntity entity) {
+        // the default URI has the form http://host:port/riak/{bucket}/{key}
+        String uri = riakTemplate.getDefaultUri().replace("/{key}", "?keys=stream&props=false");
+        riakTemplate.getRestTemplate().execute(uri, HttpMethod.GET, null, new ResponseExtractor<Object>() {
+            public Object extractData(ClientHttpResponse response) throws IOException {
+                // the keys arrive as a sequence of {"keys":[...]} objects, each is reindexed as it is read
+                JsonParser parser = new JsonFactory().createJsonParser(response.getBody());
+                try {
+                    List<String> keys = new ArrayList<String>();
+                    JsonToken token;
+                    while ((token = parser.nextToken()) != null) {
+                        if (token != JsonToken.FIELD_NAME || !"keys".equals(parser.getCurrentName()) ||
+                                parser.nextToken() != JsonToken.START_ARRAY) {
+                            continue;
+                        }
+                        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                            keys.add(parser.getText());
+                        }
+                        reindexEntries(bucket, entity, keys);
+                        keys.clear();
+                    }
+                } finally {
+                    parser.close();
+                }
+                return null;
+            }
+        }, bucket);
+    }
+
+    private void reindexEntries(final String bucket, final PersistentEntity entity, List<String> keys) {
+        final QosParameters qosParams = ((RiakSession) getSession()).getQosParameters();
+        final ConversionService conversionService = getMappingContext().getConversionService();
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(keys.size());
+        for (final String key : keys) {
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    Long id = conversionService.convert(key, Long.class);
+                    RiakValue<Map> value = riakTemplate.getWithMetaData(bucket, id, Map.class);
+                    if (null == value || null == value.get()) {
+                        return null;
+                    }
+
+                    Map<String, String> metaData = new LinkedHashMap<String, String>();
+                    if (!entity.isRoot()) {
+                        metaData.put("X-Riak-Meta-Entity", entity.getName());
+                    }
+                    RiakPropertyValueIndexer.createIndexHeaders(entity, value.get(), metaData);
+                    riakTemplate.setWithMetaData(bucket, id, value.get(), metaData, qosParams);
+                    return null;
+                }
+            });
+        }
+        ((RiakSession) getSession()).getBatchExecutor().invokeAll(tasks);
+    }
+
+    private RiakDatastore getRiakDatastore() {
+        return (RiakDatastore) getSession().getDatastore();
+    }
+
     protected boolean shouldConvert(Object value) {
         return !getMappingContext().isPersistentEntity(value) && !(value instanceof EntityProxy);
     }
 
     public Query createQuery() {
-        return new RiakQuery(session, getPersistentEntity(), riakTemplate);
+        return new RiakQuery(session, getPersistentEntity(), riakTemplate, this);
     }
 
     protected String getRootFamily(PersistentEntity entity) {
@@ -18,27 +18,60 @@
 
 package org.grails.datastore.mapping.riak.engine;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.grails.datastore.mapping.config.Property;
 import org.grails.datastore.mapping.engine.PropertyValueIndexer;
+import org.grails.datastore.mapping.engine.internal.MappingUtils;
 import org.grails.datastore.mapping.model.MappingContext;
+import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.model.types.Identity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.keyvalue.riak.core.RiakTemplate;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
+ * Queries Riak secondary indexes (2i) for the values of an indexed property.
+ * <p/>
+ * Riak maintains secondary indexes as part of the stored object, so the index entries themselves
+ * are written by {@link RiakEntityPersister} as <code>X-Riak-Index-*</code> headers when the entry
+ * is stored, and replaced whenever it is updated. As a consequence {@link #index(Object, Long)} and
+ * {@link #deindex(Object, Long)} have nothing to do.
+ * <p/>
+ * Whole numbers, dates and calendars are indexed as integer (<code>_int</code>) indexes, which
+ * support range lookups. Everything else is indexed as a binary (<code>_bin</code>) index.
+ * <p/>
+ * Index entries are only written when secondary indexes are enabled on the
+ * {@link org.grails.datastore.mapping.riak.RiakDatastore}.
+ * Objects stored before that, or before a property was indexed, have no entries in its index, so
+ * queries are only answered from indexes once {@link RiakEntityPersister#reindex()} stored them again
+ * with their index entries, or the entity is configured as indexed. The names of the indexes an entity
+ * was reindexed with are recorded as its {@link #getIndexSignature(PersistentEntity) signature}.
+ *
  * @author J. Brisbin <jon@jbrisbin.com>
  */
-@SuppressWarnings("rawtypes")
+@SuppressWarnings({"rawtypes", "unchecked"})
 public class RiakPropertyValueIndexer implements PropertyValueIndexer<Long> {
 
-    @SuppressWarnings("unused")
+    public static final String INDEX_HEADER_PREFIX = "X-Riak-Index-";
+
+    private static final String INTEGER_INDEX_SUFFIX = "_int";
+    private static final String BINARY_INDEX_SUFFIX = "_bin";
+
+    private static final Logger LOG = LoggerFactory.getLogger(RiakPropertyValueIndexer.class);
     private RiakTemplate riakTemplate;
-    @SuppressWarnings("unused")
     private MappingContext mappingContext;
-    @SuppressWarnings("unused")
     private RiakEntityPersister riakEntityPersister;
-    @SuppressWarnings("unused")
     private PersistentProperty property;
 
     public RiakPropertyValueIndexer(RiakTemplate riakTemplate, MappingContext mappingContext,
@@ -49,7 +82,98 @@ public class RiakPropertyValueIndexer implements PropertyValueIndexer<Long> {
         this.property = property;
     }
 
+    /**
+     * @param property The property
+     * @return Whether the given property is mapped with <code>index:true</code>
+     */
+    public static boolean isIndexed(PersistentProperty property) {
+        if (property == null || property instanceof Identity) {
+            return false;
+        }
+        Property mappedForm = (Property) property.getMapping().getMappedForm();
+        return mappedForm != null && mappedForm.isIndex();
+    }
+
+    /**
+     * @param property The property
+     * @return Whether the property is stored in an integer index and therefore supports range lookups
+     */
+    public static boolean isRangeIndexed(PersistentProperty property) {
+        Class type = property.getType();
+        if (type.isPrimitive()) {
+            return type != float.class && type != double.class && type != boolean.class && type != char.class;
+        }
+        return Date.class.isAssignableFrom(type) || Calendar.class.isAssignableFrom(type) ||
+               Long.class == type || Integer.class == type || Short.class == type || Byte.class == type;
+    }
+
+    /**
+     * Obtains the secondary index headers for the given native entry
+     *
+     * @param entity The entity the entry belongs to
+     * @param nativeEntry The native entry
+     * @param headers The headers to add the index headers to
+     * @return The headers
+     */
+    public static Map<String, String> createIndexHeaders(PersistentEntity entity, Map nativeEntry,
+            Map<String, String> headers) {
+        for (PersistentProperty prop : entity.getPersistentProperties()) {
+            if (!isIndexed(prop)) continue;
+            Object value = nativeEntry.get(MappingUtils.getTargetKey(prop));
+            if (value == null) continue;
+            headers.put(INDEX_HEADER_PREFIX + getIndexName(prop), encodeValue(prop, value));
+        }
+        return headers;
+    }
+
+    /**
+     * @param entity The entity
+     * @return The sorted names of the indexes of the entity, or null if it has no indexed properties
+     */
+    public static String getIndexSignature(PersistentEntity entity) {
+        Set<String> names = new TreeSet<String>();
+        for (PersistentProperty prop : entity.getPersistentProperties()) {
+            if (isIndexed(prop)) {
+                names.add(getIndexName(prop));
+            }
+        }
+        if (names.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder signature = new StringBuilder();
+        for (String name : names) {
+            if (signature.length() > 0) {
+                signature.append('.');
+            }
+            signature.append(name);
+        }
+        return signature.toString();
+    }
+
+    public static String getIndexName(PersistentProperty property) {
+        return property.getName() + (isRangeIndexed(property) ? INTEGER_INDEX_SUFFIX : BINARY_INDEX_SUFFIX);
+    }
+
+    private static String encodeValue(PersistentProperty property, Object value) {
+        if (value instanceof Calendar) {
+            value = ((Calendar) value).getTime();
+        }
+        if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        }
+        if (isRangeIndexed(property) && value instanceof BigDecimal) {
+            return String.valueOf(((BigDecimal) value).longValue());
+        }
+        return value.toString();
+    }
+
     public void index(Object value, Long primaryKey) {
+        // index entries are written with the object itself, see RiakEntityPersister.storeEntry
+    }
+
+    public void deindex(Object value, Long primaryKey) {
+        // index entries are replaced when the object is stored again
     }
 
     public List<Long> query(Object value) {
@@ -57,20 +181,60 @@ public class RiakPropertyValueIndexer implements PropertyValueIndexer<Long> {
     }
 
     public List<Long> query(Object value, int offset, int max) {
-        @SuppressWarnings("unused")
-        String js = "function(sdata) {\n" +
-        "  var data = Riak.mapValuesJson(sdata);\n" +
-        "  ejsLog(\"/tmp/mapred.log\", JSON.stringify(sdata));\n" +
-        "  ejsLog(\"/tmp/mapred.log\", JSON.stringify(data));\n" +
-        "  return [data];\n" +
-        "}";
-        return new ArrayList<Long>();
+        if (value == null) {
+            return Collections.emptyList();
+        }
+
+        List<Long> keys = new ArrayList<Long>(queryIndex("{value}", encodeValue(property, value)));
+        if (offset >= keys.size()) {
+            return Collections.emptyList();
+        }
+        int end = max > -1 ? Math.min(keys.size(), offset + max) : keys.size();
+        return keys.subList(offset, end);
+    }
+
+    /**
+     * Performs a range lookup against an integer index. Both bounds are inclusive and
+     * a null bound is treated as open.
+     *
+     * @param from The lower bound
+     * @param to The upper bound
+     * @return The keys of the matching entries
+     */
+    public Set<Long> queryRange(Object from, Object to) {
+        String start = from == null ? String.valueOf(Long.MIN_VALUE) : encodeValue(property, from);
+        String end = to == null ? String.valueOf(Long.MAX_VALUE) : encodeValue(property, to);
+        return queryIndex("{start}/{end}", start, end);
     }
 
     public String getIndexName(Object value) {
-        return null;
+        return getIndexName(property);
     }
 
-    public void deindex(Object value, Long primaryKey) {
+    private Set<Long> queryIndex(String valueTemplate, String... values) {
+        String indexName = getIndexName(property);
+        // the default URI has the form http://host:port/riak/{bucket}/{key}
+        String uri = riakTemplate.getDefaultUri().replace("{key}", "index/{index}/" + valueTemplate);
+        Object[] uriVariables = new Object[values.length + 2];
+        uriVariables[1] = indexName;
+        System.arraycopy(values, 0, uriVariables, 2, values.length);
+
+        Set<Long> keys = new LinkedHashSet<Long>();
+        for (String bucket : riakEntityPersister.getBuckets(property.getOwner())) {
+            uriVariables[0] = bucket;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Querying secondary index %s of bucket %s", indexName, bucket));
+            }
+            Map result = riakTemplate.getRestTemplate().getForObject(uri, Map.class, uriVariables);
+            if (result == null) continue;
+
+            Object found = result.get("keys");
+            if (found instanceof List) {
+                for (Object key : (List) found) {
+                    keys.add(mappingContext.getConversionService().convert(key, Long.class));
+                }
+            }
+        }
+        return keys;
     }
 }
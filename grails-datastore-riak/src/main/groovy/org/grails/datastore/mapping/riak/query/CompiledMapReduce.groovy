@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2010 by J. Brisbin <jon@jbrisbin.com>
+ *     Portions (c) 2010 by NPC International, Inc. or the
+ *     original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grails.datastore.mapping.riak.query
+
+import java.security.MessageDigest
+
+/**
+ * The Javascript map and reduce functions generated for one shape of criteria and projections.
+ * <p/>
+ * Functions are stored in Riak under a key derived from a digest of their source, so identical
+ * functions generated for different shapes share a single stored object.
+ *
+ * @author J. Brisbin <jon@jbrisbin.com>
+ */
+class CompiledMapReduce {
+
+    final String mapSource
+    final String reduceSource
+    final String mapKey
+    final String reduceKey
+
+    CompiledMapReduce(String mapSource, String reduceSource) {
+        this.mapSource = mapSource
+        this.reduceSource = reduceSource
+        this.mapKey = "map-" + digest(mapSource)
+        this.reduceKey = reduceSource ? "reduce-" + digest(reduceSource) : null
+    }
+
+    private static String digest(String source) {
+        MessageDigest.getInstance("SHA-1").digest(source.getBytes("UTF-8")).encodeHex().toString()
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2010 by J. Brisbin <jon@jbrisbin.com>
+ *     Portions (c) 2010 by NPC International, Inc. or the
+ *     original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grails.datastore.mapping.riak.query
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The Map/Reduce functions a {@link org.grails.datastore.mapping.riak.RiakDatastore} compiled and stored.
+ * <p/>
+ * Compiled functions are keyed by the shape of the criteria and projections they were generated for and the
+ * least recently used ones are discarded once more than the maximum are held. Stored functions are only
+ * remembered until a job reports them missing, for example after the cluster was wiped or restored.
+ *
+ * @author J. Brisbin <jon@jbrisbin.com>
+ */
+class MapReduceFunctions {
+
+    static final int DEFAULT_MAX_COMPILED = 500
+
+    final int maxCompiled
+
+    private final Map<String, CompiledMapReduce> compiled
+    private final Set<String> stored = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>())
+
+    MapReduceFunctions() {
+        this(DEFAULT_MAX_COMPILED)
+    }
+
+    MapReduceFunctions(int maxCompiled) {
+        this.maxCompiled = maxCompiled > 0 ? maxCompiled : DEFAULT_MAX_COMPILED
+        final int max = this.maxCompiled
+        compiled = Collections.synchronizedMap(new LinkedHashMap<String, CompiledMapReduce>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledMapReduce> eldest) {
+                size() > max
+            }
+        })
+    }
+
+    /**
+     * @param shape The shape of the criteria and projections
+     * @return The functions compiled for the shape or null
+     */
+    CompiledMapReduce getCompiled(String shape) {
+        compiled.get(shape)
+    }
+
+    void putCompiled(String shape, CompiledMapReduce functions) {
+        compiled.put(shape, functions)
+    }
+
+    /**
+     * @return The number of compiled functions held
+     */
+    int getCompiledCount() {
+        compiled.size()
+    }
+
+    /**
+     * @param uri The URI of the Riak server
+     * @param key The key of the function
+     * @return Whether the function is known to be stored on the server
+     */
+    boolean isStored(String uri, String key) {
+        stored.contains(uri + "|" + key)
+    }
+
+    void setStored(String uri, String key, boolean isStored) {
+        if (isStored) {
+            stored.add(uri + "|" + key)
+        }
+        else {
+            stored.remove(uri + "|" + key)
+        }
+    }
+}
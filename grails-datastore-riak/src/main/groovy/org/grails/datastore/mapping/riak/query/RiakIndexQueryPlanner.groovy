@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2010 by J. Brisbin <jon@jbrisbin.com>
+ *     Portions (c) 2010 by NPC International, Inc. or the
+ *     original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grails.datastore.mapping.riak.query
+
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.model.PersistentProperty
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.riak.engine.RiakEntityPersister
+import org.grails.datastore.mapping.riak.engine.RiakPropertyValueIndexer
+
+/**
+ * Decides whether a set of criteria can be answered from Riak secondary indexes and, if so,
+ * resolves the criteria to the matching keys.
+ * <p/>
+ * Equality and <code>in</code> criteria can be answered for any indexed property, range criteria
+ * only for properties held in integer indexes. Conjunctions and disjunctions are answered by
+ * intersecting or uniting the keys of their parts. If any part of the criteria cannot be answered
+ * from an index, {@link #plan(Query.Junction)} returns null and the caller is expected to fall
+ * back to Map/Reduce.
+ *
+ * @author J. Brisbin <jon@jbrisbin.com>
+ */
+class RiakIndexQueryPlanner {
+
+    PersistentEntity entity
+    RiakEntityPersister entityPersister
+
+    RiakIndexQueryPlanner(PersistentEntity entity, RiakEntityPersister entityPersister) {
+        this.entity = entity
+        this.entityPersister = entityPersister
+    }
+
+    /**
+     * Whether the given criteria can be answered entirely from secondary indexes
+     */
+    boolean canPlan(Query.Junction junction) {
+        !junction.empty && junction.criteria.every { canPlanCriterion(it) }
+    }
+
+    /**
+     * Resolves the given criteria to a set of keys using secondary indexes
+     *
+     * @return The matching keys or null if the criteria cannot be answered from indexes
+     */
+    Set<Long> plan(Query.Junction junction) {
+        if (!canPlan(junction)) {
+            return null
+        }
+        resolveJunction(junction)
+    }
+
+    private boolean canPlanCriterion(Query.Criterion criterion) {
+        switch (criterion) {
+            case Query.Conjunction:
+            case Query.Disjunction:
+                return canPlan((Query.Junction) criterion)
+            case Query.Equals:
+            case Query.In:
+                return RiakPropertyValueIndexer.isIndexed(getProperty(criterion.property))
+            case Query.GreaterThan:
+            case Query.GreaterThanEquals:
+            case Query.LessThan:
+            case Query.LessThanEquals:
+            case Query.Between:
+                def prop = getProperty(criterion.property)
+                return RiakPropertyValueIndexer.isIndexed(prop) && RiakPropertyValueIndexer.isRangeIndexed(prop)
+        }
+        false
+    }
+
+    private Set<Long> resolveJunction(Query.Junction junction) {
+        Set<Long> result = null
+        for (Query.Criterion criterion in junction.criteria) {
+            Set<Long> keys = resolve(criterion)
+            if (result == null) {
+                result = keys
+            } else if (junction instanceof Query.Disjunction) {
+                result.addAll(keys)
+            } else {
+                result.retainAll(keys)
+            }
+            if (!result && !(junction instanceof Query.Disjunction)) {
+                // the intersection can only get smaller, so don't query any more indexes
+                break
+            }
+        }
+        result ?: new LinkedHashSet<Long>()
+    }
+
+    private Set<Long> resolve(Query.Criterion criterion) {
+        switch (criterion) {
+            case Query.Junction:
+                return resolveJunction((Query.Junction) criterion)
+            case Query.Equals:
+                return new LinkedHashSet<Long>(getIndexer(criterion.property).query(criterion.value))
+            case Query.In:
+                def indexer = getIndexer(criterion.property)
+                Set<Long> keys = new LinkedHashSet<Long>()
+                criterion.values.each { keys.addAll(indexer.query(it)) }
+                return keys
+            case Query.GreaterThan:
+                return getIndexer(criterion.property).queryRange(Math.floor(toNumber(criterion.value)) + 1 as Long, null)
+            case Query.GreaterThanEquals:
+                return getIndexer(criterion.property).queryRange(Math.ceil(toNumber(criterion.value)) as Long, null)
+            case Query.LessThan:
+                return getIndexer(criterion.property).queryRange(null, Math.ceil(toNumber(criterion.value)) - 1 as Long)
+            case Query.LessThanEquals:
+                return getIndexer(criterion.property).queryRange(null, Math.floor(toNumber(criterion.value)) as Long)
+            case Query.Between:
+                return getIndexer(criterion.property).queryRange(
+                        Math.ceil(toNumber(criterion.from)) as Long, Math.floor(toNumber(criterion.to)) as Long)
+        }
+        throw new IllegalStateException("Criterion [$criterion] cannot be answered from a secondary index")
+    }
+
+    private PersistentProperty getProperty(String name) {
+        entity.getPropertyByName(name)
+    }
+
+    private RiakPropertyValueIndexer getIndexer(String name) {
+        (RiakPropertyValueIndexer) entityPersister.getPropertyIndexer(getProperty(name))
+    }
+
+    private static double toNumber(value) {
+        value = RiakQuery.checkForDate(value)
+        value instanceof Number ? value.doubleValue() : value.toString().toDouble()
+    }
+}
@@ -19,19 +19,40 @@
 package org.grails.datastore.mapping.riak.query
 
 import org.codehaus.groovy.runtime.typehandling.GroovyCastException
+import org.codehaus.jackson.JsonParser
+import org.codehaus.jackson.JsonToken
+import org.codehaus.jackson.map.ObjectMapper
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.data.keyvalue.riak.core.RiakTemplate
-import org.springframework.data.keyvalue.riak.mapreduce.*
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.MediaType
+import org.springframework.http.client.ClientHttpRequest
+import org.springframework.http.client.ClientHttpResponse
+import org.springframework.web.client.HttpStatusCodeException
+import org.springframework.web.client.RequestCallback
+import org.springframework.web.client.ResponseExtractor
 import org.grails.datastore.mapping.core.Session
 import org.grails.datastore.mapping.model.PersistentEntity
 import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.order.ManualEntityOrdering
+import org.grails.datastore.mapping.riak.RiakDatastore
+import org.grails.datastore.mapping.riak.engine.RiakEntityPersister
 
 /**
  * A {@link Query} implementation for the Riak Key/Value store.
  * <p/>
- * This query implementation relies heavily on Riak's native Map/Reduce functionality. It
- * expects data to be stored as JSON documents, which is how GORM stores objects into Riak.
+ * When secondary indexes are enabled on the datastore, criteria on indexed properties are answered
+ * from them (see {@link RiakIndexQueryPlanner}). Everything else relies on Riak's native Map/Reduce functionality,
+ * which expects data to be stored as JSON documents, which is how GORM stores objects into Riak.
+ * <p/>
+ * Map/Reduce functions are generated once per shape of criteria and projections, stored in Riak
+ * and referenced by bucket and key, with the criterion values passed as the phase argument. The
+ * datastore keeps track of the functions compiled and stored (see {@link MapReduceFunctions}); when
+ * a job reports a function missing it is stored again and the job retried once.
+ * Job results are read incrementally from the response rather than collected up front.
  *
  * @author J. Brisbin <jon@jbrisbin.com>
  */
@@ -39,115 +60,274 @@ class RiakQuery extends Query {
 
     static Logger log = LoggerFactory.getLogger(RiakQuery)
 
+    static final String FUNCTION_BUCKET = "gorm.mapreduce"
+
+    static final ObjectMapper mapper = new ObjectMapper()
+
     static queryHandlers
     static {
         queryHandlers = [
-            (Query.Equals): { Query.Equals equals, PersistentEntity entity, buff ->
+            (Query.Equals): { Query.Equals equals, PersistentEntity entity, buff, Closure arg ->
                 def val = checkForDate(equals.value)
                 if (val instanceof Boolean) {
                     // If we're comparing booleans, we need to see what format the entry property
                     // is in. If it's not already a boolean, make it one.
-                    buff << "(typeof entry.${equals.name} === 'boolean' ? " + (val ? "entry.${equals.name}" : "!entry.${equals.name}") + " : " + (val ? "Boolean(entry.${equals.name})" : "!Boolean(entry.${equals.name})") + ")"
+                    buff << "(typeof entry.${equals.name} === 'boolean' ? entry.${equals.name} : Boolean(entry.${equals.name})) === ${arg()}"
                 } else if (val instanceof Integer || val instanceof Double || val instanceof Long) {
                     if ("id" == equals.name) {
                         // Handle object IDs by comparing to Riak's key field.
-                        buff << "v.key === \"${val}\""
+                        buff << "v.key === String(${arg()})"
                     } else {
                         // All else must be a number, don't use quotes.
-                        buff << "entry.${equals.name} == ${val}"
+                        buff << "entry.${equals.name} == ${arg()}"
                     }
                 } else {
-                    // Compare with quotes.
-                    buff << "entry.${equals.name} === \"${val}\""
+                    // Compare as strings.
+                    buff << "entry.${equals.name} === ${arg()}"
                 }
             },
-            (Query.IdEquals): { Query.IdEquals idEquals, PersistentEntity entity, buff ->
-                buff << "v.key === \"${idEquals.value}\""
+            (Query.IdEquals): { Query.IdEquals idEquals, PersistentEntity entity, buff, Closure arg ->
+                buff << "v.key === String(${arg()})"
             },
-            (Query.NotEquals): { Query.NotEquals notEquals, PersistentEntity entity, buff ->
+            (Query.NotEquals): { Query.NotEquals notEquals, PersistentEntity entity, buff, Closure arg ->
                 def val = checkForDate(notEquals.value)
                 if (val instanceof Boolean) {
-                    buff << "(typeof entry.${notEquals.name} === 'boolean' ? " + (val ? "entry.${notEquals.name}" : "!entry.${notEquals.name}") + " : " + (val ? "Boolean(entry.${notEquals.name})" : "!Boolean(entry.${notEquals.name})") + ")"
+                    buff << "(typeof entry.${notEquals.name} === 'boolean' ? entry.${notEquals.name} : Boolean(entry.${notEquals.name})) !== ${arg()}"
                 } else if (val instanceof Integer || val instanceof Double || val instanceof Long) {
-                    if ("id" == equals.name) {
-                        buff << "v.key !== \"${val}\""
+                    if ("id" == notEquals.name) {
+                        buff << "v.key !== String(${arg()})"
                     } else {
-                        buff << "entry.${notEquals.name} != ${val}"
+                        buff << "entry.${notEquals.name} != ${arg()}"
                     }
                 } else {
-                    buff << "entry.${notEquals.name} !== \"${val}\""
+                    buff << "entry.${notEquals.name} !== ${arg()}"
                 }
             },
-            (Query.GreaterThan): { Query.GreaterThan gt, PersistentEntity entity, buff ->
-                def val = checkForDate(gt.value)
-                buff << "entry.${gt.name} > ${val}"
+            (Query.GreaterThan): { Query.GreaterThan gt, PersistentEntity entity, buff, Closure arg ->
+                buff << "entry.${gt.name} > ${arg()}"
             },
-            (Query.GreaterThanEquals): { Query.GreaterThanEquals gte, PersistentEntity entity, buff ->
-                def val = checkForDate(gte.value)
-                buff << "entry.${gte.name} >= ${val}"
+            (Query.GreaterThanEquals): { Query.GreaterThanEquals gte, PersistentEntity entity, buff, Closure arg ->
+                buff << "entry.${gte.name} >= ${arg()}"
             },
-            (Query.LessThan): { Query.LessThan lt, PersistentEntity entity, buff ->
-                def val = checkForDate(lt.value)
-                buff << "entry.${lt.name} < ${val}"
+            (Query.LessThan): { Query.LessThan lt, PersistentEntity entity, buff, Closure arg ->
+                buff << "entry.${lt.name} < ${arg()}"
             },
-            (Query.LessThanEquals): { Query.LessThanEquals lte, PersistentEntity entity, buff ->
-                def val = checkForDate(lte.value)
-                buff << "entry.${lte.name} <= ${val}"
+            (Query.LessThanEquals): { Query.LessThanEquals lte, PersistentEntity entity, buff, Closure arg ->
+                buff << "entry.${lte.name} <= ${arg()}"
             },
-            (Query.Between): { Query.Between between, PersistentEntity entity, buff ->
-                def to = checkForDate(between.to)
-                def from = checkForDate(between.from)
+            (Query.Between): { Query.Between between, PersistentEntity entity, buff, Closure arg ->
+                def from = arg()
+                def to = arg()
                 buff << "(entry.${between.property} <= ${to}) && (entry.${between.property} >= ${from})"
             },
-            (Query.Like): { Query.Like like, PersistentEntity entity, buff ->
-                def regexp = like.value.toString().replaceAll("%", "(.+)")
-                buff << "/^$regexp/.test(\"\"+entry.${like.name})"
+            (Query.Like): { Query.Like like, PersistentEntity entity, buff, Closure arg ->
+                buff << "new RegExp(${arg()}).test(\"\"+entry.${like.name})"
             },
-            (Query.Conjunction): { Query.Conjunction and, PersistentEntity entity, buff ->
-                def conjunc = RiakQuery.handleJunction(and, entity).collect { "(" + it + ")"}.join("&&")
+            (Query.Conjunction): { Query.Conjunction and, PersistentEntity entity, buff, Closure arg ->
+                def conjunc = RiakQuery.handleJunction(and, entity, arg).collect { "(" + it + ")"}.join("&&")
                 buff << "($conjunc)"
             },
-            (Query.Disjunction): { Query.Disjunction or, PersistentEntity entity, buff ->
-                def disjunc = RiakQuery.handleJunction(or, entity).collect { "(" + it + ")"}.join("||")
+            (Query.Disjunction): { Query.Disjunction or, PersistentEntity entity, buff, Closure arg ->
+                def disjunc = RiakQuery.handleJunction(or, entity, arg).collect { "(" + it + ")"}.join("||")
                 buff << "($disjunc)"
             },
-            (Query.Negation): { Query.Negation not, PersistentEntity entity, buff ->
-                def neg = RiakQuery.handleJunction(not, entity).collect { "!(" + it + ")"}.join("&&")
+            (Query.Negation): { Query.Negation not, PersistentEntity entity, buff, Closure arg ->
+                def neg = RiakQuery.handleJunction(not, entity, arg).collect { "!(" + it + ")"}.join("&&")
                 buff << neg
             },
-            (Query.In): { Query.In qin, PersistentEntity entity, buff ->
-                def inClause = qin.values.collect {
-                    "(entry.${qin.name} === \"$it\")"
-                }.join("||")
-                buff << "($inClause)"
+            (Query.In): { Query.In qin, PersistentEntity entity, buff, Closure arg ->
+                buff << "(${arg()}.indexOf(String(entry.${qin.name})) > -1)"
             }
         ]
     }
 
+    /**
+     * Extracts the arguments for the criteria in the order they are referenced by the handlers above,
+     * while describing the shape of the criteria into the given buffer.
+     */
+    static void describeCriterion(Query.Criterion criterion, StringBuilder shape, List args) {
+        if (!queryHandlers[criterion.class]) {
+            return
+        }
+        shape << criterion.class.simpleName
+        if (criterion instanceof Query.Junction) {
+            shape << '('
+            criterion.criteria.each { describeCriterion(it, shape, args) }
+            shape << ')'
+            return
+        }
+
+        shape << ':' << criterion.property
+        if (criterion instanceof Query.Between) {
+            args << checkForDate(criterion.from) << checkForDate(criterion.to)
+        } else if (criterion instanceof Query.In) {
+            args << criterion.values.collect { String.valueOf(checkForDate(it)) }
+        } else if (criterion instanceof Query.Like) {
+            args << '^' + criterion.value.toString().replaceAll("%", "(.+)")
+        } else {
+            def val = checkForDate(criterion.value)
+            if (val instanceof Boolean) {
+                shape << ':b'
+            } else if (val instanceof Integer || val instanceof Double || val instanceof Long) {
+                shape << ':n'
+            } else {
+                shape << ':s'
+                val = val?.toString()
+            }
+            args << val
+        }
+        shape << ';'
+    }
+
     RiakTemplate riak
+    RiakEntityPersister entityPersister
 
     RiakQuery(Session session, PersistentEntity ent, RiakTemplate riak) {
+        this(session, ent, riak, null)
+    }
+
+    RiakQuery(Session session, PersistentEntity ent, RiakTemplate riak, RiakEntityPersister entityPersister) {
         super(session, ent);
         this.riak = riak
+        this.entityPersister = entityPersister
     }
 
     protected List executeQuery(PersistentEntity entity, Query.Junction criteria) {
+        if (entityPersister && canUseIndexes()) {
+            // Prefer secondary index lookups followed by a multi-get over evaluating every object in the bucket,
+            // unless the buckets aren't known to hold every object with its index entries
+            def planner = new RiakIndexQueryPlanner(entity, entityPersister)
+            if (planner.canPlan(criteria) && entityPersister.isFullyIndexed()) {
+                return executeIndexQuery(entity, planner.plan(criteria))
+            }
+        }
+        executeMapReduceQuery(entity, criteria)
+    }
+
+    /**
+     * Secondary indexes can only satisfy queries without projections, or with projections
+     * that can be computed from the keys alone.
+     */
+    protected boolean canUseIndexes() {
+        projections().projectionList.every { it instanceof Query.CountProjection || it instanceof Query.IdProjection }
+    }
+
+    protected List executeIndexQuery(PersistentEntity entity, Set<Long> keys) {
+        def projectionList = projections()
+        if (projectionList.projections) {
+            if (projectionList.projectionList.any { it instanceof Query.IdProjection }) {
+                return paginate(keys as List)
+            }
+            return [keys.size()]
+        }
+
+        if (orderBy) {
+            // ordering needs the entities themselves, so the page can only be cut after sorting
+            def results = retrieveAll(keys as List)
+            results = new ManualEntityOrdering(entity).applyOrder(results, orderBy)
+            return paginate(results)
+        }
+        retrieveAll(paginate(keys as List))
+    }
+
+    private List retrieveAll(List<Long> keys) {
+        if (!keys) {
+            return Collections.emptyList()
+        }
+        getSession().retrieveAll(getEntity().getJavaClass(), keys).findAll { it != null }
+    }
+
+    private List paginate(List results) {
+        if (offset >= results.size()) {
+            return Collections.emptyList()
+        }
+        int to = max > -1 ? Math.min(results.size(), offset + max) : results.size()
+        results.subList(offset, to)
+    }
+
+    protected List executeMapReduceQuery(PersistentEntity entity, Query.Junction criteria) {
+        def projectionList = projections()
+
+        def args = []
+        StringBuilder shape = new StringBuilder(criteria instanceof Query.Disjunction ? "or:" : "and:")
+        criteria.criteria.each { describeCriterion(it, shape, args) }
+        projectionList.projectionList.each { proj ->
+            shape << '|' << proj.class.simpleName
+            if (proj instanceof Query.PropertyProjection) {
+                shape << ':' << proj.propertyName
+            }
+        }
+        if (log.debugEnabled) {
+            shape << "|debug"
+        }
+
+        String shapeKey = shape.toString()
+        MapReduceFunctions functions = getMapReduceFunctions()
+        CompiledMapReduce compiled = functions.getCompiled(shapeKey)
+        if (compiled == null) {
+            compiled = compileMapReduce(entity, criteria, projectionList)
+            functions.putCompiled(shapeKey, compiled)
+        }
+        storeFunctions(compiled)
+
+        def inputBuckets = entityPersister ? entityPersister.getBuckets(entity) : getInputBuckets(entity)
+
+        if (projectionList.projections) {
+            // Reduce phase output is small, so it is collected before the projections are applied.
+            def results = []
+            inputBuckets.each { bucket ->
+                runJob(bucket, compiled, args) { results << it }
+            }
+            return applyProjections(entity, results, projectionList)
+        }
+
+        if (orderBy) {
+            // Ordering needs all of the raw entries; only the page that survives is converted to entities.
+            def results = []
+            inputBuckets.each { bucket ->
+                runJob(bucket, compiled, args) { results << it }
+            }
+            orderBy.each { Query.Order order ->
+                def sorted = results.sort { it."${order.property}" }
+                results = order.direction == Query.Order.Direction.DESC ? sorted.reverse() : sorted
+            }
+            return paginate(results).collect { convertToEntity(entity, it) }
+        }
+
+        // Without ordering, entries are converted as they are read and reading stops once the page is full
+        def entities = []
+        int skipped = 0
+        for (bucket in inputBuckets) {
+            if (max > -1 && entities.size() >= max) break
+            runJob(bucket, compiled, args) { entry ->
+                if (skipped < offset) {
+                    skipped++
+                    return true
+                }
+                entities << convertToEntity(entity, entry)
+                return max < 0 || entities.size() < max
+            }
+        }
+        entities
+    }
+
+    protected CompiledMapReduce compileMapReduce(PersistentEntity entity, Query.Junction criteria, Query.ProjectionList projectionList) {
         def buff = []
+        int argIndex = 0
+        Closure arg = { "arg.p[${argIndex++}]" }
         criteria.criteria.each { criterion ->
             if (log.debugEnabled) {
                 log.debug "Found criteria: ${criterion}"
             }
             def handler = queryHandlers[criterion.class]
             if (handler) {
-                handler(criterion, entity, buff)
-            } else {
-                return []
+                handler(criterion, entity, buff, arg)
             }
         }
         // If any criteria exist, join them together into a meaningful if clause.
         def joinStr = (criteria && criteria instanceof Query.Disjunction ? "||" : "&&")
         def ifclause = buff.join(joinStr) ?: "true"
-        StringBuilder mapJs = new StringBuilder("function(v){ var uuid='%UUID%'; var r=[];")
+        StringBuilder mapJs = new StringBuilder("function(v, keyData, arg){ var r=[];")
         if (log.debugEnabled) {
             mapJs << "ejsLog('/tmp/mapred.log', 'map input: '+JSON.stringify(v));"
         }
@@ -156,9 +336,7 @@ class RiakQuery extends Query {
             // I've seen it in testing and thought it prudent to catch as many errors as possible
             // until I don't need to check for them any more.
             mapJs << "try{if(v === [] || typeof v['values'] == \"undefined\" || v.values[0].data === \"\"){return [];}}catch(e){return [];};var o=Riak.mapValuesJson(v);for(i in o){var entry=o[i];"
-            if (ifclause != "true") {
-                mapJs << "if(${ifclause}){"
-            }
+            mapJs << "if(${ifclause}){"
             mapJs << "o[i].id=v.key;r.push(o[i]);}"
             if (log.debugEnabled) {
                 mapJs << "} ejsLog('/tmp/mapred.log', 'map return: '+JSON.stringify(r)); return r;}"
@@ -167,14 +345,17 @@ class RiakQuery extends Query {
             }
         } else {
             // Just copy all values to output, adding the key as the 'id' property.
-            mapJs << " var row = Riak.mapValuesJson(v); row[0].id = v.key; ejsLog('/tmp/mapred.log', 'map return: '+JSON.stringify(row)); return row; }"
+            mapJs << " var row = Riak.mapValuesJson(v); row[0].id = v.key;"
+            if (log.debugEnabled) {
+                mapJs << " ejsLog('/tmp/mapred.log', 'map return: '+JSON.stringify(row));"
+            }
+            mapJs << " return row; }"
         }
-        def reduceJs
+
+        def reduceJs = null
         // Property projections. Implemented as Riak reduce functions.
-        List<Query.PropertyProjection> propProjs = new ArrayList<Query.PropertyProjection>()
-        def projectionList = projections()
         if (projectionList.projections) {
-            StringBuilder jsbuff = new StringBuilder("function(reduced){ var uuid='%UUID%'; var r=[];")
+            StringBuilder jsbuff = new StringBuilder("function(reduced, arg){ var r=[];")
             if (log.debugEnabled) {
                 jsbuff << "ejsLog('/tmp/mapred.log', 'reduce input: '+JSON.stringify(reduced));"
             }
@@ -187,7 +368,7 @@ class RiakQuery extends Query {
                     jsbuff << "var count=0; if(typeof reduced['vclock'] != 'undefined'){return [1];} for(i in reduced){ if(typeof reduced[i] === 'object'){ count += 1; } else { count += reduced[i]; }} r.push(count);"
                 } else if (proj instanceof Query.AvgProjection) {
                     // I don't actually average anything until I get ready to return the value below.
-                    jsbuff << "var total=0.0; var count=0; for(i in reduced) { if(typeof reduced[i]['age'] !== 'undefined') { count += 1; total += parseFloat(reduced[i].age); } else { total += reduced[i].total; count += reduced[i].count; } } r.push({total: total, count: count});"
+                    jsbuff << "var total=0.0; var count=0; for(i in reduced) { if(typeof reduced[i]['${proj.propertyName}'] !== 'undefined') { count += 1; total += parseFloat(reduced[i].${proj.propertyName}); } else { total += reduced[i].total; count += reduced[i].count; } } r.push({total: total, count: count});"
                 } else if (proj instanceof Query.MaxProjection) {
                     // Find the max for this step, keeping in mind the real max won't be found until
                     // the end of the processing, right before the return below.
@@ -200,8 +381,7 @@ class RiakQuery extends Query {
                     // This just returns the object ID.
                     jsbuff << "for(i in reduced){ if(typeof reduced[i] === 'object'){ r.push(parseFloat(reduced[i].id)); }else{ r.push(reduced[i]); }}"
                 } else if (proj instanceof Query.PropertyProjection) {
-                    // Property projections are handled below.
-                    propProjs << proj
+                    // Property projections are handled when the results are read.
                     jsbuff << "r = reduced;"
                 }
             }
@@ -212,18 +392,100 @@ class RiakQuery extends Query {
             reduceJs = jsbuff.toString()
         }
 
-        MapReduceJob mr = new RiakMapReduceJob(riak)
-        JavascriptMapReduceOperation mapOper = new JavascriptMapReduceOperation(mapJs.toString())
-        MapReducePhase mapPhase = new RiakMapReducePhase(MapReducePhase.Phase.MAP, "javascript", mapOper)
-        mr.addPhase(mapPhase)
+        new CompiledMapReduce(mapJs.toString(), reduceJs)
+    }
+
+    /**
+     * Stores the functions of the given compiled Map/Reduce as Riak objects, once per Riak server,
+     * so that jobs can reference them by bucket and key instead of shipping their source.
+     */
+    protected void storeFunctions(CompiledMapReduce compiled) {
+        storeFunction(compiled.mapKey, compiled.mapSource)
+        if (compiled.reduceSource) {
+            storeFunction(compiled.reduceKey, compiled.reduceSource)
+        }
+    }
+
+    private void storeFunction(String key, String source) {
+        MapReduceFunctions functions = getMapReduceFunctions()
+        if (functions.isStored(riak.defaultUri, key)) {
+            return
+        }
+        putFunction(key, source)
+        functions.setStored(riak.defaultUri, key, true)
+    }
+
+    protected void putFunction(String key, String source) {
+        HttpHeaders headers = new HttpHeaders()
+        headers.setContentType(new MediaType("application", "javascript"))
+        riak.restTemplate.put(riak.defaultUri, new HttpEntity<String>(source, headers), FUNCTION_BUCKET, key)
+    }
+
+    protected MapReduceFunctions getMapReduceFunctions() {
+        ((RiakDatastore) getSession().getDatastore()).mapReduceFunctions
+    }
+
+    /**
+     * Runs the job for the given bucket. If Riak reports one of the stored functions missing, for
+     * example because the bucket was wiped, the functions are stored again and the job is retried once.
+     */
+    protected void runJob(String bucket, CompiledMapReduce compiled, List args, Closure callback) {
+        Map job = createJob(bucket, compiled, args)
+        try {
+            streamMapReduce(job, callback)
+        } catch (HttpStatusCodeException e) {
+            if (!(e.responseBodyAsString =~ /not_?found/)) {
+                throw e
+            }
+            log.warn "Map/Reduce functions for bucket ${bucket} not found, storing them again"
+            MapReduceFunctions functions = getMapReduceFunctions()
+            functions.setStored(riak.defaultUri, compiled.mapKey, false)
+            if (compiled.reduceSource) {
+                functions.setStored(riak.defaultUri, compiled.reduceKey, false)
+            }
+            storeFunctions(compiled)
+            streamMapReduce(job, callback)
+        }
+    }
+
+    protected Map createJob(String bucket, CompiledMapReduce compiled, List args) {
+        def query = [[map: [language: "javascript", bucket: FUNCTION_BUCKET, key: compiled.mapKey, arg: [p: args]]]]
+        if (compiled.reduceSource) {
+            query << [reduce: [language: "javascript", bucket: FUNCTION_BUCKET, key: compiled.reduceKey]]
+        }
+        [inputs: bucket, query: query]
+    }
 
-        JavascriptMapReduceOperation reduceOper
-        if (reduceJs) {
-            reduceOper = new JavascriptMapReduceOperation(reduceJs)
-            MapReducePhase reducePhase = new RiakMapReducePhase(MapReducePhase.Phase.REDUCE, "javascript", reduceOper)
-            mr.addPhase(reducePhase)
+    /**
+     * Executes the given Map/Reduce job and passes each element of the result to the callback as it
+     * is read from the response, without buffering the whole result. The callback can return false
+     * to stop reading.
+     */
+    protected void streamMapReduce(Map job, Closure callback) {
+        if (log.debugEnabled) {
+            log.debug("Running M/R: \n${mapper.writeValueAsString(job)}")
         }
+        riak.restTemplate.execute(riak.mapReduceUri, HttpMethod.POST, { ClientHttpRequest request ->
+            request.headers.setContentType(MediaType.APPLICATION_JSON)
+            mapper.writeValue(request.body, job)
+        } as RequestCallback, { ClientHttpResponse response ->
+            JsonParser parser = mapper.jsonFactory.createJsonParser(response.body)
+            try {
+                if (parser.nextToken() == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY && parser.currentToken != null) {
+                        if (callback(mapper.readValue(parser, Object)) == false) {
+                            break
+                        }
+                    }
+                }
+            } finally {
+                parser.close()
+            }
+            null
+        } as ResponseExtractor)
+    }
 
+    protected List getInputBuckets(PersistentEntity entity) {
         // For sure process the bucket of the entity I'm working with...
         def inputBuckets = [entity.name]
         // Check for any descendants I also need to be aware of...
@@ -234,128 +496,108 @@ class RiakQuery extends Query {
                 inputBuckets.addAll(descendants)
             }
         }
+        inputBuckets
+    }
 
-        def results = []
-        inputBuckets.each {
-            mr.getInputs().clear()
-            mr.getInputs().add(it)
-            // For busting internal caching
-            def uuid = UUID.randomUUID().toString()
-            if (mapOper) {
-                def js = mapOper.source.replaceAll("%UUID%", uuid)
-                mapOper.source = js
-            }
-            if (reduceOper) {
-                def js = reduceOper.source.replaceAll("%UUID%", uuid)
-                reduceOper.source = js
-            }
-
-            if (log.debugEnabled) {
-                log.debug("Running M/R: \n${mr.toJson()}")
-            }
-            def l = riak.execute(mr)
-            if (l) {
-                results.addAll(l)
-            }
+    protected convertToEntity(PersistentEntity entity, Map entry) {
+        Long id = entry.remove("id")?.toString()?.toLong()
+        def cached = getSession().getCachedInstance(entity.javaClass, id)
+        if (cached != null) {
+            return cached
         }
+        if (!entityPersister) {
+            return getSession().retrieve(entity.javaClass, id)
+        }
+        def instance = entityPersister.createObjectFromNativeEntry(entity, id, entry)
+        getSession().cacheInstance(entity.javaClass, id, instance)
+        instance
+    }
+
+    protected applyProjections(PersistentEntity entity, List results, Query.ProjectionList projectionList) {
         // This portion shamelessly absconded from Graeme's RedisQuery.java
-        if (results) {
-            if (log.debugEnabled) {
-                log.debug("Got results: \n" + results)
-            }
-            final total = results.size()
-            if (offset > total) {
-                return Collections.emptyList()
-            }
-            def max = this.max // 20
-            def from = offset // 10
-            def to = max == -1 ? -1 : (offset + max) - 1            // 15
-            if (to >= total) {
-                to = -1
+        if (!results) {
+            return Collections.emptyList()
+        }
+        if (log.debugEnabled) {
+            log.debug("Got results: \n" + results)
+        }
+        final total = results.size()
+        if (offset > total) {
+            return Collections.emptyList()
+        }
+        def max = this.max // 20
+        def from = offset // 10
+        def to = max == -1 ? -1 : (offset + max) - 1            // 15
+        if (to >= total) {
+            to = -1
+        }
+        def finalResult = results[from..to]
+
+        List<Query.PropertyProjection> propProjs = projectionList.projectionList.findAll {
+            it instanceof Query.PropertyProjection && !(it instanceof Query.AvgProjection ||
+                it instanceof Query.MaxProjection || it instanceof Query.MinProjection)
+        }
+        if (propProjs) {
+            // Pull out the property needed here.
+            if (propProjs.size() != 1) {
+                // Is this necessary?
+                log.warn "Only the first PropertyProjection is used: " + propProjs[0]
             }
-            def finalResult = results[from..to]
-            if (orderBy) {
-                orderBy.each { Query.Order order ->
-                    def sorted = finalResult.sort {
-                        it."${order.property}"
+            final propProj = propProjs[0]
+            String propName = propProj.propertyName
+            final collectedResults = finalResult.collect { entry ->
+                try {
+                    // Try to return the object as the right data type.
+                    entry."${propName}".asType(entity.getPropertyByName(propName).type)
+                } catch (GroovyCastException e) {
+                    // If I can't do that...
+                    if (entry."${propName}".isLong()) {
+                        // Maybe I have an object ID? Try to look it up.
+                        getSession().retrieve(entity.getPropertyByName(propName).type, entry."${propName}".toLong())
+                    } else {
+                        // Otherwise, just return it, as I'm guessing this will be fine.
+                        entry."${propName}"
                     }
-                    final def os = order.direction.toString()
-                    finalResult = os == "DESC" ? sorted.reverse() : sorted
                 }
             }
 
-            if (projectionList.projections) {
-                // I don't really like checking for projections again...
-                if (propProjs) {
-                    // Pull out the property needed here.
-                    if (propProjs.size() != 1) {
-                        // Is this necessary?
-                        log.warn "Only the first PropertyProjection is used: " + propProjs[0]
-                    }
-                    final propProj = propProjs[0]
-                    String propName = propProj.propertyName
-                    final collectedResults = finalResult.collect { entry ->
-                        try {
-                            // Try to return the object as the right data type.
-                            entry."${propName}".asType(entity.getPropertyByName(propName).type)
-                        } catch (GroovyCastException e) {
-                            // If I can't do that...
-                            if (entry."${propName}".isLong()) {
-                                // Maybe I have an object ID? Try to look it up.
-                                getSession().retrieve(entity.getPropertyByName(propName).type, entry."${propName}".toLong())
-                            } else {
-                                // Otherwise, just return it, as I'm guessing this will be fine.
-                                entry."${propName}"
-                            }
-                        }
-                    }
+            if(propProj instanceof Query.CountDistinctProjection) {
+                return [collectedResults.unique().size()]
+            }
+            return collectedResults
+        }
 
-                    if(propProj instanceof Query.CountDistinctProjection) {
-                        return [collectedResults.unique().size()]
-                    }
-                    else {
-                        return collectedResults
-                    }
-                } else {
-                    // Use the built-in Groovy functions to operate on the List returned
-                    // from the Map/Reduce step.
-                    def projResult = projectionList.projectionList.collect { proj ->
-                        if (proj instanceof Query.CountProjection) {
-                            return finalResult.sum()
-                        }
-                        if (proj instanceof Query.AvgProjection) {
-                            return finalResult.collect { it.total / it.count }
-                        }
-                        if (proj instanceof Query.MaxProjection) {
-                            return finalResult.max()
-                        }
-                        if (proj instanceof Query.MinProjection) {
-                            return finalResult.min()
-                        }
-                        return finalResult
-                    }
-                    // I might have a List of Lists because of the way I'm processing the
-                    // projections and descendants. If so, I need a flat list.
-                    if (projResult && projResult.size() == 1 && projResult.get(0) instanceof List) {
-                        return projResult.get(0)
-                    }
-                    return projResult ?: finalResult
-                }
-            } else {
-                // I've got a list of object IDs. Go get all of them...
-                getSession().retrieveAll(getEntity().getJavaClass(), finalResult.collect { it.id?.toLong() })
+        // Use the built-in Groovy functions to operate on the List returned
+        // from the Map/Reduce step.
+        def projResult = projectionList.projectionList.collect { proj ->
+            if (proj instanceof Query.CountProjection) {
+                return finalResult.sum()
             }
-        } else {
-            return Collections.emptyList()
+            if (proj instanceof Query.AvgProjection) {
+                return finalResult.collect { it.total / it.count }
+            }
+            if (proj instanceof Query.MaxProjection) {
+                return finalResult.max()
+            }
+            if (proj instanceof Query.MinProjection) {
+                return finalResult.min()
+            }
+            return finalResult
+        }
+        // I might have a List of Lists because of the way I'm processing the
+        // projections and descendants. If so, I need a flat list.
+        if (projResult && projResult.size() == 1 && projResult.get(0) instanceof List) {
+            return projResult.get(0)
         }
+        return projResult ?: finalResult
     }
 
-    static handleJunction(Query.Junction junc, PersistentEntity entity) {
+    static handleJunction(Query.Junction junc, PersistentEntity entity, Closure arg) {
         def buff = []
         junc.criteria.each { crit ->
             def handler = queryHandlers[crit.class]
             if (handler) {
-                handler(crit, entity, buff)
+                handler(crit, entity, buff, arg)
             }
         }
         buff
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2010 by J. Brisbin <jon@jbrisbin.com>
+ *     Portions (c) 2010 by NPC International, Inc. or the
+ *     original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.riak.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Executes batches of independent Riak requests concurrently on a bounded pool of threads.
+ * <p/>
+ * Riak's HTTP interface has no multi-get or multi-put, so batching is achieved by issuing the
+ * individual requests in parallel. The number of concurrent requests is bounded by the size of
+ * the pool, which should not exceed the number of pooled HTTP connections per route.
+ *
+ * @author J. Brisbin <jon@jbrisbin.com>
+ */
+public class RiakBatchExecutor {
+
+    public static final int DEFAULT_CONCURRENCY = 10;
+
+    private final ExecutorService executorService;
+    private final int concurrency;
+
+    public RiakBatchExecutor() {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    public RiakBatchExecutor(int concurrency) {
+        this.concurrency = concurrency;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        executorService = executor;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Executes the given tasks and waits for all of them to complete.
+     *
+     * @param tasks The tasks
+     * @return The results, in the same order as the tasks
+     * @throws org.springframework.dao.DataAccessException if any task fails
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() < 2) {
+            // not worth a thread hand-off
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+
+        final List<Future<T>> futures;
+        try {
+            futures = executorService.invokeAll(tasks);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("Interrupted while executing Riak batch", e);
+        }
+
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessResourceFailureException("Interrupted while executing Riak batch", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new DataAccessResourceFailureException("Riak batch operation failed: " + cause.getMessage(), cause);
+            }
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    private <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new DataAccessResourceFailureException("Riak batch operation failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "riak-batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -14,18 +14,35 @@
  */
 package org.grails.datastore.mapping.simple;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.grails.datastore.mapping.config.Property;
 import org.grails.datastore.mapping.core.AbstractDatastore;
 import org.grails.datastore.mapping.core.Session;
+import org.grails.datastore.mapping.engine.internal.MappingUtils;
 import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValueMappingContext;
 import org.grails.datastore.mapping.model.MappingContext;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.model.PropertyMapping;
+import org.grails.datastore.mapping.simple.engine.OffHeapEntryMap;
+import org.grails.datastore.mapping.simple.engine.OffHeapRecordStore;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ClassUtils;
 
 /**
  * A simple implementation of the {@link org.grails.datastore.mapping.core.Datastore} interface that backs onto an in-memory map.
  * Mainly used for mocking and testing scenarios.
+ * <p/>
+ * With {@link #setOffHeapStorage(boolean) off-heap storage} enabled the entries of each family are stored as
+ * binary records outside of the heap, in direct buffers or in files mapped from the
+ * {@link #setStorageDirectory(File) storage directory}, and the properties mapped with <code>index:true</code>
+ * are indexed per family (see {@link OffHeapEntryMap}). This keeps large data sets from filling the heap.
  *
  * @author Graeme Rocher
  * @since 1.0
@@ -34,6 +51,9 @@ import org.springframework.context.ConfigurableApplicationContext;
 public class SimpleMapDatastore extends AbstractDatastore {
     private Map<String, Map> datastore = new ConcurrentHashMap<String, Map>();
     private Map indices = new ConcurrentHashMap();
+    private boolean offHeapStorage;
+    private File storageDirectory;
+    private int segmentSize = OffHeapRecordStore.DEFAULT_SEGMENT_SIZE;
 
     /**
      * Creates a map based datastore backing onto the specified map
@@ -78,8 +98,87 @@ public class SimpleMapDatastore extends AbstractDatastore {
         return datastore;
     }
 
+    /**
+     * Creates the map holding the entries of a family
+     *
+     * @param entity The entity stored in the family
+     * @return A map of keys to entries
+     */
+    public Map createFamilyMap(PersistentEntity entity) {
+        if (!offHeapStorage) {
+            return new LinkedHashMap();
+        }
+
+        List<String> indexed = new ArrayList<String>();
+        for (PersistentProperty property : entity.getPersistentProperties()) {
+            PropertyMapping<Property> mapping = property.getMapping();
+            if (mapping != null && mapping.getMappedForm() != null && mapping.getMappedForm().isIndex()) {
+                indexed.add(MappingUtils.getTargetKey(property));
+            }
+        }
+        return new OffHeapEntryMap(indexed, segmentSize, storageDirectory, ClassUtils.getDefaultClassLoader());
+    }
+
+    /**
+     * @return Whether entries are stored off-heap
+     */
+    public boolean isOffHeapStorage() {
+        return offHeapStorage;
+    }
+
+    /**
+     * Whether to store the entries of families created from now on off-heap, see {@link OffHeapEntryMap}
+     *
+     * @param offHeapStorage True to store entries off-heap
+     */
+    public void setOffHeapStorage(boolean offHeapStorage) {
+        this.offHeapStorage = offHeapStorage;
+    }
+
+    public File getStorageDirectory() {
+        return storageDirectory;
+    }
+
+    /**
+     * The directory of the files off-heap entries are mapped to. If not set, entries are stored in direct buffers.
+     *
+     * @param storageDirectory The directory
+     */
+    public void setStorageDirectory(File storageDirectory) {
+        this.storageDirectory = storageDirectory;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * The maximum size of the buffers off-heap entries are stored in. Each family starts with a small buffer and
+     * allocates buffers of twice the size as it grows, up to this size.
+     *
+     * @param segmentSize The maximum size in bytes
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
     public void clearData() {
+        releaseOffHeapStorage();
         datastore.clear();
         indices.clear();
     }
+
+    @Override
+    public void destroy() throws Exception {
+        super.destroy();
+        releaseOffHeapStorage();
+    }
+
+    private void releaseOffHeapStorage() {
+        for (Map family : datastore.values()) {
+            if (family instanceof OffHeapEntryMap) {
+                ((OffHeapEntryMap) family).close();
+            }
+        }
+    }
 }
@@ -14,6 +14,8 @@
  */
 package org.grails.datastore.mapping.simple;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.context.ApplicationEventPublisher;
@@ -21,6 +23,10 @@ import org.grails.datastore.mapping.core.AbstractSession;
 import org.grails.datastore.mapping.engine.Persister;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.model.types.Simple;
+import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.api.QueryableCriteria;
 import org.grails.datastore.mapping.simple.engine.SimpleMapEntityPersister;
 import org.grails.datastore.mapping.transactions.Transaction;
 
@@ -55,6 +61,58 @@ public class SimpleMapSession extends AbstractSession<Map> {
         return datastore;
     }
 
+    /**
+     * Removes all entries matching the given criteria directly from the backing map.
+     * No events are fired and no cascades are applied. The removed instances are evicted from the session.
+     *
+     * @param criteria The criteria
+     * @return The number of entries removed
+     */
+    @Override
+    public int deleteAll(QueryableCriteria criteria) {
+        List keys = queryIdentifiers(criteria);
+        ((SimpleMapEntityPersister) getPersister(criteria.getPersistentEntity())).deleteAllEntries(keys);
+        evictCachedInstances(criteria.getPersistentEntity(), keys);
+        return keys.size();
+    }
+
+    /**
+     * Updates all entries matching the given criteria in place in the backing map. No events are
+     * fired and versions are not incremented. If any of the properties is not a simple property
+     * the default implementation is used instead. Otherwise the updated instances are evicted from the session.
+     *
+     * @param criteria The criteria
+     * @param properties The properties
+     * @return The number of entries updated
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int updateAll(QueryableCriteria criteria, Map<String, Object> properties) {
+        PersistentEntity entity = criteria.getPersistentEntity();
+        Map<PersistentProperty, Object> values = new HashMap<PersistentProperty, Object>();
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            PersistentProperty property = entity.getPropertyByName(entry.getKey());
+            if (!(property instanceof Simple)) {
+                return super.updateAll(criteria, properties);
+            }
+            values.put(property, entry.getValue());
+        }
+
+        List keys = queryIdentifiers(criteria);
+        ((SimpleMapEntityPersister) getPersister(entity)).updateAllEntries(keys, values);
+        evictCachedInstances(entity, keys);
+        return keys.size();
+    }
+
+    private List queryIdentifiers(QueryableCriteria criteria) {
+        Query query = createQuery(criteria.getPersistentEntity().getJavaClass());
+        for (Object criterion : criteria.getCriteria()) {
+            query.add((Query.Criterion) criterion);
+        }
+        query.projections().id();
+        return query.list();
+    }
+
     @Override
     protected Transaction beginTransactionInternal() {
         return new MockTransaction(this);
@@ -0,0 +1,537 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.engine;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The entries of a family of the {@link org.grails.datastore.mapping.simple.SimpleMapDatastore}, stored as
+ * binary records in an {@link OffHeapRecordStore} instead of as maps on the heap.
+ * <p/>
+ * Every entry occupies a row. The heap holds the key and the record address of each row in primitive arrays,
+ * <code>Integer</code> and <code>Long</code> keys are looked up through a primitive hash table, so the number of
+ * objects on the heap doesn't grow with the number of entries. Rows are assigned in insertion order, which is
+ * the iteration order of the map like for a <code>LinkedHashMap</code>. The values of the given indexed
+ * properties are kept in a {@link PropertyIndex} per property and can be looked up with
+ * {@link #findKeysEqualTo(String, Object)} and {@link #findKeysInRange(String, Object, boolean, Object, boolean, boolean)}.
+ * <p/>
+ * As entries are decoded from their records, {@link #get(Object)} and iteration return copies: changes to an
+ * entry must be written back with {@link #put(Object, Map)}. For the same reason {@link #put(Object, Map)} and
+ * {@link #remove(Object)} don't decode and return the previous entry, they return null. Removed and replaced
+ * records are reclaimed by compacting the store once they take up more space than the live ones.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class OffHeapEntryMap extends AbstractMap<Object, Map> {
+
+    private static final long FREE = -1L;
+    private static final int MIN_COMPACTION_ROWS = 1024;
+
+    private final int segmentSize;
+    private final File directory;
+    private final RecordCodec codec;
+    private final Map<String, PropertyIndex> indices = new LinkedHashMap<String, PropertyIndex>();
+
+    private OffHeapRecordStore store;
+
+    // the rows, in insertion order
+    private long[] rowAddresses = new long[16];
+    private long[] rowLongKeys = new long[16];
+    private Object[] rowObjectKeys;
+    private int rowCount;
+    private int size;
+
+    // numeric keys are hashed to their row without boxing, other keys use a hash map
+    private final LongIntHashMap longKeyRows = new LongIntHashMap();
+    private Map<Object, Integer> objectKeyRows;
+    private boolean integerKeys;
+    private int modCount;
+
+    /**
+     * @param indexedProperties The names of the properties to index
+     * @param segmentSize The maximum size in bytes of the buffers records are stored in
+     * @param directory The directory of the files to map the buffers to or null to allocate direct buffers
+     * @param classLoader The class loader to resolve enum and serialized types with
+     */
+    public OffHeapEntryMap(Collection<String> indexedProperties, int segmentSize, File directory, ClassLoader classLoader) {
+        this.segmentSize = segmentSize;
+        this.directory = directory;
+        codec = new RecordCodec(classLoader);
+        store = new OffHeapRecordStore(segmentSize, directory);
+        for (String name : indexedProperties) {
+            indices.put(name, new PropertyIndex(name));
+        }
+    }
+
+    /**
+     * @param name The name of a property
+     * @return Whether the values of the property are indexed
+     */
+    public boolean isIndexed(String name) {
+        return indices.containsKey(name);
+    }
+
+    /**
+     * @return The names of the indexed properties
+     */
+    public Set<String> getIndexedProperties() {
+        return Collections.unmodifiableSet(indices.keySet());
+    }
+
+    /**
+     * Looks up the keys of the entries holding the given value in an indexed property
+     *
+     * @param name The name of the property
+     * @param value The value, may be null
+     * @return The keys in insertion order or null if the property isn't indexed
+     */
+    public synchronized List<Object> findKeysEqualTo(String name, Object value) {
+        PropertyIndex index = indices.get(name);
+        return index == null ? null : keysOf(index.rowsEqualTo(value));
+    }
+
+    /**
+     * Looks up the keys of the entries holding a value within the given bounds in an indexed property
+     *
+     * @param name The name of the property
+     * @param from The lower bound or null for none
+     * @param fromInclusive Whether the lower bound is included
+     * @param to The upper bound or null for none
+     * @param toInclusive Whether the upper bound is included
+     * @param includeNulls Whether to include the entries without a value, which compare lower than any value
+     * @return The keys in insertion order or null if the property isn't indexed or its values can't be
+     * compared with the bounds
+     */
+    public synchronized List<Object> findKeysInRange(String name, Object from, boolean fromInclusive,
+                                                     Object to, boolean toInclusive, boolean includeNulls) {
+        PropertyIndex index = indices.get(name);
+        if (index == null) {
+            return null;
+        }
+        int[] rows = index.rowsInRange(from, fromInclusive, to, toInclusive, includeNulls);
+        return rows == null ? null : keysOf(rows);
+    }
+
+    /**
+     * @param key The key of an entry
+     * @param property The name of a property
+     * @return The value of the property, decoding only that property of the entry
+     */
+    public synchronized Object getProperty(Object key, String property) {
+        int row = rowOf(key);
+        if (row < 0) {
+            return null;
+        }
+        return codec.decodeProperty(store.read(rowAddresses[row]), property);
+    }
+
+    /**
+     * @return The number of bytes reserved off-heap, including the space of removed and replaced records
+     */
+    public synchronized long getAllocatedBytes() {
+        return store.getAllocatedBytes();
+    }
+
+    /**
+     * @return The number of bytes held by the records of the entries
+     */
+    public synchronized long getLiveBytes() {
+        return store.getLiveBytes();
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return rowOf(key) >= 0;
+    }
+
+    @Override
+    public synchronized Map get(Object key) {
+        int row = rowOf(key);
+        return row < 0 ? null : decode(row);
+    }
+
+    @Override
+    public synchronized Map put(Object key, Map entry) {
+        int length = codec.encode(entry);
+        int row = rowOf(key);
+        if (row >= 0) {
+            long address = rowAddresses[row];
+            if (!indices.isEmpty()) {
+                unindex(row, address);
+            }
+            store.free(address);
+            rowAddresses[row] = store.write(codec.getBuffer(), length);
+        }
+        else {
+            row = addRow(key, store.write(codec.getBuffer(), length));
+        }
+        index(row, entry);
+        modCount++;
+        compactIfNecessary();
+        return null;
+    }
+
+    @Override
+    public synchronized Map remove(Object key) {
+        int row = rowOf(key);
+        if (row >= 0) {
+            removeRow(row);
+            compactIfNecessary();
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        store.close();
+        longKeyRows.clear();
+        objectKeyRows = null;
+        rowObjectKeys = null;
+        rowAddresses = new long[16];
+        rowLongKeys = new long[16];
+        rowCount = size = 0;
+        for (PropertyIndex index : indices.values()) {
+            index.clear();
+        }
+        modCount++;
+    }
+
+    /**
+     * Frees the off-heap storage. The map is empty afterwards and allocates storage again once entries are put.
+     */
+    public synchronized void close() {
+        clear();
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        return new AbstractSet<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new RowIterator<Object>() {
+                    @Override
+                    Object valueOf(int row) {
+                        return keyAt(row);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return OffHeapEntryMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Object, Map>> entrySet() {
+        return new AbstractSet<Entry<Object, Map>>() {
+            @Override
+            public Iterator<Entry<Object, Map>> iterator() {
+                return new RowIterator<Entry<Object, Map>>() {
+                    @Override
+                    Entry<Object, Map> valueOf(int row) {
+                        return new SimpleEntry<Object, Map>(keyAt(row), decode(row));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return OffHeapEntryMap.this.size();
+            }
+        };
+    }
+
+    private List<Object> keysOf(int[] rows) {
+        List<Object> keys = new ArrayList<Object>(rows.length);
+        for (int row : rows) {
+            keys.add(keyAt(row));
+        }
+        return keys;
+    }
+
+    private Map decode(int row) {
+        return codec.decode(store.read(rowAddresses[row]));
+    }
+
+    private int rowOf(Object key) {
+        if (isNumericKey(key)) {
+            if (objectKeyRows == null) {
+                int row = longKeyRows.get(((Number) key).longValue());
+                return row == LongIntHashMap.MISSING ? -1 : row;
+            }
+        }
+        if (objectKeyRows == null) {
+            return -1;
+        }
+        Integer row = objectKeyRows.get(key);
+        return row == null ? -1 : row;
+    }
+
+    private Object keyAt(int row) {
+        if (rowObjectKeys != null) {
+            return rowObjectKeys[row];
+        }
+        long key = rowLongKeys[row];
+        return integerKeys ? Integer.valueOf((int) key) : Long.valueOf(key);
+    }
+
+    private int addRow(Object key, long address) {
+        if (rowCount == rowAddresses.length) {
+            int capacity = rowCount * 2;
+            rowAddresses = Arrays.copyOf(rowAddresses, capacity);
+            if (rowObjectKeys != null) {
+                rowObjectKeys = Arrays.copyOf(rowObjectKeys, capacity);
+            }
+            else {
+                rowLongKeys = Arrays.copyOf(rowLongKeys, capacity);
+            }
+        }
+
+        if (objectKeyRows == null && !isNumericKey(key)) {
+            switchToObjectKeys();
+        }
+
+        int row = rowCount++;
+        rowAddresses[row] = address;
+        if (objectKeyRows != null) {
+            rowObjectKeys[row] = key;
+            objectKeyRows.put(key, row);
+        }
+        else {
+            if (size == 0) {
+                integerKeys = key instanceof Integer;
+            }
+            rowLongKeys[row] = ((Number) key).longValue();
+            longKeyRows.put(rowLongKeys[row], row);
+        }
+        size++;
+        return row;
+    }
+
+    private void removeRow(int row) {
+        long address = rowAddresses[row];
+        if (!indices.isEmpty()) {
+            unindex(row, address);
+        }
+        store.free(address);
+        if (objectKeyRows != null) {
+            objectKeyRows.remove(rowObjectKeys[row]);
+            rowObjectKeys[row] = null;
+        }
+        else {
+            longKeyRows.remove(rowLongKeys[row]);
+        }
+        rowAddresses[row] = FREE;
+        size--;
+        modCount++;
+    }
+
+    private void switchToObjectKeys() {
+        Object[] keys = new Object[rowAddresses.length];
+        for (int row = 0; row < rowCount; row++) {
+            if (rowAddresses[row] != FREE) {
+                keys[row] = keyAt(row);
+            }
+        }
+        objectKeyRows = new HashMap<Object, Integer>();
+        for (int row = 0; row < rowCount; row++) {
+            if (keys[row] != null) {
+                objectKeyRows.put(keys[row], row);
+            }
+        }
+        rowObjectKeys = keys;
+        rowLongKeys = null;
+        longKeyRows.clear();
+    }
+
+    private void index(int row, Map entry) {
+        for (PropertyIndex index : indices.values()) {
+            index.add(entry.get(index.getName()), row);
+        }
+    }
+
+    private void unindex(int row, long address) {
+        for (PropertyIndex index : indices.values()) {
+            index.remove(codec.decodeProperty(store.read(address), index.getName()), row);
+        }
+    }
+
+    /**
+     * Copies the live records to a new store and renumbers the rows once removed rows or replaced records
+     * make up more than half of the storage. Each segment of the old store is freed as soon as its live records
+     * are copied, so that both stores are only held in full if the records are spread over all segments.
+     */
+    private void compactIfNecessary() {
+        boolean rowGarbage = rowCount - size > Math.max(size, MIN_COMPACTION_ROWS);
+        boolean storeGarbage = store.getGarbageBytes() > Math.max(store.getLiveBytes(), store.getInitialSegmentSize());
+        if (!rowGarbage && !storeGarbage) {
+            return;
+        }
+
+        int[] segmentRecords = new int[store.getSegmentCount()];
+        for (int row = 0; row < rowCount; row++) {
+            if (rowAddresses[row] != FREE) {
+                segmentRecords[OffHeapRecordStore.segmentOf(rowAddresses[row])]++;
+            }
+        }
+        for (int segment = 0; segment < segmentRecords.length; segment++) {
+            if (segmentRecords[segment] == 0) {
+                store.releaseSegment(segment);
+            }
+        }
+
+        OffHeapRecordStore compacted = new OffHeapRecordStore(segmentSize, directory);
+        int capacity = Math.max(16, size * 2);
+        long[] addresses = new long[capacity];
+        long[] longKeys = rowObjectKeys == null ? new long[capacity] : null;
+        Object[] objectKeys = rowObjectKeys == null ? null : new Object[capacity];
+        longKeyRows.clear();
+        if (objectKeyRows != null) {
+            objectKeyRows.clear();
+        }
+        for (PropertyIndex index : indices.values()) {
+            index.clear();
+        }
+
+        int next = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (rowAddresses[row] == FREE) {
+                continue;
+            }
+            ByteBuffer record = store.read(rowAddresses[row]);
+            int length = record.remaining();
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            addresses[next] = compacted.write(bytes, length);
+            if (objectKeys != null) {
+                objectKeys[next] = rowObjectKeys[row];
+                objectKeyRows.put(objectKeys[next], next);
+            }
+            else {
+                longKeys[next] = rowLongKeys[row];
+                longKeyRows.put(longKeys[next], next);
+            }
+            if (!indices.isEmpty()) {
+                index(next, codec.decode(ByteBuffer.wrap(bytes)));
+            }
+            int segment = OffHeapRecordStore.segmentOf(rowAddresses[row]);
+            if (--segmentRecords[segment] == 0) {
+                store.releaseSegment(segment);
+            }
+            next++;
+        }
+
+        store.close();
+        store = compacted;
+        rowAddresses = addresses;
+        rowLongKeys = longKeys;
+        rowObjectKeys = objectKeys;
+        rowCount = next;
+        modCount++;
+    }
+
+    private static boolean isNumericKey(Object key) {
+        return key instanceof Long || key instanceof Integer;
+    }
+
+    /**
+     * Iterates over the live rows. Changes to the map made during iteration, other than through the
+     * iterator itself, fail the iteration as they may renumber the rows.
+     */
+    private abstract class RowIterator<E> implements Iterator<E> {
+        private int next = -1;
+        private int current = -1;
+        private int expectedModCount;
+
+        RowIterator() {
+            synchronized (OffHeapEntryMap.this) {
+                expectedModCount = modCount;
+                advance();
+            }
+        }
+
+        abstract E valueOf(int row);
+
+        public boolean hasNext() {
+            return next < rowCount;
+        }
+
+        public E next() {
+            synchronized (OffHeapEntryMap.this) {
+                checkModCount();
+                if (next >= rowCount) {
+                    throw new NoSuchElementException();
+                }
+                current = next;
+                advance();
+                return valueOf(current);
+            }
+        }
+
+        public void remove() {
+            synchronized (OffHeapEntryMap.this) {
+                checkModCount();
+                if (current < 0) {
+                    throw new IllegalStateException();
+                }
+                removeRow(current);
+                current = -1;
+                expectedModCount = modCount;
+            }
+        }
+
+        private void advance() {
+            next++;
+            while (next < rowCount && rowAddresses[next] == FREE) {
+                next++;
+            }
+        }
+
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
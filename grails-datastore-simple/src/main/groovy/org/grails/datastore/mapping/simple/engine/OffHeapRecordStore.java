@@ -0,0 +1,275 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Stores binary records outside of the Java heap.
+ * <p/>
+ * Records are appended to segments, which are direct buffers or, if a directory is given, buffers mapped
+ * to temporary files in that directory. The first segment is small and every further segment is twice the size
+ * of the previous one up to the maximum segment size, so a store holding few records reserves little memory.
+ * A record is addressed by a <code>long</code> made of the index of its segment and its offset within the
+ * segment, so the heap only holds the addresses. Space of removed or replaced records isn't reused, it is
+ * reported by {@link #getGarbageBytes()} and reclaimed by copying the live records to a new store.
+ * <p/>
+ * Segments are freed as soon as they are {@link #releaseSegment(int) released} or the store is
+ * {@link #close() closed} rather than when the buffers are garbage collected.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+public class OffHeapRecordStore {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_INITIAL_SEGMENT_SIZE = 64 * 1024;
+
+    private static final Log LOG = LogFactory.getLog(OffHeapRecordStore.class);
+
+    private final int segmentSize;
+    private final int initialSegmentSize;
+    private final File directory;
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private final List<File> files = new ArrayList<File>();
+    private ByteBuffer current;
+    private int nextSegmentSize;
+    private long allocatedBytes;
+    private long liveBytes;
+    private long garbageBytes;
+
+    /**
+     * @param segmentSize The maximum size in bytes of the buffers records are appended to
+     * @param directory The directory of the files to map the buffers to or null to allocate direct buffers
+     */
+    public OffHeapRecordStore(int segmentSize, File directory) {
+        this(Math.min(DEFAULT_INITIAL_SEGMENT_SIZE, segmentSize), segmentSize, directory);
+    }
+
+    /**
+     * @param initialSegmentSize The size in bytes of the first buffer records are appended to
+     * @param segmentSize The maximum size in bytes of the buffers records are appended to
+     * @param directory The directory of the files to map the buffers to or null to allocate direct buffers
+     */
+    public OffHeapRecordStore(int initialSegmentSize, int segmentSize, File directory) {
+        this.initialSegmentSize = initialSegmentSize;
+        this.segmentSize = segmentSize;
+        this.directory = directory;
+        nextSegmentSize = initialSegmentSize;
+    }
+
+    /**
+     * Appends a record
+     *
+     * @param bytes The buffer holding the record
+     * @param length The length of the record
+     * @return The address of the record
+     */
+    public long write(byte[] bytes, int length) {
+        int required = length + 4;
+        if (current == null || current.remaining() < required) {
+            current = allocate(Math.max(nextSegmentSize, required));
+        }
+        long address = ((long) (segments.size() - 1) << 32) | current.position();
+        current.putInt(length);
+        current.put(bytes, 0, length);
+        liveBytes += required;
+        return address;
+    }
+
+    /**
+     * @param address The address of a record
+     * @return A buffer positioned at the start of the record, limited to its end
+     */
+    public ByteBuffer read(long address) {
+        ByteBuffer record = segments.get(segmentOf(address)).duplicate();
+        int offset = (int) address;
+        int length = record.getInt(offset);
+        record.limit(offset + 4 + length);
+        record.position(offset + 4);
+        return record;
+    }
+
+    /**
+     * Marks the record at the given address as garbage
+     *
+     * @param address The address of the record
+     */
+    public void free(long address) {
+        int length = segments.get(segmentOf(address)).getInt((int) address) + 4;
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    /**
+     * @return The number of bytes reserved for segments
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return The number of bytes held by live records
+     */
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * @return The number of bytes held by removed or replaced records
+     */
+    public long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getInitialSegmentSize() {
+        return initialSegmentSize;
+    }
+
+    /**
+     * @return The number of segments allocated, including released ones
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @param address The address of a record
+     * @return The index of the segment holding the record
+     */
+    public static int segmentOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    /**
+     * Frees the given segment, the records it holds can't be read afterwards. Used to give back memory
+     * while the live records are copied to a new store.
+     *
+     * @param index The index of the segment
+     */
+    public void releaseSegment(int index) {
+        ByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            return;
+        }
+        segments.set(index, null);
+        if (segment == current) {
+            current = null;
+        }
+        allocatedBytes -= segment.capacity();
+        release(segment);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Frees the segments and deletes the mapped files. The store is empty afterwards and can be written to again.
+     */
+    public void close() {
+        for (ByteBuffer segment : segments) {
+            if (segment != null) {
+                release(segment);
+            }
+        }
+        segments.clear();
+        current = null;
+        nextSegmentSize = initialSegmentSize;
+        for (File file : files) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        files.clear();
+        allocatedBytes = liveBytes = garbageBytes = 0;
+    }
+
+    private ByteBuffer allocate(int size) {
+        ByteBuffer segment;
+        if (directory == null) {
+            segment = ByteBuffer.allocateDirect(size);
+        }
+        else {
+            segment = map(size);
+        }
+        segments.add(segment);
+        allocatedBytes += size;
+        nextSegmentSize = (int) Math.min((long) size * 2, segmentSize);
+        return segment;
+    }
+
+    private ByteBuffer map(int size) {
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+            File file = File.createTempFile("simple-map-", ".records", directory);
+            file.deleteOnExit();
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+                ByteBuffer segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                files.add(file);
+                return segment;
+            }
+            finally {
+                // the mapping stays valid after the channel is closed
+                raf.close();
+            }
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot map off-heap segment in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Frees the memory of a direct or mapped buffer now, unmapping the file of a mapped buffer, instead of
+     * when the buffer is garbage collected. Falls back to garbage collection if the JVM has no cleaner.
+     */
+    private static void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        }
+        catch (Exception e) {
+            LOG.debug("Cannot free off-heap segment, it is freed once it is garbage collected: " + e.getMessage());
+        }
+    }
+}
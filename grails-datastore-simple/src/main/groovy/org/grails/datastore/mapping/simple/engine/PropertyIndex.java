@@ -0,0 +1,560 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.engine;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Indexes the values of one property of the entries of a {@link OffHeapEntryMap} by the row of the entry.
+ * <p/>
+ * Values are indexed under a normalized key, so that values Groovy's <code>==</code> considers equal, such as
+ * <code>1</code>, <code>1L</code>, <code>1.0d</code> and <code>1.00G</code>, are found by each other (see
+ * {@link #normalize(Object)}). Integral numbers, characters and dates are indexed by their <code>long</code> value in
+ * a primitive hash table, where a value held by a single row needs no object at all. Other values are indexed in a
+ * hash map.
+ * For range lookups a sorted view of the values is built on first use after a change: a pair of sorted
+ * primitive arrays for <code>long</code> values, a {@link TreeMap} for other comparable values.
+ * <p/>
+ * Lookups return the matching rows in ascending order, which is the order the entries were inserted in. The
+ * index is guarded by the map that owns it.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+class PropertyIndex {
+
+    private static final int[] NO_ROWS = {};
+    private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final String name;
+
+    private final LongIntHashMap longValues = new LongIntHashMap();
+    private final Map<Object, Object> objectValues = new HashMap<Object, Object>();
+    private final List<RowSet> rowSets = new ArrayList<RowSet>();
+    private final List<Integer> freeRowSets = new ArrayList<Integer>();
+    private final RowSet nullRows = new RowSet();
+
+    private long[] sortedLongs;
+    private int[] sortedLongRows;
+    private TreeMap<Object, Object> sortedObjects;
+    private boolean sortable = true;
+
+    public PropertyIndex(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the indexed property in the entries
+     */
+    public String getName() {
+        return name;
+    }
+
+    void add(Object value, int row) {
+        invalidate();
+        value = normalize(value);
+        if (value == null) {
+            nullRows.add(row);
+            return;
+        }
+        if (value instanceof Long) {
+            long key = (Long) value;
+            int existing = longValues.get(key);
+            if (existing == LongIntHashMap.MISSING) {
+                longValues.put(key, row);
+            }
+            else if (existing >= 0) {
+                if (existing != row) {
+                    RowSet rows = new RowSet();
+                    rows.add(existing);
+                    rows.add(row);
+                    longValues.put(key, -(storeRowSet(rows) + 1));
+                }
+            }
+            else {
+                rowSets.get(-existing - 1).add(row);
+            }
+            return;
+        }
+
+        Object existing = objectValues.get(value);
+        if (existing == null) {
+            objectValues.put(value, row);
+        }
+        else if (existing instanceof RowSet) {
+            ((RowSet) existing).add(row);
+        }
+        else if ((Integer) existing != row) {
+            RowSet rows = new RowSet();
+            rows.add((Integer) existing);
+            rows.add(row);
+            objectValues.put(value, rows);
+        }
+    }
+
+    void remove(Object value, int row) {
+        invalidate();
+        value = normalize(value);
+        if (value == null) {
+            nullRows.remove(row);
+            return;
+        }
+        if (value instanceof Long) {
+            long key = (Long) value;
+            int existing = longValues.get(key);
+            if (existing == row) {
+                longValues.remove(key);
+            }
+            else if (existing < 0 && existing != LongIntHashMap.MISSING) {
+                int id = -existing - 1;
+                RowSet rows = rowSets.get(id);
+                rows.remove(row);
+                if (rows.size == 0) {
+                    longValues.remove(key);
+                    rowSets.set(id, null);
+                    freeRowSets.add(id);
+                }
+            }
+            return;
+        }
+
+        Object existing = objectValues.get(value);
+        if (existing instanceof RowSet) {
+            RowSet rows = (RowSet) existing;
+            rows.remove(row);
+            if (rows.size == 0) {
+                objectValues.remove(value);
+            }
+        }
+        else if (existing != null && (Integer) existing == row) {
+            objectValues.remove(value);
+        }
+    }
+
+    void clear() {
+        invalidate();
+        longValues.clear();
+        objectValues.clear();
+        rowSets.clear();
+        freeRowSets.clear();
+        nullRows.clear();
+    }
+
+    /**
+     * @param value The value, may be null
+     * @return The rows holding the value, in ascending order
+     */
+    int[] rowsEqualTo(Object value) {
+        value = normalize(value);
+        if (value == null) {
+            return nullRows.toArray();
+        }
+        if (value instanceof Long) {
+            return rowsOf(longValues.get((Long) value));
+        }
+        return rowsOf(objectValues.get(value));
+    }
+
+    /**
+     * Looks up the rows holding a value within the given bounds
+     *
+     * @param from The lower bound or null for none
+     * @param fromInclusive Whether the lower bound is included
+     * @param to The upper bound or null for none
+     * @param toInclusive Whether the upper bound is included
+     * @param includeNulls Whether to include the rows without a value, which compare lower than any value
+     * @return The rows in ascending order or null if the values can't be compared with the bounds
+     */
+    int[] rowsInRange(Object from, boolean fromInclusive, Object to, boolean toInclusive, boolean includeNulls) {
+        from = normalize(from);
+        to = normalize(to);
+        RowSet result = new RowSet();
+        if (objectValues.size() > 0) {
+            if (!collectObjectRange(from, fromInclusive, to, toInclusive, result)) {
+                return null;
+            }
+        }
+        if (longValues.size() > 0) {
+            if (!isNumericBound(from) || !isNumericBound(to) || (objectValues.size() > 0 && !isDecimal(sortedObjects))) {
+                return null;
+            }
+            collectLongRange(from, fromInclusive, to, toInclusive, result);
+        }
+        if (includeNulls) {
+            int[] nulls = nullRows.toArray();
+            for (int row : nulls) {
+                result.add(row);
+            }
+        }
+        return result.toArray();
+    }
+
+    private void collectLongRange(Object from, boolean fromInclusive, Object to, boolean toInclusive, RowSet result) {
+        // decimal bounds hold a fraction or lie beyond the long values, round them to the long values within
+        if (from instanceof BigDecimal) {
+            BigDecimal ceiling = ((BigDecimal) from).setScale(0, RoundingMode.CEILING);
+            if (ceiling.compareTo(MAX_LONG) > 0) {
+                return;
+            }
+            from = ceiling.compareTo(MIN_LONG) < 0 ? null : (Object) ceiling.longValue();
+            fromInclusive = true;
+        }
+        if (to instanceof BigDecimal) {
+            BigDecimal floor = ((BigDecimal) to).setScale(0, RoundingMode.FLOOR);
+            if (floor.compareTo(MIN_LONG) < 0) {
+                return;
+            }
+            to = floor.compareTo(MAX_LONG) > 0 ? null : (Object) floor.longValue();
+            toInclusive = true;
+        }
+        if (sortedLongs == null) {
+            buildSortedLongs();
+        }
+        int start = 0;
+        int end = sortedLongs.length;
+        if (from != null) {
+            long bound = (Long) from;
+            start = fromInclusive ? lowerBound(bound) : upperBound(bound);
+        }
+        if (to != null) {
+            long bound = (Long) to;
+            end = toInclusive ? upperBound(bound) : lowerBound(bound);
+        }
+        if (start >= end) {
+            return;
+        }
+        int[] rows = Arrays.copyOfRange(sortedLongRows, start, end);
+        Arrays.sort(rows);
+        result.addAllSorted(rows);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private boolean collectObjectRange(Object from, boolean fromInclusive, Object to, boolean toInclusive, RowSet result) {
+        if (!sortable) {
+            return false;
+        }
+        if (sortedObjects == null) {
+            try {
+                sortedObjects = new TreeMap<Object, Object>(objectValues);
+            }
+            catch (ClassCastException e) {
+                // values that aren't comparable with each other
+                sortable = false;
+                return false;
+            }
+        }
+        try {
+            if (isDecimal(sortedObjects)) {
+                // integral bounds are normalized to a Long, decimal values to a BigDecimal
+                from = toDecimal(from);
+                to = toDecimal(to);
+            }
+            NavigableMap<Object, Object> range = sortedObjects;
+            if (from != null && to != null) {
+                if (((Comparable) from).compareTo(to) > 0) {
+                    return true;
+                }
+                range = sortedObjects.subMap(from, fromInclusive, to, toInclusive);
+            }
+            else if (from != null) {
+                range = sortedObjects.tailMap(from, fromInclusive);
+            }
+            else if (to != null) {
+                range = sortedObjects.headMap(to, toInclusive);
+            }
+            for (Object rows : range.values()) {
+                if (rows instanceof RowSet) {
+                    for (int row : ((RowSet) rows).toArray()) {
+                        result.add(row);
+                    }
+                }
+                else {
+                    result.add((Integer) rows);
+                }
+            }
+            return true;
+        }
+        catch (ClassCastException e) {
+            // bounds that aren't comparable with the values
+            return false;
+        }
+    }
+
+    private void buildSortedLongs() {
+        int count = 0;
+        for (int slot = 0; slot < longValues.capacity(); slot++) {
+            if (longValues.isUsed(slot)) {
+                int rows = longValues.valueAt(slot);
+                count += rows >= 0 ? 1 : rowSets.get(-rows - 1).size;
+            }
+        }
+
+        long[] values = new long[count];
+        int[] rows = new int[count];
+        int i = 0;
+        for (int slot = 0; slot < longValues.capacity(); slot++) {
+            if (!longValues.isUsed(slot)) {
+                continue;
+            }
+            long value = longValues.keyAt(slot);
+            int entry = longValues.valueAt(slot);
+            if (entry >= 0) {
+                values[i] = value;
+                rows[i++] = entry;
+            }
+            else {
+                RowSet set = rowSets.get(-entry - 1);
+                for (int j = 0; j < set.size; j++) {
+                    values[i] = value;
+                    rows[i++] = set.rows[j];
+                }
+            }
+        }
+        sortPairs(values, rows, 0, count - 1);
+        sortedLongs = values;
+        sortedLongRows = rows;
+    }
+
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = sortedLongs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedLongs[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private int upperBound(long value) {
+        int low = 0;
+        int high = sortedLongs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedLongs[mid] <= value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static void sortPairs(long[] values, int[] rows, int low, int high) {
+        while (high - low > 16) {
+            long pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    swap(values, rows, i++, j--);
+                }
+            }
+            // recurse into the smaller part to bound the stack depth
+            if (j - low < high - i) {
+                sortPairs(values, rows, low, j);
+                low = i;
+            }
+            else {
+                sortPairs(values, rows, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && values[j - 1] > values[j]; j--) {
+                swap(values, rows, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(long[] values, int[] rows, int i, int j) {
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+
+    private int[] rowsOf(Object entry) {
+        if (entry == null) {
+            return NO_ROWS;
+        }
+        if (entry instanceof RowSet) {
+            return ((RowSet) entry).toArray();
+        }
+        return rowsOf(((Integer) entry).intValue());
+    }
+
+    private int[] rowsOf(int entry) {
+        if (entry == LongIntHashMap.MISSING) {
+            return NO_ROWS;
+        }
+        if (entry >= 0) {
+            return new int[] { entry };
+        }
+        return rowSets.get(-entry - 1).toArray();
+    }
+
+    private int storeRowSet(RowSet rows) {
+        if (!freeRowSets.isEmpty()) {
+            int id = freeRowSets.remove(freeRowSets.size() - 1);
+            rowSets.set(id, rows);
+            return id;
+        }
+        rowSets.add(rows);
+        return rowSets.size() - 1;
+    }
+
+    private void invalidate() {
+        sortedLongs = null;
+        sortedLongRows = null;
+        sortedObjects = null;
+        sortable = true;
+    }
+
+    /**
+     * Normalizes a value to the key it is indexed under. Integral numbers, characters, dates and numbers without a
+     * fraction become a Long, other numbers a BigDecimal without trailing zeros, other character sequences (such as
+     * GStrings) a String. Floats and doubles are normalized from their decimal representation as a double, since
+     * Groovy compares them with other numbers as doubles.
+     *
+     * @param value The value
+     * @return The key
+     */
+    static Object normalize(Object value) {
+        if (value == null || value instanceof Long || value instanceof String) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Character) {
+            return (long) ((Character) value).charValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            return integer.bitLength() < 64 ? (Object) integer.longValue() : new BigDecimal(integer);
+        }
+        if (value instanceof BigDecimal) {
+            return normalizeDecimal((BigDecimal) value);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return d;
+            }
+            return normalizeDecimal(new BigDecimal(Double.toString(d)));
+        }
+        if (value instanceof CharSequence) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    private static Object normalizeDecimal(BigDecimal value) {
+        if (value.signum() == 0) {
+            return 0L;
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        if (stripped.scale() <= 0 && stripped.compareTo(MIN_LONG) >= 0 && stripped.compareTo(MAX_LONG) <= 0) {
+            return stripped.longValue();
+        }
+        return stripped;
+    }
+
+    private static Object toDecimal(Object bound) {
+        return bound instanceof Long ? BigDecimal.valueOf((Long) bound) : bound;
+    }
+
+    private static boolean isNumericBound(Object value) {
+        return value == null || value instanceof Long || value instanceof BigDecimal;
+    }
+
+    private static boolean isDecimal(TreeMap<Object, Object> values) {
+        return values.firstKey() instanceof BigDecimal && values.lastKey() instanceof BigDecimal;
+    }
+
+    /**
+     * A set of rows kept in ascending order
+     */
+    static class RowSet {
+        int[] rows = new int[4];
+        int size;
+
+        void add(int row) {
+            if (size == 0 || rows[size - 1] < row) {
+                ensureCapacity(size + 1);
+                rows[size++] = row;
+                return;
+            }
+            int index = Arrays.binarySearch(rows, 0, size, row);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(rows, index, rows, index + 1, size - index);
+            rows[index] = row;
+            size++;
+        }
+
+        void addAllSorted(int[] sorted) {
+            if (size == 0) {
+                rows = sorted;
+                size = sorted.length;
+                return;
+            }
+            for (int row : sorted) {
+                add(row);
+            }
+        }
+
+        void remove(int row) {
+            int index = Arrays.binarySearch(rows, 0, size, row);
+            if (index >= 0) {
+                System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+                size--;
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(capacity, rows.length * 2));
+            }
+        }
+    }
+}
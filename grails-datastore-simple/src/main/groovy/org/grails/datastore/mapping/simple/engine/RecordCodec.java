@@ -0,0 +1,432 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Encodes the entries of a {@link OffHeapEntryMap} as compact binary records.
+ * <p/>
+ * A record is the number of properties followed by each property, written as the code of its name and its
+ * tagged value. Names are replaced by codes assigned by the codec, so they are stored once per family rather
+ * than once per entry. Primitive wrappers, strings, dates, big numbers, enums, byte arrays, UUIDs and nested
+ * lists, sets and maps have a dedicated encoding; any other serializable value is written with Java
+ * serialization.
+ * <p/>
+ * Codecs are not thread safe, callers synchronize access.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class RecordCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHARACTER = 9;
+    private static final byte STRING = 10;
+    private static final byte DATE = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte SQL_DATE = 13;
+    private static final byte SQL_TIME = 14;
+    private static final byte BIG_DECIMAL = 15;
+    private static final byte BIG_INTEGER = 16;
+    private static final byte ENUM = 17;
+    private static final byte BYTES = 18;
+    private static final byte LIST = 19;
+    private static final byte SET = 20;
+    private static final byte SORTED_SET = 21;
+    private static final byte MAP = 22;
+    private static final byte UUID_VALUE = 23;
+    private static final byte SERIALIZED = 24;
+
+    private final List<String> names = new ArrayList<String>();
+    private final Map<String, Integer> nameCodes = new HashMap<String, Integer>();
+    private final Map<String, Class> enumTypes = new HashMap<String, Class>();
+    private final ClassLoader classLoader;
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    public RecordCodec(ClassLoader classLoader) {
+        this.classLoader = classLoader == null ? ClassUtils.getDefaultClassLoader() : classLoader;
+    }
+
+    /**
+     * Encodes the given entry. The record stays valid until the next call.
+     *
+     * @param entry The entry
+     * @return The number of bytes of the record, see {@link #getBuffer()}
+     */
+    public int encode(Map<String, Object> entry) {
+        length = 0;
+        writeVarInt(entry.size());
+        for (Map.Entry<String, Object> property : entry.entrySet()) {
+            writeVarInt(codeFor(property.getKey()));
+            writeValue(property.getValue());
+        }
+        return length;
+    }
+
+    /**
+     * @return The buffer holding the last encoded record
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Decodes the record at the position of the given buffer
+     *
+     * @param record The buffer, positioned at the start of the record
+     * @return The entry
+     */
+    public Map<String, Object> decode(ByteBuffer record) {
+        int size = readVarInt(record);
+        Map<String, Object> entry = new LinkedHashMap<String, Object>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            String name = names.get(readVarInt(record));
+            entry.put(name, readValue(record));
+        }
+        return entry;
+    }
+
+    /**
+     * Decodes only the given property of the record at the position of the given buffer
+     *
+     * @param record The buffer, positioned at the start of the record
+     * @param name The name of the property
+     * @return The value or null if the record doesn't hold the property
+     */
+    public Object decodeProperty(ByteBuffer record, String name) {
+        Integer code = nameCodes.get(name);
+        if (code == null) {
+            return null;
+        }
+        int size = readVarInt(record);
+        for (int i = 0; i < size; i++) {
+            int current = readVarInt(record);
+            Object value = readValue(record);
+            if (current == code) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private int codeFor(String name) {
+        Integer code = nameCodes.get(name);
+        if (code == null) {
+            code = names.size();
+            names.add(name);
+            nameCodes.put(name, code);
+        }
+        return code;
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeByte(NULL);
+        }
+        else if (value instanceof String) {
+            writeByte(STRING);
+            writeBytes(((String) value).getBytes(UTF8));
+        }
+        else if (value instanceof Long) {
+            writeByte(LONG);
+            writeLong((Long) value);
+        }
+        else if (value instanceof Integer) {
+            writeByte(INTEGER);
+            writeInt((Integer) value);
+        }
+        else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? TRUE : FALSE);
+        }
+        else if (value instanceof Double) {
+            writeByte(DOUBLE);
+            writeLong(Double.doubleToRawLongBits((Double) value));
+        }
+        else if (value instanceof Float) {
+            writeByte(FLOAT);
+            writeInt(Float.floatToRawIntBits((Float) value));
+        }
+        else if (value instanceof Short) {
+            writeByte(SHORT);
+            writeInt((Short) value);
+        }
+        else if (value instanceof Byte) {
+            writeByte(BYTE);
+            writeByte((Byte) value);
+        }
+        else if (value instanceof Character) {
+            writeByte(CHARACTER);
+            writeInt((Character) value);
+        }
+        else if (value instanceof Date) {
+            writeDate((Date) value);
+        }
+        else if (value instanceof BigDecimal) {
+            writeByte(BIG_DECIMAL);
+            writeBytes(value.toString().getBytes(UTF8));
+        }
+        else if (value instanceof BigInteger) {
+            writeByte(BIG_INTEGER);
+            writeBytes(((BigInteger) value).toByteArray());
+        }
+        else if (value instanceof Enum) {
+            writeByte(ENUM);
+            writeVarInt(codeFor(((Enum) value).getDeclaringClass().getName()));
+            writeVarInt(codeFor(((Enum) value).name()));
+        }
+        else if (value instanceof byte[]) {
+            writeByte(BYTES);
+            writeBytes((byte[]) value);
+        }
+        else if (value instanceof UUID) {
+            writeByte(UUID_VALUE);
+            writeLong(((UUID) value).getMostSignificantBits());
+            writeLong(((UUID) value).getLeastSignificantBits());
+        }
+        else if (value instanceof Map) {
+            writeByte(MAP);
+            Map<?, ?> map = (Map) value;
+            writeVarInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                writeValue(e.getKey());
+                writeValue(e.getValue());
+            }
+        }
+        else if (value instanceof SortedSet && ((SortedSet) value).comparator() == null) {
+            writeCollection(SORTED_SET, (Collection) value);
+        }
+        else if (value instanceof Set) {
+            writeCollection(SET, (Collection) value);
+        }
+        else if (value instanceof List) {
+            writeCollection(LIST, (Collection) value);
+        }
+        else if (value instanceof Serializable) {
+            writeByte(SERIALIZED);
+            writeBytes(serialize(value));
+        }
+        else {
+            throw new InvalidDataAccessApiUsageException("Cannot store value of type [" + value.getClass().getName() +
+                    "] off-heap, it is neither a supported type nor serializable");
+        }
+    }
+
+    private void writeDate(Date date) {
+        if (date instanceof Timestamp) {
+            writeByte(TIMESTAMP);
+            writeLong(date.getTime());
+            writeInt(((Timestamp) date).getNanos());
+            return;
+        }
+        writeByte(date instanceof java.sql.Date ? SQL_DATE : date instanceof Time ? SQL_TIME : DATE);
+        writeLong(date.getTime());
+    }
+
+    private void writeCollection(byte tag, Collection values) {
+        writeByte(tag);
+        writeVarInt(values.size());
+        for (Object value : values) {
+            writeValue(value);
+        }
+    }
+
+    private Object readValue(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL: return null;
+            case TRUE: return Boolean.TRUE;
+            case FALSE: return Boolean.FALSE;
+            case INTEGER: return in.getInt();
+            case LONG: return in.getLong();
+            case DOUBLE: return Double.longBitsToDouble(in.getLong());
+            case FLOAT: return Float.intBitsToFloat(in.getInt());
+            case SHORT: return (short) in.getInt();
+            case BYTE: return in.get();
+            case CHARACTER: return (char) in.getInt();
+            case STRING: return new String(readBytes(in), UTF8);
+            case DATE: return new Date(in.getLong());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.getLong());
+                timestamp.setNanos(in.getInt());
+                return timestamp;
+            case SQL_DATE: return new java.sql.Date(in.getLong());
+            case SQL_TIME: return new Time(in.getLong());
+            case BIG_DECIMAL: return new BigDecimal(new String(readBytes(in), UTF8));
+            case BIG_INTEGER: return new BigInteger(readBytes(in));
+            case ENUM:
+                String typeName = names.get(readVarInt(in));
+                return Enum.valueOf(enumType(typeName), names.get(readVarInt(in)));
+            case BYTES: return readBytes(in);
+            case UUID_VALUE: return new UUID(in.getLong(), in.getLong());
+            case MAP:
+                int size = readVarInt(in);
+                Map map = new LinkedHashMap(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            case LIST: return readCollection(in, new ArrayList());
+            case SET: return readCollection(in, new LinkedHashSet());
+            case SORTED_SET: return readCollection(in, new TreeSet());
+            case SERIALIZED: return deserialize(readBytes(in));
+            default:
+                throw new IllegalStateException("Corrupt off-heap record, unknown value tag " + tag);
+        }
+    }
+
+    private Collection readCollection(ByteBuffer in, Collection target) {
+        int size = readVarInt(in);
+        for (int i = 0; i < size; i++) {
+            target.add(readValue(in));
+        }
+        return target;
+    }
+
+    private Class enumType(String name) {
+        Class type = enumTypes.get(name);
+        if (type == null) {
+            type = ClassUtils.resolveClassName(name, classLoader);
+            enumTypes.put(name, type);
+        }
+        return type;
+    }
+
+    private byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+        }
+        catch (IOException e) {
+            throw new InvalidDataAccessApiUsageException("Cannot serialize value of type [" +
+                    value.getClass().getName() + "]: " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) {
+        try {
+            return new ConfigurableObjectInputStream(new ByteArrayInputStream(bytes), classLoader).readObject();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Cannot deserialize off-heap value: " + e.getMessage(), e);
+        }
+        catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot deserialize off-heap value: " + e.getMessage(), e);
+        }
+    }
+
+    private byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+}
@@ -22,6 +22,7 @@ import org.grails.datastore.mapping.engine.AssociationIndexer
 import org.grails.datastore.mapping.engine.EntityAccess
 import org.grails.datastore.mapping.engine.EntityPersister
 import org.grails.datastore.mapping.engine.PropertyValueIndexer
+import org.grails.datastore.mapping.engine.internal.MappingUtils
 import org.grails.datastore.mapping.keyvalue.engine.AbstractKeyValueEntityPersister
 import org.grails.datastore.mapping.model.MappingContext
 import org.grails.datastore.mapping.model.PersistentEntity
@@ -46,12 +47,14 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
     Map indices
     def lastKey
     String family
+    private SimpleMapDatastore simpleDatastore
 
     SimpleMapEntityPersister(MappingContext context, PersistentEntity entity, Session session,
                              SimpleMapDatastore datastore, ApplicationEventPublisher publisher) {
         super(context, entity, session, publisher)
         this.datastore = datastore.backingMap
         this.indices = datastore.indices
+        simpleDatastore = datastore
         family = getFamily(entity, entity.getMapping())
         final identity = entity.getIdentity()
         def idType = identity?.type
@@ -61,7 +64,7 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
         else {
             lastKey = 0L
         }
-        if (this.datastore[family] == null) this.datastore[family] = [:]
+        if (this.datastore[family] == null) this.datastore[family] = datastore.createFamilyMap(entity)
     }
 
     protected PersistentEntity discriminatePersistentEntity(PersistentEntity persistentEntity, Map nativeEntry) {
@@ -83,7 +86,15 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
 
     @Override
     protected boolean isPropertyIndexed(Property mappedProperty) {
-        return true // index all
+        // index all, unless the family is off-heap and indexes the properties mapped with index:true itself
+        return !offHeap
+    }
+
+    /**
+     * @return Whether the entries of the family are stored off-heap, see {@link OffHeapEntryMap}
+     */
+    boolean isOffHeap() {
+        datastore[family] instanceof OffHeapEntryMap
     }
 
     PropertyValueIndexer getPropertyIndexer(PersistentProperty property) {
@@ -278,6 +289,9 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
     }
 
     protected def indexIdentifier(PersistentEntity persistentEntity, storeId) {
+        if (offHeap) {
+            return
+        }
         final indexer = getPropertyIndexer(persistentEntity.identity)
         indexer.index(storeId, storeId)
     }
@@ -289,7 +303,7 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
             def f = getFamily(parent, parent.mapping)
             def parentEntry = datastore[f]
             if (parentEntry == null) {
-                parentEntry = [:]
+                parentEntry = simpleDatastore.createFamilyMap(parent)
                 datastore[f] = parentEntry
             }
             parentEntry.put(storeId, nativeEntry)
@@ -330,10 +344,67 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
         }
         else {
             existing.putAll(entry)
+            // off-heap families return copies of their entries
+            datastore[family].put(key, existing)
         }
         updateInheritanceHierarchy(persistentEntity, key, entry)
     }
 
+    /**
+     * Removes the entries with the given keys without firing events or applying cascades
+     *
+     * @param keys The keys
+     */
+    void deleteAllEntries(List keys) {
+        deleteEntries(family, keys)
+    }
+
+    /**
+     * Applies the given property values to the entries with the given keys in place, keeping
+     * the property indices up to date. No events are fired and versions are not incremented.
+     *
+     * @param keys The keys
+     * @param properties The simple properties to update and their new values
+     */
+    void updateAllEntries(List keys, Map<PersistentProperty, Object> properties) {
+        def conversionService = mappingContext.conversionService
+        Map<String, Object> values = [:]
+        Map<PersistentProperty, Object> valuesToIndex = [:]
+        properties.each { PersistentProperty prop, value ->
+            if (value != null && !prop.type.isInstance(value)) {
+                value = conversionService.convert(value, prop.type)
+            }
+            values[MappingUtils.getTargetKey(prop)] = value
+            valuesToIndex[prop] = value
+        }
+
+        keys?.each { key ->
+            Map entry = datastore[family].get(key)
+            if (entry == null) return
+
+            if (!offHeap) {
+                valuesToIndex.each { PersistentProperty prop, value ->
+                    def indexer = getPropertyIndexer(prop)
+                    indexer.deindex(entry[MappingUtils.getTargetKey(prop)], key)
+                    indexer.index(value, key)
+                }
+            }
+
+            entry.putAll(values)
+            datastore[family].put(key, entry)
+            def parent = persistentEntity.parentEntity
+            while (parent != null) {
+                Map parentFamily = datastore[getFamily(parent, parent.mapping)]
+                Map parentEntry = parentFamily?.get(key)
+                if (parentEntry != null && !parentEntry.is(entry)) {
+                    parentEntry.putAll(values)
+                    parentFamily.put(key, parentEntry)
+                }
+                parent = parent.parentEntity
+            }
+        }
+    }
+
     protected void deleteEntries(String family, List<Object> keys) {
         keys?.each {
             datastore[family].remove(it)
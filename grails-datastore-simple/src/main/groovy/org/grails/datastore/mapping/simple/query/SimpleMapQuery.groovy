@@ -16,6 +16,7 @@ package org.grails.datastore.mapping.simple.query
 
 import java.util.regex.Pattern
 
+import org.grails.datastore.mapping.engine.internal.MappingUtils
 import org.grails.datastore.mapping.engine.types.CustomTypeMarshaller
 import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValue
 import org.grails.datastore.mapping.model.PersistentEntity
@@ -29,6 +30,7 @@ import org.grails.datastore.mapping.query.Restrictions
 import org.grails.datastore.mapping.query.api.QueryableCriteria
 import org.grails.datastore.mapping.query.criteria.FunctionCallingCriterion
 import org.grails.datastore.mapping.simple.SimpleMapSession
+import org.grails.datastore.mapping.simple.engine.OffHeapEntryMap
 import org.grails.datastore.mapping.simple.engine.SimpleMapEntityPersister
 import org.springframework.dao.InvalidDataAccessResourceUsageException
 import org.springframework.util.Assert
@@ -44,19 +46,41 @@ class SimpleMapQuery extends Query {
     Map<String, Map> datastore
     private String family
     private SimpleMapEntityPersister entityPersister
+    private SimpleMapQueryEvaluator evaluator
 
     SimpleMapQuery(SimpleMapSession session, PersistentEntity entity, SimpleMapEntityPersister entityPersister) {
         super(session, entity)
         this.datastore = session.getBackingMap()
         family = getFamily(entity)
         this.entityPersister = entityPersister
+        evaluator = new SimpleMapQueryEvaluator(entity, entityPersister, datastore, family)
     }
 
     protected List executeQuery(PersistentEntity entity, Query.Junction criteria) {
         def results = []
         def entityMap = [:]
+        List keys = null
         if (criteria.isEmpty()) {
-            populateQueryResult(datastore[family].keySet().toList(), entityMap)
+            keys = datastore[family].keySet().toList()
+        }
+        else if (evaluator.supports(criteria)) {
+            keys = evaluator.evaluate(criteria)
+            if (!entity.isRoot()) {
+                def childEntries = datastore[family]
+                keys = keys.findAll { childEntries.containsKey(it) }
+            }
+        }
+
+        if (keys != null && projections.isEmpty()) {
+            // order the native entries so that only the entities up to the end of the page are loaded
+            def page = retrievePage(entity, keys)
+            if (page != null) {
+                return page
+            }
+        }
+
+        if (keys != null) {
+            populateQueryResult(keys, entityMap)
         }
         else {
             def criteriaList = criteria.getCriteria()
@@ -160,6 +184,38 @@ class SimpleMapQuery extends Query {
         return Collections.emptyList()
     }
 
+    /**
+     * Retrieves the entities of the requested page in the order of the query. The entities that can't be retrieved
+     * are dropped before the page is cut, so they don't shorten it.
+     *
+     * @return The entities or null if the order can't be applied to the native entries
+     */
+    private List retrievePage(PersistentEntity entity, List keys) {
+        int end = max < 0 ? -1 : offset + max
+        int wanted = end
+        while (true) {
+            List ordered = evaluator.selectPage(keys, orderBy, 0, wanted)
+            if (ordered == null) {
+                return null
+            }
+            List retrieved = []
+            for (key in ordered) {
+                def object = session.retrieve(entity.javaClass, key)
+                if (object != null) {
+                    retrieved << object
+                }
+            }
+            // with entries missing, order further into the keys unless all of them were already ordered
+            if (end < 0 || retrieved.size() >= end || ordered.size() < wanted) {
+                if (offset >= retrieved.size()) {
+                    return []
+                }
+                return retrieved.subList(offset, end < 0 ? retrieved.size() : Math.min(end, retrieved.size()))
+            }
+            wanted += ordered.size() - retrieved.size()
+        }
+    }
+
     private List applyMaxAndOffset(List sortedResults) {
         final def total = sortedResults.size()
         if (offset > total) return Collections.emptyList()
@@ -212,7 +268,7 @@ class SimpleMapQuery extends Query {
         (Query.ILike): { allEntities, Association association, Query.Like like, Closure function = {it} ->
             queryAssociation(allEntities, association) {
                 def regexFormat = like.pattern.replaceAll('%', '.*?')
-                def pattern = Pattern.compile(regexFormat, Pattern.CASE_INSENSITIVE)
+                def pattern = SimpleMapQueryEvaluator.compilePattern(regexFormat, Pattern.CASE_INSENSITIVE)
                 pattern.matcher(function(resolveIfEmbedded(like.property, it))).find()
             }
         },
@@ -447,6 +503,9 @@ class SimpleMapQuery extends Query {
                     def allEntities = datastore[family]
                     return allEntities.findAll { resolveIfEmbedded(equals.property, it.value) == value }.collect { it.key }
                 }
+                else if (entityPersister.offHeap) {
+                    return queryOffHeapEquals(property, value)
+                }
                 else {
                     return indexer.query(value)
                 }
@@ -456,6 +515,9 @@ class SimpleMapQuery extends Query {
             handlers[Query.Equals].call(new Query.Equals(equals.property, null), property, function)
         },
         (Query.IdEquals): { Query.IdEquals equals, PersistentProperty property ->
+            if (entityPersister.offHeap) {
+                return datastore[family].containsKey(equals.value) ? [equals.value] : []
+            }
             def indexer = entityPersister.getPropertyIndexer(property)
             return indexer.query(equals.value)
         },
@@ -468,13 +530,16 @@ class SimpleMapQuery extends Query {
             return negateResults(indexed)
         },
         (Query.Like): { Query.Like like, PersistentProperty property ->
+            if (entityPersister.offHeap) {
+                return matchOffHeapValues(property, SimpleMapQueryEvaluator.compilePattern(like.pattern.replaceAll('%', '.*?'), 0))
+            }
             def indexer = entityPersister.getPropertyIndexer(property)
 
             def root = indexer.indexRoot
             def regexFormat = like.pattern.replaceAll('%', '.*?')
-            def pattern = "${root}:${regexFormat}"
+            def pattern = SimpleMapQueryEvaluator.compilePattern("${root}:${regexFormat}", 0)
             def matchingIndices = entityPersister.indices.findAll { key, value ->
-                key ==~ pattern
+                pattern.matcher(key).matches()
             }
 
             Set result = []
@@ -506,6 +571,10 @@ class SimpleMapQuery extends Query {
             def name = between.property
             def allEntities = datastore[family]
 
+            def indexed = from != null && to != null ? queryOffHeapRange(name, property, function, from, true, to, true) : null
+            if (indexed != null) {
+                return indexed
+            }
             if (function != null) {
                 allEntities.findAll { function(resolveIfEmbedded(name, it.value)) >= from && function(resolveIfEmbedded(name, it.value)) <= to }.collect { it.key }
             }
@@ -518,6 +587,10 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(gt)
             def allEntities = datastore[family]
 
+            def indexed = value != null ? queryOffHeapRange(name, property, function, value, false, null, false) : null
+            if (indexed != null) {
+                return indexed
+            }
             allEntities.findAll { (function != null ? function(resolveIfEmbedded(name, it.value)) : resolveIfEmbedded(name, it.value)) > value }.collect { it.key }
         },
         (Query.GreaterThanProperty): { Query.GreaterThanProperty gt, PersistentProperty property, Closure function = null, boolean onValue = false ->
@@ -597,6 +670,10 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(gt)
             def allEntities = datastore[family]
 
+            def indexed = value != null ? queryOffHeapRange(name, property, null, value, true, null, false) : null
+            if (indexed != null) {
+                return indexed
+            }
             allEntities.findAll { resolveIfEmbedded(name, it.value) >= value }.collect { it.key }
         },
         (Query.LessThan): { Query.LessThan lt, PersistentProperty property ->
@@ -604,6 +681,10 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(lt)
             def allEntities = datastore[family]
 
+            def indexed = value != null ? queryOffHeapRange(name, property, null, null, false, value, false) : null
+            if (indexed != null) {
+                return indexed
+            }
             allEntities.findAll { resolveIfEmbedded(name, it.value) < value }.collect { it.key }
         },
         (Query.LessThanEquals): { Query.LessThanEquals lte, PersistentProperty property ->
@@ -611,6 +692,10 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(lte)
             def allEntities = datastore[family]
 
+            def indexed = value != null ? queryOffHeapRange(name, property, null, null, false, value, true) : null
+            if (indexed != null) {
+                return indexed
+            }
             allEntities.findAll { resolveIfEmbedded(name, it.value) <= value }.collect { it.key }
         }
     ]
@@ -648,10 +733,13 @@ class SimpleMapQuery extends Query {
     }
 
     protected List executeLikeWithRegex(SimpleMapEntityPersister entityPersister, PersistentProperty property, regexFormat) {
+        if (entityPersister.offHeap) {
+            return matchOffHeapValues(property, SimpleMapQueryEvaluator.compilePattern(regexFormat, Pattern.CASE_INSENSITIVE))
+        }
         def indexer = entityPersister.getPropertyIndexer(property)
 
         def root = indexer.indexRoot
-        def pattern = Pattern.compile("${root}:${regexFormat}", Pattern.CASE_INSENSITIVE)
+        def pattern = SimpleMapQueryEvaluator.compilePattern("${root}:${regexFormat}", Pattern.CASE_INSENSITIVE)
         def matchingIndices = entityPersister.indices.findAll { key, value ->
             pattern.matcher(key).matches()
         }
@@ -664,6 +752,57 @@ class SimpleMapQuery extends Query {
         return result.toList()
     }
 
+    /**
+     * Looks up the keys of the entries of an off-heap family holding the given value, through the index of the
+     * property if it is indexed
+     */
+    private List queryOffHeapEquals(PersistentProperty property, value) {
+        OffHeapEntryMap entries = (OffHeapEntryMap) datastore[family]
+        if (property.is(entity.identity)) {
+            return entries.containsKey(value) ? [value] : []
+        }
+        if (value != null && session.mappingContext.isPersistentEntity(value)) {
+            value = session.getPersister(value).getObjectIdentifier(value)
+        }
+
+        def key = MappingUtils.getTargetKey(property)
+        def keys = entries.findKeysEqualTo(key, value)
+        if (keys != null) {
+            return keys
+        }
+        entries.keySet().findAll { entries.getProperty(it, key) == value }
+    }
+
+    /**
+     * Looks up the keys of the entries of an off-heap family with a value within the given bounds, a null bound
+     * being unbounded. Entries without a value are included if there is no lower bound, since null compares
+     * lower than any value.
+     *
+     * @return The keys or null if the family isn't off-heap, the property isn't indexed or the criterion can't be
+     * answered from the index
+     */
+    private List queryOffHeapRange(String name, PersistentProperty property, Closure function,
+                                   from, boolean fromInclusive, to, boolean toInclusive) {
+        if (!entityPersister.offHeap || function != null || name.contains('.') || property.is(entity.identity)) {
+            return null
+        }
+        OffHeapEntryMap entries = (OffHeapEntryMap) datastore[family]
+        entries.findKeysInRange(MappingUtils.getTargetKey(property), from, fromInclusive, to, toInclusive, from == null)
+    }
+
+    /**
+     * Matches the values of the given property of the entries of an off-heap family against the given pattern,
+     * decoding only that property of each entry
+     */
+    private List matchOffHeapValues(PersistentProperty property, Pattern pattern) {
+        OffHeapEntryMap entries = (OffHeapEntryMap) datastore[family]
+        def key = MappingUtils.getTargetKey(property)
+        entries.keySet().findAll {
+            def value = entries.getProperty(it, key)
+            value != null && pattern.matcher(value.toString()).matches()
+        }.toList()
+    }
+
     private ArrayList negateResults(List results) {
         def entityMap = datastore[family]
         def allIds = new ArrayList(entityMap.keySet())
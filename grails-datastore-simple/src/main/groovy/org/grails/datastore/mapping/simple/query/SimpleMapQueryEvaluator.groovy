@@ -0,0 +1,639 @@
+/* Copyright (C) 2013 SpringSource
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.query
+
+import groovy.transform.CompileStatic
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.regex.Pattern
+
+import org.codehaus.groovy.runtime.ScriptBytecodeAdapter
+import org.grails.datastore.mapping.engine.internal.MappingUtils
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.model.PersistentProperty
+import org.grails.datastore.mapping.model.types.Simple
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.api.QueryableCriteria
+import org.grails.datastore.mapping.simple.engine.OffHeapEntryMap
+import org.grails.datastore.mapping.simple.engine.SimpleMapEntityPersister
+
+/**
+ * Evaluates the criteria of a {@link SimpleMapQuery} against the native entries of a family.
+ * <p/>
+ * Unlike the handlers of {@link SimpleMapQuery}, which scan all entries of the family for each criterion, the
+ * criteria of a conjunction are evaluated together: equality and <code>in</code> criteria are looked up in the
+ * property indices of the {@link SimpleMapEntityPersister} (and range criteria in the sorted indices of off-heap
+ * families), the resulting sets of keys are intersected starting with the smallest, and the remaining criteria are
+ * only checked against the entries that are left, or in a single pass over the family if no criterion could be
+ * looked up. Values are compared with the same semantics as the Groovy operators used by the handlers.
+ * <p/>
+ * Criteria on simple properties of the queried entity are supported, see {@link #supports(Query.Junction)}. Queries
+ * with other criteria are left to the handlers.
+ *
+ * @author Graeme Rocher
+ * @since 2.0
+ */
+@CompileStatic
+class SimpleMapQueryEvaluator {
+
+    private static final int MAX_CACHED_PATTERNS = 1000
+    private static final Map<String, Pattern> patternCache = new ConcurrentHashMap<String, Pattern>()
+
+    private static final Set<Class> PROPERTY_CRITERIA = [
+        Query.Equals, Query.NotEquals, Query.IsNull, Query.IsNotNull, Query.In, Query.Between,
+        Query.GreaterThan, Query.GreaterThanEquals, Query.LessThan, Query.LessThanEquals,
+        Query.Like, Query.ILike, Query.RLike] as Set<Class>
+    private static final Set<Class> IDENTITY_CRITERIA = [Query.IdEquals, Query.Equals, Query.In] as Set<Class>
+    private static final Set<Class> JUNCTIONS = [Query.Conjunction, Query.Disjunction, Query.Negation] as Set<Class>
+
+    private final PersistentEntity entity
+    private final SimpleMapEntityPersister entityPersister
+    private final Map<String, Map> datastore
+    private final String family
+
+    SimpleMapQueryEvaluator(PersistentEntity entity, SimpleMapEntityPersister entityPersister,
+                            Map<String, Map> datastore, String family) {
+        this.entity = entity
+        this.entityPersister = entityPersister
+        this.datastore = datastore
+        this.family = family
+    }
+
+    /**
+     * Compiles the given regular expression, reusing the pattern compiled by an earlier query
+     *
+     * @param regex The regular expression
+     * @param flags The flags of {@link Pattern#compile(String, int)}
+     * @return The pattern
+     */
+    static Pattern compilePattern(String regex, int flags) {
+        String cacheKey = flags + ':' + regex
+        Pattern pattern = patternCache.get(cacheKey)
+        if (pattern == null) {
+            if (patternCache.size() >= MAX_CACHED_PATTERNS) {
+                patternCache.clear()
+            }
+            pattern = Pattern.compile(regex, flags)
+            patternCache.put(cacheKey, pattern)
+        }
+        pattern
+    }
+
+    /**
+     * @param junction The criteria of a query
+     * @return Whether all criteria can be evaluated
+     */
+    boolean supports(Query.Junction junction) {
+        if (!JUNCTIONS.contains(junction.getClass())) {
+            return false
+        }
+        for (Query.Criterion criterion in junction.criteria) {
+            if (criterion instanceof Query.Junction) {
+                if (!supports((Query.Junction) criterion)) {
+                    return false
+                }
+            }
+            else if (!supportsCriterion(criterion)) {
+                return false
+            }
+        }
+        true
+    }
+
+    /**
+     * Evaluates the given criteria, which must be {@link #supports(Query.Junction) supported}
+     *
+     * @param junction The criteria
+     * @return The keys of the matching entries
+     */
+    List<Object> evaluate(Query.Junction junction) {
+        List<Query.Criterion> criteria = junction.criteria
+        if (criteria.isEmpty()) {
+            return []
+        }
+        if (junction instanceof Query.Disjunction) {
+            Set<Object> union = new LinkedHashSet<Object>()
+            for (Query.Criterion criterion in criteria) {
+                union.addAll(evaluateCriterion(criterion))
+            }
+            return new ArrayList<Object>(union)
+        }
+        if (junction instanceof Query.Negation) {
+            Set<Object> excluded = new HashSet<Object>()
+            for (Query.Criterion criterion in criteria) {
+                excluded.addAll(evaluateCriterion(criterion))
+            }
+            return allKeysExcept(excluded)
+        }
+        evaluateConjunction(criteria)
+    }
+
+    /**
+     * Orders the given keys by the native values of the ordered properties and selects the requested page. With a
+     * maximum, only the entries up to the end of the page are kept in order, in a bounded heap.
+     *
+     * @param keys The keys
+     * @param orders The order to apply, the first one taking precedence
+     * @param offset The index of the first key to return
+     * @param max The maximum number of keys to return or -1 for all
+     * @return The keys of the page or null if the order can't be applied to the native entries
+     */
+    List<Object> selectPage(List<Object> keys, List<Query.Order> orders, int offset, int max) {
+        Map entries = datastore[family]
+        if (orders.isEmpty()) {
+            List<Object> existing = []
+            for (Object key in keys) {
+                if (entries.containsKey(key)) {
+                    existing << key
+                }
+            }
+            return page(existing, offset, max)
+        }
+
+        int orderCount = orders.size()
+        String[] names = new String[orderCount]
+        boolean[] descending = new boolean[orderCount]
+        for (int i = 0; i < orderCount; i++) {
+            Query.Order order = orders[i]
+            PersistentProperty property = propertyFor(order.getProperty())
+            if (property == null || !(property instanceof Simple || property.is(entity.identity))) {
+                return null
+            }
+            names[i] = property.is(entity.identity) ? null : MappingUtils.getTargetKey(property)
+            descending[i] = order.direction == Query.Order.Direction.DESC
+        }
+
+        Comparator<SortKey> comparator = new SortKeyComparator(descending)
+        long end = max < 0 ? Long.MAX_VALUE : (long) offset + max
+        boolean bounded = end < keys.size()
+        PriorityQueue<SortKey> top = bounded ? new PriorityQueue<SortKey>((int) end + 1, Collections.reverseOrder(comparator)) : null
+        List<SortKey> all = bounded ? null : new ArrayList<SortKey>(keys.size())
+
+        int position = 0
+        for (Object key in keys) {
+            SortKey sortKey = sortKeyFor(entries, key, names, position++)
+            if (sortKey == null) {
+                continue
+            }
+            if (!bounded) {
+                all << sortKey
+            }
+            else if (top.size() < end) {
+                top.add(sortKey)
+            }
+            else if (end > 0 && comparator.compare(sortKey, top.peek()) < 0) {
+                top.poll()
+                top.add(sortKey)
+            }
+        }
+
+        List<SortKey> sorted = bounded ? new ArrayList<SortKey>(top) : all
+        Collections.sort(sorted, comparator)
+        List<Object> sortedKeys = new ArrayList<Object>(sorted.size())
+        for (SortKey sortKey in sorted) {
+            sortedKeys << sortKey.key
+        }
+        page(sortedKeys, offset, max)
+    }
+
+    private boolean supportsCriterion(Query.Criterion criterion) {
+        if (!(criterion instanceof Query.PropertyNameCriterion)) {
+            return false
+        }
+        String name = ((Query.PropertyNameCriterion) criterion).getProperty()
+        if (name == null || name.contains('.')) {
+            return false
+        }
+        PersistentProperty property = propertyFor(name)
+        if (property == null) {
+            return false
+        }
+        if (property.is(entity.identity)) {
+            if (!IDENTITY_CRITERIA.contains(criterion.getClass())) {
+                return false
+            }
+        }
+        else if (!(property instanceof Simple) || !PROPERTY_CRITERIA.contains(criterion.getClass())) {
+            return false
+        }
+
+        if (criterion instanceof Query.In) {
+            Collection values = ((Query.In) criterion).values
+            return values != null && !values.any { it instanceof QueryableCriteria }
+        }
+        if (criterion instanceof Query.Between) {
+            Query.Between between = (Query.Between) criterion
+            return !(between.from instanceof QueryableCriteria) && !(between.to instanceof QueryableCriteria)
+        }
+        !(criterion instanceof Query.PropertyCriterion) || !(((Query.PropertyCriterion) criterion).value instanceof QueryableCriteria)
+    }
+
+    private List<Object> evaluateCriterion(Query.Criterion criterion) {
+        if (criterion instanceof Query.Junction) {
+            return evaluate((Query.Junction) criterion)
+        }
+        evaluateConjunction([criterion])
+    }
+
+    private List<Object> evaluateConjunction(List<Query.Criterion> criteria) {
+        List<List<Object>> candidates = []
+        Set<Object> excluded = null
+        List<EntryPredicate> filters = []
+        for (Query.Criterion criterion in criteria) {
+            if (criterion instanceof Query.Junction) {
+                candidates << evaluate((Query.Junction) criterion)
+                continue
+            }
+            List<Object> keys = lookup((Query.PropertyNameCriterion) criterion)
+            if (keys != null) {
+                candidates << keys
+                continue
+            }
+            List<Object> excludedKeys = lookupExcluded((Query.PropertyNameCriterion) criterion)
+            if (excludedKeys != null) {
+                if (excluded == null) {
+                    excluded = new HashSet<Object>()
+                }
+                excluded.addAll(excludedKeys)
+                continue
+            }
+            filters << predicateFor((Query.PropertyNameCriterion) criterion)
+        }
+
+        Map entries = datastore[family]
+        List<Object> result = []
+        if (candidates.isEmpty()) {
+            if (filters.isEmpty()) {
+                return allKeysExcept(excluded)
+            }
+            for (Object o in entries.entrySet()) {
+                Map.Entry entry = (Map.Entry) o
+                if ((excluded == null || !excluded.contains(entry.key)) && matchesAll(filters, (Map) entry.value)) {
+                    result << entry.key
+                }
+            }
+            return result
+        }
+
+        Collections.sort(candidates, new Comparator<List<Object>>() {
+            int compare(List<Object> a, List<Object> b) {
+                a.size() <=> b.size()
+            }
+        })
+        List<Set<Object>> others = []
+        for (int i = 1; i < candidates.size(); i++) {
+            others << (Set<Object>) new HashSet<Object>(candidates[i])
+        }
+        for (Object key in new LinkedHashSet<Object>(candidates[0])) {
+            if (excluded != null && excluded.contains(key)) {
+                continue
+            }
+            if (!containedInAll(others, key)) {
+                continue
+            }
+            if (!filters.isEmpty()) {
+                Map entry = (Map) entries.get(key)
+                if (entry == null || !matchesAll(filters, entry)) {
+                    continue
+                }
+            }
+            result << key
+        }
+        result
+    }
+
+    /**
+     * Looks up the keys of the entries matching the given criterion in an index
+     *
+     * @return The keys or null if no index can answer the criterion
+     */
+    private List<Object> lookup(Query.PropertyNameCriterion criterion) {
+        PersistentProperty property = propertyFor(criterion.getProperty())
+        boolean offHeap = entityPersister.isOffHeap()
+        OffHeapEntryMap entries = offHeap ? (OffHeapEntryMap) datastore[family] : null
+        Class type = criterion.getClass()
+
+        if (type == Query.IdEquals || type == Query.Equals || type == Query.IsNull) {
+            Object value = type == Query.IsNull ? null : ((Query.PropertyCriterion) criterion).value
+            return lookupEquals(property, entries, value)
+        }
+        if (type == Query.In) {
+            Set<Object> union = new LinkedHashSet<Object>()
+            for (Object value in ((Query.In) criterion).values) {
+                List<Object> keys = lookupEquals(property, entries, value)
+                if (keys == null) {
+                    return null
+                }
+                union.addAll(keys)
+            }
+            return new ArrayList<Object>(union)
+        }
+        if (!offHeap) {
+            return null
+        }
+
+        String name = MappingUtils.getTargetKey(property)
+        if (type == Query.Between) {
+            Query.Between between = (Query.Between) criterion
+            if (between.from == null || between.to == null) {
+                return null
+            }
+            return entries.findKeysInRange(name, between.from, true, between.to, true, false)
+        }
+        Object value = criterion instanceof Query.PropertyCriterion ? ((Query.PropertyCriterion) criterion).value : null
+        if (value == null) {
+            return null
+        }
+        if (type == Query.GreaterThan) {
+            return entries.findKeysInRange(name, value, false, null, false, false)
+        }
+        if (type == Query.GreaterThanEquals) {
+            return entries.findKeysInRange(name, value, true, null, false, false)
+        }
+        // null compares lower than any value
+        if (type == Query.LessThan) {
+            return entries.findKeysInRange(name, null, false, value, false, true)
+        }
+        if (type == Query.LessThanEquals) {
+            return entries.findKeysInRange(name, null, false, value, true, true)
+        }
+        null
+    }
+
+    private List<Object> lookupEquals(PersistentProperty property, OffHeapEntryMap entries, Object value) {
+        if (entries == null) {
+            return (List<Object>) entityPersister.getPropertyIndexer(property).query(value)
+        }
+        if (property.is(entity.identity)) {
+            Object key = value
+            if (key != null && !property.type.isInstance(key)) {
+                key = entityPersister.mappingContext.conversionService.convert(key, property.type)
+            }
+            return entries.containsKey(key) ? [key] : []
+        }
+        entries.findKeysEqualTo(MappingUtils.getTargetKey(property), value)
+    }
+
+    /**
+     * Looks up the keys of the entries not matching the given negated equality criterion in an index
+     *
+     * @return The keys or null if the criterion isn't a negated equality or no index can answer it
+     */
+    private List<Object> lookupExcluded(Query.PropertyNameCriterion criterion) {
+        Class type = criterion.getClass()
+        if (type != Query.NotEquals && type != Query.IsNotNull) {
+            return null
+        }
+        Object value = type == Query.IsNotNull ? null : ((Query.PropertyCriterion) criterion).value
+        OffHeapEntryMap entries = entityPersister.isOffHeap() ? (OffHeapEntryMap) datastore[family] : null
+        lookupEquals(propertyFor(criterion.getProperty()), entries, value)
+    }
+
+    private EntryPredicate predicateFor(Query.PropertyNameCriterion criterion) {
+        String name = MappingUtils.getTargetKey(propertyFor(criterion.getProperty()))
+        Class type = criterion.getClass()
+        // IsNull and IsNotNull aren't property criteria, they compare with null
+        Object value = criterion instanceof Query.PropertyCriterion ? ((Query.PropertyCriterion) criterion).getValue() : null
+
+        // compared by exact class, as ILike and RLike extend Like
+        if (type == Query.Equals || type == Query.IsNull) {
+            return new ComparisonPredicate(name, ComparisonPredicate.EQ, value)
+        }
+        if (type == Query.NotEquals || type == Query.IsNotNull) {
+            return new ComparisonPredicate(name, ComparisonPredicate.NE, value)
+        }
+        if (type == Query.GreaterThan) {
+            return new ComparisonPredicate(name, ComparisonPredicate.GT, value)
+        }
+        if (type == Query.GreaterThanEquals) {
+            return new ComparisonPredicate(name, ComparisonPredicate.GE, value)
+        }
+        if (type == Query.LessThan) {
+            return new ComparisonPredicate(name, ComparisonPredicate.LT, value)
+        }
+        if (type == Query.LessThanEquals) {
+            return new ComparisonPredicate(name, ComparisonPredicate.LE, value)
+        }
+        if (type == Query.Between) {
+            Query.Between between = (Query.Between) criterion
+            return new BetweenPredicate(name, between.getFrom(), between.getTo())
+        }
+        if (type == Query.In) {
+            return new InPredicate(name, ((Query.In) criterion).getValues())
+        }
+        if (type == Query.Like) {
+            return new PatternPredicate(name, compilePattern(((Query.Like) criterion).getPattern().replaceAll('%', '.*?'), 0))
+        }
+        if (type == Query.ILike) {
+            return new PatternPredicate(name, compilePattern(((Query.Like) criterion).getPattern().replaceAll('%', '.*?'), Pattern.CASE_INSENSITIVE))
+        }
+        if (type == Query.RLike) {
+            return new PatternPredicate(name, compilePattern(((Query.Like) criterion).getPattern(), 0))
+        }
+        throw new IllegalStateException("Unsupported criterion " + criterion)
+    }
+
+    private static boolean containedInAll(List<Set<Object>> keySets, Object key) {
+        for (Set<Object> keys in keySets) {
+            if (!keys.contains(key)) {
+                return false
+            }
+        }
+        true
+    }
+
+    private static boolean matchesAll(List<EntryPredicate> filters, Map entry) {
+        for (EntryPredicate filter in filters) {
+            if (!filter.matches(entry)) {
+                return false
+            }
+        }
+        true
+    }
+
+    private List<Object> allKeysExcept(Set<Object> excluded) {
+        List<Object> keys = []
+        for (Object key in datastore[family].keySet()) {
+            if (excluded == null || !excluded.contains(key)) {
+                keys << key
+            }
+        }
+        keys
+    }
+
+    private SortKey sortKeyFor(Map entries, Object key, String[] names, int position) {
+        Object[] values = new Object[names.length]
+        if (entries instanceof OffHeapEntryMap) {
+            OffHeapEntryMap offHeap = (OffHeapEntryMap) entries
+            if (!offHeap.containsKey(key)) {
+                return null
+            }
+            for (int i = 0; i < names.length; i++) {
+                values[i] = names[i] == null ? key : offHeap.getProperty(key, names[i])
+            }
+        }
+        else {
+            Map entry = (Map) entries.get(key)
+            if (entry == null) {
+                return null
+            }
+            for (int i = 0; i < names.length; i++) {
+                values[i] = names[i] == null ? key : entry.get(names[i])
+            }
+        }
+        new SortKey(key, values, position)
+    }
+
+    private static List<Object> page(List<Object> keys, int offset, int max) {
+        int from = Math.max(offset, 0)
+        if (from >= keys.size()) {
+            return []
+        }
+        int to = max < 0 ? keys.size() : (int) Math.min((long) from + max, (long) keys.size())
+        keys.subList(from, to)
+    }
+
+    private PersistentProperty propertyFor(String name) {
+        PersistentProperty property = entity.getPropertyByName(name)
+        if (property == null && entity.identity?.name == name) {
+            property = entity.identity
+        }
+        property
+    }
+
+    /**
+     * A criterion checked against a native entry
+     */
+    private static abstract class EntryPredicate {
+        abstract boolean matches(Map entry)
+    }
+
+    private static class ComparisonPredicate extends EntryPredicate {
+        static final int EQ = 0
+        static final int NE = 1
+        static final int GT = 2
+        static final int GE = 3
+        static final int LT = 4
+        static final int LE = 5
+
+        private final String name
+        private final int operator
+        private final Object value
+
+        ComparisonPredicate(String name, int operator, Object value) {
+            this.name = name
+            this.operator = operator
+            this.value = value
+        }
+
+        boolean matches(Map entry) {
+            Object current = entry.get(name)
+            switch (operator) {
+                case EQ: return ScriptBytecodeAdapter.compareEqual(current, value)
+                case NE: return !ScriptBytecodeAdapter.compareEqual(current, value)
+                case GT: return ScriptBytecodeAdapter.compareGreaterThan(current, value)
+                case GE: return ScriptBytecodeAdapter.compareGreaterThanEqual(current, value)
+                case LT: return ScriptBytecodeAdapter.compareLessThan(current, value)
+                default: return ScriptBytecodeAdapter.compareLessThanEqual(current, value)
+            }
+        }
+    }
+
+    private static class BetweenPredicate extends EntryPredicate {
+        private final String name
+        private final Object from
+        private final Object to
+
+        BetweenPredicate(String name, Object from, Object to) {
+            this.name = name
+            this.from = from
+            this.to = to
+        }
+
+        boolean matches(Map entry) {
+            Object current = entry.get(name)
+            ScriptBytecodeAdapter.compareGreaterThanEqual(current, from) && ScriptBytecodeAdapter.compareLessThanEqual(current, to)
+        }
+    }
+
+    private static class InPredicate extends EntryPredicate {
+        private final String name
+        private final Collection values
+
+        InPredicate(String name, Collection values) {
+            this.name = name
+            this.values = values
+        }
+
+        boolean matches(Map entry) {
+            Object current = entry.get(name)
+            for (Object value in values) {
+                if (ScriptBytecodeAdapter.compareEqual(current, value)) {
+                    return true
+                }
+            }
+            false
+        }
+    }
+
+    private static class PatternPredicate extends EntryPredicate {
+        private final String name
+        private final Pattern pattern
+
+        PatternPredicate(String name, Pattern pattern) {
+            this.name = name
+            this.pattern = pattern
+        }
+
+        boolean matches(Map entry) {
+            Object current = entry.get(name)
+            current != null && pattern.matcher(current.toString()).matches()
+        }
+    }
+
+    private static class SortKey {
+        final Object key
+        final Object[] values
+        final int position
+
+        SortKey(Object key, Object[] values, int position) {
+            this.key = key
+            this.values = values
+            this.position = position
+        }
+    }
+
+    /**
+     * Compares the values of the ordered properties like the <code>&lt;=&gt;</code> operator, keeping the
+     * original order of entries with equal values
+     */
+    private static class SortKeyComparator implements Comparator<SortKey> {
+        private final boolean[] descending
+
+        SortKeyComparator(boolean[] descending) {
+            this.descending = descending
+        }
+
+        int compare(SortKey a, SortKey b) {
+            for (int i = 0; i < descending.length; i++) {
+                int cmp = ScriptBytecodeAdapter.compareTo(a.values[i], b.values[i])
+                if (cmp != 0) {
+                    return descending[i] ? -cmp : cmp
+                }
+            }
+            a.position <=> b.position
+        }
+    }
+}
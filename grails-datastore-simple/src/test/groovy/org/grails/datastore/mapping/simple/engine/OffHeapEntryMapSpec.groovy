@@ -0,0 +1,184 @@
+package org.grails.datastore.mapping.simple.engine
+
+import spock.lang.Specification
+
+/**
+ * Tests for the off-heap storage of the simple map datastore
+ */
+class OffHeapEntryMapSpec extends Specification {
+
+    // the byte counts are read with getters, properties of a map resolve to its entries
+    OffHeapEntryMap map = new OffHeapEntryMap(['name', 'age'], 1024 * 1024, null, getClass().classLoader)
+
+    void cleanup() {
+        map.close()
+    }
+
+    void "Test put, get and remove entries"() {
+        when:"Entries are put"
+            map.put(1L, [name: 'Bob', age: 40])
+            map.put(2L, [name: 'Fred', age: 30])
+
+        then:"They can be read"
+            map.size() == 2
+            map.get(1L) == [name: 'Bob', age: 40]
+            map.get(2L) == [name: 'Fred', age: 30]
+            map.getProperty(2L, 'name') == 'Fred'
+            map.keySet() as List == [1L, 2L]
+
+        when:"An entry is replaced and another removed"
+            map.put(1L, [name: 'Bob', age: 41])
+            map.remove(2L)
+
+        then:"The changes are visible"
+            map.size() == 1
+            map.get(1L) == [name: 'Bob', age: 41]
+            map.get(2L) == null
+            !map.containsKey(2L)
+    }
+
+    void "Test entries with object keys"() {
+        when:"Entries with numeric and string keys are put"
+            map.put(1L, [name: 'Bob'])
+            map.put('two', [name: 'Fred'])
+
+        then:"Both can be read"
+            map.get(1L) == [name: 'Bob']
+            map.get('two') == [name: 'Fred']
+            map.keySet() as List == [1L, 'two']
+    }
+
+    void "Test index lookup"() {
+        given:"Some entries"
+            map.put(1L, [name: 'Bob', age: 40])
+            map.put(2L, [name: 'Fred', age: 30])
+            map.put(3L, [name: 'Bob', age: 20])
+
+        expect:"Indexed properties are looked up"
+            map.findKeysEqualTo('name', 'Bob') == [1L, 3L]
+            map.findKeysEqualTo('name', 'Joe') == []
+            map.findKeysInRange('age', 25, true, 40, false, false) == [2L]
+            map.findKeysEqualTo('other', 'Bob') == null
+
+        when:"An entry is changed"
+            map.put(3L, [name: 'Joe', age: 20])
+
+        then:"The index is updated"
+            map.findKeysEqualTo('name', 'Bob') == [1L]
+            map.findKeysEqualTo('name', 'Joe') == [3L]
+    }
+
+    void "Test index lookup finds the values Groovy considers equal"() {
+        given:"Entries with numbers of different types and scales"
+            map.put(1L, [name: 'Bob', age: 1.0G])
+            map.put(2L, [name: 'Fred', age: 1.50G])
+            map.put(3L, [name: 'Joe', age: 2])
+            map.put(4L, [name: 'Bob', age: null])
+
+        expect:"Each lookup finds the entries a scan comparing with == finds"
+            [1, 1L, 1.00G, 1.0d, 1.0f, 1G].every { map.findKeysEqualTo('age', it) == [1L] }
+            [1.5G, 1.500G, 1.5d].every { map.findKeysEqualTo('age', it) == [2L] }
+            [2.0G, 2.0d, (short) 2].every { map.findKeysEqualTo('age', it) == [3L] }
+            map.findKeysEqualTo('age', 1.25G) == []
+            map.findKeysEqualTo('age', null) == [4L]
+            map.findKeysEqualTo('name', 'Bob') == [1L, 4L]
+            map.findKeysEqualTo('name', "${'Fred'}") == [2L]
+
+        when:"An entry is changed to a value with a fraction"
+            map.put(3L, [name: 'Joe', age: 2.25G])
+
+        then:"Ranges over the integral and decimal values compare numerically"
+            map.findKeysInRange('age', 1, true, 2, true, false) == [1L, 2L]
+            map.findKeysInRange('age', 1.0d, false, null, false, false) == [2L, 3L]
+            map.findKeysInRange('age', null, false, 1.5d, true, true) == [1L, 2L, 4L]
+            map.findKeysInRange('age', 1.2G, true, 2.3G, false, false) == [2L, 3L]
+
+        when:"An entry is removed with a value of another type"
+            map.remove(2L)
+            map.put(1L, [name: 'Bob', age: 3])
+
+        then:"The index no longer holds it"
+            map.findKeysEqualTo('age', 1.5d) == []
+            map.findKeysEqualTo('age', 1) == []
+            map.findKeysEqualTo('age', 3.0G) == [1L]
+    }
+
+    void "Test storage starts small and grows"() {
+        when:"An entry is put"
+            map.put(1L, [name: 'Bob', age: 40])
+
+        then:"Only the initial segment is allocated"
+            map.getAllocatedBytes() == OffHeapRecordStore.DEFAULT_INITIAL_SEGMENT_SIZE
+
+        when:"More entries are put than fit into it"
+            (2L..5000L).each { map.put(it, [name: "Name $it".toString(), age: 20]) }
+
+        then:"Larger segments are allocated"
+            map.getAllocatedBytes() > OffHeapRecordStore.DEFAULT_INITIAL_SEGMENT_SIZE
+            map.getAllocatedBytes() < 1024 * 1024
+            map.get(4000L).name == 'Name 4000'
+    }
+
+    void "Test compaction"() {
+        given:"Many entries"
+            (1L..5000L).each { map.put(it, [name: "Name $it".toString(), age: (it % 50) as Integer]) }
+            long allocated = map.getAllocatedBytes()
+
+        when:"Most are removed and the rest replaced"
+            (1L..4500L).each { map.remove(it) }
+            (4501L..5000L).each { map.put(it, [name: "New $it".toString(), age: 1]) }
+
+        then:"The storage is compacted and the entries and indices are intact"
+            map.size() == 500
+            map.getAllocatedBytes() < allocated
+            map.get(4501L) == [name: 'New 4501', age: 1]
+            map.get(100L) == null
+            map.findKeysEqualTo('name', 'New 4999') == [4999L]
+            map.findKeysEqualTo('age', 1).size() == 500
+            map.keySet() as List == (4501L..5000L) as List
+    }
+
+    void "Test reopen after close"() {
+        given:"An entry"
+            map.put(1L, [name: 'Bob', age: 40])
+
+        when:"The map is closed"
+            map.close()
+
+        then:"The storage is freed and the map is empty"
+            map.size() == 0
+            map.getAllocatedBytes() == 0
+            map.get(1L) == null
+            map.findKeysEqualTo('name', 'Bob') == []
+
+        when:"Entries are put again"
+            map.put(2L, [name: 'Fred', age: 30])
+
+        then:"They are stored"
+            map.get(2L) == [name: 'Fred', age: 30]
+            map.findKeysEqualTo('name', 'Fred') == [2L]
+    }
+
+    void "Test mapped files"() {
+        given:"A map stored in files"
+            File directory = File.createTempFile('offheap', 'test')
+            directory.delete()
+            def fileMap = new OffHeapEntryMap(['name'], 1024 * 1024, directory, getClass().classLoader)
+
+        when:"An entry is put"
+            fileMap.put(1L, [name: 'Bob'])
+
+        then:"It is stored in a file"
+            fileMap.get(1L) == [name: 'Bob']
+            directory.listFiles().size() == 1
+
+        when:"The map is closed"
+            fileMap.close()
+
+        then:"The file is deleted"
+            directory.listFiles().size() == 0
+
+        cleanup:
+            directory.deleteDir()
+    }
+}
@@ -0,0 +1,85 @@
+package org.grails.datastore.mapping.simple.engine
+
+import spock.lang.Specification
+
+/**
+ * Tests for the store of off-heap records
+ */
+class OffHeapRecordStoreSpec extends Specification {
+
+    OffHeapRecordStore store = new OffHeapRecordStore(16, 64, null)
+
+    void cleanup() {
+        store.close()
+    }
+
+    void "Test segments double in size up to the maximum"() {
+        when:"Records are written"
+            List<Long> addresses = (1..20).collect { write("record$it") }
+
+        then:"Segments grow from the initial to the maximum size"
+            store.segmentCount > 3
+            store.allocatedBytes == (0..<store.segmentCount).sum { Math.min(16 << it, 64) }
+            (0..<20).every { read(addresses[it]) == "record${it + 1}" }
+    }
+
+    void "Test a record larger than the segment size"() {
+        when:"A large record is written"
+            String value = 'x' * 100
+            long address = write(value)
+
+        then:"It gets a segment of its own"
+            read(address) == value
+            store.liveBytes == 104
+    }
+
+    void "Test free and release segments"() {
+        given:"Records in several segments"
+            long first = write('first')
+            (1..10).each { write("record$it") }
+            long allocated = store.allocatedBytes
+
+        when:"A record is freed"
+            store.free(first)
+
+        then:"It is counted as garbage"
+            store.garbageBytes == 9
+
+        when:"The first segment is released"
+            store.releaseSegment(OffHeapRecordStore.segmentOf(first))
+
+        then:"Its memory is given back"
+            store.allocatedBytes == allocated - 16
+    }
+
+    void "Test writing after close"() {
+        given:"A record"
+            write('first')
+
+        when:"The store is closed"
+            store.close()
+
+        then:"It is empty"
+            store.allocatedBytes == 0
+            store.segmentCount == 0
+
+        when:"A record is written"
+            long address = write('second')
+
+        then:"It starts over with the initial segment size"
+            read(address) == 'second'
+            store.allocatedBytes == 16
+    }
+
+    private long write(String value) {
+        byte[] bytes = value.getBytes('UTF-8')
+        store.write(bytes, bytes.length)
+    }
+
+    private String read(long address) {
+        def buffer = store.read(address)
+        byte[] bytes = new byte[buffer.remaining()]
+        buffer.get(bytes)
+        new String(bytes, 'UTF-8')
+    }
+}
@@ -0,0 +1,117 @@
+package org.grails.datastore.mapping.simple.query
+
+import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValueMappingContext
+import org.grails.datastore.mapping.query.Query
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Tests the ordering and pagination of the native entries of the simple map datastore
+ */
+class SimpleMapQueryEvaluatorSpec extends Specification {
+
+    static final String FAMILY = 'ranked'
+
+    Map<Long, Map> entries = [
+        1L: [name: 'Bob', score: 10, rank: 2],
+        2L: [name: 'Fred', score: 20, rank: 1],
+        3L: [name: 'Joe', score: 10, rank: 1],
+        4L: [name: 'Ann', score: null, rank: 3],
+        5L: [name: 'Bob', score: 20, rank: null],
+        6L: [name: null, score: 10, rank: 2],
+        7L: [name: 'Eve', score: 30, rank: 1]]
+    SimpleMapQueryEvaluator evaluator = createEvaluator([(FAMILY): entries])
+
+    @Unroll
+    void "Test ordering by score #scoreDirection then name #nameDirection with offset #offset and max #max"() {
+        given:"An order by two properties"
+            def orders = [order('score', scoreDirection), order('name', nameDirection)]
+
+        when:"A page is selected"
+            def page = evaluator.selectPage(entries.keySet() as List, orders, offset, max)
+
+        then:"It is the page of the entries sorted by the Groovy operators, the keys in their original order on ties"
+            page == expectedPage(orders, offset, max)
+
+        where:
+            [scoreDirection, nameDirection, offset, max] << [
+                ['asc', 'desc'], ['asc', 'desc'], [0, 2, 5, 7, 10], [-1, 0, 1, 3, 7, 20]].combinations()
+    }
+
+    @Unroll
+    void "Test ordering by rank and the identifier with offset #offset and max #max"() {
+        given:"An order by a property with ties and the identifier"
+            def orders = [order('rank', 'desc'), order('id', 'asc')]
+
+        expect:"Null values compare lower than all others, as with the <=> operator"
+            evaluator.selectPage(entries.keySet() as List, orders, offset, max) == expected
+
+        where:
+            offset | max | expected
+            0      | -1  | [4L, 1L, 6L, 2L, 3L, 7L, 5L]
+            0      | 3   | [4L, 1L, 6L]
+            2      | 3   | [6L, 2L, 3L]
+            6      | 3   | [5L]
+            7      | 3   | []
+    }
+
+    void "Test null values of a single ordered property"() {
+        expect:"They are first in ascending and last in descending order"
+            evaluator.selectPage(entries.keySet() as List, [order('name', 'asc')], 0, 2) == [6L, 4L]
+            evaluator.selectPage(entries.keySet() as List, [order('name', 'desc')], 5, 2) == [4L, 6L]
+            evaluator.selectPage(entries.keySet() as List, [order('score', 'desc')], 0, -1) == [7L, 2L, 5L, 1L, 3L, 6L, 4L]
+    }
+
+    @Unroll
+    void "Test keys without an entry are skipped before the page is cut with order #orders"() {
+        given:"Keys including some without an entry"
+            def keys = [8L, 1L, 2L, 9L, 3L, 7L]
+
+        expect:"The page is full"
+            evaluator.selectPage(keys, orders.collect { order(it, 'asc') }, 1, 2) == expected
+
+        where:
+            orders            | expected
+            []                | [2L, 3L]
+            ['score', 'name'] | [3L, 2L]
+    }
+
+    void "Test orders that can't be applied to the native entries"() {
+        expect:"No page for properties that don't exist"
+            evaluator.selectPage(entries.keySet() as List, [order('other', 'asc')], 0, 2) == null
+    }
+
+    private List expectedPage(List<Query.Order> orders, int offset, int max) {
+        def sorted = entries.keySet().sort(false) { Long a, Long b ->
+            for (Query.Order o in orders) {
+                int cmp = entries[a][o.property] <=> entries[b][o.property]
+                if (cmp) {
+                    return o.direction == Query.Order.Direction.DESC ? -cmp : cmp
+                }
+            }
+            a <=> b
+        }
+        if (offset >= sorted.size()) {
+            return []
+        }
+        sorted.subList(offset, max < 0 ? sorted.size() : Math.min(offset + max, sorted.size()))
+    }
+
+    private static Query.Order order(String property, String direction) {
+        direction == 'desc' ? Query.Order.desc(property) : Query.Order.asc(property)
+    }
+
+    private static SimpleMapQueryEvaluator createEvaluator(Map<String, Map> datastore) {
+        def context = new KeyValueMappingContext('test')
+        def entity = context.addPersistentEntity(Ranked)
+        new SimpleMapQueryEvaluator(entity, null, datastore, FAMILY)
+    }
+}
+
+class Ranked {
+    Long id
+    String name
+    Integer score
+    Integer rank
+}
@@ -19,6 +19,10 @@ import static org.grails.datastore.mapping.config.utils.ConfigUtils.read;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.grails.datastore.mapping.cache.TPCacheAdapterRepository;
 import org.grails.datastore.mapping.core.AbstractDatastore;
@@ -57,6 +61,8 @@ public class SimpleDBDatastore extends AbstractDatastore implements Initializing
     public static final String ENDPOINT = "endpoint"; //optional, if specified will be used to explicitly set AWS endpoint. See http://docs.aws.amazon.com/general/latest/gr/rande.html#sdb_region
     public static final String DOMAIN_PREFIX_KEY = "domainNamePrefix";
     public static final String DELAY_AFTER_WRITES_MS = "delayAfterWritesMS"; //used for testing - to fight eventual consistency if this flag value is 'true' it will add specified pause after writes
+    public static final String PREFETCH_THREADS = "prefetchThreads"; //optional, the maximum number of threads fetching the next page of select results in the background, 0 disables prefetching
+    public static final int DEFAULT_PREFETCH_THREADS = 4;
 
 //    private Map<PersistentEntity, SimpleDBTemplate> simpleDBTemplates = new ConcurrentHashMap<PersistentEntity, SimpleDBTemplate>();
     private SimpleDBTemplate simpleDBTemplate;  //currently there is no need to create template per entity, we can share same instance
@@ -65,6 +71,7 @@ public class SimpleDBDatastore extends AbstractDatastore implements Initializing
     protected Map<PersistentEntity, SimpleDBIdGenerator> entityIdGeneratorMap = new HashMap<PersistentEntity, SimpleDBIdGenerator>();
 
     private String domainNamePrefix;
+    private ThreadPoolExecutor prefetchExecutor;
 
     public SimpleDBDatastore() {
         this(new SimpleDBMappingContext(), Collections.<String, String>emptyMap(), null, null);
@@ -135,12 +142,44 @@ public class SimpleDBDatastore extends AbstractDatastore implements Initializing
         String delayAfterWrite = read(String.class, DELAY_AFTER_WRITES_MS, connectionDetails, null);
         String endpoint = read(String.class, ENDPOINT, connectionDetails, null);
 
-        simpleDBTemplate = new SimpleDBTemplateImpl(accessKey, secretKey, endpoint);
+        SimpleDBTemplateImpl template = new SimpleDBTemplateImpl(accessKey, secretKey, endpoint);
+        template.setPrefetchExecutor(createPrefetchExecutor());
+        simpleDBTemplate = template;
         if (delayAfterWrite != null && !"".equals(delayAfterWrite)) {
             simpleDBTemplate = new DelayAfterWriteSimpleDBTemplateDecorator(simpleDBTemplate, Integer.parseInt(delayAfterWrite));
         }
     }
 
+    /**
+     * Creates the executor fetching the next page of select results in the background. It runs at most
+     * {@link #PREFETCH_THREADS} fetches at a time and rejects further ones, which are then fetched when needed.
+     *
+     * @return The executor or null if prefetching is disabled
+     */
+    protected ThreadPoolExecutor createPrefetchExecutor() {
+        int threads = read(Integer.class, PREFETCH_THREADS, connectionDetails, DEFAULT_PREFETCH_THREADS);
+        if (threads < 1) {
+            return null;
+        }
+        prefetchExecutor = new ThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "simpledb-select-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        return prefetchExecutor;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        super.destroy();
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
     /**
      * If specified, returns domain name prefix so that same AWS account can be used for more than one environment (DEV/TEST/PROD etc).
      * @return null if name was not specified in the configuration
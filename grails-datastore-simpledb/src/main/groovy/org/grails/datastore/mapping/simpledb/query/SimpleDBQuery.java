@@ -14,9 +14,12 @@
  */
 package org.grails.datastore.mapping.simpledb.query;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +54,10 @@ public class SimpleDBQuery extends Query {
 
     protected static Map<Class, QueryHandler> queryHandlers = new HashMap<Class, QueryHandler>();
     protected static final String ITEM_NAME = "itemName()";
+    /**
+     * The maximum LIMIT allowed by AWS, which effectively is the page size of a select.
+     */
+    protected static final int MAX_PAGE_SIZE = 2500;
 
     static{
         queryHandlers.put(Equals.class, new QueryHandler<Equals>() {
@@ -217,32 +224,38 @@ public class SimpleDBQuery extends Query {
             query.append(" ORDER BY ").append(SimpleDBUtil.quoteName(key)).append(" ").append(orderBy.getDirection());
         }
 
-        //specify the limit on the returned results
-        int limit = max < 0 ? 2500 : max; //if user did not explicitly limit maxResults, use the maximum limit allowed dy AWS (if not specified explicitly it will use 100 limit)
+        List<Object> results = new LinkedList<Object>();
+        if (hasCountProjection) {
+            //count(*) is summed over all pages returned by AWS, a LIMIT would cap the count of each page
+            int count = simpleDBTemplate.count(query.toString());
+            results.add(max < 0 ? count : Math.min(count, max));
+            return results;
+        }
+
+        //specify the page size. If user did not explicitly limit maxResults, use the maximum limit allowed by AWS
+        //(if not specified explicitly it will use 100 limit); further pages are followed using NextToken
+        int limit = max < 0 ? MAX_PAGE_SIZE : Math.min(max, MAX_PAGE_SIZE);
         query.append(" LIMIT ").append(limit);
 
-        List<Item> items = simpleDBTemplate.query(query.toString(), max < 0 ? Integer.MAX_VALUE : max);
-        List<Object> results = new LinkedList<Object>();
+        Iterator<Item> items = simpleDBTemplate.queryIterator(query.toString(), max < 0 ? Integer.MAX_VALUE : max);
         if (projectionList.isEmpty()) {
-            for (Item item : items) {
-                results.add(createObjectFromItem(item));
-            }
-        } else {
-            if (hasCountProjection) { //count (*) is returned by AWS in a special way...
-                int count = Integer.parseInt(items.get(0).getAttributes().get(0).getValue());
-                results.add(count);
-            } else {
-                for (Projection projection : projectionList) {
-                    if (IdProjection.class.equals(projection.getClass())) {
-                        for (Item item : items) {
-                            results.add(item.getName());
-                        }
-                    } else if (PropertyProjection.class.equals(projection.getClass())) {
-                        for (Item item : items) {
-                            String key = extractPropertyKey(((PropertyProjection) projection).getPropertyName(), entity);
-                            results.addAll(SimpleDBUtil.collectAttributeValues(item, key));
-                        }
-                    }
+            //entities are created lazily as the pages arrive
+            return new SimpleDBResultList(items, this);
+        }
+
+        List<Item> projectedItems = new LinkedList<Item>();
+        while (items.hasNext()) {
+            projectedItems.add(items.next());
+        }
+        for (Projection projection : projectionList) {
+            if (IdProjection.class.equals(projection.getClass())) {
+                for (Item item : projectedItems) {
+                    results.add(item.getName());
+                }
+            } else if (PropertyProjection.class.equals(projection.getClass())) {
+                for (Item item : projectedItems) {
+                    String key = extractPropertyKey(((PropertyProjection) projection).getPropertyName(), entity);
+                    results.addAll(SimpleDBUtil.collectAttributeValues(item, key));
                 }
             }
         }
@@ -360,6 +373,65 @@ public class SimpleDBQuery extends Query {
                 new SimpleDBNativeItem(item));
     }
 
+    /**
+     * A list of query results backed by the pages of a select. Pages are fetched as the list is
+     * consumed and items are converted to entities on first access; asking for the size reads all pages.
+     */
+    public static class SimpleDBResultList extends AbstractList {
+
+        private Iterator<Item> items;
+        private SimpleDBQuery query;
+        private List<Object> initializedObjects = new ArrayList<Object>();
+
+        public SimpleDBResultList(Iterator<Item> items, SimpleDBQuery query) {
+            this.items = items;
+            this.query = query;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (!initializeTo(index)) {
+                throw new IndexOutOfBoundsException("Cannot retrieve element at index " + index + " for result size " + size());
+            }
+            return initializedObjects.get(index);
+        }
+
+        @Override
+        public int size() {
+            initializeTo(Integer.MAX_VALUE - 1);
+            return initializedObjects.size();
+        }
+
+        @Override
+        public Iterator iterator() {
+            return new Iterator() {
+                private int index;
+
+                public boolean hasNext() {
+                    return initializeTo(index);
+                }
+
+                public Object next() {
+                    return get(index++);
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException("Method remove() not supported by SimpleDBResultList iterator");
+                }
+            };
+        }
+
+        /**
+         * @return whether the element at the given index exists
+         */
+        private boolean initializeTo(int index) {
+            while (initializedObjects.size() <= index && items.hasNext()) {
+                initializedObjects.add(query.createObjectFromItem(items.next()));
+            }
+            return initializedObjects.size() > index;
+        }
+    }
+
     protected static interface QueryHandler<T> {
         public void handle(PersistentEntity entity, T criterion, StringBuilder clause);
     }
@@ -14,6 +14,7 @@
  */
 package org.grails.datastore.mapping.simpledb.util;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.grails.datastore.mapping.model.PersistentEntity;
@@ -95,6 +96,14 @@ public class DelayAfterWriteSimpleDBTemplateDecorator implements SimpleDBTemplat
         return template.query(query, max);
     }
 
+    public Iterator<Item> queryIterator(String query, int max) throws DataAccessException {
+        return template.queryIterator(query, max);
+    }
+
+    public int count(String query) throws DataAccessException {
+        return template.count(query);
+    }
+
     private void pause() {
         try { Thread.sleep(delayMillis); } catch (InterruptedException e) { /* ignored */ }
     }
@@ -14,6 +14,7 @@
  */
 package org.grails.datastore.mapping.simpledb.util;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.grails.datastore.mapping.model.PersistentEntity;
@@ -117,6 +118,29 @@ public interface SimpleDBTemplate {
      */
     List<Item> query(String query, int max) throws DataAccessException;
 
+    /**
+     * Same as query, but the pages are fetched lazily as the returned iterator is
+     * consumed: the next page (as identified by NextToken) is requested in the background
+     * while the current one is being consumed, and items are returned in the order AWS returns them.
+     *
+     * @param query
+     * @param max maximum amount of items to return (inclusive)
+     * @return
+     * @throws DataAccessException
+     */
+    Iterator<Item> queryIterator(String query, int max) throws DataAccessException;
+
+    /**
+     * Executes a 'select count(*)' query. AWS may split the count over several pages
+     * (for example when the count does not complete within the request timeout), so the
+     * counts of all pages are summed without fetching any items.
+     *
+     * @param query 'select count(*)' query
+     * @return total count
+     * @throws DataAccessException
+     */
+    int count(String query) throws DataAccessException;
+
     void deleteDomain(String domainName) throws DataAccessException;
 
     void createDomain(String domainName) throws DataAccessException;
@@ -14,12 +14,20 @@
  */
 package org.grails.datastore.mapping.simpledb.util;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.grails.datastore.mapping.core.OptimisticLockingException;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -50,6 +58,7 @@ import com.amazonaws.services.simpledb.model.UpdateCondition;
 public class SimpleDBTemplateImpl implements SimpleDBTemplate {
 
     private AmazonSimpleDB sdb;
+    private volatile Executor prefetchExecutor;
 
     public SimpleDBTemplateImpl(AmazonSimpleDB sdb) {
         this.sdb = sdb;
@@ -72,6 +81,21 @@ public class SimpleDBTemplateImpl implements SimpleDBTemplate {
         }
     }
 
+    /**
+     * Sets the executor fetching the next page of select results while the current one is consumed, see
+     * {@link PrefetchingSelectIterator}. If null, which is the default, or if the executor rejects a fetch, the
+     * next page is fetched once it is needed. The executor is owned by the caller, who has to shut it down.
+     *
+     * @param prefetchExecutor The executor
+     */
+    public void setPrefetchExecutor(Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    public Executor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
     public Item get(String domainName, String id) {
         return getInternal(domainName, id, 1);
     }
@@ -247,15 +271,13 @@ public class SimpleDBTemplateImpl implements SimpleDBTemplate {
 
     public boolean deleteAllItems(String domainName) throws DataAccessException {
         //determine the count currently - if it is small delete items individually, otherwise just drop/create domain
-        SelectRequest countRequest = new SelectRequest("select count(*) from `"+domainName+"`");
-        List<Item> items = sdb.select(countRequest).getItems();
-        int count = Integer.parseInt(items.get(0).getAttributes().get(0).getValue());
+        int count = count("select count(*) from `"+domainName+"`");
         if (count >= 2500) {
             deleteDomain(domainName);
             createDomain(domainName);
         } else {
             SelectRequest selectRequest = new SelectRequest("select itemName() from `"+domainName+"` limit 2500");
-            items = sdb.select(selectRequest).getItems();
+            List<Item> items = sdb.select(selectRequest).getItems();
 
             for (Item item : items) {
                 deleteItem(domainName, item.getName());
@@ -265,39 +287,43 @@ public class SimpleDBTemplateImpl implements SimpleDBTemplate {
     }
 
     public List<Item> query(String query, int max) {
-        return queryInternal(query, max, 1);
-    }
-    private List<Item> queryInternal(String query, int max, int attempt) {
         LinkedList<Item> items = new LinkedList<Item>();
-        try {
-            SelectRequest selectRequest = new SelectRequest(query);
-            SelectResult result = sdb.select(selectRequest);
-            items.addAll(result.getItems());
+        for (Iterator<Item> iterator = queryIterator(query, max); iterator.hasNext();) {
+            items.add(iterator.next());
+        }
+        return items;
+    }
 
-            String nextToken = null;
-            do {
-                nextToken = result.getNextToken();
-                if (nextToken != null) {
-                    selectRequest = new SelectRequest(query).withNextToken(nextToken);
-                    result = sdb.select(selectRequest);
-                    items.addAll(result.getItems());
-                }
-            } while (nextToken != null && items.size() < max);
+    public Iterator<Item> queryIterator(String query, int max) {
+        return new PrefetchingSelectIterator(query, max);
+    }
 
-            //truncate if needed
-            while (items.size() > max) {
-                items.removeLast();
+    public int count(String query) {
+        int count = 0;
+        SelectRequest selectRequest = new SelectRequest(query);
+        while (true) {
+            SelectResult result = select(selectRequest, 1);
+            for (Item item : result.getItems()) {
+                count += Integer.parseInt(item.getAttributes().get(0).getValue());
             }
+            if (result.getNextToken() == null) {
+                return count;
+            }
+            selectRequest = new SelectRequest(query).withNextToken(result.getNextToken());
+        }
+    }
 
-            return items;
+    private SelectResult select(SelectRequest selectRequest, int attempt) {
+        try {
+            return sdb.select(selectRequest);
         } catch (AmazonServiceException e) {
             if (SimpleDBUtil.AWS_ERR_CODE_NO_SUCH_DOMAIN.equals(e.getErrorCode())) {
-                throw new IllegalArgumentException("no such domain: " + query, e);
+                throw new IllegalArgumentException("no such domain: " + selectRequest.getSelectExpression(), e);
             } else if (SimpleDBUtil.AWS_ERR_CODE_SERVICE_UNAVAILABLE.equals(e.getErrorCode())) {
                 //retry after a small pause
                 SimpleDBUtil.sleepBeforeRetry(attempt);
                 attempt++;
-                return queryInternal(query, max, attempt);
+                return select(selectRequest, attempt);
             } else {
                 throw e;
             }
@@ -323,4 +349,100 @@ public class SimpleDBTemplateImpl implements SimpleDBTemplate {
     protected UpdateCondition getOptimisticVersionCondition(String expectedVersion) {
         return new UpdateCondition("version", expectedVersion,Boolean.TRUE);
     }
+
+    /**
+     * Iterates over the items of a select, following NextToken one page at a time. While a page
+     * is being consumed the next one is already being fetched on the prefetch executor, if there is
+     * one, so an iterator that is abandoned early costs at most one extra request.
+     */
+    protected class PrefetchingSelectIterator implements Iterator<Item> {
+        private final String query;
+        private final int max;
+        private Iterator<Item> page;
+        private String nextToken;
+        private FutureTask<SelectResult> nextPage;
+        private int returned;
+
+        public PrefetchingSelectIterator(String query, int max) {
+            this.query = query;
+            this.max = max;
+            setPage(select(new SelectRequest(query), 1));
+        }
+
+        public boolean hasNext() {
+            if (returned >= max) {
+                return false;
+            }
+            while (!page.hasNext()) {
+                if (nextToken == null) {
+                    return false;
+                }
+                setPage(nextPage == null ? select(nextPageRequest(), 1) : awaitPage());
+            }
+            return true;
+        }
+
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            returned++;
+            return page.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove() is not supported for select results");
+        }
+
+        private void setPage(SelectResult result) {
+            List<Item> items = result.getItems();
+            page = items.iterator();
+            nextPage = null;
+            nextToken = null;
+
+            if (result.getNextToken() != null && returned + items.size() < max) {
+                nextToken = result.getNextToken();
+                prefetch();
+            }
+        }
+
+        private void prefetch() {
+            Executor executor = prefetchExecutor;
+            if (executor == null) {
+                return;
+            }
+            final SelectRequest request = nextPageRequest();
+            FutureTask<SelectResult> task = new FutureTask<SelectResult>(new Callable<SelectResult>() {
+                public SelectResult call() {
+                    return select(request, 1);
+                }
+            });
+            try {
+                executor.execute(task);
+                nextPage = task;
+            } catch (RejectedExecutionException e) {
+                // all prefetch threads are busy or the executor is shut down, fetch the page once it is needed
+            }
+        }
+
+        private SelectRequest nextPageRequest() {
+            return new SelectRequest(query).withNextToken(nextToken);
+        }
+
+        private SelectResult awaitPage() {
+            // fetches the page on this thread if the executor hasn't started to, for example once it is shut down
+            nextPage.run();
+            try {
+                return nextPage.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessResourceFailureException("Interrupted while fetching next page of: " + query, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new DataAccessResourceFailureException("Could not fetch next page of: " + query, e.getCause());
+            }
+        }
+    }
 }